@@ -0,0 +1,32 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkMain Class. Runs the benchmarks named on the command line, taking
+ * the usual JMH options, always with the GC profiler so that allocation rate
+ * per operation is reported beside the times.
+ */
+public class BenchmarkMain
+{
+
+    public static void main (String[] args)
+    throws Exception
+    {
+        Options opts = new OptionsBuilder ()
+            .parent (new CommandLineOptions (args))
+            .addProfiler (GCProfiler.class)
+            .build ();
+        new Runner (opts).run ();
+    }
+}
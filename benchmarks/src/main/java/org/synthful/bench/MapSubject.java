@@ -0,0 +1,351 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.synthful.gwt.util.HashList;
+import org.synthful.util.FastHashVector;
+import org.synthful.util.HashTreeNode;
+import org.synthful.util.HashVector;
+import org.synthful.util.HashVectorTree;
+import org.synthful.util.ToStringBuffer;
+
+/**
+ * MapSubject Class. Puts the ordered maps under test behind one face, each
+ * through the API its users would call: keys are put and got through the
+ * hash key progression API of the tree nodes, and iteration is by position
+ * where the map offers it.
+ */
+abstract public class MapSubject
+{
+
+    /** Variable IMPLS. Names accepted by create. */
+    final static public String[] IMPLS = {
+        "LinkedHashMap", "HashVector", "FastHashVector",
+        "HashTreeNode", "HashVectorTree", "HashList"
+    };
+
+    /**
+	 * Create an empty subject.
+	 *
+	 * @param impl
+	 *            one of IMPLS
+	 * @param initSz
+	 *
+	 * @return the subject
+	 */
+    static public MapSubject create (String impl, int initSz)
+    {
+        if ("LinkedHashMap".equals (impl))
+            return new LinkedHashMapSubject (initSz);
+        if ("HashVector".equals (impl))
+            return new HashVectorSubject (initSz);
+        if ("FastHashVector".equals (impl))
+            return new FastHashVectorSubject (initSz);
+        if ("HashTreeNode".equals (impl))
+            return new HashTreeNodeSubject (initSz);
+        if ("HashVectorTree".equals (impl))
+            return new HashVectorTreeSubject (initSz);
+        if ("HashList".equals (impl))
+            return new HashListSubject (initSz);
+        throw new IllegalArgumentException (impl);
+    }
+
+    abstract public void put (String key, Object value);
+
+    abstract public Object get (String key);
+
+    abstract public Object getAt (int position);
+
+    abstract public Object remove (String key);
+
+    abstract public void iterate (Blackhole bh);
+
+    abstract public CharSequence dump ();
+
+    static final class LinkedHashMapSubject
+    extends MapSubject
+    {
+        LinkedHashMapSubject (int initSz)
+        {
+            Map = new LinkedHashMap<String, Object> (initSz);
+        }
+
+        public void put (String key, Object value)
+        {
+            Map.put (key, value);
+        }
+
+        public Object get (String key)
+        {
+            return Map.get (key);
+        }
+
+        /** No positional access, so walk to it. */
+        public Object getAt (int position)
+        {
+            for (Object value : Map.values ())
+                if (position-- == 0)
+                    return value;
+            return null;
+        }
+
+        public Object remove (String key)
+        {
+            return Map.remove (key);
+        }
+
+        public void iterate (Blackhole bh)
+        {
+            for (Map.Entry<String, Object> entry : Map.entrySet ())
+            {
+                bh.consume (entry.getKey ());
+                bh.consume (entry.getValue ());
+            }
+        }
+
+        public CharSequence dump ()
+        {
+            return Map.toString ();
+        }
+
+        final LinkedHashMap<String, Object> Map;
+    }
+
+    static final class HashVectorSubject
+    extends MapSubject
+    {
+        HashVectorSubject (int initSz)
+        {
+            Map = new HashVector<String, Object> (initSz);
+        }
+
+        public void put (String key, Object value)
+        {
+            Map.put (key, value);
+        }
+
+        public Object get (String key)
+        {
+            return Map.get (key);
+        }
+
+        public Object getAt (int position)
+        {
+            return Map.get (position);
+        }
+
+        public Object remove (String key)
+        {
+            return Map.remove (key);
+        }
+
+        public void iterate (Blackhole bh)
+        {
+            int n = Map.size ();
+            for (int i = 0; i < n; i++)
+            {
+                bh.consume (Map.getKey (i));
+                bh.consume (Map.get (i));
+            }
+        }
+
+        public CharSequence dump ()
+        {
+            return Map.toStringBuffer (new ToStringBuffer (), 0, 0);
+        }
+
+        final HashVector<String, Object> Map;
+    }
+
+    static final class FastHashVectorSubject
+    extends MapSubject
+    {
+        FastHashVectorSubject (int initSz)
+        {
+            Map = new FastHashVector<String, Object> (initSz);
+        }
+
+        public void put (String key, Object value)
+        {
+            Map.put (key, value);
+        }
+
+        public Object get (String key)
+        {
+            return Map.get (key);
+        }
+
+        public Object getAt (int position)
+        {
+            return Map.get (position);
+        }
+
+        public Object remove (String key)
+        {
+            return Map.remove (key);
+        }
+
+        public void iterate (Blackhole bh)
+        {
+            int n = Map.size ();
+            for (int i = 0; i < n; i++)
+            {
+                bh.consume (Map.getKey (i));
+                bh.consume (Map.get (i));
+            }
+        }
+
+        public CharSequence dump ()
+        {
+            return Map.toStringBuffer (new ToStringBuffer (), 0, 0);
+        }
+
+        final FastHashVector<String, Object> Map;
+    }
+
+    static final class HashTreeNodeSubject
+    extends MapSubject
+    {
+        HashTreeNodeSubject (int initSz)
+        {
+            Map = new HashTreeNode (initSz);
+        }
+
+        public void put (String key, Object value)
+        {
+            Map.put (key, value);
+        }
+
+        public Object get (String key)
+        {
+            return Map.get (key);
+        }
+
+        public Object getAt (int position)
+        {
+            return Map.get (position);
+        }
+
+        public Object remove (String key)
+        {
+            return Map.cut (key);
+        }
+
+        public void iterate (Blackhole bh)
+        {
+            int n = Map.size ();
+            for (int i = 0; i < n; i++)
+            {
+                bh.consume (Map.getKey (i));
+                bh.consume (Map.get (i));
+            }
+        }
+
+        public CharSequence dump ()
+        {
+            return Map.toStringBuffer (new ToStringBuffer (), 0, 0);
+        }
+
+        final HashTreeNode Map;
+    }
+
+    static final class HashVectorTreeSubject
+    extends MapSubject
+    {
+        HashVectorTreeSubject (int initSz)
+        {
+            Map = new HashVectorTree (initSz);
+        }
+
+        public void put (String key, Object value)
+        {
+            Map.put (key, value);
+        }
+
+        public Object get (String key)
+        {
+            return Map.get (key);
+        }
+
+        public Object getAt (int position)
+        {
+            return Map.get (position);
+        }
+
+        public Object remove (String key)
+        {
+            return Map.cut (key);
+        }
+
+        public void iterate (Blackhole bh)
+        {
+            int n = Map.size ();
+            for (int i = 0; i < n; i++)
+            {
+                bh.consume (Map.getKey (i));
+                bh.consume (Map.get (i));
+            }
+        }
+
+        public CharSequence dump ()
+        {
+            return Map.toStringBuffer (new ToStringBuffer (), 0, 0);
+        }
+
+        final HashVectorTree Map;
+    }
+
+    static final class HashListSubject
+    extends MapSubject
+    {
+        HashListSubject (int initSz)
+        {
+            Map = new HashList<String, Object> (initSz);
+        }
+
+        public void put (String key, Object value)
+        {
+            Map.put (key, value);
+        }
+
+        public Object get (String key)
+        {
+            return Map.get (key);
+        }
+
+        public Object getAt (int position)
+        {
+            return Map.get (position);
+        }
+
+        public Object remove (String key)
+        {
+            return Map.remove (key);
+        }
+
+        public void iterate (Blackhole bh)
+        {
+            int n = Map.size ();
+            for (int i = 0; i < n; i++)
+            {
+                bh.consume (Map.getKey (i));
+                bh.consume (Map.get (i));
+            }
+        }
+
+        public CharSequence dump ()
+        {
+            return Map.toString ();
+        }
+
+        final HashList<String, Object> Map;
+    }
+}
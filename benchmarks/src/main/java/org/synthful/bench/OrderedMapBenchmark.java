@@ -0,0 +1,123 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * OrderedMapBenchmark Class. Flat put, get by key, get by position, removal,
+ * ordered iteration and dumps of the ordered maps, against LinkedHashMap.
+ * <BR>
+ * fill, iterate and dump are timed per whole map of size entries; the others
+ * per single operation on a map of size entries, at keys spread at random.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State (Scope.Thread)
+public class OrderedMapBenchmark
+{
+
+    @Param ({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param ({"LinkedHashMap", "HashVector", "FastHashVector",
+        "HashTreeNode", "HashVectorTree", "HashList"})
+    public String impl;
+
+    @Setup (Level.Trial)
+    public void setup ()
+    {
+        Keys = new String[size];
+        for (int i = 0; i < size; i++)
+            Keys[i] = "key" + i;
+
+        Random r = new Random (42);
+        Probes = new int[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            Probes[i] = r.nextInt (size);
+
+        Subject = fill (size);
+    }
+
+    @Benchmark
+    public MapSubject fill ()
+    {
+        return fill (16);
+    }
+
+    @Benchmark
+    public Object getByKey ()
+    {
+        return Subject.get (Keys[nextProbe ()]);
+    }
+
+    @Benchmark
+    public Object getByPosition ()
+    {
+        return Subject.getAt (nextProbe ());
+    }
+
+    /** Remove a key and put it back, so the map keeps its size. */
+    @Benchmark
+    public Object removeAndPut ()
+    {
+        String key = Keys[nextProbe ()];
+        Object value = Subject.remove (key);
+        Subject.put (key, key);
+        return value;
+    }
+
+    @Benchmark
+    public void iterate (Blackhole bh)
+    {
+        Subject.iterate (bh);
+    }
+
+    @Benchmark
+    public int dump ()
+    {
+        return Subject.dump ().length ();
+    }
+
+    private MapSubject fill (int initSz)
+    {
+        MapSubject subject = MapSubject.create (impl, initSz);
+        for (String key : Keys)
+            subject.put (key, key);
+        return subject;
+    }
+
+    private int nextProbe ()
+    {
+        return Probes[Cursor++ & (PROBES - 1)];
+    }
+
+    final static private int PROBES = 1 << 16;
+
+    private String[] Keys;
+    private int[] Probes;
+    private int Cursor;
+    private MapSubject Subject;
+}
@@ -0,0 +1,328 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.synthful.util.ConcurrentHashTreeNode;
+import org.synthful.util.FastHashTreeNode;
+import org.synthful.util.HashTreeNode;
+import org.synthful.util.HashVectorTree;
+import org.synthful.util.PersistentHashTreeNode;
+import org.synthful.util.ToStringBuffer;
+import org.synthful.util.TreePath;
+
+/**
+ * TreePathBenchmark Class. Get and put by hash key progression, as a string
+ * and as a compiled TreePath, at several depths, against nested
+ * LinkedHashMaps walked by hand. The leaves are spread evenly over a tree of
+ * the given depth, and every put overwrites an existing leaf.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State (Scope.Thread)
+public class TreePathBenchmark
+{
+
+    @Param ({"1", "2", "4", "8"})
+    public int depth;
+
+    @Param ({"10", "1000", "100000", "1000000"})
+    public int leaves;
+
+    @Param ({"LinkedHashMap", "HashTreeNode", "HashVectorTree",
+        "FastHashTreeNode", "ConcurrentHashTreeNode", "PersistentHashTreeNode"})
+    public String impl;
+
+    @Setup (Level.Trial)
+    public void setup ()
+    {
+        int fanout = (int) Math.ceil (Math.pow (leaves, 1.0 / depth));
+        Paths = new String[leaves];
+        for (int i = 0; i < leaves; i++)
+        {
+            StringBuilder sb = new StringBuilder ();
+            int n = i;
+            for (int d = 0; d < depth; d++)
+            {
+                if (d > 0)
+                    sb.append ('/');
+                sb.append ('k').append (n % fanout);
+                n /= fanout;
+            }
+            Paths[i] = sb.toString ();
+        }
+
+        Compiled = new TreePath[leaves];
+        for (int i = 0; i < leaves; i++)
+            Compiled[i] = TreePath.parse (Paths[i], '/');
+
+        Random r = new Random (42);
+        Probes = new int[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            Probes[i] = r.nextInt (leaves);
+
+        Subject = create ();
+        for (String path : Paths)
+            Subject.put (path, path);
+    }
+
+    @Benchmark
+    public Object getPath ()
+    {
+        return Subject.get (Paths[nextProbe ()]);
+    }
+
+    @Benchmark
+    public Object getCompiledPath ()
+    {
+        return Subject.get (Compiled[nextProbe ()]);
+    }
+
+    @Benchmark
+    public Object putPath ()
+    {
+        String path = Paths[nextProbe ()];
+        Subject.put (path, path);
+        return path;
+    }
+
+    @Benchmark
+    public int dump ()
+    {
+        return Subject.dump ().length ();
+    }
+
+    private int nextProbe ()
+    {
+        return Probes[Cursor++ & (PROBES - 1)];
+    }
+
+    private PathSubject create ()
+    {
+        if ("LinkedHashMap".equals (impl))
+            return new PathSubject ()
+            {
+                void put (String path, Object value)
+                {
+                    put (TreePath.parse (path, '/'), value);
+                }
+
+                Object get (String path)
+                {
+                    return get (TreePath.parse (path, '/'));
+                }
+
+                void put (TreePath path, Object value)
+                {
+                    Map<String, Object> m = Root;
+                    for (int i = 0; i < path.depth () - 1; i++)
+                    {
+                        Object o = m.get (path.getSegment (i));
+                        if (! (o instanceof Map))
+                        {
+                            o = new LinkedHashMap<String, Object> ();
+                            m.put (path.getSegment (i), o);
+                        }
+                        m = (Map<String, Object>) o;
+                    }
+                    m.put (path.getLeaf (), value);
+                }
+
+                Object get (TreePath path)
+                {
+                    Object o = Root;
+                    for (int i = 0; i < path.depth (); i++)
+                    {
+                        if (! (o instanceof Map))
+                            return null;
+                        o = ((Map<?, ?>) o).get (path.getSegment (i));
+                    }
+                    return o;
+                }
+
+                CharSequence dump ()
+                {
+                    return Root.toString ();
+                }
+
+                final LinkedHashMap<String, Object> Root = new LinkedHashMap<String, Object> ();
+            };
+
+        if ("HashTreeNode".equals (impl))
+            return new PathSubject ()
+            {
+                void put (String path, Object value)
+                {
+                    Root.put (path, value);
+                }
+
+                Object get (String path)
+                {
+                    return Root.get (path);
+                }
+
+                Object get (TreePath path)
+                {
+                    return Root.get (path);
+                }
+
+                CharSequence dump ()
+                {
+                    return Root.toStringBuffer (new ToStringBuffer (), 0, 0);
+                }
+
+                final HashTreeNode Root = new HashTreeNode ();
+            };
+
+        if ("HashVectorTree".equals (impl))
+            return new PathSubject ()
+            {
+                void put (String path, Object value)
+                {
+                    Root.put (path, value);
+                }
+
+                Object get (String path)
+                {
+                    return Root.get (path);
+                }
+
+                Object get (TreePath path)
+                {
+                    return Root.get (path);
+                }
+
+                CharSequence dump ()
+                {
+                    return Root.toStringBuffer (new ToStringBuffer (), 0, 0);
+                }
+
+                final HashVectorTree Root = new HashVectorTree ();
+            };
+
+        if ("FastHashTreeNode".equals (impl))
+            return new PathSubject ()
+            {
+                void put (String path, Object value)
+                {
+                    Root.put (path, value);
+                }
+
+                Object get (String path)
+                {
+                    return Root.get (path);
+                }
+
+                Object get (TreePath path)
+                {
+                    return Root.get (path);
+                }
+
+                CharSequence dump ()
+                {
+                    return Root.toStringBuffer (new ToStringBuffer (), 0, 0);
+                }
+
+                final FastHashTreeNode Root = new FastHashTreeNode ();
+            };
+
+        if ("ConcurrentHashTreeNode".equals (impl))
+            return new PathSubject ()
+            {
+                void put (String path, Object value)
+                {
+                    Root.put (path, value);
+                }
+
+                Object get (String path)
+                {
+                    return Root.get (path);
+                }
+
+                Object get (TreePath path)
+                {
+                    return Root.get (path);
+                }
+
+                CharSequence dump ()
+                {
+                    return Root.toStringBuffer (new ToStringBuffer (), 0, 0);
+                }
+
+                final ConcurrentHashTreeNode Root = new ConcurrentHashTreeNode ();
+            };
+
+        if ("PersistentHashTreeNode".equals (impl))
+            return new PathSubject ()
+            {
+                void put (String path, Object value)
+                {
+                    Root = Root.put (path, value);
+                }
+
+                Object get (String path)
+                {
+                    return Root.get (path);
+                }
+
+                Object get (TreePath path)
+                {
+                    return Root.get (path);
+                }
+
+                CharSequence dump ()
+                {
+                    return Root.toStringBuffer (new ToStringBuffer (), 0, 0);
+                }
+
+                PersistentHashTreeNode Root = PersistentHashTreeNode.EMPTY_TREE;
+            };
+
+        throw new IllegalArgumentException (impl);
+    }
+
+    /**
+	 * PathSubject Class. The tree under test behind one face.
+	 */
+    static abstract class PathSubject
+    {
+        abstract void put (String path, Object value);
+
+        abstract Object get (String path);
+
+        abstract Object get (TreePath path);
+
+        abstract CharSequence dump ();
+    }
+
+    final static private int PROBES = 1 << 16;
+
+    private String[] Paths;
+    private TreePath[] Compiled;
+    private int[] Probes;
+    private int Cursor;
+    private PathSubject Subject;
+}
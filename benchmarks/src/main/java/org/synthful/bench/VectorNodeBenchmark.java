@@ -0,0 +1,102 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.synthful.util.ToStringBuffer;
+import org.synthful.util.VectorNode;
+
+/**
+ * VectorNodeBenchmark Class. Append, get by position, iteration and dumps of
+ * VectorNode, against ArrayList.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State (Scope.Thread)
+public class VectorNodeBenchmark
+{
+
+    @Param ({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param ({"ArrayList", "VectorNode"})
+    public String impl;
+
+    @Setup (Level.Trial)
+    public void setup ()
+    {
+        Items = new String[size];
+        for (int i = 0; i < size; i++)
+            Items[i] = "item" + i;
+
+        Random r = new Random (42);
+        Probes = new int[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            Probes[i] = r.nextInt (size);
+
+        List = fill ();
+    }
+
+    @Benchmark
+    public List<Object> fill ()
+    {
+        List<Object> list = "VectorNode".equals (impl)
+            ? new VectorNode<Object> ()
+            : new ArrayList<Object> ();
+        for (String item : Items)
+            list.add (item);
+        return list;
+    }
+
+    @Benchmark
+    public Object getByPosition ()
+    {
+        return List.get (Probes[Cursor++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public void iterate (Blackhole bh)
+    {
+        for (Object o : List)
+            bh.consume (o);
+    }
+
+    @Benchmark
+    public int dump ()
+    {
+        if (List instanceof VectorNode)
+            return ((VectorNode<Object>) List).toStringBuffer (new ToStringBuffer (), 0, 0).length ();
+        return List.toString ().length ();
+    }
+
+    final static private int PROBES = 1 << 16;
+
+    private String[] Items;
+    private int[] Probes;
+    private int Cursor;
+    private List<Object> List;
+}
@@ -0,0 +1,765 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Vector;
+
+import org.synthful.lang.Empty.EmptyFactory;
+import org.synthful.util.ToStringBuffer.Fillers;
+import org.synthful.util.ToStringBuffer.ToStringBufferable;
+
+/**
+ * ConcurrentHashTreeNode Class. Copy-on-write counterpart of HashTreeNode
+ * for read-mostly trees shared across threads, such as configuration trees
+ * shared by servlet threads. Objects are stored and retrieved by hash key
+ * progressions of the form "keya/keyb/keyc", or by position.
+ * <BR>
+ * The members of each node are held in an immutable snapshot published
+ * through a volatile reference, so reads never take a lock and always see a
+ * consistent node. Writes lock the node being written, copy its snapshot and
+ * publish the copy. Only the node that is written is copied, since every
+ * branch is a node of its own.
+ * <BR>
+ * Writes cost O(n) in the size of the node. Use add(Map) or add(Object[][])
+ * to load many members into one node with a single copy.
+ */
+public class ConcurrentHashTreeNode
+extends AbstractMap<String, Object>
+implements TreeNode, EmptyFactory<Object>, ToStringBufferable, Serializable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new ConcurrentHashTreeNode.
+	 */
+    public ConcurrentHashTreeNode ()
+    {
+        super ();
+    }
+
+    /**
+	 * Instantiates a new ConcurrentHashTreeNode.
+	 *
+	 * @param map
+	 */
+    public ConcurrentHashTreeNode (Map<?, ?> map)
+    {
+        add (map);
+    }
+
+    /**
+	 * Instantiates a new ConcurrentHashTreeNode.
+	 *
+	 * @param t
+	 */
+    public ConcurrentHashTreeNode (Object[][] t)
+    {
+        add (t);
+    }
+
+    /**
+	 * Adds the members of map, with one copy of each node written.
+	 *
+	 * @param map
+	 *
+	 * @return Adds the as ConcurrentHashTreeNode
+	 */
+    public ConcurrentHashTreeNode add (Map<?, ?> map)
+    {
+        Object[][] t = new Object[map.size ()][];
+        int i = 0;
+        for (Entry<?, ?> entry : map.entrySet ())
+            t[i++] = new Object[] {entry.getKey (), entry.getValue ()};
+        return add (t);
+    }
+
+    /**
+	 * Adds the members of t, with one copy of each node written.
+	 *
+	 * @param t
+	 *
+	 * @return Adds the as ConcurrentHashTreeNode
+	 */
+    public ConcurrentHashTreeNode add (Object[][] t)
+    {
+        if (t == null)
+            return this;
+
+        //Group leaf keys by the node they go into, so that each node
+        //is copied once.
+        IdentityHashMap<ConcurrentHashTreeNode, Vector<Object[]>> batches =
+            new IdentityHashMap<ConcurrentHashTreeNode, Vector<Object[]>> ();
+        Vector<ConcurrentHashTreeNode> order = new Vector<ConcurrentHashTreeNode> ();
+
+        for (int i = 0; i < t.length; i++)
+        {
+            if (t[i] == null || t[i].length < 1)
+                continue;
+            String key = "" + t[i][0];
+            Object value
+            = t[i].length >= 2
+            ? t[i][1]
+            : null;
+
+            String[] keysegs = TreePath.parse (key, getKeyDelimiter ()).Segments;
+            if (keysegs.length == 0)
+                continue;
+            ConcurrentHashTreeNode myH = setPath (keysegs, keysegs.length - 1);
+            Vector<Object[]> batch = batches.get (myH);
+            if (batch == null)
+            {
+                batch = new Vector<Object[]> ();
+                batches.put (myH, batch);
+                order.add (myH);
+            }
+            batch.add (new Object[] {keysegs[keysegs.length - 1], value});
+        }
+
+        for (ConcurrentHashTreeNode myH : order)
+            myH.putValues (batches.get (myH));
+
+        return this;
+    }
+
+    /**
+	 * Gets the String.
+	 *
+	 * @param key
+	 *
+	 * @return the String as String
+	 */
+    public String getString (String key)
+    {
+        Object o = get (key);
+        if (o == null)
+            return "";
+        return o.toString ();
+    }
+
+    /**
+	 * get stored object by hashkey progression.
+	 *
+	 * @param key
+	 *            is a hash key progression
+	 *
+	 * @return stored object indexed by key
+	 */
+    public Object get (String key)
+    {
+        return get (TreePath.compile (key, getKeyDelimiter ()));
+    }
+
+    /**
+	 * get stored object by compiled hashkey progression.
+	 *
+	 * @param path
+	 *            is a compiled hash key progression
+	 *
+	 * @return stored object indexed by path
+	 */
+    public Object get (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length);
+    }
+
+    /**
+	 * Gets the ParentOf.
+	 *
+	 * @param key
+	 *
+	 * @return the ParentOf as Object
+	 */
+    public Object getParentOf (String key)
+    {
+        return getParentOf (TreePath.compile (key, getKeyDelimiter ()));
+    }
+
+    /**
+	 * Gets the ParentOf.
+	 *
+	 * @param path
+	 *
+	 * @return the ParentOf as Object
+	 */
+    public Object getParentOf (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length - 1);
+    }
+
+    /**
+	 * Walk down the tree along the first depth key segments.
+	 *
+	 * @param keysegs
+	 * @param depth
+	 *
+	 * @return the object reached, or null if the path does not exist.
+	 */
+    protected Object get (String[] keysegs, int depth)
+    {
+        Object myH = this;
+        for (int i = 0; i < depth; i++)
+        {
+            if (! (myH instanceof Map))
+                return null;
+
+            myH = ( (Map) myH).get (keysegs[i]);
+            if (myH == null)
+                return null;
+        }
+        return myH;
+    }
+
+    /**
+     * @see java.util.AbstractMap#get(java.lang.Object)
+     */
+    @Override
+    public Object get (Object key)
+    {
+        Snapshot snap = Members;
+        Integer i = snap.Positions.get (key);
+        return i == null ? null : snap.Values[i];
+    }
+
+    /**
+	 * get stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Object stored at that position.
+	 */
+    public Object get (int position)
+    {
+        Snapshot snap = Members;
+        if (position < snap.Keys.length && position >= 0)
+            return snap.Values[position];
+
+        return null;
+    }
+
+    /**
+	 *
+	 *
+	 * @return the delimiter used for separating key segments.
+	 */
+    public char getKeyDelimiter ()
+    {
+        return KeyDelimiter;
+    }
+
+    /**
+	 * get hash key of stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Hash key of object stored at that position.
+	 */
+    public String getKey (int position)
+    {
+        Snapshot snap = Members;
+        if (position < snap.Keys.length && position >= 0)
+            return snap.Keys[position];
+
+        return null;
+    }
+
+    /**
+	 * Gets the KeyPosition.
+	 *
+	 * @param key
+	 *
+	 * @return the KeyPosition as int
+	 */
+    public int getKeyPosition (Object key)
+    {
+        Integer i = Members.Positions.get (key);
+        return i == null ? -1 : i;
+    }
+
+    /**
+	 * Gets the KeysVector.
+	 *
+	 * @return a snapshot of the keys in insertion order as Vector
+	 */
+    public Vector<String> getKeysVector ()
+    {
+        return new Vector<String> (Arrays.asList (Members.Keys));
+    }
+
+    /**
+     * @see java.util.AbstractMap#containsKey(java.lang.Object)
+     */
+    @Override
+    public boolean containsKey (Object key)
+    {
+        return Members.Positions.containsKey (key);
+    }
+
+    /**
+     * @see java.util.AbstractMap#size()
+     */
+    @Override
+    public int size ()
+    {
+        return Members.Keys.length;
+    }
+
+    /**
+	 *
+	 *
+	 * @param key
+	 *            delimited String hierarchical progression key, e.g.
+	 *            "greatest/hits/1980", locating or creating each branch
+	 *            in turn and putting value at the leaf key.
+	 * @param value
+	 *            value to be put into hash for key
+	 *
+	 * @return this
+	 */
+    public ConcurrentHashTreeNode put (String key, Object value)
+    {
+        return put (TreePath.parse (key, getKeyDelimiter ()), value);
+    }
+
+    /**
+	 * Put value at the compiled hashkey progression path, locating or
+	 * creating each branch in turn.
+	 *
+	 * @param path
+	 * @param value
+	 *
+	 * @return this
+	 */
+    public ConcurrentHashTreeNode put (TreePath path, Object value)
+    {
+        String leafKey = path.getLeaf ();
+        if (leafKey == null)
+            return this;
+
+        ConcurrentHashTreeNode myH = setPath (path.Segments, path.Segments.length - 1);
+        myH.putValue (leafKey, value);
+        return this;
+    }
+
+    /**
+	 * Get or otherwise create the branch indicated by the first depth key
+	 * segments, over-writing any leaf found on the way.
+	 *
+	 * @param keysegs
+	 * @param depth
+	 *
+	 * @return the branch reached.
+	 */
+    protected ConcurrentHashTreeNode setPath (String[] keysegs, int depth)
+    {
+        ConcurrentHashTreeNode myH = this;
+        for (int i = 0; i < depth; i++)
+        {
+            String mykey = keysegs[i];
+            if (mykey == null || mykey.length () == 0)
+                continue;
+
+            Object otree = myH.get ((Object) mykey);
+            if (otree instanceof ConcurrentHashTreeNode)
+            {
+                myH = (ConcurrentHashTreeNode) otree;
+                continue;
+            }
+
+            //Re-check under the lock, so that two threads do not both
+            //create the same branch.
+            synchronized (myH)
+            {
+                otree = myH.get ((Object) mykey);
+                if (! (otree instanceof ConcurrentHashTreeNode))
+                {
+                    ConcurrentHashTreeNode mytree = new ConcurrentHashTreeNode ();
+                    mytree.KeyDelimiter = myH.KeyDelimiter;
+                    myH.putValue (mykey, mytree);
+                    otree = mytree;
+                }
+            }
+            myH = (ConcurrentHashTreeNode) otree;
+        }
+        return myH;
+    }
+
+    /**
+	 * Locate the branch addressed by key and clear it of all members,
+	 * without removing the branch itself. To remove the whole branch, use
+	 * cut.
+	 *
+	 * @param key
+	 *            Hash key of hash branch to be cleared.
+	 *
+	 * @return this ConcurrentHashTreeNode
+	 */
+    public ConcurrentHashTreeNode clear (String key)
+    {
+        Object o = get (key);
+        if (o instanceof ConcurrentHashTreeNode)
+            ( (ConcurrentHashTreeNode) o).clear ();
+        return this;
+    }
+
+    /**
+	 * Put value.
+	 *
+	 * @param key
+	 * @param value
+	 *
+	 * @return Put value as ConcurrentHashTreeNode
+	 */
+    protected synchronized ConcurrentHashTreeNode putValue (String key, Object value)
+    {
+        if(key==null)
+            key=EMPTY.toString();
+        if(value==null)
+            value=EMPTY;
+        if (value instanceof TreeNode)
+            ((TreeNode)value).setParentNode (this);
+
+        Snapshot snap = Members;
+        Integer i = snap.Positions.get (key);
+        if (i != null)
+        {
+            //Existing key keeps its position, so keys are shared.
+            Object[] values = snap.Values.clone ();
+            values[i] = value;
+            Members = new Snapshot (snap.Keys, values, snap.Positions);
+            return this;
+        }
+
+        int n = snap.Keys.length;
+        String[] keys = Arrays.copyOf (snap.Keys, n + 1);
+        Object[] values = Arrays.copyOf (snap.Values, n + 1);
+        HashMap<Object, Integer> positions =
+            new HashMap<Object, Integer> (snap.Positions);
+        keys[n] = key;
+        values[n] = value;
+        positions.put (key, n);
+        Members = new Snapshot (keys, values, positions);
+        return this;
+    }
+
+    /**
+	 * Put a batch of {key, value} pairs into this node with a single copy.
+	 *
+	 * @param pairs
+	 */
+    protected synchronized void putValues (Vector<Object[]> pairs)
+    {
+        Snapshot snap = Members;
+        int n = snap.Keys.length;
+        String[] keys = Arrays.copyOf (snap.Keys, n + pairs.size ());
+        Object[] values = Arrays.copyOf (snap.Values, n + pairs.size ());
+        HashMap<Object, Integer> positions =
+            new HashMap<Object, Integer> ((n + pairs.size ()) * 4 / 3 + 1);
+        positions.putAll (snap.Positions);
+
+        for (Object[] pair : pairs)
+        {
+            String key = pair[0] == null ? EMPTY.toString () : (String) pair[0];
+            Object value = pair[1] == null ? EMPTY : pair[1];
+            if (value instanceof TreeNode)
+                ((TreeNode)value).setParentNode (this);
+
+            Integer i = positions.get (key);
+            if (i != null)
+            {
+                values[i] = value;
+                continue;
+            }
+            keys[n] = key;
+            values[n] = value;
+            positions.put (key, n++);
+        }
+
+        Members = new Snapshot (
+            Arrays.copyOf (keys, n), Arrays.copyOf (values, n), positions);
+    }
+
+    /**
+	 * Remove value of a key of this node, without key progression.
+	 *
+	 * @param key
+	 *
+	 * @return the removed value as Object
+	 */
+    public synchronized Object removeValue (Object key)
+    {
+        Snapshot snap = Members;
+        Integer i = snap.Positions.get (key);
+        if (i == null)
+            return null;
+
+        int n = snap.Keys.length - 1;
+        String[] keys = new String[n];
+        Object[] values = new Object[n];
+        System.arraycopy (snap.Keys, 0, keys, 0, i);
+        System.arraycopy (snap.Keys, i + 1, keys, i, n - i);
+        System.arraycopy (snap.Values, 0, values, 0, i);
+        System.arraycopy (snap.Values, i + 1, values, i, n - i);
+
+        HashMap<Object, Integer> positions =
+            new HashMap<Object, Integer> (n * 4 / 3 + 1);
+        for (int j = 0; j < n; j++)
+            positions.put (keys[j], j);
+
+        Object item = snap.Values[i];
+        Members = new Snapshot (keys, values, positions);
+        return item;
+    }
+
+    /**
+     * @see java.util.AbstractMap#remove(java.lang.Object)
+     */
+    @Override
+    public Object remove (Object key)
+    {
+        return removeValue (key);
+    }
+
+    /**
+     * @see java.util.AbstractMap#clear()
+     */
+    @Override
+    public synchronized void clear ()
+    {
+        Members = Snapshot.NONE;
+    }
+
+    /**
+	 * Cut.
+	 *
+	 * @param key
+	 *
+	 * @return Cut as Object
+	 */
+    public Object cut (String key)
+    {
+        return cut (TreePath.parse (key, getKeyDelimiter ()));
+    }
+
+    /**
+	 * Cut.
+	 *
+	 * @param path
+	 *
+	 * @return Cut as Object
+	 */
+    public Object cut (TreePath path)
+    {
+        Object myH = getParentOf (path);
+        String leafKey = path.getLeaf ();
+        if (leafKey == null)
+            return null;
+
+        if (myH instanceof ConcurrentHashTreeNode)
+        {
+            Object item = ( (ConcurrentHashTreeNode) myH).removeValue (leafKey);
+            if (item instanceof TreeNode)
+                ( (TreeNode) item).setParentNode (null);
+            return item;
+        }
+        else if (myH instanceof Map)
+        {
+            return ( (Map) myH).remove (leafKey);
+        }
+        return null;
+    }
+
+    /**
+     * @see java.util.AbstractMap#entrySet()
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet ()
+    {
+        final Snapshot snap = Members;
+        return new AbstractSet<Entry<String, Object>> ()
+        {
+            public Iterator<Entry<String, Object>> iterator ()
+            {
+                return new Iterator<Entry<String, Object>> ()
+                {
+                    public boolean hasNext ()
+                    {
+                        return Cursor < snap.Keys.length;
+                    }
+
+                    public Entry<String, Object> next ()
+                    {
+                        if (!hasNext ())
+                            throw new NoSuchElementException ();
+                        int i = Cursor++;
+                        return new SimpleImmutableEntry<String, Object> (
+                            snap.Keys[i], snap.Values[i]);
+                    }
+
+                    public void remove ()
+                    {
+                        throw new UnsupportedOperationException ();
+                    }
+
+                    private int Cursor = 0;
+                };
+            }
+
+            public int size ()
+            {
+                return snap.Keys.length;
+            }
+        };
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return Array as Object[]
+	 */
+    public Object[] toArray ()
+    {
+        return Members.Values.clone ();
+    }
+
+    /**
+	 * Converts to Vector.
+	 *
+	 * @return Vector as VectorNode
+	 */
+    public VectorNode<Object> toVector ()
+    {
+        return new VectorNode<Object> (Arrays.asList (Members.Values));
+    }
+
+    /* (non-Javadoc)
+     * @see org.synthful.util.TreeNode#toString(java.lang.String, java.lang.String)
+     */
+    public String toString (
+        String itemdelimiter, String nodedelimiter)
+    {
+        ToStringBuffer tostrbuf = new ToStringBuffer ();
+        tostrbuf.ItemDelimiter = itemdelimiter;
+        tostrbuf.NodeDelimiter = nodedelimiter;
+
+        return "" + this.toStringBuffer (tostrbuf, 0, 0);
+    }
+
+    public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
+    {
+        Snapshot snap = Members;
+        StringBuffer strBuf = tostrbuf.getStringBuffer();
+
+        tostrbuf.appendFillers(Fillers.NodeTerminatorLeft, depth);
+
+        for (int i = 0; i < snap.Keys.length; i++)
+        {
+	        if (i > 0)
+	        	tostrbuf.appendFillers (Fillers.NodeDelimiter, depth);
+
+            strBuf.append (snap.Keys[i]);
+            tostrbuf.appendFillers(Fillers.PairSeparator, depth);
+
+            tostrbuf.toStringBuffer (snap.Values[i], depth+1, i);
+        }
+
+        tostrbuf.appendFillers(Fillers.NodeTerminatorRight, depth);
+
+		return strBuf;
+    }
+
+    /**
+     * @see org.synthful.util.TreeNode#getParentNode()
+     */
+    public TreeNode getParentNode ()
+    {
+        return ParentNode;
+    }
+
+    /**
+     * @see org.synthful.util.TreeNode#getNode(int)
+     */
+    public TreeNode getNode (int i)
+    {
+        Object o = get (i);
+        if (o instanceof TreeNode)
+            return (TreeNode) o;
+        return null;
+    }
+
+    /**
+	 * Sets the delimiter used for separating key segments.
+	 *
+	 * @param delimiter
+	 *
+	 * @return this
+	 */
+    public TreeNode setKeyDelimiter (char delimiter)
+    {
+        KeyDelimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @see org.synthful.util.TreeNode#setParentNode(org.synthful.util.TreeNode)
+     */
+    public TreeNode setParentNode (TreeNode node)
+    {
+        ParentNode = node;
+        return this;
+    }
+
+    /**
+     * Snapshot Class. Immutable members of a node, in insertion order.
+     */
+    static protected final class Snapshot
+    implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        Snapshot (String[] keys, Object[] values, HashMap<Object, Integer> positions)
+        {
+            this.Keys = keys;
+            this.Values = values;
+            this.Positions = positions;
+        }
+
+        final String[] Keys;
+
+        final Object[] Values;
+
+        final HashMap<Object, Integer> Positions;
+
+        static final Snapshot NONE =
+            new Snapshot (new String[0], new Object[0], new HashMap<Object, Integer> ());
+    }
+
+    /** Variable Members. Published snapshot of the members of this node. */
+    protected volatile Snapshot Members = Snapshot.NONE;
+
+    /** Variable KeyDelimiter. */
+    protected char KeyDelimiter = '/';
+
+    /** Variable ParentNode. */
+    protected volatile TreeNode ParentNode;
+
+}
@@ -0,0 +1,890 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.synthful.lang.Empty.EmptyFactory;
+import org.synthful.util.ToStringBuffer.Fillers;
+import org.synthful.util.ToStringBuffer.ToStringBufferable;
+
+/**
+ * FastHashTreeNode Class. Unsynchronized counterpart of HashTreeNode, built
+ * on HashMap rather than Hashtable, for trees confined to a single thread,
+ * such as request-scoped trees. Objects are stored and retrieved by hash key
+ * progressions of the form "keya/keyb/keyc", or by position.
+ * <BR>
+ * Instances must not be shared across threads. Trees shared across threads
+ * should use HashTreeNode, or ConcurrentHashTreeNode when they are mostly
+ * read.
+ */
+public class FastHashTreeNode
+extends HashMap<String, Object>
+implements TreeNode, EmptyFactory<Object>, ToStringBufferable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new FastHashTreeNode.
+	 */
+    public FastHashTreeNode ()
+    {
+        super ();
+        KeyIndex = new OrderedKeyIndex<String> ();
+    }
+
+    /**
+	 * Instantiates a new FastHashTreeNode.
+	 *
+	 * @param map
+	 */
+    public FastHashTreeNode (Map<?, ?> map)
+    {
+        super (Math.max (map.size () * 4 / 3 + 1, 16));
+        KeyIndex = new OrderedKeyIndex<String> (map.size ());
+        add (map);
+    }
+
+    /**
+	 * Instantiates a new FastHashTreeNode.
+	 *
+	 * @param t
+	 */
+    public FastHashTreeNode (Object[][] t)
+    {
+        KeyIndex = new OrderedKeyIndex<String> (t == null ? 0 : t.length);
+        add (t);
+    }
+
+    /**
+	 * Instantiates a new FastHashTreeNode.
+	 *
+	 * @param initSz
+	 */
+    public FastHashTreeNode (int initSz)
+    {
+        super (initSz);
+        KeyIndex = new OrderedKeyIndex<String> (initSz);
+    }
+
+    /**
+	 * Instantiates a new FastHashTreeNode.
+	 *
+	 * @param initSz
+	 * @param factor
+	 */
+    public FastHashTreeNode (int initSz, float factor)
+    {
+        super (initSz, factor);
+        KeyIndex = new OrderedKeyIndex<String> (initSz);
+    }
+
+    /**
+	 * Adds the.
+	 *
+	 * @param map
+	 *
+	 * @return Adds the as FastHashTreeNode
+	 */
+    public FastHashTreeNode add (Map<?, ?> map)
+    {
+        for (Entry<?, ?> entry : map.entrySet ())
+            put ("" + entry.getKey (), entry.getValue ());
+
+        return this;
+    }
+
+    /**
+	 * Adds the.
+	 *
+	 * @param t
+	 *
+	 * @return Adds the as FastHashTreeNode
+	 */
+    public FastHashTreeNode add (Object[][] t)
+    {
+        if (t != null)
+            for (int i = 0; i < t.length; i++)
+            {
+                if (t[i] == null || t[i].length < 1)
+                    continue;
+                Object key = t[i][0];
+                Object value
+                = t[i].length >= 2
+                ? t[i][1]
+                : null;
+                put ("" + key, value);
+            }
+
+        return this;
+    }
+
+    /**
+	 * Gets the String.
+	 *
+	 * @param key
+	 *
+	 * @return the String as String
+	 */
+    public String getString (String key)
+    {
+        Object o = get (key);
+        if (o == null)
+            return "";
+        return o.toString ();
+    }
+
+    /**
+	 * get stored object by hashkey progression.
+	 *
+	 * @param key
+	 *            is a hash key progression
+	 *
+	 * @return stored object indexed by key
+	 */
+    public Object get (String key)
+    {
+        return get (TreePath.compile (key, getKeyDelimiter ()));
+    }
+
+    /**
+	 * get stored object by compiled hashkey progression.
+	 *
+	 * @param path
+	 *            is a compiled hash key progression
+	 *
+	 * @return stored object indexed by path
+	 */
+    public Object get (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length);
+    }
+
+    /**
+	 * Gets the ParentOf.
+	 *
+	 * @param key
+	 *
+	 * @return the ParentOf as Object
+	 */
+    public Object getParentOf (String key)
+    {
+        return getParentOf (TreePath.compile (key, getKeyDelimiter ()));
+    }
+
+    /**
+	 * Gets the ParentOf.
+	 *
+	 * @param path
+	 *
+	 * @return the ParentOf as Object
+	 */
+    public Object getParentOf (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length - 1);
+    }
+
+    /**
+	 * Walk down the tree along the first depth key segments.
+	 *
+	 * @param keysegs
+	 * @param depth
+	 *
+	 * @return the object reached, or null if the path does not exist.
+	 */
+    protected Object get (String[] keysegs, int depth)
+    {
+        Object myH = this;
+        for (int i = 0; i < depth; i++)
+        {
+            if (! (myH instanceof Map))
+                return null;
+
+            myH = ( (Map) myH).get (keysegs[i]);
+            if (myH == null)
+                return null;
+        }
+        return myH;
+    }
+
+    /**
+	 * get stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Object stored at that position.
+	 */
+    public Object get (int position)
+    {
+        String key = KeyIndex.get (position);
+        if (key != null)
+            return super.get (key);
+
+        return null;
+    }
+
+    /**
+	 *
+	 *
+	 * @return the delimiter used for separating key segments.
+	 */
+    public char getKeyDelimiter ()
+    {
+        return KeyDelimiter;
+    }
+
+    /**
+	 * get hash key of stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Hash key of object stored at that position.
+	 */
+    public String getKey (int position)
+    {
+        return KeyIndex.get (position);
+    }
+
+    /**
+	 * Gets the KeyPosition.
+	 *
+	 * @param key
+	 *
+	 * @return the KeyPosition as int
+	 */
+    public int getKeyPosition (Object key)
+    {
+        return KeyIndex.indexOf (key);
+    }
+
+    /**
+	 * Gets the KeysVector.
+	 *
+	 * @return a snapshot of the keys in insertion order as Vector
+	 */
+    public Vector<String> getKeysVector ()
+    {
+        return KeyIndex.toVector ();
+    }
+
+    /**
+	 *
+	 *
+	 * @param key
+	 *            delimited String hierarchical progression key, e.g.
+	 *            "greatest/hits/1980", locating or creating each branch
+	 *            in turn and putting value at the leaf key.
+	 * @param value
+	 *            value to be put into hash for key
+	 *
+	 * @return this
+	 */
+    public FastHashTreeNode put (String key, Object value)
+    {
+        return put (TreePath.parse (key, getKeyDelimiter ()), value);
+    }
+
+    /**
+	 * Put value at the compiled hashkey progression path, locating or
+	 * creating each branch in turn.
+	 *
+	 * @param path
+	 * @param value
+	 *
+	 * @return this
+	 */
+    public FastHashTreeNode put (TreePath path, Object value)
+    {
+        String[] keysegs = path.Segments;
+
+        FastHashTreeNode myH = this;
+        for (int i = 0; i < keysegs.length; i++)
+        {
+            String mykey = keysegs[i];
+            if (mykey == null || mykey.length () == 0)
+                continue;
+            //If leaf key, put() value
+            if (i == keysegs.length - 1)
+            {
+                myH.putValue (mykey, value);
+                return this;
+            }
+
+            //Otherwise continue locating/creating next level of key
+            Object otree = myH.getValue (mykey);
+            FastHashTreeNode mytree
+            = (otree instanceof FastHashTreeNode)
+            ? (FastHashTreeNode) otree
+            : null
+            ;
+            if (mytree == null)
+            {
+                mytree = new FastHashTreeNode ();
+                mytree.KeyDelimiter = myH.KeyDelimiter;
+                myH.putValue (mykey, mytree);
+            }
+            myH = mytree;
+        }
+
+        return this;
+    }
+
+    /**
+     * HashMap.putAll does not go through put, so route it through add to
+     * keep the key order.
+     *
+     * @see java.util.HashMap#putAll(java.util.Map)
+     */
+    @Override
+    public void putAll (Map<? extends String, ? extends Object> map)
+    {
+        this.add (map);
+    }
+
+    /**
+	 * Locate the branch addressed by key and clear it of all members,
+	 * without removing the branch itself. To remove the whole branch, use
+	 * cut.
+	 *
+	 * @param key
+	 *            Hash key of hash branch to be cleared.
+	 *
+	 * @return this FastHashTreeNode
+	 */
+    public FastHashTreeNode clear (String key)
+    {
+        Object o = get (key);
+        if (o instanceof FastHashTreeNode)
+            ( (FastHashTreeNode) o).clear ();
+        return this;
+    }
+
+    /**
+	 * Get value of a key of this node, without key progression.
+	 *
+	 * @param key
+	 *
+	 * @return the value as Object
+	 */
+    public Object getValue (String key)
+    {
+        return super.get (key);
+    }
+
+    /**
+	 * Put value.
+	 *
+	 * @param key
+	 * @param value
+	 *
+	 * @return Put value as FastHashTreeNode
+	 */
+    protected FastHashTreeNode putValue (String key, Object value)
+    {
+        if(key==null)
+            key=EMPTY.toString();
+        if(value==null)
+            value=EMPTY;
+        super.put (key, value);
+        KeyIndex.add (key);
+        if (value instanceof TreeNode)
+            ((TreeNode)value).setParentNode (this);
+        return this;
+    }
+
+    /**
+	 * Remove value of a key of this node, without key progression.
+	 *
+	 * @param key
+	 *
+	 * @return the removed value as Object
+	 */
+    public Object removeValue (String key)
+    {
+        Object o = super.remove (key);
+        KeyIndex.remove (key);
+        return o;
+    }
+
+    @Override
+    public Object remove (Object key)
+    {
+        if (!(key instanceof String))
+            return null;
+        return removeValue ((String) key);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.HashMap#clear()
+     */
+    public void clear ()
+    {
+        super.clear ();
+        KeyIndex.clear ();
+    }
+
+    /**
+	 * Cut.
+	 *
+	 * @param key
+	 *
+	 * @return Cut as Object
+	 */
+    public Object cut (String key)
+    {
+        return cut (TreePath.parse (key, getKeyDelimiter ()));
+    }
+
+    /**
+	 * Cut.
+	 *
+	 * @param path
+	 *
+	 * @return Cut as Object
+	 */
+    public Object cut (TreePath path)
+    {
+        Object myH = getParentOf (path);
+        String leafKey = path.getLeaf ();
+        if (leafKey == null)
+            return null;
+
+        if (myH instanceof FastHashTreeNode)
+        {
+            Object item = ( (FastHashTreeNode) myH).removeValue (leafKey);
+            if (item instanceof TreeNode)
+                ( (TreeNode) item).setParentNode (null);
+            return item;
+        }
+        else if (myH instanceof Map)
+        {
+            return ( (Map) myH).remove (leafKey);
+        }
+        else if (myH instanceof Vector)
+        {
+            ( (Vector) myH).removeElement (leafKey);
+            return null;
+        }
+        return null;
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return Array as Object[]
+	 */
+    public Object[] toArray ()
+    {
+        Object[] ar = new Object[size ()];
+
+        for (int i = 0; i < size (); i++)
+        {
+            ar[i] = get (i);
+        }
+
+        return ar;
+    }
+
+    /**
+	 * Converts to Vector.
+	 *
+	 * @param v
+	 *
+	 * @return Vector as VectorNode
+	 */
+    public VectorNode<Object> toVector (VectorNode<Object> v)
+    {
+        for (int i = 0; i < size (); i++)
+        {
+            v.add (get (i));
+        }
+
+        return v;
+    }
+
+    /**
+	 * Converts to Vector.
+	 *
+	 * @return Vector as VectorNode
+	 */
+    public VectorNode<Object> toVector ()
+    {
+        return toVector (new VectorNode<Object> (size ()));
+    }
+
+    /* (non-Javadoc)
+     * @see org.synthful.util.TreeNode#toString(java.lang.String, java.lang.String)
+     */
+    public String toString (
+        String itemdelimiter, String nodedelimiter)
+    {
+        return "" + toStringBuffer (itemdelimiter, nodedelimiter);
+    }
+
+    /**
+	 * Converts to StringBuffer.
+	 *
+	 * @param itemdelimiter
+	 * @param nodedelimiter
+	 *
+	 * @return StringBuffer as StringBuffer
+	 */
+    public StringBuffer toStringBuffer (
+    String itemdelimiter, String nodedelimiter)
+    {
+    	ToStringBuffer tostrbuf = new ToStringBuffer ();
+        tostrbuf.ItemDelimiter = itemdelimiter;
+        tostrbuf.NodeDelimiter = nodedelimiter;
+
+        return this.toStringBuffer (tostrbuf, 0, 0);
+    }
+
+    public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
+    {
+        StringBuffer strBuf = tostrbuf.getStringBuffer();
+
+        tostrbuf.appendFillers(Fillers.NodeTerminatorLeft, depth);
+
+        int i = 0;
+        for (String key : KeyIndex)
+        {
+	        if (i > 0)
+	        	tostrbuf.appendFillers (Fillers.NodeDelimiter, depth);
+
+            strBuf.append (key);
+            tostrbuf.appendFillers(Fillers.PairSeparator, depth);
+
+            tostrbuf.toStringBuffer (super.get (key), depth+1, i++);
+        }
+
+        tostrbuf.appendFillers(Fillers.NodeTerminatorRight, depth);
+
+		return strBuf;
+    }
+
+    /**
+     * @see org.synthful.util.TreeNode#getParentNode()
+     */
+    public TreeNode getParentNode ()
+    {
+        return ParentNode;
+    }
+
+    /**
+     * @see org.synthful.util.TreeNode#getNode(int)
+     */
+    public TreeNode getNode (int i)
+    {
+        Object o = get (i);
+        if (o instanceof TreeNode)
+            return (TreeNode) o;
+        return null;
+    }
+
+    /**
+	 * Sets the delimiter used for separating key segments.
+	 *
+	 * @param delimiter
+	 *
+	 * @return this
+	 */
+    public TreeNode setKeyDelimiter (char delimiter)
+    {
+        KeyDelimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @see org.synthful.util.TreeNode#setParentNode(org.synthful.util.TreeNode)
+     */
+    public TreeNode setParentNode (TreeNode node)
+    {
+        ParentNode = node;
+        return this;
+    }
+
+
+    /**
+     * HashMap.putIfAbsent does not go through put, so route it through
+     * putValue to keep the key order.
+     *
+     * @see java.util.HashMap#putIfAbsent(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public Object putIfAbsent (String key, Object value)
+    {
+        Object old = super.get (key);
+        if (old == null)
+            putValue (key, value);
+        return old;
+    }
+
+    /**
+     * @see java.util.HashMap#computeIfAbsent(java.lang.Object, java.util.function.Function)
+     */
+    @Override
+    public Object computeIfAbsent (
+        String key, Function<? super String, ? extends Object> fn)
+    {
+        Object old = super.get (key);
+        if (old != null)
+            return old;
+
+        Object value = fn.apply (key);
+        if (value != null)
+            putValue (key, value);
+        return value;
+    }
+
+    /**
+     * @see java.util.HashMap#computeIfPresent(java.lang.Object, java.util.function.BiFunction)
+     */
+    @Override
+    public Object computeIfPresent (
+        String key, BiFunction<? super String, ? super Object, ? extends Object> fn)
+    {
+        Object old = super.get (key);
+        if (old == null)
+            return null;
+
+        return putOrRemove (key, fn.apply (key, old));
+    }
+
+    /**
+     * @see java.util.HashMap#compute(java.lang.Object, java.util.function.BiFunction)
+     */
+    @Override
+    public Object compute (
+        String key, BiFunction<? super String, ? super Object, ? extends Object> fn)
+    {
+        return putOrRemove (key, fn.apply (key, super.get (key)));
+    }
+
+    /**
+     * @see java.util.HashMap#merge(java.lang.Object, java.lang.Object, java.util.function.BiFunction)
+     */
+    @Override
+    public Object merge (
+        String key, Object value,
+        BiFunction<? super Object, ? super Object, ? extends Object> fn)
+    {
+        Object old = super.get (key);
+        return putOrRemove (key, old == null ? value : fn.apply (old, value));
+    }
+
+    /**
+     * @see java.util.HashMap#remove(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public boolean remove (Object key, Object value)
+    {
+        if (!(key instanceof String) || !super.containsKey (key))
+            return false;
+
+        Object old = super.get (key);
+        if (old == null ? value != null : !old.equals (value))
+            return false;
+
+        remove (key);
+        return true;
+    }
+
+    /**
+     * Keys, whose removal, also through the iterator, keeps the key order.
+     *
+     * @see java.util.HashMap#keySet()
+     */
+    @Override
+    public Set<String> keySet ()
+    {
+        return new AbstractSet<String> ()
+        {
+            public Iterator<String> iterator ()
+            {
+                return new KeyOrderIterator<String> ()
+                {
+                    public String next ()
+                    {
+                        return nextEntry ().getKey ();
+                    }
+                };
+            }
+
+            public int size ()
+            {
+                return FastHashTreeNode.this.size ();
+            }
+
+            public boolean contains (Object o)
+            {
+                return containsKey (o);
+            }
+
+            public boolean remove (Object o)
+            {
+                if (!containsKey (o))
+                    return false;
+                FastHashTreeNode.this.remove (o);
+                return true;
+            }
+
+            public void clear ()
+            {
+                FastHashTreeNode.this.clear ();
+            }
+        };
+    }
+
+    /**
+     * Values, whose removal, also through the iterator, keeps the key
+     * order.
+     *
+     * @see java.util.HashMap#values()
+     */
+    @Override
+    public Collection<Object> values ()
+    {
+        return new AbstractCollection<Object> ()
+        {
+            public Iterator<Object> iterator ()
+            {
+                return new KeyOrderIterator<Object> ()
+                {
+                    public Object next ()
+                    {
+                        return nextEntry ().getValue ();
+                    }
+                };
+            }
+
+            public int size ()
+            {
+                return FastHashTreeNode.this.size ();
+            }
+
+            public void clear ()
+            {
+                FastHashTreeNode.this.clear ();
+            }
+        };
+    }
+
+    /**
+     * Entries, whose removal, also through the iterator, keeps the key
+     * order.
+     *
+     * @see java.util.HashMap#entrySet()
+     */
+    @Override
+    public Set<Entry<String,Object>> entrySet ()
+    {
+        return new AbstractSet<Entry<String,Object>> ()
+        {
+            public Iterator<Entry<String,Object>> iterator ()
+            {
+                return new KeyOrderIterator<Entry<String,Object>> ()
+                {
+                    public Entry<String,Object> next ()
+                    {
+                        return nextEntry ();
+                    }
+                };
+            }
+
+            public int size ()
+            {
+                return FastHashTreeNode.this.size ();
+            }
+
+            public boolean contains (Object o)
+            {
+                return FastHashTreeNode.super.entrySet ().contains (o);
+            }
+
+            public boolean remove (Object o)
+            {
+                if (!contains (o))
+                    return false;
+                FastHashTreeNode.this.remove (((Entry<?,?>) o).getKey ());
+                return true;
+            }
+
+            public void clear ()
+            {
+                FastHashTreeNode.this.clear ();
+            }
+        };
+    }
+
+    /**
+     * Put value, or remove the key if value is null, as the compute methods
+     * of HashMap do.
+     */
+    private Object putOrRemove (String key, Object value)
+    {
+        if (value == null)
+            remove (key);
+        else
+            putValue (key, value);
+        return value;
+    }
+
+    /**
+     * KeyOrderIterator Class. Iterates the entries of the HashMap, removing
+     * a key from the KeyIndex as well.
+     */
+    private abstract class KeyOrderIterator<E>
+    implements Iterator<E>
+    {
+        public boolean hasNext ()
+        {
+            return Entries.hasNext ();
+        }
+
+        protected Entry<String,Object> nextEntry ()
+        {
+            return Last = Entries.next ();
+        }
+
+        public void remove ()
+        {
+            Entries.remove ();
+            KeyIndex.remove (Last.getKey ());
+        }
+
+        private final Iterator<Entry<String,Object>> Entries =
+            FastHashTreeNode.super.entrySet ().iterator ();
+
+        private Entry<String,Object> Last;
+    }
+
+    /** Variable KeyIndex. Insertion order of keys. */
+    protected OrderedKeyIndex<String> KeyIndex;
+
+    /** Variable KeyDelimiter. */
+    protected char KeyDelimiter = '/';
+
+    /** Variable ParentNode. */
+    protected TreeNode ParentNode;
+
+}
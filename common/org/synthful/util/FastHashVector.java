@@ -0,0 +1,606 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.synthful.lang.Empty.EmptyFactory;
+import org.synthful.util.ToStringBuffer.ToStringBufferable;
+
+/**
+ * FastHashVector Class. Unsynchronized counterpart of HashVector, built on
+ * HashMap rather than Hashtable, for maps confined to a single thread, such
+ * as those built and discarded within one request.
+ * <BR>
+ * Instances must not be shared across threads without external
+ * synchronization. Use HashVector for that.
+ */
+public class FastHashVector<K,V>
+extends HashMap<K,V>
+implements ToStringBufferable, EmptyFactory<V>, Serializable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new FastHashVector.
+	 */
+    public FastHashVector ()
+    {
+        super ();
+        KeyIndex = new OrderedKeyIndex<K> ();
+    }
+
+    /**
+	 * Instantiates a new FastHashVector.
+	 *
+	 * @param map
+	 */
+    public FastHashVector (Map<K, V> map)
+    {
+        super (Math.max (map.size () * 4 / 3 + 1, 16));
+        KeyIndex = new OrderedKeyIndex<K> (map.size ());
+        add (map);
+    }
+
+    /**
+	 * Instantiates a new FastHashVector.
+	 *
+	 * @param t
+	 */
+    public FastHashVector (Object[][] t)
+    {
+        KeyIndex = new OrderedKeyIndex<K> (t == null ? 0 : t.length);
+        add (t);
+    }
+
+    /**
+	 * Instantiates a new FastHashVector.
+	 *
+	 * @param initSz
+	 */
+    public FastHashVector (int initSz)
+    {
+        super (initSz);
+        KeyIndex = new OrderedKeyIndex<K> (initSz);
+    }
+
+    /**
+	 * Instantiates a new FastHashVector.
+	 *
+	 * @param initSz
+	 * @param factor
+	 */
+    public FastHashVector (int initSz, float factor)
+    {
+        super (initSz, factor);
+        KeyIndex = new OrderedKeyIndex<K> (initSz);
+    }
+
+    /**
+	 * Adds the.
+	 *
+	 * @param map
+	 *
+	 * @return Adds the as FastHashVector
+	 */
+    public FastHashVector<K,V> add (Map<? extends K, ? extends V> map)
+    {
+    	for(Entry<? extends K, ? extends V> entry: map.entrySet())
+    		this.putValue(entry.getKey(), entry.getValue());
+
+        return this;
+    }
+
+    /**
+	 * Adds the.
+	 *
+	 * @param t
+	 *
+	 * @return Adds the as FastHashVector
+	 */
+    @SuppressWarnings("unchecked")
+    public FastHashVector<K,V> add (Object[][] t)
+    {
+        if (t != null)
+            for (int i = 0; i < t.length; i++)
+            {
+                if (t[i] == null || t[i].length < 1)
+                    continue;
+                Object key = t[i][0];
+                Object value
+                = t[i].length >= 2
+                ? t[i][1]
+                : null;
+
+                if (key==null ||value==null)
+                	continue;
+
+                try{
+                	this.put ((K)key, (V)value);
+                }
+                catch (ClassCastException ex)
+                {
+
+                }
+            }
+
+        return this;
+    }
+
+    /**
+	 * Gets the String.
+	 *
+	 * @param key
+	 *
+	 * @return the String as String
+	 */
+    public String getString (Object key)
+    {
+        Object o = get (key);
+        if (o == null)
+            return "";
+        return o.toString ();
+    }
+
+    /**
+	 * get stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Object stored at that position.
+	 */
+    public V get (int position)
+    {
+        K key = KeyIndex.get (position);
+        if (key != null)
+            return this.get (key);
+
+        return null;
+    }
+
+    /**
+	 * get hash key of stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Hash key of object stored at that position.
+	 */
+    public K getKey (int position)
+    {
+        return KeyIndex.get (position);
+    }
+
+    /**
+	 * Gets the KeyPosition.
+	 *
+	 * @param key
+	 *
+	 * @return the KeyPosition as int
+	 */
+    public int getKeyPosition (K key)
+    {
+        return KeyIndex.indexOf (key);
+    }
+
+    /**
+	 * Gets the KeysVector.
+	 *
+	 * @return a snapshot of the keys in insertion order as Vector
+	 */
+    public Vector<K> getKeysVector ()
+    {
+        return KeyIndex.toVector ();
+    }
+
+    public V put (K key, V value)
+    {
+        this.putValue(key, value);
+        return value;
+    }
+
+    /**
+     * HashMap.putAll does not go through put, so route it through putValue
+     * to keep the key order.
+     *
+     * @see java.util.HashMap#putAll(java.util.Map)
+     */
+    @Override
+    public void putAll (Map<? extends K, ? extends V> map)
+    {
+        this.add (map);
+    }
+
+    /**
+	 * Put value.
+	 *
+	 * @param key
+	 * @param value
+	 *
+	 * @return Put value as FastHashVector
+	 */
+    protected FastHashVector<K,V> putValue (K key, V value)
+    {
+        if(key==null||value==null)
+            return this;
+        super.put (key, value);
+        KeyIndex.add (key);
+        return this;
+    }
+
+    @Override
+    public V remove(Object o)
+    {
+    	V val = super.remove(o);
+    	this.KeyIndex.remove(o);
+    	return val;
+    }
+
+    public V removeValue(K key)
+    {
+    	return this.remove(key);
+    }
+
+    public V remove(int i)
+    {
+    	K key = this.KeyIndex.get(i);
+    	if (key == null)
+    		return null;
+    	return this.remove(key);
+    }
+
+    /**
+     * @see java.util.HashMap#clear()
+     */
+    public void clear ()
+    {
+        super.clear ();
+        KeyIndex.clear ();
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return Array as Object[][]
+	 */
+    public Object[][] toKeyValueArray ()
+    {
+        Object[][] ar = new Object[this.size()][2];
+
+        for (int i = 0; i < size (); i++)
+        {
+            ar[i][0] = this.getKey (i);
+            ar[i][1] = this.get (i);
+        }
+
+        return ar;
+    }
+
+    /**
+	 * Converts to Vector.
+	 *
+	 * @param v
+	 *
+	 * @return Vector
+	 */
+    public Vector<V> toValueVector (Vector<V> v)
+    {
+        for (int i = 0; i < size (); i++)
+        {
+            v.add (get (i));
+        }
+
+        return v;
+    }
+
+    /**
+	 * Converts to Vector.
+	 *
+	 * @return Vector as Vector
+	 */
+    public Vector<V> toVector ()
+    {
+        return toValueVector (new Vector<V> (size ()));
+    }
+
+    public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
+    {
+        StringBuffer strBuf = tostrbuf.getStringBuffer();
+
+        tostrbuf.appendNotNull(tostrbuf.ItemTerminatorLeft);
+
+        int i = 0;
+    	for(K key: this.KeyIndex)
+    	{
+            if (i>0)
+            	tostrbuf.appendNotNull(tostrbuf.ItemDelimiter);
+
+	        // iteration=0 because delimiter should not appear before separator
+            tostrbuf.toStringBuffer(key, depth, 0);
+            strBuf.append(tostrbuf.PairSeparator);
+            tostrbuf.toStringBuffer(this.get(key), depth, i++);
+    	}
+
+    	tostrbuf.appendNotNull(tostrbuf.ItemTerminatorRight);
+
+        return strBuf;
+    }
+
+    /**
+     * HashMap.putIfAbsent does not go through put, so route it through
+     * putValue to keep the key order.
+     *
+     * @see java.util.HashMap#putIfAbsent(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public V putIfAbsent (K key, V value)
+    {
+        V old = super.get (key);
+        if (old == null)
+            putValue (key, value);
+        return old;
+    }
+
+    /**
+     * @see java.util.HashMap#computeIfAbsent(java.lang.Object, java.util.function.Function)
+     */
+    @Override
+    public V computeIfAbsent (
+        K key, Function<? super K, ? extends V> fn)
+    {
+        V old = super.get (key);
+        if (old != null)
+            return old;
+
+        V value = fn.apply (key);
+        if (value != null)
+            putValue (key, value);
+        return value;
+    }
+
+    /**
+     * @see java.util.HashMap#computeIfPresent(java.lang.Object, java.util.function.BiFunction)
+     */
+    @Override
+    public V computeIfPresent (
+        K key, BiFunction<? super K, ? super V, ? extends V> fn)
+    {
+        V old = super.get (key);
+        if (old == null)
+            return null;
+
+        return putOrRemove (key, fn.apply (key, old));
+    }
+
+    /**
+     * @see java.util.HashMap#compute(java.lang.Object, java.util.function.BiFunction)
+     */
+    @Override
+    public V compute (
+        K key, BiFunction<? super K, ? super V, ? extends V> fn)
+    {
+        return putOrRemove (key, fn.apply (key, super.get (key)));
+    }
+
+    /**
+     * @see java.util.HashMap#merge(java.lang.Object, java.lang.Object, java.util.function.BiFunction)
+     */
+    @Override
+    public V merge (
+        K key, V value,
+        BiFunction<? super V, ? super V, ? extends V> fn)
+    {
+        V old = super.get (key);
+        return putOrRemove (key, old == null ? value : fn.apply (old, value));
+    }
+
+    /**
+     * @see java.util.HashMap#remove(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public boolean remove (Object key, Object value)
+    {
+        if (!super.containsKey (key))
+            return false;
+
+        V old = super.get (key);
+        if (old == null ? value != null : !old.equals (value))
+            return false;
+
+        remove (key);
+        return true;
+    }
+
+    /**
+     * Keys, whose removal, also through the iterator, keeps the key order.
+     *
+     * @see java.util.HashMap#keySet()
+     */
+    @Override
+    public Set<K> keySet ()
+    {
+        return new AbstractSet<K> ()
+        {
+            public Iterator<K> iterator ()
+            {
+                return new KeyOrderIterator<K> ()
+                {
+                    public K next ()
+                    {
+                        return nextEntry ().getKey ();
+                    }
+                };
+            }
+
+            public int size ()
+            {
+                return FastHashVector.this.size ();
+            }
+
+            public boolean contains (Object o)
+            {
+                return containsKey (o);
+            }
+
+            public boolean remove (Object o)
+            {
+                if (!containsKey (o))
+                    return false;
+                FastHashVector.this.remove (o);
+                return true;
+            }
+
+            public void clear ()
+            {
+                FastHashVector.this.clear ();
+            }
+        };
+    }
+
+    /**
+     * Values, whose removal, also through the iterator, keeps the key
+     * order.
+     *
+     * @see java.util.HashMap#values()
+     */
+    @Override
+    public Collection<V> values ()
+    {
+        return new AbstractCollection<V> ()
+        {
+            public Iterator<V> iterator ()
+            {
+                return new KeyOrderIterator<V> ()
+                {
+                    public V next ()
+                    {
+                        return nextEntry ().getValue ();
+                    }
+                };
+            }
+
+            public int size ()
+            {
+                return FastHashVector.this.size ();
+            }
+
+            public void clear ()
+            {
+                FastHashVector.this.clear ();
+            }
+        };
+    }
+
+    /**
+     * Entries, whose removal, also through the iterator, keeps the key
+     * order.
+     *
+     * @see java.util.HashMap#entrySet()
+     */
+    @Override
+    public Set<Entry<K,V>> entrySet ()
+    {
+        return new AbstractSet<Entry<K,V>> ()
+        {
+            public Iterator<Entry<K,V>> iterator ()
+            {
+                return new KeyOrderIterator<Entry<K,V>> ()
+                {
+                    public Entry<K,V> next ()
+                    {
+                        return nextEntry ();
+                    }
+                };
+            }
+
+            public int size ()
+            {
+                return FastHashVector.this.size ();
+            }
+
+            public boolean contains (Object o)
+            {
+                return FastHashVector.super.entrySet ().contains (o);
+            }
+
+            public boolean remove (Object o)
+            {
+                if (!contains (o))
+                    return false;
+                FastHashVector.this.remove (((Entry<?,?>) o).getKey ());
+                return true;
+            }
+
+            public void clear ()
+            {
+                FastHashVector.this.clear ();
+            }
+        };
+    }
+
+    /**
+     * Put value, or remove the key if value is null, as the compute methods
+     * of HashMap do.
+     */
+    private V putOrRemove (K key, V value)
+    {
+        if (value == null)
+            remove (key);
+        else
+            putValue (key, value);
+        return value;
+    }
+
+    /**
+     * KeyOrderIterator Class. Iterates the entries of the HashMap, removing
+     * a key from the KeyIndex as well.
+     */
+    private abstract class KeyOrderIterator<E>
+    implements Iterator<E>
+    {
+        public boolean hasNext ()
+        {
+            return Entries.hasNext ();
+        }
+
+        protected Entry<K,V> nextEntry ()
+        {
+            return Last = Entries.next ();
+        }
+
+        public void remove ()
+        {
+            Entries.remove ();
+            KeyIndex.remove (Last.getKey ());
+        }
+
+        private final Iterator<Entry<K,V>> Entries =
+            FastHashVector.super.entrySet ().iterator ();
+
+        private Entry<K,V> Last;
+    }
+
+    /** Variable KeyIndex. Insertion order of keys. */
+    protected OrderedKeyIndex<K> KeyIndex;
+
+}
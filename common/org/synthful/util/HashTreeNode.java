@@ -6,9 +6,12 @@
  */
 package org.synthful.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.Set;
 import java.util.Vector;
 
 import org.synthful.lang.Empty.EmptyFactory;
@@ -66,6 +69,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     public HashTreeNode (int initSz)
     {
         super (initSz);
+        KeysVector = new Vector<String> (initSz);
     }
     
     /**
@@ -77,6 +81,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     public HashTreeNode (int initSz, float factor)
     {
         super (initSz, factor);
+        KeysVector = new Vector<String> (initSz);
     }
     
     /**
@@ -88,16 +93,19 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public HashTreeNode add (Map map)
     {
-        Set keyset = map.keySet ();
-        Object[] keys = keyset.toArray ();
-        if (keys != null)
-            for (int i = 0; i < keys.length; i++)
-            {
-                Object key = keys[i];
-                Object value = map.get (key);
-                put ("" + key, value);
-            }
-        
+        return add (map.entrySet ());
+    }
+    
+    /**
+	 * Adds the entries in order, through a TreeLoader.
+	 * 
+	 * @param entries
+	 * 
+	 * @return Adds the as HashTreeNode
+	 */
+    public HashTreeNode add (Iterable<? extends Map.Entry<?, ?>> entries)
+    {
+        new TreeLoader<HashTreeNode> (this).putAll (entries);
         return this;
     }
     
@@ -110,19 +118,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public HashTreeNode add (Object[][] t)
     {
-        if (t != null)
-            for (int i = 0; i < t.length; i++)
-            {
-                if (t[i] == null || t[i].length < 1)
-                    continue;
-                Object key = t[i][0];
-                Object value
-                = t[i].length >= 2
-                ? t[i][1]
-                : null;
-                put ("" + key, value);
-            }
-        
+        new TreeLoader<HashTreeNode> (this).putAll (t);
         return this;
     }
     
@@ -151,21 +147,20 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public Object get (String key)
     {
-        VectorNode myV = new VectorNode (5);
-        char sepr = getKeyDelimiter ();
-        myV.fromString (key, sepr);
-        
-        Object myH = this;
-        for (int i = 0; i < myV.size (); i++)
-        {
-            if (! (myH instanceof Hashtable))
-                return null;
-            
-            myH = ( (Hashtable) myH).get (myV.get (i));
-            if (myH == null)
-                return null;
-        }
-        return myH;
+        return get (TreePath.compile (key, getKeyDelimiter ()));
+    }
+    
+    /**
+	 * get stored object by compiled hashkey progression.
+	 * 
+	 * @param path
+	 *            is a compiled hash key progression
+	 * 
+	 * @return stored object indexed by path
+	 */
+    public Object get (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length);
     }
     
     /**
@@ -177,16 +172,38 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public Object getParentOf (String key)
     {
-        VectorNode myV = new VectorNode (5);
-        myV.fromString (key.toString (), KeyDelimiter);
-        
+        return getParentOf (TreePath.compile (key, getKeyDelimiter ()));
+    }
+    
+    /**
+	 * Gets the ParentOf.
+	 * 
+	 * @param path
+	 * 
+	 * @return the ParentOf as Object
+	 */
+    public Object getParentOf (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length - 1);
+    }
+    
+    /**
+	 * Walk down the tree along the first depth key segments.
+	 * 
+	 * @param keysegs
+	 * @param depth
+	 * 
+	 * @return the object reached, or null if the path does not exist.
+	 */
+    protected Object get (String[] keysegs, int depth)
+    {
         Object myH = this;
-        for (int i = 0; i < myV.size () - 1; i++)
+        for (int i = 0; i < depth; i++)
         {
             if (! (myH instanceof Hashtable))
                 return null;
             
-            myH = ( (Hashtable) myH).get (myV.get (i));
+            myH = ( (Hashtable) myH).get (keysegs[i]);
             if (myH == null)
                 return null;
         }
@@ -204,7 +221,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     public Object get (int position)
     {
         if (position < KeysVector.size () && position >= 0)
-            return get (KeysVector.get (position));
+            return super.get (KeysVector.get (position));
         
         return null;
     }
@@ -287,14 +304,26 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     
     public HashTreeNode put (String key, Object value)
     {
-        
-        char sepr = getKeyDelimiter ();
-        String[] keysegs = key.split ("["+sepr+']');
+        return put (TreePath.parse (key, getKeyDelimiter ()), value);
+    }
+    
+    /**
+	 * Put value at the compiled hashkey progression path, locating or
+	 * creating each branch in turn.
+	 * 
+	 * @param path
+	 * @param value
+	 * 
+	 * @return this
+	 */
+    public HashTreeNode put (TreePath path, Object value)
+    {
+        String[] keysegs = path.Segments;
         
         HashTreeNode myH = this;
         for (int i = 0; i < keysegs.length; i++)
         {
-            String mykey = (String) keysegs[i];
+            String mykey = keysegs[i];
             if (mykey == null || mykey.length () == 0)
                 continue;
             //If leaf key, put() value
@@ -335,19 +364,29 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public HashTreeNode clear (String key)
     {
-        
-        VectorNode myV = new VectorNode (5);
-        char sepr = getKeyDelimiter ();
-        myV.fromString (key, sepr);
+        return clear (TreePath.parse (key, getKeyDelimiter ()));
+    }
+    
+    /**
+	 * Locate Hash Vector addressed by compiled path and clear it of all
+	 * members.
+	 * 
+	 * @param path
+	 * 
+	 * @return this Hash Vector
+	 */
+    public HashTreeNode clear (TreePath path)
+    {
+        String[] keysegs = path.Segments;
         
         HashTreeNode myH = this;
-        for (int i = 0; i < myV.size (); i++)
+        for (int i = 0; i < keysegs.length; i++)
         {
-            String mykey = (String) myV.get (i);
+            String mykey = keysegs[i];
             if (mykey == null || mykey.length () == 0)
                 continue;
             //If leaf key, clear
-            if (i == myV.size () - 1)
+            if (i == keysegs.length - 1)
             {
                 myH.clear ();
                 return this;
@@ -382,8 +421,9 @@ implements TreeNode, EmptyFactory, ToStringBufferable
             key=EMPTY.toString();
         if(value==null)
             value=EMPTY;
-        ( (Hashtable)this).put (key, value);
-        KeysVector.add (key);
+        //A key put again keeps its position
+        if (super.put (key, value) == null)
+            KeysVector.add (key);
         if (value instanceof TreeNode)
             ((TreeNode)value).setParentNode (this);
         return this;
@@ -407,17 +447,29 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public Object cut (String key)
     {
-        Object myH = getParentOf (key);
-        Object item = get (key);
+        return cut (TreePath.parse (key, getKeyDelimiter ()));
+    }
+    
+    /**
+	 * Cut.
+	 * 
+	 * @param path
+	 * 
+	 * @return Cut as Object
+	 */
+    public Object cut (TreePath path)
+    {
+        Object myH = getParentOf (path);
+        Object item = get (path);
+        String key = path.getLeaf ();
+        
+        if (myH == null || key == null)
+            return null;
         
         if (myH.getClass ().isInstance (this))
         {
-            VectorNode myV = new VectorNode (5);
-            char sepr = getKeyDelimiter ();
-            Object[] keys = myV.fromString (key, sepr).toArray ();
-            
-            ( (Hashtable) myH).remove (keys[keys.length - 1]);
-            ( (HashTreeNode) myH).KeysVector.removeElement (keys[keys.length - 1]);
+            ( (Hashtable) myH).remove (key);
+            ( (HashTreeNode) myH).KeysVector.removeElement (key);
             return item;
         }
         else if (myH instanceof Hashtable)
@@ -506,7 +558,6 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     
     public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
     {
-        StringBuffer indent = tostrbuf.mkIndentation(depth);
         StringBuffer strBuf = tostrbuf.getStringBuffer();
         
         tostrbuf.appendFillers(Fillers.NodeTerminatorLeft, depth);
@@ -527,6 +578,63 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 		return strBuf;
 
     }
+    /**
+	 * Write this tree as JSON, keeping the order of members.
+	 * 
+	 * @param out
+	 * 
+	 * @throws IOException
+	 */
+    public void writeJson (Appendable out)
+    throws IOException
+    {
+        TreeJsonWriter.write (this, out);
+    }
+    
+    /**
+	 * Read a JSON object into this tree, after any members it already has.
+	 * 
+	 * @param in
+	 * 
+	 * @return this
+	 * 
+	 * @throws IOException
+	 */
+    public HashTreeNode readJson (Reader in)
+    throws IOException
+    {
+        return new TreeJsonReader (in).readInto (this);
+    }
+    
+    /**
+	 * Write this tree in the compact binary form of TreeBinaryWriter.
+	 * 
+	 * @param out
+	 * 
+	 * @throws IOException
+	 */
+    public void writeBinary (OutputStream out)
+    throws IOException
+    {
+        TreeBinaryWriter.write (this, out);
+    }
+    
+    /**
+	 * Read a tree written by writeBinary into this tree, after any members
+	 * it already has.
+	 * 
+	 * @param in
+	 * 
+	 * @return this
+	 * 
+	 * @throws IOException
+	 */
+    public HashTreeNode readBinary (InputStream in)
+    throws IOException
+    {
+        return new TreeBinaryReader (in).readInto (this);
+    }
+    
     /**
      * @see org.synthful.util.TreeNode#getParentNode()
      */
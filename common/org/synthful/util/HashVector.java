@@ -32,6 +32,7 @@ implements ToStringBufferable, EmptyFactory, Serializable
     public HashVector ()
     {
         super ();
+        KeyIndex = new OrderedKeyIndex<K> ();
     }
     
     /**
@@ -41,6 +42,8 @@ implements ToStringBufferable, EmptyFactory, Serializable
 	 */
     public HashVector (Map<K, V> map)
     {
+        super (Math.max (2 * map.size (), 11));
+        KeyIndex = new OrderedKeyIndex<K> (map.size ());
         add (map);
     }
     
@@ -51,6 +54,7 @@ implements ToStringBufferable, EmptyFactory, Serializable
 	 */
     public HashVector (Object[][] t)
     {
+        KeyIndex = new OrderedKeyIndex<K> (t == null ? 0 : t.length);
         add (t);
     }
     
@@ -62,6 +66,7 @@ implements ToStringBufferable, EmptyFactory, Serializable
     public HashVector (int initSz)
     {
         super (initSz);
+        KeyIndex = new OrderedKeyIndex<K> (initSz);
     }
     
     /**
@@ -73,6 +78,7 @@ implements ToStringBufferable, EmptyFactory, Serializable
     public HashVector (int initSz, float factor)
     {
         super (initSz, factor);
+        KeyIndex = new OrderedKeyIndex<K> (initSz);
     }
     
     /**
@@ -88,8 +94,7 @@ implements ToStringBufferable, EmptyFactory, Serializable
     	{
     		V v = entry.getValue();
     		K k = entry.getKey();
-    		super.put(k, v);
-    		this.KeysVector.add(k);
+    		this.putValue(k, v);
     	}
         
         return this;
@@ -160,10 +165,11 @@ implements ToStringBufferable, EmptyFactory, Serializable
 	 * 
 	 * @return Object stored at that position.
 	 */
-    public V get (int position)
+    public synchronized V get (int position)
     {
-        if (position < KeysVector.size () && position >= 0)
-            return this.get (KeysVector.get (position));
+        K key = KeyIndex.get (position);
+        if (key != null)
+            return this.get (key);
         
         return null;
     }
@@ -177,12 +183,9 @@ implements ToStringBufferable, EmptyFactory, Serializable
 	 * 
 	 * @return Hash key of object stored at that position.
 	 */
-    public K getKey (int position)
+    public synchronized K getKey (int position)
     {
-        if (position < KeysVector.size () && position >= 0)
-            return KeysVector.get (position);
-        
-        return null;
+        return KeyIndex.get (position);
     }
     
     /**
@@ -192,22 +195,19 @@ implements ToStringBufferable, EmptyFactory, Serializable
 	 * 
 	 * @return the KeyPosition as int
 	 */
-    public int getKeyPosition (K key)
+    public synchronized int getKeyPosition (K key)
     {
-        for (int i = 0; i < KeysVector.size (); i++)
-            if (key.equals (KeysVector.get (i)))
-                return i;
-        return -1;
+        return KeyIndex.indexOf (key);
     }
     
     /**
 	 * Gets the KeysVector.
 	 * 
-	 * @return the KeysVector as Vector
+	 * @return a snapshot of the keys in insertion order as Vector
 	 */
-    public Vector getKeysVector ()
+    public synchronized Vector getKeysVector ()
     {
-        return KeysVector;
+        return KeyIndex.toVector ();
     }
     
     public V put (K key, V value)
@@ -224,13 +224,12 @@ implements ToStringBufferable, EmptyFactory, Serializable
 	 * 
 	 * @return Put value as HashVector
 	 */
-    protected HashVector<K,V> putValue (K key, V value)
+    protected synchronized HashVector<K,V> putValue (K key, V value)
     {
         if(key==null||value==null)
             return this;
         super.put (key, value);
-        if(!KeysVector.contains(key))
-            KeysVector.add (key);
+        KeyIndex.add (key);
         return this;
     }
     
@@ -240,12 +239,11 @@ implements ToStringBufferable, EmptyFactory, Serializable
     	return this.removeValue((K) o);
     }
     
-    public V removeValue(K key)
+    public synchronized V removeValue(K key)
     {
     	try{
-	    	V val = this.get(key);
-	    	super.remove(key);
-	    	this.KeysVector.remove(key);
+	    	V val = super.remove(key);
+	    	this.KeyIndex.remove(key);
 	    	return val;
     	}
     	catch(Exception e)
@@ -254,19 +252,19 @@ implements ToStringBufferable, EmptyFactory, Serializable
     	}
     }
     
-    public V remove(int i)
+    public synchronized V remove(int i)
     {
-    	K key = this.KeysVector.get(i);
+    	K key = this.KeyIndex.get(i);
     	return removeValue(key);
     }
     
     /**
      * @see java.util.Hashtable#clear()
      */
-    public void clear ()
+    public synchronized void clear ()
     {
         super.clear ();
-        KeysVector.clear ();
+        KeyIndex.clear ();
     }
     
     /**
@@ -333,13 +331,12 @@ implements ToStringBufferable, EmptyFactory, Serializable
         return toValueVector (new Vector<V> (size ()));
     }
     
-    public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
+    public synchronized StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
     {
         //return tostrbuf.toStringBuffer (this, depth, iteration);
-        StringBuffer indent = tostrbuf.mkIndentation(depth);
         StringBuffer strBuf = tostrbuf.getStringBuffer();
         
-        Vector<K> kvec = this.KeysVector;
+        OrderedKeyIndex<K> kvec = this.KeyIndex;
         
     	//tostrbuf.appendNotNull(indent);
     	//tostrbuf.appendNotNull(indent);
@@ -369,7 +366,7 @@ implements ToStringBufferable, EmptyFactory, Serializable
      * @see org.synthful.util.TreeNode#getNode(int)
      */
 
-    /** Variable KeysVector. */
-    protected Vector<K> KeysVector = new Vector<K> ();
+    /** Variable KeyIndex. Insertion order of keys. */
+    protected OrderedKeyIndex<K> KeyIndex;
     
 }
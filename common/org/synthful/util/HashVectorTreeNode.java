@@ -6,9 +6,12 @@
  */
 package org.synthful.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.Set;
 import java.util.Vector;
 
 import org.synthful.lang.Empty.EmptyFactory;
@@ -71,6 +74,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     public HashVectorTreeNode (int initSz)
     {
         super (initSz);
+        KeysVector = new Vector<String> (initSz);
     }
     
     /**
@@ -82,6 +86,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     public HashVectorTreeNode (int initSz, float factor)
     {
         super (initSz, factor);
+        KeysVector = new Vector<String> (initSz);
     }
     
     /**
@@ -91,20 +96,21 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 * 
 	 * @return Adds the as HashVector
 	 */
-    public HashVectorTreeNode add (Map map)
-    {
-        Set keyset = map.keySet ();
-        Object[] keys = keyset.toArray ();
-        if (keys != null)
-            for (int i = 0; i < keys.length; i++)
-            {
-                Object key = keys[i];
-                Object value = map.get (key);
-                if (value==null)
-                	value = EmptyFactory.EMPTY;
-                this.put ("" + key, value);
-            }
-        
+    public HashVectorTreeNode add (Map<?, ?> map)
+    {
+        return add (map.entrySet ());
+    }
+    
+    /**
+	 * Adds the entries in order, through a TreeLoader.
+	 * 
+	 * @param entries
+	 * 
+	 * @return Adds the as HashVector
+	 */
+    public HashVectorTreeNode add (Iterable<? extends Map.Entry<?, ?>> entries)
+    {
+        new TreeLoader<HashVectorTreeNode> (this).putAll (entries);
         return this;
     }
     
@@ -117,19 +123,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */
     public HashVectorTreeNode add (Object[][] t)
     {
-        if (t != null)
-            for (int i = 0; i < t.length; i++)
-            {
-                if (t[i] == null || t[i].length < 1)
-                    continue;
-                Object key = t[i][0];
-                Object value
-	                = t[i].length >= 2
-	                ? t[i][1]
-	                : EmptyFactory.EMPTY;
-                this.put ("" + key, value);
-            }
-        
+        new TreeLoader<HashVectorTreeNode> (this).putAll (t);
         return this;
     }
     
@@ -158,9 +152,19 @@ implements TreeNode, EmptyFactory, ToStringBufferable
      */
     public Object get (String keyStr, char sepr)
     {
-        String[] keyArray = keyStr.split ("["+sepr+']');
-        
-        return get(keyArray, this);
+        return get (TreePath.compile (keyStr, sepr));
+    }
+    
+    /**
+	 * get stored object by compiled hashkey progression.
+     * 
+	 * @param path
+	 *            is a compiled hash key progression
+	 * @return stored tree indexed by path
+     */
+    public Object get (TreePath path)
+    {
+        return get (path.Segments, path.Segments.length, this);
     }
     
     /**
@@ -169,9 +173,21 @@ implements TreeNode, EmptyFactory, ToStringBufferable
      * @return stored tree indexed by keys in vector
      */
     static public Object get (String[] keyArray, Hashtable h)
+    {
+        return get (keyArray, keyArray.length, h);
+    }
+    
+    /**
+     * 
+     * @param keyArray
+     * @param depth number of leading keys of keyArray to walk down.
+     * @param h
+     * @return stored tree indexed by the first depth keys in keyArray
+     */
+    static public Object get (String[] keyArray, int depth, Hashtable<?, ?> h)
     {
         Object myH = h;
-		for (int i = 0; i < keyArray.length; i++)
+		for (int i = 0; i < depth; i++)
         {
             if (! (myH instanceof Hashtable))
                 return null;
@@ -192,10 +208,18 @@ implements TreeNode, EmptyFactory, ToStringBufferable
      */
     public HashVectorTreeNode getParentOf (String keyStr, char sepr)
     {
-        String[] keyArray = keyStr.split ("["+sepr+']');
-        if (keyArray.length>0) keyArray[keyArray.length-1] = null;
-        
-        Object o = get(keyArray, this);
+        return getParentOf (TreePath.compile (keyStr, sepr));
+    }
+    
+    /**
+	 * Gets the object indicated by the second last level key in the path.
+	 * 
+     * @param path
+	 * @return the ParentOf as Object
+     */
+    public HashVectorTreeNode getParentOf (TreePath path)
+    {
+        Object o = get(path.Segments, path.Segments.length - 1, this);
         if (o instanceof HashVectorTreeNode)
         	return (HashVectorTreeNode)o;
         else
@@ -213,7 +237,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     public Object get (int position)
     {
         if (position < KeysVector.size () && position >= 0)
-            return get (KeysVector.get (position));
+            return super.get (KeysVector.get (position));
         
         return null;
     }
@@ -288,13 +312,26 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	 */   
     public HashVectorTreeNode put (String key, char sepr, Object value)
     {
+        return put (TreePath.parse (key, sepr), value);
+    }
+    
+    /**
+	 * Put value at the compiled hashkey progression path, locating or
+	 * creating each branch in turn.
+	 * 
+	 * @param path
+	 * @param value
+	 * 
+	 * @return the parent HashVector of the inserted object
+	 */
+    public HashVectorTreeNode put (TreePath path, Object value)
+    {
+        String leafKey = path.getLeaf ();
+        if (leafKey == null)
+            return this;
         
-        //char sepr = getKeyDelimiter ();
-        String[] keyArray = key.split ("["+sepr+']');
-        String leafKey = keyArray[keyArray.length-1];
-        keyArray[keyArray.length-1] = null;
-        
-        HashVectorTreeNode myH = setPath(this, keyArray, true);
+        HashVectorTreeNode myH =
+            setPath(this, path.Segments, path.Segments.length - 1, true);
         myH.putValue(leafKey, value);
         
         return myH;
@@ -344,8 +381,9 @@ implements TreeNode, EmptyFactory, ToStringBufferable
             key=EMPTY.toString();
         if(value==null)
             value=EMPTY;
-        ( (Hashtable<String, Object>)this).put (key, value);
-        KeysVector.add (key);
+        //A key put again keeps its position
+        if (super.put (key, value) == null)
+            KeysVector.add (key);
         if (value instanceof TreeNode)
             ((TreeNode)value).setParentNode (this);
         return this;
@@ -362,23 +400,32 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 	public Object cut(
 		String key, char sepr)
 	{
-		// char sepr = getKeyDelimiter ();
-		Object myH = getParentOf(key, sepr);
-		Object item = get(key, sepr);
-		if (myH == null || myH == EMPTY)
+		return cut(TreePath.parse(key, sepr));
+	}
+
+    /**
+	 * Cut.
+	 * 
+	 * @param path
+	 * 
+	 * @return Cut as Object
+	 */
+	public Object cut(TreePath path)
+	{
+		Object myH = getParentOf(path);
+		Object item = get(path);
+		String leafKey = path.getLeaf();
+		if (myH == null || myH == EMPTY || leafKey == null)
 			return null;
 
 		if (myH.getClass().isInstance(this))
 		{
-	        String[] keys = key.split ("["+sepr+']');
-	        String leafKey = keys[keys.length-1];
-
 	        //remove item from hashtable of parent
 			((Hashtable<String, Object>) myH).remove(leafKey);
 	        //remove item from KeysVector of parent
 			((HashVectorTreeNode) myH).KeysVector.removeElement(leafKey);
 			
-			if (item!=null || item.getClass().isInstance(this))
+			if (item instanceof HashVectorTreeNode)
 			{
 				// reset parent ref of item
 				((HashVectorTreeNode)item).setParentNode(DefaultTree);
@@ -388,12 +435,12 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 		}
 		else if (myH instanceof Hashtable)
 		{
-			((Hashtable) myH).remove(key);
+			((Hashtable) myH).remove(leafKey);
 			return item;
 		}
 		else if (myH instanceof Vector)
 		{
-			((Vector) myH).removeElement(key);
+			((Vector) myH).removeElement(leafKey);
 			return item;
 		}
 		return null;
@@ -417,11 +464,9 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 		char sepr,
 		boolean overWriteLeaf)
 	{
-        VectorNode<String> myV = new VectorNode<String> (5);
-        myV.fromString (keyStr, sepr);
-        String[] keyArray = (String[])myV.toArray();
+        String[] keyArray = TreePath.parse (keyStr, sepr).Segments;
  		
-        return setPath(hashVector, keyArray, overWriteLeaf);
+        return setPath(hashVector, keyArray, keyArray.length, overWriteLeaf);
 	}
 
     
@@ -441,18 +486,42 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 		HashVectorTreeNode hashVector,
 		String[] keyArray,
 		boolean overWriteLeaf)
+	{
+		return setPath(hashVector, keyArray, keyArray.length, overWriteLeaf);
+	}
+
+	/**
+	 * Get or otherwise create HashVector indicated by the first depth keys
+	 * of a hierarchical sequence of keys.
+	 * 
+	 * @param keyArray
+	 *            Array containing hierarchical sequence of keys.
+	 * @param depth
+	 *            number of leading keys of keyArray to walk down.
+	 * @param overWriteLeaf
+	 *            over-write a leaf node with a HashVector if it is not a
+	 *            HashVector.
+	 * @return the HashVector indicated by key sequence, or null if path does
+	 *         not exist and overWriteLeaf is false.
+	 */
+	static public HashVectorTreeNode setPath(
+		HashVectorTreeNode hashVector,
+		String[] keyArray,
+		int depth,
+		boolean overWriteLeaf)
 	{
 		// HashVector myH = this;
-		for (int i = 0; i < keyArray.length; i++)
+		for (int i = 0; i < depth; i++)
 		{
 			if (keyArray[i] == null || keyArray[i].length() == 0) continue;
 
-			Object otree = hashVector.get(keyArray[i]);
+			// single key lookup, not a key progression
+			Object otree = hashVector.get((Object) keyArray[i]);
 
 			if (otree == null)
 			{
 				HashVectorTreeNode h = new HashVectorTreeNode();
-				hashVector.put(keyArray[i], h);
+				hashVector.putValue(keyArray[i], h);
 				hashVector = h;
 			}
 			else if (otree instanceof HashVectorTreeNode)
@@ -462,7 +531,7 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 			else if (overWriteLeaf)
 			{
 				HashVectorTreeNode h = new HashVectorTreeNode();
-				hashVector.put(keyArray[i], h);
+				hashVector.putValue(keyArray[i], h);
 				hashVector = h;
 			}
 			else
@@ -548,7 +617,6 @@ implements TreeNode, EmptyFactory, ToStringBufferable
     
     public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
     {
-        StringBuffer indent = tostrbuf.mkIndentation(depth);
         StringBuffer strBuf = tostrbuf.getStringBuffer();
         
         tostrbuf.appendFillers(Fillers.NodeTerminatorLeft, depth);
@@ -569,6 +637,63 @@ implements TreeNode, EmptyFactory, ToStringBufferable
 		return strBuf;
 
     }
+    /**
+	 * Write this tree as JSON, keeping the order of members.
+	 * 
+	 * @param out
+	 * 
+	 * @throws IOException
+	 */
+    public void writeJson (Appendable out)
+    throws IOException
+    {
+        TreeJsonWriter.write (this, out);
+    }
+    
+    /**
+	 * Read a JSON object into this tree, after any members it already has.
+	 * 
+	 * @param in
+	 * 
+	 * @return this
+	 * 
+	 * @throws IOException
+	 */
+    public HashVectorTreeNode readJson (Reader in)
+    throws IOException
+    {
+        return new TreeJsonReader (in).readInto (this);
+    }
+    
+    /**
+	 * Write this tree in the compact binary form of TreeBinaryWriter.
+	 * 
+	 * @param out
+	 * 
+	 * @throws IOException
+	 */
+    public void writeBinary (OutputStream out)
+    throws IOException
+    {
+        TreeBinaryWriter.write (this, out);
+    }
+    
+    /**
+	 * Read a tree written by writeBinary into this tree, after any members
+	 * it already has.
+	 * 
+	 * @param in
+	 * 
+	 * @return this
+	 * 
+	 * @throws IOException
+	 */
+    public HashVectorTreeNode readBinary (InputStream in)
+    throws IOException
+    {
+        return new TreeBinaryReader (in).readInto (this);
+    }
+    
     /**
      * @see org.synthful.util.TreeNode#getParentNode()
      */
@@ -0,0 +1,256 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.util.Arrays;
+
+/**
+ * IntObjHashVector Class. Ordered map of int keys to objects, without boxing
+ * the keys. Like HashVector, values can be retrieved either by key or by
+ * position of insertion, and null values are not stored.
+ * <BR>
+ * Since get(int) retrieves by key here, retrieval by position is getAt(int).
+ * Not synchronized.
+ */
+public class IntObjHashVector<V>
+extends PrimitiveHashVector
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new IntObjHashVector.
+	 */
+    public IntObjHashVector ()
+    {
+        this (16);
+    }
+
+    /**
+	 * Instantiates a new IntObjHashVector.
+	 *
+	 * @param initSz
+	 */
+    public IntObjHashVector (int initSz)
+    {
+        super (initSz);
+        Keys = new int[Math.max (initSz, 4)];
+        Values = new Object[Keys.length];
+    }
+
+    /**
+	 * get stored object by key.
+	 *
+	 * @param key
+	 *
+	 * @return Object stored under key, or null.
+	 */
+    @SuppressWarnings("unchecked")
+    public V get (int key)
+    {
+        int s = slotOf (key);
+        return s < 0 ? null : (V) Values[Table[s] - 1];
+    }
+
+    /**
+	 * @param key
+	 *
+	 * @return true if an object is stored under key.
+	 */
+    public boolean containsKey (int key)
+    {
+        return slotOf (key) >= 0;
+    }
+
+    /**
+	 * Put value under key. A key put again keeps its position.
+	 *
+	 * @param key
+	 * @param value
+	 *
+	 * @return the value put
+	 */
+    public V put (int key, V value)
+    {
+        if (value == null)
+            return value;
+
+        int s = slotOf (key);
+        if (s >= 0)
+        {
+            Values[Table[s] - 1] = value;
+            return value;
+        }
+
+        int e = newEntry ();
+        Keys[e] = key;
+        Values[e] = value;
+        linkEntry (-s - 1, e);
+        return value;
+    }
+
+    /**
+	 * Remove key.
+	 *
+	 * @param key
+	 *
+	 * @return the object that was stored under key, or null.
+	 */
+    @SuppressWarnings("unchecked")
+    public V remove (int key)
+    {
+        int s = slotOf (key);
+        if (s < 0)
+            return null;
+        V val = (V) Values[Table[s] - 1];
+        removeSlot (s);
+        return val;
+    }
+
+    /**
+	 * get stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Object stored at that position.
+	 */
+    @SuppressWarnings("unchecked")
+    public V getAt (int position)
+    {
+        int e = entryAt (position);
+        return e < 0 ? null : (V) Values[e];
+    }
+
+    /**
+	 * get hash key of stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the hash vector.
+	 *
+	 * @return Hash key of object stored at that position.
+	 */
+    public int getKey (int position)
+    {
+        int e = entryAt (position);
+        if (e < 0)
+            throw new ArrayIndexOutOfBoundsException (position);
+        return Keys[e];
+    }
+
+    /**
+	 * Gets the KeyPosition.
+	 *
+	 * @param key
+	 *
+	 * @return the KeyPosition as int, or -1 if key is absent.
+	 */
+    public int getKeyPosition (int key)
+    {
+        int s = slotOf (key);
+        return s < 0 ? -1 : positionAt (s);
+    }
+
+    /**
+	 * Remove stored object by position.
+	 *
+	 * @param position
+	 *
+	 * @return the object removed, or null.
+	 */
+    public V removeAt (int position)
+    {
+        int e = entryAt (position);
+        return e < 0 ? null : remove (Keys[e]);
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return keys in insertion order
+	 */
+    public int[] toKeyArray ()
+    {
+        int[] ar = new int[Count];
+        for (int i = 0; i < Count; i++)
+            ar[i] = Keys[entryAt (i)];
+        return ar;
+    }
+
+    /**
+	 * Probe for key.
+	 *
+	 * @param key
+	 *
+	 * @return table slot of key, or -(empty slot)-1 if absent.
+	 */
+    protected int slotOf (int key)
+    {
+        int s = mix (key) & Mask;
+        while (true)
+        {
+            int e = Table[s];
+            if (e == 0)
+                return -s - 1;
+            if (Keys[e - 1] == key)
+                return s;
+            s = (s + 1) & Mask;
+        }
+    }
+
+    protected int hashOfEntry (int e)
+    {
+        return Keys[e];
+    }
+
+    protected boolean isHole (int e)
+    {
+        return Values[e] == null;
+    }
+
+    protected void clearEntry (int e)
+    {
+        Values[e] = null;
+    }
+
+    protected void moveEntry (int from, int to)
+    {
+        Keys[to] = Keys[from];
+        Values[to] = Values[from];
+        Values[from] = null;
+    }
+
+    protected void growEntries (int cap)
+    {
+        Keys = Arrays.copyOf (Keys, cap);
+        Values = Arrays.copyOf (Values, cap);
+    }
+
+    protected int entryCapacity ()
+    {
+        return Keys.length;
+    }
+
+    protected Object keyAt (int e)
+    {
+        return Keys[e];
+    }
+
+    protected Object valueAt (int e)
+    {
+        return Values[e];
+    }
+
+    /** Variable Keys. */
+    protected int[] Keys;
+
+    /** Variable Values. Null marks a removed entry. */
+    protected Object[] Values;
+}
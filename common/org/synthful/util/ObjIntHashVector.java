@@ -0,0 +1,284 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.util.Arrays;
+
+/**
+ * ObjIntHashVector Class. Ordered map of objects to int values, without
+ * boxing the values, such as for counters keyed by name. Like HashVector,
+ * values can be retrieved either by key or by position of insertion, and
+ * null keys are not stored.
+ * <BR>
+ * Retrieval by position is getAt(int), so as not to be confused with get by
+ * an Integer key. Not synchronized.
+ */
+public class ObjIntHashVector<K>
+extends PrimitiveHashVector
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new ObjIntHashVector.
+	 */
+    public ObjIntHashVector ()
+    {
+        this (16);
+    }
+
+    /**
+	 * Instantiates a new ObjIntHashVector.
+	 *
+	 * @param initSz
+	 */
+    public ObjIntHashVector (int initSz)
+    {
+        super (initSz);
+        Keys = new Object[Math.max (initSz, 4)];
+        Values = new int[Keys.length];
+    }
+
+    /**
+	 * get stored value by key.
+	 *
+	 * @param key
+	 *
+	 * @return value stored under key, or MissingValue if absent.
+	 */
+    public int get (Object key)
+    {
+        int s = slotOf (key);
+        return s < 0 ? MissingValue : Values[Table[s] - 1];
+    }
+
+    /**
+	 * @param key
+	 *
+	 * @return true if a value is stored under key.
+	 */
+    public boolean containsKey (Object key)
+    {
+        return slotOf (key) >= 0;
+    }
+
+    /**
+	 * Put value under key. A key put again keeps its position.
+	 *
+	 * @param key
+	 * @param value
+	 *
+	 * @return the value put
+	 */
+    public int put (K key, int value)
+    {
+        if (key == null)
+            return value;
+
+        int s = slotOf (key);
+        if (s >= 0)
+        {
+            Values[Table[s] - 1] = value;
+            return value;
+        }
+
+        int e = newEntry ();
+        Keys[e] = key;
+        Values[e] = value;
+        linkEntry (-s - 1, e);
+        return value;
+    }
+
+    /**
+	 * Add delta to the value stored under key, starting from 0 if absent.
+	 *
+	 * @param key
+	 * @param delta
+	 *
+	 * @return the new value
+	 */
+    public int increment (K key, int delta)
+    {
+        if (key == null)
+            return 0;
+
+        int s = slotOf (key);
+        if (s >= 0)
+            return Values[Table[s] - 1] += delta;
+
+        int e = newEntry ();
+        Keys[e] = key;
+        Values[e] = delta;
+        linkEntry (-s - 1, e);
+        return delta;
+    }
+
+    /**
+	 * Remove key.
+	 *
+	 * @param key
+	 *
+	 * @return the value that was stored under key, or MissingValue.
+	 */
+    public int remove (Object key)
+    {
+        int s = slotOf (key);
+        if (s < 0)
+            return MissingValue;
+        int val = Values[Table[s] - 1];
+        removeSlot (s);
+        return val;
+    }
+
+    /**
+	 * get stored value by position.
+	 *
+	 * @param position
+	 *            Position of stored value in the hash vector.
+	 *
+	 * @return value stored at that position, or MissingValue.
+	 */
+    public int getAt (int position)
+    {
+        int e = entryAt (position);
+        return e < 0 ? MissingValue : Values[e];
+    }
+
+    /**
+	 * get hash key of stored value by position.
+	 *
+	 * @param position
+	 *            Position of stored value in the hash vector.
+	 *
+	 * @return Hash key of value stored at that position.
+	 */
+    @SuppressWarnings("unchecked")
+    public K getKey (int position)
+    {
+        int e = entryAt (position);
+        return e < 0 ? null : (K) Keys[e];
+    }
+
+    /**
+	 * Gets the KeyPosition.
+	 *
+	 * @param key
+	 *
+	 * @return the KeyPosition as int, or -1 if key is absent.
+	 */
+    public int getKeyPosition (Object key)
+    {
+        int s = slotOf (key);
+        return s < 0 ? -1 : positionAt (s);
+    }
+
+    /**
+	 * Remove stored value by position.
+	 *
+	 * @param position
+	 *
+	 * @return the value removed, or MissingValue.
+	 */
+    public int removeAt (int position)
+    {
+        int e = entryAt (position);
+        return e < 0 ? MissingValue : remove (Keys[e]);
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return values in insertion order
+	 */
+    public int[] toValueArray ()
+    {
+        int[] ar = new int[Count];
+        for (int i = 0; i < Count; i++)
+            ar[i] = Values[entryAt (i)];
+        return ar;
+    }
+
+    /**
+	 * Probe for key.
+	 *
+	 * @param key
+	 *
+	 * @return table slot of key, or -(empty slot)-1 if absent.
+	 */
+    protected int slotOf (Object key)
+    {
+        if (key == null)
+            return -1;
+
+        int s = mix (key.hashCode ()) & Mask;
+        while (true)
+        {
+            int e = Table[s];
+            if (e == 0)
+                return -s - 1;
+            Object k = Keys[e - 1];
+            if (k == key || k.equals (key))
+                return s;
+            s = (s + 1) & Mask;
+        }
+    }
+
+    protected int hashOfEntry (int e)
+    {
+        return Keys[e].hashCode ();
+    }
+
+    protected boolean isHole (int e)
+    {
+        return Keys[e] == null;
+    }
+
+    protected void clearEntry (int e)
+    {
+        Keys[e] = null;
+    }
+
+    protected void moveEntry (int from, int to)
+    {
+        Keys[to] = Keys[from];
+        Values[to] = Values[from];
+        Keys[from] = null;
+    }
+
+    protected void growEntries (int cap)
+    {
+        Keys = Arrays.copyOf (Keys, cap);
+        Values = Arrays.copyOf (Values, cap);
+    }
+
+    protected int entryCapacity ()
+    {
+        return Keys.length;
+    }
+
+    protected Object keyAt (int e)
+    {
+        return Keys[e];
+    }
+
+    protected Object valueAt (int e)
+    {
+        return Values[e];
+    }
+
+    /** Variable MissingValue. Returned for absent keys and positions. */
+    public int MissingValue = 0;
+
+    /** Variable Keys. Null marks a removed entry. */
+    protected Object[] Keys;
+
+    /** Variable Values. */
+    protected int[] Values;
+}
@@ -0,0 +1,376 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+
+/**
+ * OrderedKeyIndex Class. Keeps the insertion order of hash keys for the
+ * ordered maps of this package, replacing a plain key Vector.
+ * <BR>
+ * Every key is held in a slot that is both hashed by key and placed in an
+ * array by position, so that add, contains and remove are O(1), amortized
+ * for add. A removed key leaves a hole in the slot array, which is
+ * compacted by add once holes take half the array, so that the array stays
+ * within twice the keys held. Removing from the tail, the usual case, never
+ * leaves a hole.
+ * <BR>
+ * get(int) and indexOf are O(1) while no hole lies before the position
+ * asked for. Past a hole they count the keys before it on a Fenwick tree of
+ * the slots in use, in O(log n). The tree is built, in O(n), by the first
+ * such lookup after holes appear, and from then on kept by add and remove,
+ * in O(log n) each, until compaction drops it.
+ * <BR>
+ * Not synchronized. Owners that need to be thread-safe must guard it with
+ * their own monitor.
+ */
+public class OrderedKeyIndex<K>
+implements Iterable<K>, Serializable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new OrderedKeyIndex.
+	 */
+    public OrderedKeyIndex ()
+    {
+        this (16);
+    }
+
+    /**
+	 * Instantiates a new OrderedKeyIndex.
+	 *
+	 * @param initSz
+	 *            expected number of keys.
+	 */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public OrderedKeyIndex (int initSz)
+    {
+        if (initSz < 4)
+            initSz = 4;
+        Slots = new Slot[initSz];
+        SlotMap = new HashMap<Object, Slot<K>> (initSz * 4 / 3 + 1);
+    }
+
+    /**
+	 * @return number of keys held.
+	 */
+    public int size ()
+    {
+        return SlotMap.size ();
+    }
+
+    /**
+	 * @param key
+	 *
+	 * @return true if key is held.
+	 */
+    public boolean contains (Object key)
+    {
+        return key != null && SlotMap.containsKey (key);
+    }
+
+    /**
+	 * Append key at the end of the order, unless it is already held, in
+	 * which case its position is left unchanged.
+	 *
+	 * @param key
+	 *
+	 * @return true if key was not already held.
+	 */
+    public boolean add (K key)
+    {
+        if (key == null)
+            return false;
+
+        //Reclaim holes rather than grow past twice the keys held
+        if (Used == Slots.length && Used >= 2 * SlotMap.size ())
+            compact ();
+
+        Slot<K> slot = new Slot<K> (key, Used);
+        if (SlotMap.putIfAbsent (key, slot) != null)
+            return false;
+
+        ensureCapacity (Used + 1);
+        Slots[Used++] = slot;
+        if (Live != null)
+            count (Used - 1, 1);
+        return true;
+    }
+
+    /**
+	 * Remove key.
+	 *
+	 * @param key
+	 *
+	 * @return true if key was held.
+	 */
+    public boolean remove (Object key)
+    {
+        if (key == null)
+            return false;
+
+        Slot<K> slot = SlotMap.remove (key);
+        if (slot == null)
+            return false;
+
+        Slots[slot.Index] = null;
+        if (slot.Index < DirtyFrom)
+            DirtyFrom = slot.Index;
+        if (Live != null)
+            count (slot.Index, -1);
+
+        //Trailing holes need no compaction
+        while (Used > 0 && Slots[Used - 1] == null)
+            Used--;
+        if (DirtyFrom >= Used)
+        {
+            DirtyFrom = CLEAN;
+            Live = null;
+        }
+
+        return true;
+    }
+
+    /**
+	 * get key by position.
+	 *
+	 * @param position
+	 *            Position of key in insertion order.
+	 *
+	 * @return key at that position, or null if position is out of range.
+	 */
+    public K get (int position)
+    {
+        if (position < 0 || position >= SlotMap.size ())
+            return null;
+        if (position < DirtyFrom)
+            return Slots[position].Key;
+
+        //The slot holding the position + 1'th key in use
+        int[] live = liveSlots ();
+        int i = 0;
+        int rest = position + 1;
+        for (int step = Integer.highestOneBit (live.length - 1); step > 0; step >>= 1)
+        {
+            if (i + step < live.length && live[i + step] < rest)
+            {
+                i += step;
+                rest -= live[i];
+            }
+        }
+        return Slots[i].Key;
+    }
+
+    /**
+	 * Gets the position of key.
+	 *
+	 * @param key
+	 *
+	 * @return position of key in insertion order, or -1 if not held.
+	 */
+    public int indexOf (Object key)
+    {
+        if (key == null)
+            return -1;
+
+        Slot<K> slot = SlotMap.get (key);
+        if (slot == null)
+            return -1;
+        if (slot.Index < DirtyFrom)
+            return slot.Index;
+
+        //Keys in use before the slot
+        int[] live = liveSlots ();
+        int n = 0;
+        for (int i = slot.Index; i > 0; i -= i & -i)
+            n += live[i];
+        return n;
+    }
+
+    /**
+	 * Clear all keys.
+	 */
+    public void clear ()
+    {
+        Arrays.fill (Slots, 0, Used, null);
+        SlotMap.clear ();
+        Used = 0;
+        DirtyFrom = CLEAN;
+        Live = null;
+    }
+
+    /**
+	 * Grow the slot array to hold at least sz keys.
+	 *
+	 * @param sz
+	 */
+    public void ensureCapacity (int sz)
+    {
+        if (sz <= Slots.length)
+            return;
+
+        int newSz = Slots.length * 2;
+        if (newSz < sz)
+            newSz = sz;
+        Slots = Arrays.copyOf (Slots, newSz);
+        Live = null;
+    }
+
+    /**
+	 * Converts to Vector.
+	 *
+	 * @return a snapshot of the keys in insertion order.
+	 */
+    public Vector<K> toVector ()
+    {
+        Vector<K> v = new Vector<K> (size ());
+        for (K key : this)
+            v.add (key);
+        return v;
+    }
+
+    /**
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<K> iterator ()
+    {
+        return new Iterator<K> ()
+        {
+            public boolean hasNext ()
+            {
+                while (Cursor < Used && Slots[Cursor] == null)
+                    Cursor++;
+                return Cursor < Used;
+            }
+
+            public K next ()
+            {
+                if (!hasNext ())
+                    throw new NoSuchElementException ();
+                return Slots[Cursor++].Key;
+            }
+
+            public void remove ()
+            {
+                throw new UnsupportedOperationException ();
+            }
+
+            private int Cursor = 0;
+        };
+    }
+
+    /**
+	 * Close up the holes left by removals, renumbering the slots that move.
+	 */
+    protected void compact ()
+    {
+        if (DirtyFrom == CLEAN)
+            return;
+
+        int j = DirtyFrom;
+        for (int i = DirtyFrom; i < Used; i++)
+        {
+            Slot<K> slot = Slots[i];
+            if (slot == null)
+                continue;
+            slot.Index = j;
+            Slots[j++] = slot;
+        }
+
+        Arrays.fill (Slots, j, Used, null);
+        Used = j;
+        DirtyFrom = CLEAN;
+        Live = null;
+    }
+
+    /**
+	 * Gets the Fenwick tree of the slots in use, building it if not kept.
+	 *
+	 * @return the tree, where slot i is counted at i + 1.
+	 */
+    private int[] liveSlots ()
+    {
+        if (Live != null)
+            return Live;
+
+        int[] live = new int[Slots.length + 1];
+        for (int i = 0; i < Used; i++)
+            if (Slots[i] != null)
+                live[i + 1] = 1;
+        for (int i = 1; i < live.length; i++)
+        {
+            int up = i + (i & -i);
+            if (up < live.length)
+                live[up] += live[i];
+        }
+        Live = live;
+        return live;
+    }
+
+    /**
+	 * Count a slot in or out of the Fenwick tree.
+	 *
+	 * @param index
+	 *            of the slot.
+	 * @param n
+	 *            1 for in, -1 for out.
+	 */
+    private void count (int index, int n)
+    {
+        for (int i = index + 1; i < Live.length; i += i & -i)
+            Live[i] += n;
+    }
+
+    /**
+     * Slot Class. Holds a key together with its current position.
+     */
+    static protected class Slot<K>
+    implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        Slot (K key, int index)
+        {
+            this.Key = key;
+            this.Index = index;
+        }
+
+        final K Key;
+
+        int Index;
+    }
+
+    /** Variable Slots. Keys in insertion order, with possible holes. */
+    protected Slot<K>[] Slots;
+
+    /** Variable SlotMap. */
+    protected HashMap<Object, Slot<K>> SlotMap;
+
+    /** Variable Used. Number of slots in use, including holes. */
+    protected int Used = 0;
+
+    /**
+     * Variable Live. Fenwick tree of the slots in use, while there are holes
+     * and once positions past them have been looked up, else null.
+     */
+    protected transient int[] Live;
+
+    /** Variable DirtyFrom. Position of the first hole, or CLEAN. */
+    protected int DirtyFrom = CLEAN;
+
+    final static protected int CLEAN = Integer.MAX_VALUE;
+}
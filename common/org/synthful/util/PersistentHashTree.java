@@ -0,0 +1,145 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PersistentHashTree Class. Shared holder of a PersistentHashTreeNode root,
+ * such as of a configuration tree read by many request handlers.
+ * <BR>
+ * A handler takes a snapshot, which is just the current root, and may fork
+ * it with put and cut as it likes without affecting anyone else. Updates to
+ * the shared tree are published atomically, by compare and set of the root,
+ * so readers always see either the whole of an update or none of it.
+ */
+public class PersistentHashTree
+{
+
+    /**
+	 * Instantiates a new, empty PersistentHashTree, with key delimiter '/'.
+	 */
+    public PersistentHashTree ()
+    {
+        this (PersistentHashTreeNode.EMPTY_TREE);
+    }
+
+    /**
+	 * Instantiates a new PersistentHashTree.
+	 *
+	 * @param root
+	 */
+    public PersistentHashTree (PersistentHashTreeNode root)
+    {
+        this.Root = new AtomicReference<PersistentHashTreeNode> (root);
+    }
+
+    /**
+	 * Instantiates a new PersistentHashTree converted from map, such as a
+	 * HashVectorTree.
+	 *
+	 * @param map
+	 * @param delimiter
+	 *            delimiter of keys in hash key progressions.
+	 */
+    public PersistentHashTree (Map<?, ?> map, char delimiter)
+    {
+        this (PersistentHashTreeNode.valueOf (map, delimiter));
+    }
+
+    /**
+	 * @return the current root, which stays as it is whatever updates follow.
+	 */
+    public PersistentHashTreeNode snapshot ()
+    {
+        return Root.get ();
+    }
+
+    /**
+	 * get stored object by hashkey progression from the current root.
+	 *
+	 * @param keyStr
+	 *
+	 * @return stored object indexed by key string
+	 */
+    public Object get (String keyStr)
+    {
+        return Root.get ().get (keyStr);
+    }
+
+    /**
+	 * Put value at hashkey progression and publish the new root.
+	 *
+	 * @param keyStr
+	 * @param value
+	 *
+	 * @return the new root
+	 */
+    public PersistentHashTreeNode put (String keyStr, Object value)
+    {
+        TreePath path = TreePath.parse (keyStr, Root.get ().getKeyDelimiter ());
+        while (true)
+        {
+            PersistentHashTreeNode root = Root.get ();
+            PersistentHashTreeNode newRoot = root.put (path, value);
+            if (Root.compareAndSet (root, newRoot))
+                return newRoot;
+        }
+    }
+
+    /**
+	 * Cut hashkey progression and publish the new root.
+	 *
+	 * @param keyStr
+	 *
+	 * @return the new root
+	 */
+    public PersistentHashTreeNode cut (String keyStr)
+    {
+        TreePath path = TreePath.parse (keyStr, Root.get ().getKeyDelimiter ());
+        while (true)
+        {
+            PersistentHashTreeNode root = Root.get ();
+            PersistentHashTreeNode newRoot = root.cut (path);
+            if (Root.compareAndSet (root, newRoot))
+                return newRoot;
+        }
+    }
+
+    /**
+	 * Publish newRoot, if the root is still expect, such as after building
+	 * a set of changes on a snapshot.
+	 *
+	 * @param expect
+	 * @param newRoot
+	 *
+	 * @return true if published, false if the root was changed meanwhile.
+	 */
+    public boolean publish (PersistentHashTreeNode expect, PersistentHashTreeNode newRoot)
+    {
+        return Root.compareAndSet (expect, newRoot);
+    }
+
+    /**
+	 * Replace the root whatever it is.
+	 *
+	 * @param newRoot
+	 */
+    public void publish (PersistentHashTreeNode newRoot)
+    {
+        Root.set (newRoot);
+    }
+
+    public String toString ()
+    {
+        return Root.get ().toString ();
+    }
+
+    /** Variable Root. */
+    protected final AtomicReference<PersistentHashTreeNode> Root;
+}
@@ -0,0 +1,778 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.synthful.lang.Empty.EmptyFactory;
+import org.synthful.util.ToStringBuffer.Fillers;
+import org.synthful.util.ToStringBuffer.ToStringBufferable;
+
+/**
+ * PersistentHashTreeNode Class. Immutable counterpart of HashVectorTreeNode.
+ * Values are stored and retrieved by key, by hash key progression, such as
+ * "keya/keyb/keyc", or by position of insertion, but put and cut leave the
+ * node untouched and return a new root instead, which shares every subtree
+ * the change did not pass through.
+ * <BR>
+ * Members are held in a hash array mapped trie, so that a put or cut copies
+ * only the few small trie nodes on the way to the key, and their order in a
+ * persistent vector of keys, appended to the same way. A put down a path
+ * copies just the tree nodes along the path. Taking a snapshot is merely
+ * keeping the reference, and a snapshot can be handed to any number of
+ * threads without locking. Use PersistentHashTree to publish updates to a
+ * shared tree atomically.
+ * <BR>
+ * Cutting a key rebuilds the key order of its node, and getKeyPosition scans
+ * it, as these are rare on configuration trees. Stored values should
+ * themselves be immutable; valueOf converts nested Maps into nodes.
+ * <BR>
+ * Not a TreeNode, since a node shared by many roots has no single parent.
+ */
+public final class PersistentHashTreeNode
+implements EmptyFactory<Object>, ToStringBufferable, Serializable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+    private PersistentHashTreeNode (
+        Object root, Object[] order, int orderShift, int count, char delimiter)
+    {
+        this.Root = root;
+        this.Order = order;
+        this.OrderShift = orderShift;
+        this.Count = count;
+        this.KeyDelimiter = delimiter;
+    }
+
+    /**
+	 * @param delimiter
+	 *            delimiter of keys in hash key progressions.
+	 *
+	 * @return an empty node.
+	 */
+    static public PersistentHashTreeNode empty (char delimiter)
+    {
+        return delimiter == EMPTY_TREE.KeyDelimiter
+            ? EMPTY_TREE
+            : new PersistentHashTreeNode (null, NO_KEYS, 0, 0, delimiter);
+    }
+
+    /**
+	 * Convert a Map, such as a HashVectorTreeNode, keeping the order of its
+	 * members if it has one, and converting nested Maps into nodes too.
+	 *
+	 * @param map
+	 * @param delimiter
+	 *            delimiter of keys in hash key progressions.
+	 *
+	 * @return the converted tree
+	 */
+    static public PersistentHashTreeNode valueOf (Map<?, ?> map, char delimiter)
+    {
+        PersistentHashTreeNode node = empty (delimiter);
+        for (Object[] member : TreeCodec.members (map))
+        {
+            Object value = member[1];
+            if (value instanceof Map)
+                value = valueOf ((Map<?, ?>) value, delimiter);
+            node = node.putValue (String.valueOf (member[0]), value);
+        }
+        return node;
+    }
+
+    /**
+	 * @return number of members.
+	 */
+    public int size ()
+    {
+        return Count;
+    }
+
+    /**
+	 * @return true if there are no members.
+	 */
+    public boolean isEmpty ()
+    {
+        return Count == 0;
+    }
+
+    /**
+	 * @return the delimiter used for separating key segments.
+	 */
+    public char getKeyDelimiter ()
+    {
+        return KeyDelimiter;
+    }
+
+    /**
+	 * get stored object by single key, without key progression.
+	 *
+	 * @param key
+	 *
+	 * @return Object stored under key, or null.
+	 */
+    public Object getValue (String key)
+    {
+        if (key == null || Root == null)
+            return null;
+        return find (Root, 0, hash (key), key);
+    }
+
+    /**
+	 * @param key
+	 *
+	 * @return true if a value is stored under the single key.
+	 */
+    public boolean containsKey (String key)
+    {
+        return getValue (key) != null;
+    }
+
+    /**
+	 * get stored object by hashkey progression.
+	 *
+	 * @param keyStr
+	 *            is a hash key progression
+	 *
+	 * @return stored object indexed by key string
+	 */
+    public Object get (String keyStr)
+    {
+        return get (TreePath.compile (keyStr, KeyDelimiter));
+    }
+
+    /**
+	 * get stored object by hashkey progression.
+	 *
+	 * @param keyStr
+	 *            is a hash key progression
+	 * @param sepr
+	 *            delimiter of keys in keyStr
+	 *
+	 * @return stored object indexed by key string
+	 */
+    public Object get (String keyStr, char sepr)
+    {
+        return get (TreePath.compile (keyStr, sepr));
+    }
+
+    /**
+	 * get stored object by compiled hashkey progression.
+	 *
+	 * @param path
+	 *
+	 * @return stored object indexed by path
+	 */
+    public Object get (TreePath path)
+    {
+        Object o = this;
+        for (String key : path.Segments)
+        {
+            if (key.length () == 0)
+                continue;
+            if (! (o instanceof PersistentHashTreeNode))
+                return null;
+            o = ((PersistentHashTreeNode) o).getValue (key);
+        }
+        return o;
+    }
+
+    /**
+	 * get stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the node.
+	 *
+	 * @return Object stored at that position.
+	 */
+    public Object get (int position)
+    {
+        return getValue (getKey (position));
+    }
+
+    /**
+	 * get hash key of stored object by position.
+	 *
+	 * @param position
+	 *            Position of stored object in the node.
+	 *
+	 * @return Hash key of object stored at that position.
+	 */
+    public String getKey (int position)
+    {
+        if (position < 0 || position >= Count)
+            throw new ArrayIndexOutOfBoundsException (position);
+
+        Object[] node = Order;
+        for (int shift = OrderShift; shift > 0; shift -= BITS)
+            node = (Object[]) node[(position >>> shift) & MASK];
+        return (String) node[position & MASK];
+    }
+
+    /**
+	 * Gets the KeyPosition, by scanning the key order.
+	 *
+	 * @param key
+	 *
+	 * @return the KeyPosition as int, or -1 if key is absent.
+	 */
+    public int getKeyPosition (Object key)
+    {
+        if (! (key instanceof String) || getValue ((String) key) == null)
+            return -1;
+        for (int i = 0; i < Count; i++)
+            if (key.equals (getKey (i)))
+                return i;
+        return -1;
+    }
+
+    /**
+	 * Put value under a single key, without key progression. A key put again
+	 * keeps its position.
+	 *
+	 * @param key
+	 * @param value
+	 *
+	 * @return the new node, or this if value is already stored under key.
+	 */
+    public PersistentHashTreeNode putValue (String key, Object value)
+    {
+        if (key == null)
+            key = EMPTY.toString ();
+        if (value == null)
+            value = EMPTY;
+
+        boolean[] added = new boolean[1];
+        Object root = assoc (Root, 0, hash (key), key, value, added);
+        if (root == Root)
+            return this;
+        if (! added[0])
+            return new PersistentHashTreeNode (root, Order, OrderShift, Count, KeyDelimiter);
+
+        //Append key to the order, adding a level when the trie is full
+        Object[] order = Order;
+        int shift = OrderShift;
+        if (Count == 1 << (shift + BITS))
+        {
+            order = new Object[] {order};
+            shift += BITS;
+        }
+        order = append (order, shift, Count, key);
+        return new PersistentHashTreeNode (root, order, shift, Count + 1, KeyDelimiter);
+    }
+
+    /**
+	 * Put value at hashkey progression, locating or creating each branch in
+	 * turn. A branch in the way that is not a node is replaced by one.
+	 *
+	 * @param keyStr
+	 *            is a hash key progression
+	 * @param value
+	 *
+	 * @return the new root
+	 */
+    public PersistentHashTreeNode put (String keyStr, Object value)
+    {
+        return put (TreePath.parse (keyStr, KeyDelimiter), value);
+    }
+
+    /**
+	 * Put value at hashkey progression.
+	 *
+	 * @param keyStr
+	 *            is a hash key progression
+	 * @param sepr
+	 *            delimiter of keys in keyStr
+	 * @param value
+	 *
+	 * @return the new root
+	 */
+    public PersistentHashTreeNode put (String keyStr, char sepr, Object value)
+    {
+        return put (TreePath.parse (keyStr, sepr), value);
+    }
+
+    /**
+	 * Put value at compiled hashkey progression, copying only the nodes along
+	 * the path.
+	 *
+	 * @param path
+	 * @param value
+	 *
+	 * @return the new root
+	 */
+    public PersistentHashTreeNode put (TreePath path, Object value)
+    {
+        return put (path.Segments, 0, value);
+    }
+
+    private PersistentHashTreeNode put (String[] keysegs, int depth, Object value)
+    {
+        while (depth < keysegs.length && keysegs[depth].length () == 0)
+            depth++;
+        if (depth == keysegs.length)
+            return this;
+
+        String key = keysegs[depth];
+        int next = depth + 1;
+        while (next < keysegs.length && keysegs[next].length () == 0)
+            next++;
+        if (next == keysegs.length)
+            return putValue (key, value);
+
+        Object o = getValue (key);
+        PersistentHashTreeNode branch = o instanceof PersistentHashTreeNode
+            ? (PersistentHashTreeNode) o
+            : empty (KeyDelimiter);
+        return putValue (key, branch.put (keysegs, next, value));
+    }
+
+    /**
+	 * Add members from array of {key, value} pairs, keys being hash key
+	 * progressions.
+	 *
+	 * @param t
+	 *
+	 * @return the new root
+	 */
+    public PersistentHashTreeNode add (Object[][] t)
+    {
+        PersistentHashTreeNode node = this;
+        for (Object[] pair : t)
+            if (pair != null && pair.length >= 2 && pair[0] != null)
+                node = node.put (pair[0].toString (), pair[1]);
+        return node;
+    }
+
+    /**
+	 * Cut a single key, without key progression.
+	 *
+	 * @param key
+	 *
+	 * @return the new node, or this if key is absent.
+	 */
+    public PersistentHashTreeNode removeValue (String key)
+    {
+        if (key == null || Root == null)
+            return this;
+
+        Object root = dissoc (Root, 0, hash (key), key);
+        if (root == Root)
+            return this;
+
+        //Rebuild the order without key
+        Object[] order = NO_KEYS;
+        int shift = 0;
+        int n = 0;
+        for (int i = 0; i < Count; i++)
+        {
+            String k = getKey (i);
+            if (k.equals (key))
+                continue;
+            if (n == 1 << (shift + BITS))
+            {
+                order = new Object[] {order};
+                shift += BITS;
+            }
+            order = append (order, shift, n++, k);
+        }
+        return new PersistentHashTreeNode (root, order, shift, n, KeyDelimiter);
+    }
+
+    /**
+	 * Cut hashkey progression.
+	 *
+	 * @param keyStr
+	 *            is a hash key progression
+	 *
+	 * @return the new root, or this if the path is absent.
+	 */
+    public PersistentHashTreeNode cut (String keyStr)
+    {
+        return cut (TreePath.parse (keyStr, KeyDelimiter));
+    }
+
+    /**
+	 * Cut compiled hashkey progression.
+	 *
+	 * @param path
+	 *
+	 * @return the new root, or this if the path is absent.
+	 */
+    public PersistentHashTreeNode cut (TreePath path)
+    {
+        return cut (path.Segments, 0);
+    }
+
+    private PersistentHashTreeNode cut (String[] keysegs, int depth)
+    {
+        while (depth < keysegs.length && keysegs[depth].length () == 0)
+            depth++;
+        if (depth == keysegs.length)
+            return this;
+
+        String key = keysegs[depth];
+        int next = depth + 1;
+        while (next < keysegs.length && keysegs[next].length () == 0)
+            next++;
+        if (next == keysegs.length)
+            return removeValue (key);
+
+        Object o = getValue (key);
+        if (! (o instanceof PersistentHashTreeNode))
+            return this;
+        PersistentHashTreeNode branch = (PersistentHashTreeNode) o;
+        PersistentHashTreeNode cutBranch = branch.cut (keysegs, next);
+        return cutBranch == branch ? this : putValue (key, cutBranch);
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return Array of {key, value} pairs in order.
+	 */
+    public Object[][] toArray ()
+    {
+        Object[][] ar = new Object[Count][];
+        for (int i = 0; i < Count; i++)
+        {
+            String key = getKey (i);
+            ar[i] = new Object[] {key, getValue (key)};
+        }
+        return ar;
+    }
+
+    /**
+	 * Converts to a mutable HashVectorTreeNode, nested nodes included, such
+	 * as for a handler that needs to edit its own copy in place.
+	 *
+	 * @return the copy
+	 */
+    public HashVectorTreeNode toHashVectorTreeNode ()
+    {
+        HashVectorTreeNode h = new HashVectorTreeNode (Math.max (Count * 4 / 3 + 1, 11));
+        for (int i = 0; i < Count; i++)
+        {
+            String key = getKey (i);
+            Object value = getValue (key);
+            if (value instanceof PersistentHashTreeNode)
+                value = ((PersistentHashTreeNode) value).toHashVectorTreeNode ();
+            h.putValue (key, value);
+        }
+        return h;
+    }
+
+    public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
+    {
+        StringBuffer strBuf = tostrbuf.getStringBuffer();
+
+        tostrbuf.appendFillers(Fillers.NodeTerminatorLeft, depth);
+
+        for (int i = 0; i < Count; i++)
+        {
+	        if (i > 0)
+	        	tostrbuf.appendFillers (Fillers.NodeDelimiter, depth);
+
+	        String key = getKey (i);
+            strBuf.append (key);
+            tostrbuf.appendFillers(Fillers.PairSeparator, depth);
+
+            tostrbuf.toStringBuffer (getValue (key), depth+1, i);
+        }
+
+        tostrbuf.appendFillers(Fillers.NodeTerminatorRight, depth);
+
+		return strBuf;
+    }
+
+    public String toString ()
+    {
+        return "" + new ToStringBuffer ().toStringBuffer (this, ToStringBuffer.Format.CSVDump);
+    }
+
+    /*
+     * The trie. A trie node is a BitmapNode, or a CollisionNode once all 32
+     * bits of the hash are used up; a slot holds either a Leaf or a trie node.
+     */
+
+    static private Object find (Object node, int shift, int hash, String key)
+    {
+        while (true)
+        {
+            if (node instanceof CollisionNode)
+            {
+                for (Leaf leaf : ((CollisionNode) node).Leaves)
+                    if (leaf.Key.equals (key))
+                        return leaf.Value;
+                return null;
+            }
+
+            BitmapNode bn = (BitmapNode) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bn.Bitmap & bit) == 0)
+                return null;
+            Object o = bn.Slots[Integer.bitCount (bn.Bitmap & (bit - 1))];
+            if (o instanceof Leaf)
+            {
+                Leaf leaf = (Leaf) o;
+                return leaf.Hash == hash && leaf.Key.equals (key) ? leaf.Value : null;
+            }
+            node = o;
+            shift += BITS;
+        }
+    }
+
+    static private Object assoc (
+        Object node, int shift, int hash, String key, Object value, boolean[] added)
+    {
+        if (node == null)
+        {
+            added[0] = true;
+            return new BitmapNode (1 << ((hash >>> shift) & MASK),
+                new Object[] {new Leaf (hash, key, value)});
+        }
+
+        if (node instanceof CollisionNode)
+        {
+            Leaf[] leaves = ((CollisionNode) node).Leaves;
+            for (int i = 0; i < leaves.length; i++)
+            {
+                if (leaves[i].Key.equals (key))
+                {
+                    if (leaves[i].Value == value)
+                        return node;
+                    Leaf[] copy = leaves.clone ();
+                    copy[i] = new Leaf (hash, key, value);
+                    return new CollisionNode (copy);
+                }
+            }
+            added[0] = true;
+            Leaf[] copy = Arrays.copyOf (leaves, leaves.length + 1);
+            copy[leaves.length] = new Leaf (hash, key, value);
+            return new CollisionNode (copy);
+        }
+
+        BitmapNode bn = (BitmapNode) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int idx = Integer.bitCount (bn.Bitmap & (bit - 1));
+
+        if ((bn.Bitmap & bit) == 0)
+        {
+            added[0] = true;
+            Object[] slots = new Object[bn.Slots.length + 1];
+            System.arraycopy (bn.Slots, 0, slots, 0, idx);
+            slots[idx] = new Leaf (hash, key, value);
+            System.arraycopy (bn.Slots, idx, slots, idx + 1, bn.Slots.length - idx);
+            return new BitmapNode (bn.Bitmap | bit, slots);
+        }
+
+        Object o = bn.Slots[idx];
+        Object sub;
+        if (o instanceof Leaf)
+        {
+            Leaf leaf = (Leaf) o;
+            if (leaf.Hash == hash && leaf.Key.equals (key))
+            {
+                if (leaf.Value == value)
+                    return node;
+                sub = new Leaf (hash, key, value);
+            }
+            else
+            {
+                added[0] = true;
+                sub = merge (shift + BITS, leaf, new Leaf (hash, key, value));
+            }
+        }
+        else
+        {
+            sub = assoc (o, shift + BITS, hash, key, value, added);
+            if (sub == o)
+                return node;
+        }
+
+        Object[] slots = bn.Slots.clone ();
+        slots[idx] = sub;
+        return new BitmapNode (bn.Bitmap, slots);
+    }
+
+    static private Object merge (int shift, Leaf a, Leaf b)
+    {
+        if (shift >= 32)
+            return new CollisionNode (new Leaf[] {a, b});
+
+        int fa = (a.Hash >>> shift) & MASK;
+        int fb = (b.Hash >>> shift) & MASK;
+        if (fa == fb)
+            return new BitmapNode (1 << fa, new Object[] {merge (shift + BITS, a, b)});
+        return new BitmapNode ((1 << fa) | (1 << fb),
+            fa < fb ? new Object[] {a, b} : new Object[] {b, a});
+    }
+
+    /**
+	 * @return node without key, this node if key is absent, or null if the
+	 *         node is left empty.
+	 */
+    static private Object dissoc (Object node, int shift, int hash, String key)
+    {
+        if (node instanceof CollisionNode)
+        {
+            Leaf[] leaves = ((CollisionNode) node).Leaves;
+            for (int i = 0; i < leaves.length; i++)
+            {
+                if (! leaves[i].Key.equals (key))
+                    continue;
+                if (leaves.length == 2)
+                    return leaves[1 - i];
+                Leaf[] copy = new Leaf[leaves.length - 1];
+                System.arraycopy (leaves, 0, copy, 0, i);
+                System.arraycopy (leaves, i + 1, copy, i, copy.length - i);
+                return new CollisionNode (copy);
+            }
+            return node;
+        }
+
+        BitmapNode bn = (BitmapNode) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((bn.Bitmap & bit) == 0)
+            return node;
+        int idx = Integer.bitCount (bn.Bitmap & (bit - 1));
+
+        Object o = bn.Slots[idx];
+        Object sub;
+        if (o instanceof Leaf)
+        {
+            Leaf leaf = (Leaf) o;
+            if (leaf.Hash != hash || ! leaf.Key.equals (key))
+                return node;
+            sub = null;
+        }
+        else
+        {
+            sub = dissoc (o, shift + BITS, hash, key);
+            if (sub == o)
+                return node;
+        }
+
+        if (sub == null)
+        {
+            if (bn.Slots.length == 1)
+                return null;
+            Object[] slots = new Object[bn.Slots.length - 1];
+            System.arraycopy (bn.Slots, 0, slots, 0, idx);
+            System.arraycopy (bn.Slots, idx + 1, slots, idx, slots.length - idx);
+            //Pull a lone leaf up into the parent
+            if (slots.length == 1 && slots[0] instanceof Leaf && shift > 0)
+                return slots[0];
+            return new BitmapNode (bn.Bitmap & ~bit, slots);
+        }
+
+        //Pull a lone leaf up into the parent
+        if (sub instanceof Leaf && bn.Slots.length == 1 && shift > 0)
+            return sub;
+        Object[] slots = bn.Slots.clone ();
+        slots[idx] = sub;
+        return new BitmapNode (bn.Bitmap, slots);
+    }
+
+    /**
+	 * Append key at position index of the key order trie, copying the nodes
+	 * on the way. Trie nodes are only as long as they are filled.
+	 */
+    static private Object[] append (Object[] node, int shift, int index, String key)
+    {
+        int i = (index >>> shift) & MASK;
+        Object[] copy = Arrays.copyOf (node, Math.max (node.length, i + 1));
+        if (shift == 0)
+            copy[i] = key;
+        else
+        {
+            Object[] child = i < node.length ? (Object[]) node[i] : NO_KEYS;
+            copy[i] = append (child, shift - BITS, index, key);
+        }
+        return copy;
+    }
+
+    static private int hash (String key)
+    {
+        int h = key.hashCode () * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static private final class Leaf
+    implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        Leaf (int hash, String key, Object value)
+        {
+            this.Hash = hash;
+            this.Key = key;
+            this.Value = value;
+        }
+
+        final int Hash;
+        final String Key;
+        final Object Value;
+    }
+
+    static private final class BitmapNode
+    implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        BitmapNode (int bitmap, Object[] slots)
+        {
+            this.Bitmap = bitmap;
+            this.Slots = slots;
+        }
+
+        final int Bitmap;
+        final Object[] Slots;
+    }
+
+    static private final class CollisionNode
+    implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        CollisionNode (Leaf[] leaves)
+        {
+            this.Leaves = leaves;
+        }
+
+        final Leaf[] Leaves;
+    }
+
+    final static private int BITS = 5;
+    final static private int MASK = (1 << BITS) - 1;
+    final static private Object[] NO_KEYS = new Object[0];
+
+    /** Variable EMPTY_TREE. The empty node, with key delimiter '/'. */
+    final static public PersistentHashTreeNode EMPTY_TREE =
+        new PersistentHashTreeNode (null, NO_KEYS, 0, 0, '/');
+
+    /** Variable Root. Root of the trie of members, or null if empty. */
+    private final Object Root;
+
+    /** Variable Order. Root of the trie of keys in order. */
+    private final Object[] Order;
+
+    /** Variable OrderShift. Bit shift of the Order root level. */
+    private final int OrderShift;
+
+    /** Variable Count. */
+    private final int Count;
+
+    /** Variable KeyDelimiter. */
+    private final char KeyDelimiter;
+}
@@ -0,0 +1,397 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.synthful.lang.Empty.EmptyFactory;
+import org.synthful.util.ToStringBuffer.ToStringBufferable;
+
+/**
+ * PrimitiveHashVector Class. Common base of the ordered maps specialized for
+ * primitive keys or values, such as IntObjHashVector, LongObjHashVector and
+ * ObjIntHashVector.
+ * <BR>
+ * Entries are held in parallel arrays in insertion order, so that an entry's
+ * index is its position. The hash table is an open addressing int array of
+ * entry indexes, probed linearly and kept at most three quarters full;
+ * removals shift later probes back instead of leaving tombstones. A removed
+ * entry leaves a hole in the entry arrays, which is compacted lazily by the
+ * next positional access that reaches past it, or when the entry arrays are
+ * full and at least half holes.
+ * <BR>
+ * Subclasses hold the typed entry arrays and do the typed key probing.
+ * Not synchronized.
+ */
+abstract public class PrimitiveHashVector
+implements ToStringBufferable, EmptyFactory<Object>, Serializable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new PrimitiveHashVector.
+	 *
+	 * @param initSz
+	 *            expected number of entries.
+	 */
+    protected PrimitiveHashVector (int initSz)
+    {
+        if (initSz < 4)
+            initSz = 4;
+        Table = new int[tableSizeFor (initSz)];
+        Mask = Table.length - 1;
+    }
+
+    /**
+	 * @return number of entries.
+	 */
+    public int size ()
+    {
+        return Count;
+    }
+
+    /**
+	 * @return true if there are no entries.
+	 */
+    public boolean isEmpty ()
+    {
+        return Count == 0;
+    }
+
+    /**
+	 * Clear all entries.
+	 */
+    public void clear ()
+    {
+        Arrays.fill (Table, 0);
+        for (int e = 0; e < Used; e++)
+            clearEntry (e);
+        Used = 0;
+        Count = 0;
+        DirtyFrom = CLEAN;
+    }
+
+    /**
+	 * Converts to Array.
+	 *
+	 * @return Array of {key, value} pairs in insertion order, boxed.
+	 */
+    public Object[][] toKeyValueArray ()
+    {
+        Object[][] ar = new Object[Count][2];
+        for (int i = 0; i < Count; i++)
+        {
+            int e = entryAt (i);
+            ar[i][0] = keyAt (e);
+            ar[i][1] = valueAt (e);
+        }
+        return ar;
+    }
+
+    public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
+    {
+        StringBuffer strBuf = tostrbuf.getStringBuffer();
+
+        tostrbuf.appendNotNull(tostrbuf.ItemTerminatorLeft);
+
+    	for(int i=0; i<Count; i++)
+    	{
+    		int e = entryAt (i);
+
+            if (i>0)
+            	tostrbuf.appendNotNull(tostrbuf.ItemDelimiter);
+
+	        // iteration=0 because delimiter should not appear before separator
+            tostrbuf.toStringBuffer(keyAt (e), depth, 0);
+            strBuf.append(tostrbuf.PairSeparator);
+            tostrbuf.toStringBuffer(valueAt (e), depth, i);
+    	}
+
+    	tostrbuf.appendNotNull(tostrbuf.ItemTerminatorRight);
+
+        return strBuf;
+    }
+
+    public String toString ()
+    {
+        return "" + new ToStringBuffer ().toStringBuffer (this, ToStringBuffer.Format.CSVDump);
+    }
+
+    /**
+	 * @param e
+	 *            entry index
+	 *
+	 * @return hash of the key of entry e, before masking.
+	 */
+    abstract protected int hashOfEntry (int e);
+
+    /**
+	 * @param e
+	 *            entry index
+	 *
+	 * @return true if entry e has been removed.
+	 */
+    abstract protected boolean isHole (int e);
+
+    /**
+	 * Mark entry e removed, releasing any object it references.
+	 *
+	 * @param e
+	 *            entry index
+	 */
+    abstract protected void clearEntry (int e);
+
+    /**
+	 * Move entry from into entry to, and clear entry from.
+	 *
+	 * @param from
+	 * @param to
+	 */
+    abstract protected void moveEntry (int from, int to);
+
+    /**
+	 * Grow the entry arrays to hold cap entries.
+	 *
+	 * @param cap
+	 */
+    abstract protected void growEntries (int cap);
+
+    /**
+	 * @return current length of the entry arrays.
+	 */
+    abstract protected int entryCapacity ();
+
+    /**
+	 * @param e
+	 *            entry index
+	 *
+	 * @return key of entry e, boxed if primitive.
+	 */
+    abstract protected Object keyAt (int e);
+
+    /**
+	 * @param e
+	 *            entry index
+	 *
+	 * @return value of entry e, boxed if primitive.
+	 */
+    abstract protected Object valueAt (int e);
+
+    /**
+	 * Get entry index of position, compacting holes before it if need be.
+	 *
+	 * @param position
+	 *
+	 * @return entry index, or -1 if position is out of range.
+	 */
+    protected int entryAt (int position)
+    {
+        if (position < 0 || position >= Count)
+            return -1;
+        if (position >= DirtyFrom)
+            compact ();
+        return position;
+    }
+
+    /**
+	 * Get position of the entry linked at table slot, compacting holes
+	 * before it if need be.
+	 *
+	 * @param slot
+	 *
+	 * @return position of the entry.
+	 */
+    protected int positionAt (int slot)
+    {
+        int e = Table[slot] - 1;
+        if (e > DirtyFrom)
+        {
+            compact ();
+            e = Table[slot] - 1;
+        }
+        return e;
+    }
+
+    /**
+	 * Reserve the next entry index. The caller fills in the entry and then
+	 * links it with linkEntry.
+	 *
+	 * @return the new entry index.
+	 */
+    protected int newEntry ()
+    {
+        //Reclaim holes rather than grow while at least half are holes.
+        //Compaction only renumbers linked slots, so the caller's probed
+        //empty slot stays valid.
+        if (Used == entryCapacity () && DirtyFrom != CLEAN && Used >= 2 * Count)
+            compact ();
+        if (Used == entryCapacity ())
+            growEntries (Math.max (8, Used + (Used >> 1)));
+        return Used++;
+    }
+
+    /**
+	 * Link a filled in entry into the table at the empty slot found by the
+	 * caller's probe.
+	 *
+	 * @param slot
+	 * @param e
+	 */
+    protected void linkEntry (int slot, int e)
+    {
+        Table[slot] = e + 1;
+        Count++;
+        if (Count > (Table.length >> 2) * 3)
+            rehash (Table.length << 1);
+    }
+
+    /**
+	 * Unlink and remove the entry linked at table slot.
+	 *
+	 * @param slot
+	 */
+    protected void removeSlot (int slot)
+    {
+        int e = Table[slot] - 1;
+        unlinkSlot (slot);
+        clearEntry (e);
+        Count--;
+
+        if (e < DirtyFrom)
+            DirtyFrom = e;
+        //Trailing holes need no compaction
+        while (Used > 0 && isHole (Used - 1))
+            Used--;
+        if (DirtyFrom >= Used)
+            DirtyFrom = CLEAN;
+    }
+
+    /**
+	 * Presize table and entry arrays for sz entries.
+	 *
+	 * @param sz
+	 */
+    public void ensureCapacity (int sz)
+    {
+        if (sz > entryCapacity ())
+            growEntries (sz);
+        int tsz = tableSizeFor (sz);
+        if (tsz > Table.length)
+            rehash (tsz);
+    }
+
+    /**
+	 * Empty the table slot, shifting back later entries of the same probe
+	 * run so that no tombstone is needed.
+	 *
+	 * @param slot
+	 */
+    private void unlinkSlot (int slot)
+    {
+        int i = slot;
+        int j = slot;
+        while (true)
+        {
+            j = (j + 1) & Mask;
+            int e = Table[j];
+            if (e == 0)
+                break;
+            int k = mix (hashOfEntry (e - 1)) & Mask;
+            //Leave entry at j if its home slot k lies cyclically in (i, j]
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j))
+                continue;
+            Table[i] = e;
+            i = j;
+        }
+        Table[i] = 0;
+    }
+
+    /**
+	 * Close up the holes left by removals, relinking the entries that move.
+	 */
+    private void compact ()
+    {
+        int j = DirtyFrom;
+        for (int i = DirtyFrom; i < Used; i++)
+        {
+            if (isHole (i))
+                continue;
+            if (i != j)
+            {
+                int s = mix (hashOfEntry (i)) & Mask;
+                while (Table[s] != i + 1)
+                    s = (s + 1) & Mask;
+                Table[s] = j + 1;
+                moveEntry (i, j);
+            }
+            j++;
+        }
+        Used = j;
+        DirtyFrom = CLEAN;
+    }
+
+    private void rehash (int tsz)
+    {
+        Table = new int[tsz];
+        Mask = tsz - 1;
+        for (int e = 0; e < Used; e++)
+        {
+            if (isHole (e))
+                continue;
+            int s = mix (hashOfEntry (e)) & Mask;
+            while (Table[s] != 0)
+                s = (s + 1) & Mask;
+            Table[s] = e + 1;
+        }
+    }
+
+    /**
+	 * @param sz
+	 *
+	 * @return power of two table size holding sz entries at most three
+	 *         quarters full.
+	 */
+    static protected int tableSizeFor (int sz)
+    {
+        return Integer.highestOneBit (Math.max (sz + sz / 3, 4) - 1) << 1;
+    }
+
+    /**
+	 * Spread the bits of a hash so that sequential keys do not cluster.
+	 *
+	 * @param h
+	 *
+	 * @return mixed hash
+	 */
+    static protected int mix (int h)
+    {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Variable Table. Entry index plus one, or 0 for an empty slot. */
+    protected int[] Table;
+
+    /** Variable Mask. Table length less one. */
+    protected int Mask;
+
+    /** Variable Used. Number of entries in use, including holes. */
+    protected int Used = 0;
+
+    /** Variable Count. Number of live entries. */
+    protected int Count = 0;
+
+    /** Variable DirtyFrom. Index of the first hole, or CLEAN. */
+    protected int DirtyFrom = CLEAN;
+
+    final static protected int CLEAN = Integer.MAX_VALUE;
+}
@@ -0,0 +1,309 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+/**
+ * SparseCube Class. Sparse N dimensional array, such as a report cube, of
+ * cells addressed by int[] keys, one coordinate per dimension, as the nested
+ * VectorNodes of VectorNode.add (int, int[], Object) are, but without a
+ * vector per row.
+ * <BR>
+ * Each dimension has a fixed extent, and a key is packed row major into a
+ * single long cell number, which is the key of a LongObjHashVector. Lookup
+ * is therefore one probe whatever the number of dimensions, and neither keys
+ * nor coordinates are boxed. Cells keep the order they were put in, and null
+ * values are not stored.
+ * <BR>
+ * A cube is sliced along one dimension either by slice, which scans the
+ * stored cells once, or by line, which steps along the dimension with the
+ * other coordinates fixed. Not synchronized.
+ */
+public class SparseCube<V>
+extends LongObjHashVector<V>
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new SparseCube.
+	 *
+	 * @param extents
+	 *            number of coordinates of each dimension.
+	 */
+    public SparseCube (int[] extents)
+    {
+        this (extents, 16);
+    }
+
+    /**
+	 * Instantiates a new SparseCube.
+	 *
+	 * @param extents
+	 *            number of coordinates of each dimension.
+	 * @param initSz
+	 *            expected number of cells.
+	 */
+    public SparseCube (int[] extents, int initSz)
+    {
+        super (initSz);
+        if (extents.length == 0)
+            throw new IllegalArgumentException ("no dimensions");
+
+        this.Extents = extents.clone ();
+        this.Strides = new long[extents.length];
+        long stride = 1;
+        for (int d = extents.length - 1; d >= 0; d--)
+        {
+            if (extents[d] <= 0)
+                throw new IllegalArgumentException ("extent " + extents[d] + " of dimension " + d);
+            this.Strides[d] = stride;
+            if (Long.MAX_VALUE / extents[d] < stride)
+                throw new IllegalArgumentException ("cube too large to pack into a long");
+            stride *= extents[d];
+        }
+    }
+
+    /**
+	 * @return number of dimensions.
+	 */
+    public int getDimensions ()
+    {
+        return Extents.length;
+    }
+
+    /**
+	 * @param dim
+	 *
+	 * @return number of coordinates of dimension dim.
+	 */
+    public int getExtent (int dim)
+    {
+        return Extents[dim];
+    }
+
+    /**
+	 * Pack key into its cell number.
+	 *
+	 * @param key
+	 *            one coordinate per dimension.
+	 *
+	 * @return cell number of key
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if a coordinate is outside the extent of its dimension.
+	 */
+    public long cellOf (int[] key)
+    {
+        if (key.length != Extents.length)
+            throw new IllegalArgumentException (
+                key.length + " coordinates for " + Extents.length + " dimensions");
+        long cell = 0;
+        for (int d = 0; d < key.length; d++)
+        {
+            int k = key[d];
+            if (k < 0 || k >= Extents[d])
+                throw new ArrayIndexOutOfBoundsException (k);
+            cell += k * Strides[d];
+        }
+        return cell;
+    }
+
+    /**
+	 * @param cell
+	 * @param dim
+	 *
+	 * @return coordinate of cell on dimension dim.
+	 */
+    public int coordinate (long cell, int dim)
+    {
+        return (int) (cell / Strides[dim] % Extents[dim]);
+    }
+
+    /**
+	 * Unpack cell number into its key.
+	 *
+	 * @param cell
+	 * @param key
+	 *            array to unpack into, or null to allocate one.
+	 *
+	 * @return key
+	 */
+    public int[] keyOf (long cell, int[] key)
+    {
+        if (key == null)
+            key = new int[Extents.length];
+        for (int d = 0; d < Extents.length; d++)
+        {
+            key[d] = (int) (cell / Strides[d]);
+            cell -= key[d] * Strides[d];
+        }
+        return key;
+    }
+
+    /**
+	 * get stored object by key.
+	 *
+	 * @param key
+	 *            one coordinate per dimension.
+	 *
+	 * @return Object stored in the cell of key, or null.
+	 */
+    public V get (int[] key)
+    {
+        return get (cellOf (key));
+    }
+
+    /**
+	 * @param key
+	 *
+	 * @return true if an object is stored in the cell of key.
+	 */
+    public boolean containsKey (int[] key)
+    {
+        return containsKey (cellOf (key));
+    }
+
+    /**
+	 * Put value in the cell of key.
+	 *
+	 * @param key
+	 *            one coordinate per dimension.
+	 * @param value
+	 *
+	 * @return the value put
+	 */
+    public V put (int[] key, V value)
+    {
+        return put (cellOf (key), value);
+    }
+
+    /**
+	 * Remove the cell of key.
+	 *
+	 * @param key
+	 *
+	 * @return the object that was stored in the cell, or null.
+	 */
+    public V remove (int[] key)
+    {
+        return remove (cellOf (key));
+    }
+
+    /**
+	 * Visit, in the order they were put, every stored cell whose coordinate
+	 * on dimension dim is in [from, to). Scans the stored cells once.
+	 *
+	 * @param dim
+	 * @param from
+	 *            first coordinate, inclusive.
+	 * @param to
+	 *            last coordinate, exclusive.
+	 * @param visitor
+	 *
+	 * @return number of cells visited
+	 */
+    @SuppressWarnings("unchecked")
+    public int slice (int dim, int from, int to, CellVisitor<? super V> visitor)
+    {
+        long stride = Strides[dim];
+        int extent = Extents[dim];
+        int[] key = new int[Extents.length];
+        int n = 0;
+
+        //Holes left by removals are skipped rather than compacted
+        for (int e = 0; e < Used; e++)
+        {
+            Object val = Values[e];
+            if (val == null)
+                continue;
+            int k = (int) (Keys[e] / stride % extent);
+            if (k < from || k >= to)
+                continue;
+            visitor.visit (keyOf (Keys[e], key), (V) val);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+	 * Visit, in coordinate order, the stored cells along dimension dim from
+	 * coordinate from to coordinate to, exclusive, with the other coordinates
+	 * as in key. Probes once per coordinate, so suits short lines through a
+	 * large cube.
+	 *
+	 * @param key
+	 *            coordinates of the other dimensions; key[dim] is ignored.
+	 * @param dim
+	 * @param from
+	 *            first coordinate, inclusive.
+	 * @param to
+	 *            last coordinate, exclusive.
+	 * @param visitor
+	 *
+	 * @return number of cells visited
+	 */
+    public int line (int[] key, int dim, int from, int to, CellVisitor<? super V> visitor)
+    {
+        from = Math.max (from, 0);
+        to = Math.min (to, Extents[dim]);
+        if (from >= to)
+            return 0;
+
+        int[] k = key.clone ();
+        k[dim] = 0;
+        long base = cellOf (k);
+        long stride = Strides[dim];
+        int n = 0;
+        for (int i = from; i < to; i++)
+        {
+            V val = get (base + i * stride);
+            if (val == null)
+                continue;
+            k[dim] = i;
+            visitor.visit (k, val);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+	 * Keys are dumped as arrays of coordinates.
+	 */
+    protected Object keyAt (int e)
+    {
+        int[] key = keyOf (Keys[e], null);
+        Object[] o = new Object[key.length];
+        for (int d = 0; d < key.length; d++)
+            o[d] = key[d];
+        return o;
+    }
+
+    /**
+	 * CellVisitor Interface. Receives the cells of a slice or line.
+	 */
+    static public interface CellVisitor<V>
+    {
+        /**
+		 * Visit a stored cell.
+		 *
+		 * @param key
+		 *            coordinates of the cell, reused from one visit to the
+		 *            next, so copy it to keep it.
+		 * @param value
+		 */
+        public void visit (int[] key, V value);
+    }
+
+    /** Variable Extents. Number of coordinates of each dimension. */
+    protected final int[] Extents;
+
+    /** Variable Strides. Cell number distance between adjacent coordinates of each dimension. */
+    protected final long[] Strides;
+}
@@ -9,13 +9,24 @@
 
 package org.synthful.util;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.synthful.lang.Empty.EmptyFactory;
 
 /**
  * 
+ * Dumps ToStringBufferable trees into a StringBuffer, or streams them to any
+ * Appendable, such as a Writer, through a small StringBuffer that is flushed
+ * whenever it grows past FlushThreshold, so that the dump never has to be
+ * held in memory whole.
+ * <BR>
+ * Format JSONDump is written by TreeJsonWriter rather than by the fillers,
+ * so that strings are escaped and numbers, booleans and nulls keep their type.
+ * The binary form of TreeBinaryWriter is not a format here, being bytes
+ * rather than chars; nodes write it themselves through writeBinary.
  * 
  * @author Blessed Geek
  */
@@ -42,6 +53,18 @@ implements EmptyFactory
         switchFormat (format);
     }
     
+    /**
+	 * Instantiates a new toStringBuffer streaming to out.
+	 * 
+	 * @param format
+	 * @param out
+	 */
+    public ToStringBuffer (Format format, Appendable out)
+    {
+        this (format);
+        this.Out = out;
+    }
+    
     /**
 	 * Set print attributes depending on format.
 	 * @param format
@@ -76,6 +99,17 @@ implements EmptyFactory
     			this.NodeTerminatorRight = "";
 	            return;
         
+    		case JSONDump:
+    			this.Indentation = "";
+    			this.PairSeparator = ":";
+    			this.ItemDelimiter = ",";
+    			this.NodeDelimiter = ",";
+    			this.NodeTerminatorLeft = "{";
+    			this.NodeTerminatorRight = "}";
+    			this.ItemTerminatorLeft = "[";
+    			this.ItemTerminatorRight = "]";
+	            return;
+        
     	}
     }
     
@@ -83,9 +117,122 @@ implements EmptyFactory
     public StringBuffer toStringBuffer (ToStringBufferable o, Format format)
     {
     	this.switchFormat(format);
+    	if (format == Format.JSONDump)
+    	{
+    		// JSON needs escaping and typed values the fillers cannot give
+    		try
+    		{
+    			new TreeJsonWriter(this.StrBuf).write(o).flush();
+    		}
+    		catch (IOException ex)
+    		{
+    			// StringBuffer does not throw
+    		}
+    		return this.StrBuf;
+    	}
     	o.toStringBuffer (this, 0, 0);
     	return this.StrBuf;
     }
+    
+    /**
+	 * Stream the dump of o to out, holding no more than about
+	 * FlushThreshold chars of it in memory at any time.
+	 * 
+	 * @param o
+	 * @param format
+	 * @param out
+	 * 
+	 * @throws IOException
+	 *             the first exception thrown by out, after which the rest of
+	 *             the dump is discarded.
+	 */
+    public void write (ToStringBufferable o, Format format, Appendable out)
+    throws IOException
+    {
+    	this.switchFormat(format);
+    	this.setOutput(out);
+    	if (format == Format.JSONDump)
+    	{
+    		this.flush();
+    		new TreeJsonWriter(out).write(o).flush();
+    		return;
+    	}
+    	o.toStringBuffer (this, 0, 0);
+    	this.flush();
+    }
+    
+    /**
+	 * Set the Appendable the buffer is flushed to. Null to go back to
+	 * accumulating the whole dump in the buffer.
+	 * 
+	 * @param out
+	 * 
+	 * @return this
+	 */
+    public ToStringBuffer setOutput (Appendable out)
+    {
+        this.Out = out;
+        this.StreamError = null;
+        return this;
+    }
+    
+    /**
+	 * Write out whatever is in the buffer and empty it. Does nothing if
+	 * there is no output set.
+	 * 
+	 * @throws IOException
+	 *             the first exception thrown by the output.
+	 */
+    public void flush ()
+    throws IOException
+    {
+        this.drain();
+        if (this.StreamError != null)
+            throw this.StreamError;
+        if (this.Out instanceof Writer)
+            ((Writer) this.Out).flush();
+    }
+    
+    /**
+	 * Drain the buffer to the output once it is past FlushThreshold.
+	 * The buffer object is kept, since ToStringBufferables hold on to it.
+	 */
+    protected void flushIfFull ()
+    {
+        if (this.Out != null && this.StrBuf.length() >= this.FlushThreshold)
+            this.drain();
+    }
+    
+    private void drain ()
+    {
+        if (this.Out == null)
+            return;
+        
+        int len = this.StrBuf.length();
+        if (len == 0)
+            return;
+        
+        if (this.StreamError == null)
+        {
+            try
+            {
+                if (this.Out instanceof Writer)
+                {
+                    if (this.CharBuf == null || this.CharBuf.length < len)
+                        this.CharBuf = new char[Math.max(len, this.FlushThreshold)];
+                    this.StrBuf.getChars(0, len, this.CharBuf, 0);
+                    ((Writer) this.Out).write(this.CharBuf, 0, len);
+                }
+                else
+                    this.Out.append(this.StrBuf, 0, len);
+            }
+            catch (IOException ex)
+            {
+                this.StreamError = ex;
+            }
+        }
+        this.StrBuf.setLength(0);
+    }
 
     /**
 	 * Converts to StringBuffer.
@@ -104,6 +251,7 @@ implements EmptyFactory
         else
             appendValues(o, depth);
 
+        flushIfFull();
         return StrBuf;
     }
 
@@ -153,8 +301,7 @@ implements EmptyFactory
                 StrBuf.append (ItemDelimiter);
         }
         
-        StringBuffer indent = mkIndentation(depth);
-        this.appendNotNull(indent);
+        StrBuf.append(indentation(depth));
     }
     
     public void appendFillers(Fillers filler, int indentDepth)
@@ -191,39 +338,30 @@ implements EmptyFactory
 				fillerStr = null;
 		}
     	
-    	Matcher m = indentMatcher.matcher(fillerStr);
-    	this.StrBuf.ensureCapacity(this.StrBuf.length() + fillerStr.length());
-    	int c0 = 0;
+    	if (fillerStr == null)
+    		return;
+    	
+    	FillerTemplate template = FillerTemplate.get(fillerStr);
+    	String[] literals = template.Literals;
     	
-    	while(m.find())
+    	this.StrBuf.append(literals[0]);
+    	for (int i = 0; i < template.Kinds.length; i++)
     	{
-    		String g6 = m.group(6);
-    		String g5 = m.group(5);
-    		String g3 = m.group(3);
-    		
-    		//Regex string is structured so thata all matches also matches g1
-    		//Use g0 start/end for substitution.
-    		if (m.start()>0)
-    			this.StrBuf.append(fillerStr.subSequence(c0, m.start()));
-    		c0 = m.end();
-    		
-    		//g6 match = @i requires no change in indentDepth
-    		
-    		//g5:n match = g4:(n) = g0:@i(n)
-    		if (g5!=null)
-    		{
-    			indentDepth = Integer.parseInt(g5);
-    		}
-    		//g3:+/-n match = g2:(+/-n) = g0:@(i+/-n)
-    		else if (g3!=null)
+    		switch (template.Kinds[i])
     		{
-    			indentDepth += Integer.parseInt(g3);
+    		    case FillerTemplate.ABSOLUTE:
+    		    	indentDepth = template.Amounts[i];
+    		    	break;
+    		    case FillerTemplate.RELATIVE:
+    		    	indentDepth += template.Amounts[i];
+    		    	break;
     		}
     		
-    		this.StrBuf.append(this.mkIndentation(indentDepth));
+    		this.StrBuf.append(this.indentation(indentDepth));
+    		this.StrBuf.append(literals[i+1]);
     	}
     	
-    	this.StrBuf.append(fillerStr.substring(c0));
+    	flushIfFull();
     }
     
     /**
@@ -240,14 +378,41 @@ implements EmptyFactory
     public StringBuffer mkIndentation(int depth)
     {
         if (Indentation!=null&&Indentation.length()>0)
+            return new StringBuffer(indentation(depth));
+        return null;
+    }
+    
+    /**
+	 * Gets the indentation for depth, built once per depth and cached for as
+	 * long as Indentation is not changed.
+	 * 
+	 * @param depth
+	 * 
+	 * @return Indentation repeated depth times
+	 */
+    public String indentation(int depth)
+    {
+        if (Indentation==null || Indentation.length()==0 || depth<=0)
+            return "";
+        
+        if (IndentCacheFor != Indentation)
         {
-            StringBuffer indent = new StringBuffer(depth*Indentation.length());
-            //indent.append('\n');
+            IndentCache = new String[8];
+            IndentCacheFor = Indentation;
+        }
+        if (depth >= IndentCache.length)
+            IndentCache = Arrays.copyOf(IndentCache, Math.max(depth+1, IndentCache.length*2));
+        
+        String indent = IndentCache[depth];
+        if (indent == null)
+        {
+            StringBuilder sb = new StringBuilder(depth*Indentation.length());
             for (int i=0;i<depth;i++)
-                indent.append(Indentation);
-            return indent;
+                sb.append(Indentation);
+            indent = sb.toString();
+            IndentCache[depth] = indent;
         }
-        return null;
+        return indent;
     }
     
     public StringBuffer getStringBuffer()
@@ -263,6 +428,21 @@ implements EmptyFactory
     /** Variable StrBuf. */
     StringBuffer StrBuf;
     
+    /** Variable Out. Where StrBuf is flushed to when streaming, or null. */
+    protected Appendable Out;
+    
+    /** Variable FlushThreshold. Buffered chars past which StrBuf is flushed. */
+    public int FlushThreshold = 8192;
+    
+    /** Variable StreamError. First exception thrown by Out. */
+    protected IOException StreamError;
+    
+    private char[] CharBuf;
+    
+    private String[] IndentCache;
+    
+    private String IndentCacheFor;
+    
     /** Variable Indentation. */
     public String Indentation = " ";
     
@@ -288,11 +468,93 @@ implements EmptyFactory
     
     public char StringQuote = '"';
     
-    final static private String indentMatchStr =
-    	"@i((\\([+-]([0-9]+)\\))|(\\(([0-9]+)\\))|())";
-    
-	final static private Pattern indentMatcher =
-		Pattern.compile(ToStringBuffer.indentMatchStr);
+    /**
+     * FillerTemplate Class. A filler string parsed once into literal chunks
+     * separated by indentation directives:<BR>
+     * &#64;i indents at the current depth,<BR>
+     * &#64;i(n) indents at depth n,<BR>
+     * &#64;i(+n) or &#64;i(-n) indents at the current depth plus or minus n.
+     */
+    static final class FillerTemplate
+    {
+        private FillerTemplate (String filler)
+        {
+            String[] literals = new String[4];
+            byte[] kinds = new byte[3];
+            int[] amounts = new int[3];
+            int n = 0;
+            int c0 = 0;
+            
+            for (int i = filler.indexOf("@i"); i >= 0; i = filler.indexOf("@i", c0))
+            {
+                if (n == kinds.length)
+                {
+                    literals = Arrays.copyOf(literals, n*2+1);
+                    kinds = Arrays.copyOf(kinds, n*2);
+                    amounts = Arrays.copyOf(amounts, n*2);
+                }
+                literals[n] = filler.substring(c0, i);
+                c0 = i + 2;
+                kinds[n] = SAME;
+                
+                //Parse (n), (+n) or (-n); otherwise plain @i
+                int close = filler.indexOf(')', c0);
+                if (c0 < filler.length() && filler.charAt(c0) == '(' && close > c0+1)
+                {
+                    String arg = filler.substring(c0+1, close);
+                    boolean signed = arg.charAt(0) == '+' || arg.charAt(0) == '-';
+                    String digits = signed ? arg.substring(1) : arg;
+                    if (digits.length() > 0 && isDigits(digits))
+                    {
+                        int amount = Integer.parseInt(digits);
+                        kinds[n] = signed ? RELATIVE : ABSOLUTE;
+                        amounts[n] = arg.charAt(0) == '-' ? -amount : amount;
+                        c0 = close + 1;
+                    }
+                }
+                n++;
+            }
+            literals[n] = filler.substring(c0);
+            
+            this.Literals = Arrays.copyOf(literals, n+1);
+            this.Kinds = Arrays.copyOf(kinds, n);
+            this.Amounts = Arrays.copyOf(amounts, n);
+        }
+        
+        static private boolean isDigits (String s)
+        {
+            for (int i = 0; i < s.length(); i++)
+                if (s.charAt(i) < '0' || s.charAt(i) > '9')
+                    return false;
+            return true;
+        }
+        
+        static FillerTemplate get (String filler)
+        {
+            FillerTemplate template = Cache.get(filler);
+            if (template == null)
+            {
+                template = new FillerTemplate(filler);
+                if (Cache.size() < 256)
+                    Cache.put(filler, template);
+            }
+            return template;
+        }
+        
+        /** Variable Literals. One more than there are directives. */
+        final String[] Literals;
+        
+        final byte[] Kinds;
+        
+        final int[] Amounts;
+        
+        static final byte SAME = 0;
+        static final byte ABSOLUTE = 1;
+        static final byte RELATIVE = 2;
+        
+        final static private ConcurrentHashMap<String, FillerTemplate> Cache =
+            new ConcurrentHashMap<String, FillerTemplate>();
+    }
 	
     static public enum Fillers
     {
@@ -310,6 +572,7 @@ implements EmptyFactory
     {
     	PLAINDump,
     	PRETTYDump,
-    	CSVDump
+    	CSVDump,
+    	JSONDump
     }
 }
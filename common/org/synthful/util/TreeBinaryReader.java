@@ -0,0 +1,367 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * TreeBinaryReader Class. Reads the binary form written by TreeBinaryWriter
+ * back into ordered trees, streaming from an InputStream through a small
+ * buffer.
+ * <BR>
+ * Nodes are rebuilt as nodes of the kind of the root read into,
+ * HashVectorTreeNodes by default, presized to their member count. Arrays
+ * become VectorNodes, and null the Empty of the node. Member keys come from
+ * the string table, so repeated keys are shared.
+ * <BR>
+ * The stream is read ahead through the buffer. If it supports mark, as a
+ * BufferedInputStream does, the bytes read ahead are given back after each
+ * value, so that the stream is left just past the value read. Otherwise
+ * the reader consumes the stream beyond the value, and the same reader has
+ * to be used to read whatever follows.
+ */
+public class TreeBinaryReader
+{
+
+    /**
+	 * Instantiates a new TreeBinaryReader.
+	 *
+	 * @param in
+	 */
+    public TreeBinaryReader (InputStream in)
+    {
+        this.In = in;
+    }
+
+    /**
+	 * Read the next value, with nodes rebuilt as HashVectorTreeNodes.
+	 *
+	 * @return the value read
+	 *
+	 * @throws IOException
+	 * @throws EOFException
+	 *             if there are no more values.
+	 */
+    public Object read ()
+    throws IOException
+    {
+        Proto = null;
+        readHeader ();
+        Object value = readValue (readByte (), 0);
+        unread ();
+        return value;
+    }
+
+    /**
+	 * Read the next node into root, with the nodes nested in it rebuilt as
+	 * nodes of the same kind as root.
+	 *
+	 * @param root
+	 *
+	 * @return root
+	 *
+	 * @throws IOException
+	 * @throws EOFException
+	 *             if there are no more values.
+	 */
+    public <T extends Map<?, ?>> T readInto (T root)
+    throws IOException
+    {
+        Proto = root;
+        readHeader ();
+        if (readByte () != TreeBinaryWriter.NODE)
+            throw new StreamCorruptedException ("node expected");
+        readMembers (root, 0);
+        unread ();
+        return root;
+    }
+
+    /**
+	 * @return true if there is another value to read.
+	 *
+	 * @throws IOException
+	 */
+    public boolean hasNext ()
+    throws IOException
+    {
+        return Pos < Limit || fill ();
+    }
+
+    protected Object readValue (int tag, int depth)
+    throws IOException
+    {
+        switch (tag)
+        {
+            case TreeBinaryWriter.NULL:
+                return null;
+            case TreeBinaryWriter.FALSE:
+                return Boolean.FALSE;
+            case TreeBinaryWriter.TRUE:
+                return Boolean.TRUE;
+            case TreeBinaryWriter.INT:
+                return Integer.valueOf ((int) unzigzag (readVarLong ()));
+            case TreeBinaryWriter.LONG:
+                return Long.valueOf (unzigzag (readVarLong ()));
+            case TreeBinaryWriter.DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < 8; i++)
+                    bits = (bits << 8) | readByte ();
+                return Double.valueOf (Double.longBitsToDouble (bits));
+            case TreeBinaryWriter.FLOAT:
+                int fbits = 0;
+                for (int i = 0; i < 4; i++)
+                    fbits = (fbits << 8) | readByte ();
+                return Float.valueOf (Float.intBitsToFloat (fbits));
+            case TreeBinaryWriter.SHORT:
+                return Short.valueOf ((short) unzigzag (readVarLong ()));
+            case TreeBinaryWriter.BYTE:
+                return Byte.valueOf ((byte) readByte ());
+            case TreeBinaryWriter.CHAR:
+                return Character.valueOf ((char) readVarLong ());
+            case TreeBinaryWriter.BIG_INTEGER:
+                return new BigInteger (readBytes ());
+            case TreeBinaryWriter.BIG_DECIMAL:
+                int scale = (int) unzigzag (readVarLong ());
+                return new BigDecimal (new BigInteger (readBytes ()), scale);
+            case TreeBinaryWriter.DATE:
+                return new Date (unzigzag (readVarLong ()));
+            case TreeBinaryWriter.STRING:
+                return readString ();
+            case TreeBinaryWriter.NODE:
+                if (depth >= MaxDepth)
+                    throw new StreamCorruptedException ("nested too deep");
+                return readMembers (null, depth + 1);
+            case TreeBinaryWriter.ARRAY:
+                if (depth >= MaxDepth)
+                    throw new StreamCorruptedException ("nested too deep");
+                int n = readCount ();
+                VectorNode<Object> items = new VectorNode<Object> (Math.max (Math.min (n, 1024), 1));
+                for (int i = 0; i < n; i++)
+                    items.add (readValue (readByte (), depth + 1));
+                return items;
+            default:
+                throw new StreamCorruptedException ("bad tag " + tag);
+        }
+    }
+
+    /**
+	 * Read the members of a node, after its tag.
+	 *
+	 * @param node
+	 *            node to read into, or null to create one presized to the
+	 *            member count.
+	 * @param depth
+	 *
+	 * @return the node read
+	 */
+    protected Map<?, ?> readMembers (Map<?, ?> node, int depth)
+    throws IOException
+    {
+        int n = readCount ();
+        if (node == null)
+            node = TreeCodec.newNode (Proto, Math.min (n, 1 << 16));
+
+        //Grow as members arrive rather than trust the count for allocation
+        Object[][] pairs = new Object[Math.min (n, 1024)][];
+        for (int i = 0; i < n; i++)
+        {
+            if (i == pairs.length)
+                pairs = Arrays.copyOf (pairs, Math.min (n, i << 1));
+            String key = readKey ();
+            pairs[i] = new Object[] {key, readValue (readByte (), depth)};
+        }
+        TreeCodec.fill (node, pairs, n);
+        return node;
+    }
+
+    protected String readKey ()
+    throws IOException
+    {
+        int id = readCount ();
+        if (id > 0)
+        {
+            if (id > KeysUsed)
+                throw new StreamCorruptedException ("bad key reference " + id);
+            return Keys[id - 1];
+        }
+
+        String key = readString ();
+        if (KeysUsed < TreeBinaryWriter.MAX_KEYS)
+        {
+            if (KeysUsed == Keys.length)
+                Keys = Arrays.copyOf (Keys, KeysUsed << 1);
+            Keys[KeysUsed++] = key;
+        }
+        return key;
+    }
+
+    protected String readString ()
+    throws IOException
+    {
+        int len = readCount ();
+        if (len > MaxStringBytes)
+            throw new StreamCorruptedException ("string too long " + len);
+        if (len <= Limit - Pos)
+        {
+            String s = new String (Buf, Pos, len, StandardCharsets.UTF_8);
+            Pos += len;
+            return s;
+        }
+
+        //Grow as bytes arrive rather than trust the length for allocation
+        int got = Limit - Pos;
+        byte[] b = new byte[Math.min (len, Math.max (got, 1) << 4)];
+        System.arraycopy (Buf, Pos, b, 0, got);
+        Pos = Limit;
+        while (got < len)
+        {
+            if (got == b.length)
+                b = Arrays.copyOf (b, (int) Math.min (len, (long) got << 1));
+            int n = In.read (b, got, b.length - got);
+            if (n < 0)
+                throw new EOFException ();
+            got += n;
+        }
+        return new String (b, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes ()
+    throws IOException
+    {
+        int n = readCount ();
+        if (n == 0 || n > MaxStringBytes)
+            throw new StreamCorruptedException ("bad number length " + n);
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++)
+            b[i] = (byte) readByte ();
+        return b;
+    }
+
+    private int readCount ()
+    throws IOException
+    {
+        long v = readVarLong ();
+        if (v < 0 || v > Integer.MAX_VALUE)
+            throw new StreamCorruptedException ("bad count " + v);
+        return (int) v;
+    }
+
+    private long readVarLong ()
+    throws IOException
+    {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = readByte ();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new StreamCorruptedException ("bad varint");
+    }
+
+    private void readHeader ()
+    throws IOException
+    {
+        if (HeaderRead)
+            return;
+        if (readByte () != 'S' || readByte () != 'T')
+            throw new StreamCorruptedException ("not a tree stream");
+        int version = readByte ();
+        if (version < 1 || version > TreeBinaryWriter.VERSION)
+            throw new StreamCorruptedException ("unsupported version " + version);
+        HeaderRead = true;
+    }
+
+    private int readByte ()
+    throws IOException
+    {
+        if (Pos == Limit && ! fill ())
+            throw new EOFException ();
+        return Buf[Pos++] & 0xFF;
+    }
+
+    private boolean fill ()
+    throws IOException
+    {
+        Pos = 0;
+        Limit = 0;
+        if (In.markSupported ())
+            In.mark (Buf.length);
+        int n;
+        do
+            n = In.read (Buf, 0, Buf.length);
+        while (n == 0);
+        if (n < 0)
+            return false;
+        Limit = n;
+        return true;
+    }
+
+    /**
+	 * Give back to the stream the bytes read ahead past the current value,
+	 * if the stream supports mark.
+	 *
+	 * @throws IOException
+	 */
+    private void unread ()
+    throws IOException
+    {
+        if (Pos == Limit || ! In.markSupported ())
+            return;
+
+        In.reset ();
+        long skip = Pos;
+        while (skip > 0)
+        {
+            long n = In.skip (skip);
+            if (n <= 0)
+            {
+                if (In.read () < 0)
+                    throw new EOFException ();
+                n = 1;
+            }
+            skip -= n;
+        }
+        Pos = 0;
+        Limit = 0;
+    }
+
+    static private long unzigzag (long v)
+    {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Variable MaxDepth. Bound on nesting of nodes and arrays. */
+    public int MaxDepth = 512;
+
+    /** Variable MaxStringBytes. Bound on the encoded length of a string or big number. */
+    public int MaxStringBytes = 1 << 24;
+
+    /** Variable In. */
+    protected InputStream In;
+
+    /** Variable Proto. Root read into, whose kind nested nodes take. */
+    protected Map<?, ?> Proto;
+
+    private final byte[] Buf = new byte[8192];
+    private int Pos = 0;
+    private int Limit = 0;
+    private boolean HeaderRead = false;
+
+    private String[] Keys = new String[64];
+    private int KeysUsed = 0;
+}
@@ -0,0 +1,302 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * TreeBinaryWriter Class. Writes trees of HashTreeNode, HashVectorTreeNode
+ * and the other ordered maps of this package in a compact binary form, read
+ * back by TreeBinaryReader.
+ * <BR>
+ * The stream starts with the bytes 'S' 'T' and the format VERSION. Each value
+ * is then a tag byte followed by its data. Counts, lengths and integers are
+ * variable length, integers zigzag encoded so that small negative numbers
+ * stay short, and strings are UTF-8 prefixed with their byte length. Nodes
+ * are their member count followed by their key and value pairs, arrays their
+ * item count followed by their items.
+ * <BR>
+ * Boolean, Byte, Short, Integer, Long, Float, Double, Character, BigInteger,
+ * BigDecimal, java.util.Date and String values are read back as values of
+ * the same class. Any other value, including subclasses of Date such as
+ * java.sql.Timestamp, is written as its toString and read back as a String.
+ * <BR>
+ * Member keys go through a string table: a key is written out in full the
+ * first time, as 0 followed by the string, and thereafter as its index in the
+ * table plus one. The table is shared by all the values written to the
+ * stream, and holds at most MAX_KEYS keys.
+ */
+public class TreeBinaryWriter
+{
+
+    /**
+	 * Instantiates a new TreeBinaryWriter.
+	 *
+	 * @param out
+	 */
+    public TreeBinaryWriter (OutputStream out)
+    {
+        this.Out = out;
+    }
+
+    /**
+	 * Write o in binary form and flush.
+	 *
+	 * @param o
+	 * @param out
+	 *
+	 * @throws IOException
+	 */
+    static public void write (Object o, OutputStream out)
+    throws IOException
+    {
+        TreeBinaryWriter writer = new TreeBinaryWriter (out);
+        writer.write (o);
+        writer.flush ();
+    }
+
+    /**
+	 * Write o in binary form. Several values may be written in succession.
+	 *
+	 * @param o
+	 *
+	 * @return this
+	 *
+	 * @throws IOException
+	 */
+    public TreeBinaryWriter write (Object o)
+    throws IOException
+    {
+        if (! HeaderWritten)
+        {
+            writeByte ('S');
+            writeByte ('T');
+            writeByte (VERSION);
+            HeaderWritten = true;
+        }
+        writeValue (o);
+        return this;
+    }
+
+    /**
+	 * Write out whatever is in the buffer.
+	 *
+	 * @throws IOException
+	 */
+    public void flush ()
+    throws IOException
+    {
+        drain ();
+        Out.flush ();
+    }
+
+    protected void writeValue (Object o)
+    throws IOException
+    {
+        if (TreeCodec.isNull (o))
+            writeByte (NULL);
+        else if (o instanceof String)
+        {
+            writeByte (STRING);
+            writeString ((String) o);
+        }
+        else if (o instanceof Boolean)
+            writeByte (((Boolean) o).booleanValue () ? TRUE : FALSE);
+        else if (o instanceof Integer)
+        {
+            writeByte (INT);
+            writeVarLong (zigzag (((Integer) o).intValue ()));
+        }
+        else if (o instanceof Short)
+        {
+            writeByte (SHORT);
+            writeVarLong (zigzag (((Short) o).shortValue ()));
+        }
+        else if (o instanceof Byte)
+        {
+            writeByte (BYTE);
+            writeByte (((Byte) o).byteValue ());
+        }
+        else if (o instanceof Long)
+        {
+            writeByte (LONG);
+            writeVarLong (zigzag ((Long) o));
+        }
+        else if (o instanceof Double)
+        {
+            writeByte (DOUBLE);
+            long bits = Double.doubleToLongBits (((Double) o).doubleValue ());
+            for (int i = 56; i >= 0; i -= 8)
+                writeByte ((int) (bits >>> i));
+        }
+        else if (o instanceof Float)
+        {
+            writeByte (FLOAT);
+            int bits = Float.floatToIntBits (((Float) o).floatValue ());
+            for (int i = 24; i >= 0; i -= 8)
+                writeByte (bits >>> i);
+        }
+        else if (o instanceof Character)
+        {
+            writeByte (CHAR);
+            writeVarLong (((Character) o).charValue ());
+        }
+        else if (o instanceof BigInteger)
+        {
+            writeByte (BIG_INTEGER);
+            writeBytes (((BigInteger) o).toByteArray ());
+        }
+        else if (o instanceof BigDecimal)
+        {
+            BigDecimal d = (BigDecimal) o;
+            writeByte (BIG_DECIMAL);
+            writeVarLong (zigzag (d.scale ()));
+            writeBytes (d.unscaledValue ().toByteArray ());
+        }
+        else if (o.getClass () == Date.class)
+        {
+            writeByte (DATE);
+            writeVarLong (zigzag (((Date) o).getTime ()));
+        }
+        else if (TreeCodec.isNode (o))
+        {
+            Object[][] members = TreeCodec.members (o);
+            writeByte (NODE);
+            writeVarLong (members.length);
+            for (Object[] member : members)
+            {
+                writeKey (String.valueOf (member[0]));
+                writeValue (member[1]);
+            }
+        }
+        else if (TreeCodec.isArray (o))
+        {
+            Object[] items = TreeCodec.items (o);
+            writeByte (ARRAY);
+            writeVarLong (items.length);
+            for (Object item : items)
+                writeValue (item);
+        }
+        else
+        {
+            writeByte (STRING);
+            writeString (o.toString ());
+        }
+    }
+
+    protected void writeKey (String key)
+    throws IOException
+    {
+        Integer id = KeyTable.get (key);
+        if (id != null)
+        {
+            writeVarLong (id.intValue () + 1);
+            return;
+        }
+
+        writeVarLong (0);
+        writeString (key);
+        if (KeyTable.size () < MAX_KEYS)
+            KeyTable.put (key, KeyTable.size ());
+    }
+
+    protected void writeString (String s)
+    throws IOException
+    {
+        byte[] b = s.getBytes (StandardCharsets.UTF_8);
+        writeVarLong (b.length);
+        if (b.length > Buf.length - Used)
+        {
+            drain ();
+            if (b.length > Buf.length)
+            {
+                Out.write (b);
+                return;
+            }
+        }
+        System.arraycopy (b, 0, Buf, Used, b.length);
+        Used += b.length;
+    }
+
+    protected void writeBytes (byte[] b)
+    throws IOException
+    {
+        writeVarLong (b.length);
+        for (int i = 0; i < b.length; i++)
+            writeByte (b[i]);
+    }
+
+    protected void writeVarLong (long v)
+    throws IOException
+    {
+        while ((v & ~0x7FL) != 0)
+        {
+            writeByte ((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte ((int) v);
+    }
+
+    private void writeByte (int b)
+    throws IOException
+    {
+        if (Used == Buf.length)
+            drain ();
+        Buf[Used++] = (byte) b;
+    }
+
+    private void drain ()
+    throws IOException
+    {
+        if (Used > 0)
+            Out.write (Buf, 0, Used);
+        Used = 0;
+    }
+
+    static private long zigzag (long v)
+    {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    /** Variable VERSION. 2 added the tags from FLOAT on; 1 is still read. */
+    final static public int VERSION = 2;
+
+    /** Variable MAX_KEYS. Capacity of the key string table. */
+    final static public int MAX_KEYS = 1 << 16;
+
+    final static int NULL = 0;
+    final static int FALSE = 1;
+    final static int TRUE = 2;
+    final static int INT = 3;
+    final static int LONG = 4;
+    final static int DOUBLE = 5;
+    final static int STRING = 6;
+    final static int NODE = 7;
+    final static int ARRAY = 8;
+    final static int FLOAT = 9;
+    final static int SHORT = 10;
+    final static int BYTE = 11;
+    final static int CHAR = 12;
+    final static int BIG_INTEGER = 13;
+    final static int BIG_DECIMAL = 14;
+    final static int DATE = 15;
+
+    /** Variable Out. */
+    protected OutputStream Out;
+
+    private final byte[] Buf = new byte[8192];
+    private int Used = 0;
+    private boolean HeaderWritten = false;
+
+    private final HashMap<String, Integer> KeyTable = new HashMap<String, Integer> ();
+}
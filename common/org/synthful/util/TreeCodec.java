@@ -0,0 +1,216 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.synthful.lang.Empty;
+
+/**
+ * TreeCodec Class. Helpers shared by the JSON and binary tree writers and
+ * readers, giving them ordered access to every kind of node of this package
+ * and a way to rebuild nodes of the same kind.
+ */
+final class TreeCodec
+{
+    private TreeCodec ()
+    {
+    }
+
+    /**
+	 * @param o
+	 *
+	 * @return true if o is written as a keyed node.
+	 */
+    static boolean isNode (Object o)
+    {
+        return o instanceof Map || o instanceof PrimitiveHashVector
+            || o instanceof PersistentHashTreeNode;
+    }
+
+    /**
+	 * @param o
+	 *
+	 * @return true if o is written as an array.
+	 */
+    static boolean isArray (Object o)
+    {
+        return o instanceof Collection || o instanceof Object[];
+    }
+
+    /**
+	 * Gets the members of a keyed node as {key, value} pairs in the node's
+	 * own order.
+	 *
+	 * @param node
+	 *
+	 * @return the members of node
+	 */
+    static Object[][] members (Object node)
+    {
+        if (node instanceof HashVectorTreeNode)
+            return ((HashVectorTreeNode) node).toArray ();
+        if (node instanceof HashVector)
+            return ((HashVector<?, ?>) node).toKeyValueArray ();
+        if (node instanceof FastHashVector)
+            return ((FastHashVector<?, ?>) node).toKeyValueArray ();
+        if (node instanceof PrimitiveHashVector)
+            return ((PrimitiveHashVector) node).toKeyValueArray ();
+        if (node instanceof PersistentHashTreeNode)
+            return ((PersistentHashTreeNode) node).toArray ();
+
+        if (node instanceof HashTreeNode)
+        {
+            HashTreeNode h = (HashTreeNode) node;
+            return pairs (h.size (), h.getKeysVector (), h);
+        }
+        if (node instanceof FastHashTreeNode)
+        {
+            FastHashTreeNode h = (FastHashTreeNode) node;
+            Object[][] ar = new Object[h.size ()][];
+            for (int i = 0; i < ar.length; i++)
+                ar[i] = new Object[] {h.getKey (i), h.get (i)};
+            return ar;
+        }
+        if (node instanceof ConcurrentHashTreeNode)
+        {
+            //One snapshot, so that keys and values agree
+            ConcurrentHashTreeNode.Snapshot snap = ((ConcurrentHashTreeNode) node).Members;
+            Object[][] ar = new Object[snap.Keys.length][];
+            for (int i = 0; i < ar.length; i++)
+                ar[i] = new Object[] {snap.Keys[i], snap.Values[i]};
+            return ar;
+        }
+
+        Map<?, ?> map = (Map<?, ?>) node;
+        Object[][] ar = new Object[map.size ()][];
+        int i = 0;
+        for (Entry<?, ?> entry : map.entrySet ())
+        {
+            if (i == ar.length)
+                break;
+            ar[i++] = new Object[] {entry.getKey (), entry.getValue ()};
+        }
+        return i == ar.length ? ar : java.util.Arrays.copyOf (ar, i);
+    }
+
+    static private Object[][] pairs (int sz, List<?> keys, Map<?, ?> map)
+    {
+        sz = Math.min (sz, keys.size ());
+        Object[][] ar = new Object[sz][];
+        for (int i = 0; i < sz; i++)
+        {
+            Object key = keys.get (i);
+            ar[i] = new Object[] {key, map.get (key)};
+        }
+        return ar;
+    }
+
+    /**
+	 * Gets the items of an array node.
+	 *
+	 * @param array
+	 *
+	 * @return the items of array
+	 */
+    static Object[] items (Object array)
+    {
+        if (array instanceof Object[])
+            return (Object[]) array;
+        return ((Collection<?>) array).toArray ();
+    }
+
+    /**
+	 * Create a node of the kind a reader should rebuild under proto.
+	 *
+	 * @param proto
+	 *            the root node being read into, or null for the default.
+	 * @param sz
+	 *            number of members the node will hold.
+	 *
+	 * @return the new node
+	 */
+    static Map<?, ?> newNode (Object proto, int sz)
+    {
+        int initSz = Math.max (sz * 4 / 3 + 1, 11);
+        if (proto == null || proto instanceof HashVectorTreeNode)
+            return new HashVectorTreeNode (initSz);
+        if (proto instanceof HashTreeNode)
+            return new HashTreeNode (initSz);
+        if (proto instanceof FastHashTreeNode)
+            return new FastHashTreeNode (initSz);
+        if (proto instanceof ConcurrentHashTreeNode)
+            return new ConcurrentHashTreeNode ();
+        if (proto instanceof HashVector)
+            return new HashVector<String, Object> (initSz);
+        if (proto instanceof FastHashVector)
+            return new FastHashVector<String, Object> (initSz);
+        return new LinkedHashMap<String, Object> (initSz);
+    }
+
+    /**
+	 * Put read members into a node, key by key without key progression, or
+	 * in one batch for a copy-on-write node.
+	 *
+	 * @param node
+	 * @param pairs
+	 *            {key, value} pairs in order
+	 * @param n
+	 *            number of pairs
+	 */
+    static void fill (Map<?, ?> node, Object[][] pairs, int n)
+    {
+        if (node instanceof ConcurrentHashTreeNode)
+        {
+            java.util.Vector<Object[]> v = new java.util.Vector<Object[]> (n);
+            for (int i = 0; i < n; i++)
+                v.add (pairs[i]);
+            ((ConcurrentHashTreeNode) node).putValues (v);
+            return;
+        }
+
+        for (int i = 0; i < n; i++)
+            insert (node, (String) pairs[i][0], pairs[i][1]);
+    }
+
+    /**
+	 * Put value under a single key of node, without key progression, the way
+	 * the node's own kind puts it.
+	 *
+	 * @param node
+	 * @param key
+	 * @param value
+	 */
+    @SuppressWarnings("unchecked")
+    static void insert (Map<?, ?> node, String key, Object value)
+    {
+        if (node instanceof HashVectorTreeNode)
+            ((HashVectorTreeNode) node).putValue (key, value);
+        else if (node instanceof HashTreeNode)
+            ((HashTreeNode) node).putValue (key, value);
+        else if (node instanceof FastHashTreeNode)
+            ((FastHashTreeNode) node).putValue (key, value);
+        else if (node instanceof ConcurrentHashTreeNode)
+            ((ConcurrentHashTreeNode) node).putValue (key, value);
+        else if (value != null)
+            ((Map<Object, Object>) node).put (key, value);
+    }
+
+    /**
+	 * @param o
+	 *
+	 * @return true if o stands for a null value.
+	 */
+    static boolean isNull (Object o)
+    {
+        return o == null || o instanceof Empty;
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TreeJsonReader Class. Reads JSON, such as that written by TreeJsonWriter,
+ * back into ordered trees, streaming from a Reader through a small buffer
+ * rather than reading the whole text first.
+ * <BR>
+ * Objects are rebuilt as nodes of the kind of the root read into, keeping
+ * the order of their members: HashVectorTreeNodes by default, or HashTreeNodes,
+ * FastHashTreeNodes, ConcurrentHashTreeNodes, HashVectors or FastHashVectors.
+ * Arrays become VectorNodes, integers Integers or Longs (BigIntegers if they
+ * overflow), other numbers Doubles, and null the Empty of the node.
+ * <BR>
+ * Member keys repeated across objects are shared rather than allocated again.
+ */
+public class TreeJsonReader
+{
+
+    /**
+	 * Instantiates a new TreeJsonReader.
+	 *
+	 * @param in
+	 */
+    public TreeJsonReader (Reader in)
+    {
+        this.In = in;
+    }
+
+    /**
+	 * Read the next JSON value, with objects rebuilt as HashVectorTreeNodes.
+	 * Several values may be read in succession, such as from JSON Lines.
+	 *
+	 * @return the value read
+	 *
+	 * @throws IOException
+	 * @throws EOFException
+	 *             if there are no more values.
+	 */
+    public Object read ()
+    throws IOException
+    {
+        Proto = null;
+        PairsUsed = 0;
+        return readValue (skipSpace (), 0);
+    }
+
+    /**
+	 * Read the next JSON object into root, with the objects nested in it
+	 * rebuilt as nodes of the same kind as root.
+	 *
+	 * @param root
+	 *
+	 * @return root
+	 *
+	 * @throws IOException
+	 * @throws EOFException
+	 *             if there are no more values.
+	 */
+    public <T extends Map<?, ?>> T readInto (T root)
+    throws IOException
+    {
+        Proto = root;
+        PairsUsed = 0;
+        int c = skipSpace ();
+        if (c != '{')
+            throw syntaxError ("object expected");
+        readMembers (root, 0);
+        return root;
+    }
+
+    /**
+	 * @return true if there is another value to read.
+	 *
+	 * @throws IOException
+	 */
+    public boolean hasNext ()
+    throws IOException
+    {
+        return peekSpace () >= 0;
+    }
+
+    protected Object readValue (int c, int depth)
+    throws IOException
+    {
+        switch (c)
+        {
+            case '{':
+                if (depth >= MaxDepth)
+                    throw syntaxError ("nested too deep");
+                return readMembers (null, depth + 1);
+            case '[':
+                if (depth >= MaxDepth)
+                    throw syntaxError ("nested too deep");
+                return readItems (depth + 1);
+            case '"':
+                return readString ();
+            case 't':
+                expectWord ("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expectWord ("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expectWord ("ull");
+                return null;
+            case -1:
+                throw new EOFException ();
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return readNumber (c);
+                throw syntaxError ("unexpected '" + (char) c + "'");
+        }
+    }
+
+    /**
+	 * Read the members of an object, after its opening brace.
+	 *
+	 * @param node
+	 *            node to read into, or null to create one once the number of
+	 *            members is known.
+	 * @param depth
+	 *
+	 * @return the node read
+	 */
+    protected Map<?, ?> readMembers (Map<?, ?> node, int depth)
+    throws IOException
+    {
+        int base = PairsUsed;
+        int c = skipSpace ();
+        if (c != '}')
+        {
+            while (true)
+            {
+                if (c != '"')
+                    throw syntaxError ("member key expected");
+                String key = shareKey (readString ());
+                if (skipSpace () != ':')
+                    throw syntaxError ("':' expected");
+                Object value = readValue (skipSpace (), depth);
+
+                if (PairsUsed == Pairs.length)
+                    Pairs = Arrays.copyOf (Pairs, PairsUsed << 1);
+                Pairs[PairsUsed++] = new Object[] {key, value};
+
+                c = skipSpace ();
+                if (c == '}')
+                    break;
+                if (c != ',')
+                    throw syntaxError ("',' or '}' expected");
+                c = skipSpace ();
+            }
+        }
+
+        //Members of nested objects are stacked above base, and already popped
+        int n = PairsUsed - base;
+        if (node == null)
+            node = TreeCodec.newNode (Proto, n);
+        Object[][] pairs = base == 0 ? Pairs : Arrays.copyOfRange (Pairs, base, PairsUsed);
+        TreeCodec.fill (node, pairs, n);
+        Arrays.fill (Pairs, base, PairsUsed, null);
+        PairsUsed = base;
+        return node;
+    }
+
+    protected VectorNode<Object> readItems (int depth)
+    throws IOException
+    {
+        VectorNode<Object> items = new VectorNode<Object> ();
+        int c = skipSpace ();
+        if (c == ']')
+            return items;
+
+        while (true)
+        {
+            items.add (readValue (c, depth));
+            c = skipSpace ();
+            if (c == ']')
+                break;
+            if (c != ',')
+                throw syntaxError ("',' or ']' expected");
+            c = skipSpace ();
+        }
+        items.trimToSize ();
+        return items;
+    }
+
+    /**
+	 * Read a string, after its opening quote.
+	 *
+	 * @return the string read
+	 */
+    protected String readString ()
+    throws IOException
+    {
+        StrBuf.setLength (0);
+        while (true)
+        {
+            //Copy unescaped runs straight out of the buffer
+            int p = Pos;
+            while (p < Limit)
+            {
+                char c = Buf[p];
+                if (c == '"' || c == '\\' || c < 0x20)
+                    break;
+                p++;
+            }
+            if (p > Pos)
+            {
+                if (p < Limit && Buf[p] == '"' && StrBuf.length () == 0)
+                {
+                    String s = new String (Buf, Pos, p - Pos);
+                    Pos = p + 1;
+                    return s;
+                }
+                StrBuf.append (Buf, Pos, p - Pos);
+                Pos = p;
+            }
+            //Run reached the end of the buffer, refill and scan on
+            if (Pos == Limit && peek () >= 0)
+                continue;
+
+            int c = next ();
+            if (c == '"')
+                return StrBuf.toString ();
+            if (c == '\\')
+                StrBuf.append (readEscape ());
+            else if (c < 0)
+                throw syntaxError ("unterminated string");
+            else if (c < 0x20)
+                throw syntaxError ("control character in string");
+        }
+    }
+
+    private char readEscape ()
+    throws IOException
+    {
+        int c = next ();
+        switch (c)
+        {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                int u = 0;
+                for (int i = 0; i < 4; i++)
+                {
+                    int d = Character.digit (next (), 16);
+                    if (d < 0)
+                        throw syntaxError ("bad \\u escape");
+                    u = (u << 4) | d;
+                }
+                return (char) u;
+            default:
+                throw syntaxError ("bad escape");
+        }
+    }
+
+    protected Number readNumber (int c)
+    throws IOException
+    {
+        StrBuf.setLength (0);
+        boolean integral = true;
+        while (true)
+        {
+            StrBuf.append ((char) c);
+            c = peek ();
+            if (c == '.' || c == 'e' || c == 'E')
+                integral = false;
+            else if (! (c >= '0' && c <= '9' || c == '-' || c == '+'))
+                break;
+            Pos++;
+        }
+
+        String s = StrBuf.toString ();
+        try
+        {
+            if (! integral)
+                return Double.valueOf (s);
+            if (s.length () < 10)
+                return Integer.valueOf (s);
+            if (s.length () < 19)
+            {
+                long l = Long.parseLong (s);
+                if (l == (int) l)
+                    return Integer.valueOf ((int) l);
+                return Long.valueOf (l);
+            }
+            BigInteger b = new BigDecimal (s).toBigIntegerExact ();
+            if (b.bitLength () < 32)
+                return Integer.valueOf (b.intValue ());
+            if (b.bitLength () < 64)
+                return Long.valueOf (b.longValue ());
+            return b;
+        }
+        catch (NumberFormatException ex)
+        {
+            throw syntaxError ("bad number " + s);
+        }
+        catch (ArithmeticException ex)
+        {
+            throw syntaxError ("bad number " + s);
+        }
+    }
+
+    private void expectWord (String rest)
+    throws IOException
+    {
+        for (int i = 0; i < rest.length (); i++)
+            if (next () != rest.charAt (i))
+                throw syntaxError ("bad literal");
+    }
+
+    private String shareKey (String key)
+    {
+        String k = Keys.get (key);
+        if (k != null)
+            return k;
+        if (Keys.size () < MaxSharedKeys)
+            Keys.put (key, key);
+        return key;
+    }
+
+    private int skipSpace ()
+    throws IOException
+    {
+        int c = peekSpace ();
+        if (c >= 0)
+            Pos++;
+        return c;
+    }
+
+    private int peekSpace ()
+    throws IOException
+    {
+        while (true)
+        {
+            int c = peek ();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+            Pos++;
+        }
+    }
+
+    private int next ()
+    throws IOException
+    {
+        int c = peek ();
+        if (c >= 0)
+            Pos++;
+        return c;
+    }
+
+    private int peek ()
+    throws IOException
+    {
+        if (Pos < Limit)
+            return Buf[Pos];
+        Offset += Limit;
+        Pos = 0;
+        Limit = 0;
+        int n;
+        do
+            n = In.read (Buf, 0, Buf.length);
+        while (n == 0);
+        if (n < 0)
+            return -1;
+        Limit = n;
+        return Buf[0];
+    }
+
+    protected IOException syntaxError (String msg)
+    {
+        return new IOException ("JSON syntax error at char " + (Offset + Pos) + ": " + msg);
+    }
+
+    /** Variable MaxDepth. Bound on nesting of objects and arrays. */
+    public int MaxDepth = 512;
+
+    /** Variable MaxSharedKeys. Bound on member keys remembered for sharing. */
+    public int MaxSharedKeys = 4096;
+
+    /** Variable In. */
+    protected Reader In;
+
+    /** Variable Proto. Root read into, whose kind nested nodes take. */
+    protected Map<?, ?> Proto;
+
+    private final char[] Buf = new char[8192];
+    private int Pos = 0;
+    private int Limit = 0;
+    private long Offset = 0;
+
+    private final StringBuilder StrBuf = new StringBuilder ();
+
+    private Object[][] Pairs = new Object[16][];
+    private int PairsUsed = 0;
+
+    private final HashMap<String, String> Keys = new HashMap<String, String> ();
+}
@@ -0,0 +1,265 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * TreeJsonWriter Class. Writes trees of HashTreeNode, HashVectorTreeNode and
+ * the other ordered maps of this package as JSON, keeping the order of their
+ * members, to any Appendable.
+ * <BR>
+ * Keyed nodes are written as objects, VectorNodes, other Collections and
+ * Object arrays as arrays. Numbers and Booleans are written as such, null and
+ * Empty as null, and anything else as the string of its toString().
+ * <BR>
+ * Output goes through a small buffer that is written out whenever it grows
+ * past FlushThreshold, so that the JSON never has to be held in memory whole.
+ * Call flush() when done.
+ */
+public class TreeJsonWriter
+{
+
+    /**
+	 * Instantiates a new TreeJsonWriter.
+	 *
+	 * @param out
+	 */
+    public TreeJsonWriter (Appendable out)
+    {
+        this.Out = out;
+    }
+
+    /**
+	 * Write o as JSON and flush.
+	 *
+	 * @param o
+	 * @param out
+	 *
+	 * @throws IOException
+	 */
+    static public void write (Object o, Appendable out)
+    throws IOException
+    {
+        TreeJsonWriter writer = new TreeJsonWriter (out);
+        writer.write (o);
+        writer.flush ();
+    }
+
+    /**
+	 * Write o as JSON. Several values may be written in succession, such as
+	 * for JSON Lines, by writing a newline between them.
+	 *
+	 * @param o
+	 *
+	 * @return this
+	 *
+	 * @throws IOException
+	 */
+    public TreeJsonWriter write (Object o)
+    throws IOException
+    {
+        writeValue (o, 0);
+        return this;
+    }
+
+    /**
+	 * Write raw text, such as a newline between values.
+	 *
+	 * @param s
+	 *
+	 * @return this
+	 *
+	 * @throws IOException
+	 */
+    public TreeJsonWriter writeRaw (CharSequence s)
+    throws IOException
+    {
+        Buf.append (s);
+        flushIfFull ();
+        return this;
+    }
+
+    /**
+	 * Write out whatever is in the buffer.
+	 *
+	 * @throws IOException
+	 */
+    public void flush ()
+    throws IOException
+    {
+        drain ();
+        if (Out instanceof Writer)
+            ((Writer) Out).flush ();
+    }
+
+    protected void writeValue (Object o, int depth)
+    throws IOException
+    {
+        if (TreeCodec.isNull (o))
+            Buf.append ("null");
+        else if (o instanceof String)
+            writeString ((String) o);
+        else if (o instanceof Boolean)
+            Buf.append (((Boolean) o).booleanValue ());
+        else if (o instanceof Number)
+            writeNumber ((Number) o);
+        else if (TreeCodec.isNode (o))
+            writeNode (TreeCodec.members (o), depth);
+        else if (TreeCodec.isArray (o))
+            writeArray (TreeCodec.items (o), depth);
+        else
+            writeString (o.toString ());
+
+        flushIfFull ();
+    }
+
+    protected void writeNode (Object[][] members, int depth)
+    throws IOException
+    {
+        Buf.append ('{');
+        for (int i = 0; i < members.length; i++)
+        {
+            if (i > 0)
+                Buf.append (',');
+            newLine (depth + 1);
+            writeString (String.valueOf (members[i][0]));
+            Buf.append (Indentation == null ? ":" : ": ");
+            writeValue (members[i][1], depth + 1);
+        }
+        if (members.length > 0)
+            newLine (depth);
+        Buf.append ('}');
+    }
+
+    protected void writeArray (Object[] items, int depth)
+    throws IOException
+    {
+        Buf.append ('[');
+        for (int i = 0; i < items.length; i++)
+        {
+            if (i > 0)
+                Buf.append (',');
+            newLine (depth + 1);
+            writeValue (items[i], depth + 1);
+        }
+        if (items.length > 0)
+            newLine (depth);
+        Buf.append (']');
+    }
+
+    protected void writeNumber (Number n)
+    {
+        if (n instanceof Double || n instanceof Float)
+        {
+            double d = n.doubleValue ();
+            //JSON has no NaN or Infinity
+            if (Double.isNaN (d) || Double.isInfinite (d))
+            {
+                writeString (n.toString ());
+                return;
+            }
+        }
+        Buf.append (n.toString ());
+    }
+
+    protected void writeString (String s)
+    {
+        Buf.append ('"');
+        int c0 = 0;
+        int len = s.length ();
+        for (int i = 0; i < len; i++)
+        {
+            char c = s.charAt (i);
+            String esc;
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029')
+                continue;
+
+            switch (c)
+            {
+                case '"':
+                    esc = "\\\"";
+                    break;
+                case '\\':
+                    esc = "\\\\";
+                    break;
+                case '\n':
+                    esc = "\\n";
+                    break;
+                case '\r':
+                    esc = "\\r";
+                    break;
+                case '\t':
+                    esc = "\\t";
+                    break;
+                case '\b':
+                    esc = "\\b";
+                    break;
+                case '\f':
+                    esc = "\\f";
+                    break;
+                default:
+                    esc = c < 0x10 ? "\\u000" : "\\u00";
+                    if (c >= 0x100)
+                        esc = "\\u";
+                    esc += Integer.toHexString (c);
+            }
+            Buf.append (s, c0, i).append (esc);
+            c0 = i + 1;
+        }
+        Buf.append (s, c0, len).append ('"');
+    }
+
+    private void newLine (int depth)
+    {
+        if (Indentation == null)
+            return;
+        Buf.append ('\n');
+        for (int i = 0; i < depth; i++)
+            Buf.append (Indentation);
+    }
+
+    protected void flushIfFull ()
+    throws IOException
+    {
+        if (Buf.length () >= FlushThreshold)
+            drain ();
+    }
+
+    private void drain ()
+    throws IOException
+    {
+        int len = Buf.length ();
+        if (len == 0)
+            return;
+
+        if (Out instanceof Writer)
+        {
+            if (CharBuf == null || CharBuf.length < len)
+                CharBuf = new char[Math.max (len, FlushThreshold)];
+            Buf.getChars (0, len, CharBuf, 0);
+            ((Writer) Out).write (CharBuf, 0, len);
+        }
+        else
+            Out.append (Buf, 0, len);
+        Buf.setLength (0);
+    }
+
+    /** Variable Indentation. Indentation per level, or null for compact output. */
+    public String Indentation = null;
+
+    /** Variable FlushThreshold. Buffer length at which it is written out. */
+    public int FlushThreshold = 8192;
+
+    /** Variable Out. */
+    protected Appendable Out;
+
+    private final StringBuilder Buf = new StringBuilder ();
+
+    private char[] CharBuf;
+}
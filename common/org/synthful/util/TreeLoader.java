@@ -0,0 +1,296 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * TreeLoader Class. Bulk loads a HashTreeNode, HashVectorTree or other tree
+ * of this package from {hash key progression, value} pairs, such as from an
+ * array, a Map, any Iterable of Map.Entry, or a row source like a ResultSet.
+ * <BR>
+ * Branches are created presized, to the expected member counts given per
+ * level, and with their key order presized likewise. Consecutive paths under
+ * the same branch, as come from sorted input, go straight into the branch
+ * found for the previous path, without splitting the path or walking down
+ * from the root again. For the root itself to be presized, construct it with
+ * an initial size of capacityFor(expected size).
+ * <BR>
+ * Keys are split by the key delimiter of the root. A plain HashVectorTreeNode,
+ * or a Map not of this package, takes its keys whole. A loader expects to be
+ * the only one changing the tree while it loads. Not synchronized.
+ */
+@SuppressWarnings("rawtypes")
+public class TreeLoader<T extends Map>
+{
+
+    /**
+	 * Instantiates a new TreeLoader, splitting keys by the key delimiter of
+	 * root if it has one.
+	 *
+	 * @param root
+	 */
+    public TreeLoader (T root)
+    {
+        this.Root = root;
+        if (root instanceof HashVectorTree)
+            this.Delimiter = ((HashVectorTree) root).getKeyDelimiter ();
+        else if (root instanceof HashTreeNode)
+            this.Delimiter = ((HashTreeNode) root).getKeyDelimiter ();
+        else if (root instanceof FastHashTreeNode)
+            this.Delimiter = ((FastHashTreeNode) root).getKeyDelimiter ();
+        else if (root instanceof ConcurrentHashTreeNode)
+            this.Delimiter = ((ConcurrentHashTreeNode) root).getKeyDelimiter ();
+        else
+            this.Flat = true;
+    }
+
+    /**
+	 * Instantiates a new TreeLoader, splitting keys by delimiter.
+	 *
+	 * @param root
+	 * @param delimiter
+	 */
+    public TreeLoader (T root, char delimiter)
+    {
+        this.Root = root;
+        this.Delimiter = delimiter;
+    }
+
+    /**
+	 * @param expectedSize
+	 *
+	 * @return initial size of a Hashtable that holds expectedSize entries
+	 *         without rehashing.
+	 */
+    static public int capacityFor (int expectedSize)
+    {
+        return Math.max (expectedSize + expectedSize / 3 + 1, 11);
+    }
+
+    /**
+	 * Set the expected member counts of the branches created, per level.
+	 * sizes[0] is for the branches directly under the root, sizes[1] for
+	 * those under them, and so on; the last size holds for all deeper levels.
+	 *
+	 * @param sizes
+	 *
+	 * @return this
+	 */
+    public TreeLoader<T> expectBranchSizes (int... sizes)
+    {
+        this.BranchSizes = sizes.clone ();
+        return this;
+    }
+
+    /**
+	 * Put value at hash key progression, locating or creating each branch in
+	 * turn.
+	 *
+	 * @param path
+	 * @param value
+	 *
+	 * @return this
+	 */
+    public TreeLoader<T> put (String path, Object value)
+    {
+        if (Flat)
+        {
+            TreeCodec.insert (Root, path, value);
+            return this;
+        }
+
+        int cut = path.lastIndexOf (Delimiter);
+        if (cut < 0)
+        {
+            LastPrefix = null;
+            if (path.length () > 0)
+                TreeCodec.insert (Root, path, value);
+            return this;
+        }
+
+        //Same branch as the previous path
+        if (LastPrefix != null
+            && cut == LastPrefix.length ()
+            && cut < path.length () - 1
+            && path.startsWith (LastPrefix))
+        {
+            TreeCodec.insert (LastBranch, path.substring (cut + 1), value);
+            return this;
+        }
+
+        LastPrefix = null;
+        String[] keysegs = TreePath.parse (path, Delimiter).Segments;
+        int leaf = keysegs.length - 1;
+        while (leaf >= 0 && keysegs[leaf].length () == 0)
+            leaf--;
+        if (leaf < 0)
+            return this;
+
+        Map<?, ?> node = Root;
+        int depth = 0;
+        for (int i = 0; i < leaf; i++)
+        {
+            String key = keysegs[i];
+            if (key.length () == 0)
+                continue;
+            depth++;
+
+            // single key lookup, not a key progression
+            Object child = node.get ((Object) key);
+            if (! isBranch (child))
+            {
+                child = newBranch (depth);
+                TreeCodec.insert (node, key, child);
+            }
+            node = (Map<?, ?>) child;
+        }
+        TreeCodec.insert (node, keysegs[leaf], value);
+
+        if (cut < path.length () - 1)
+        {
+            LastPrefix = path.substring (0, cut);
+            LastBranch = node;
+        }
+        return this;
+    }
+
+    /**
+	 * Put array of {key, value} pairs. A pair without value puts Empty.
+	 *
+	 * @param t
+	 *
+	 * @return this
+	 */
+    public TreeLoader<T> putAll (Object[][] t)
+    {
+        if (t == null)
+            return this;
+        for (Object[] pair : t)
+        {
+            if (pair == null || pair.length < 1)
+                continue;
+            put (String.valueOf (pair[0]), pair.length >= 2 ? pair[1] : null);
+        }
+        return this;
+    }
+
+    /**
+	 * Put entries in the order they are iterated, such as the entrySet of a
+	 * Map, looking up each entry only once.
+	 *
+	 * @param entries
+	 *
+	 * @return this
+	 */
+    public TreeLoader<T> putAll (Iterable<? extends Entry<?, ?>> entries)
+    {
+        for (Entry<?, ?> entry : entries)
+            put (String.valueOf (entry.getKey ()), entry.getValue ());
+        return this;
+    }
+
+    /**
+	 * Put the rows of a row source, such as one reading a ResultSet.
+	 *
+	 * @param rows
+	 *
+	 * @return this
+	 *
+	 * @throws X
+	 *             whatever the row source throws.
+	 */
+    public <X extends Exception> TreeLoader<T> putAll (RowSource<X> rows)
+    throws X
+    {
+        while (rows.next ())
+            put (String.valueOf (rows.getKey ()), rows.getValue ());
+        return this;
+    }
+
+    /**
+	 * Gets the Root.
+	 *
+	 * @return the Root as T
+	 */
+    public T getRoot ()
+    {
+        return Root;
+    }
+
+    private Map<?, ?> newBranch (int depth)
+    {
+        Map<?, ?> branch = TreeCodec.newNode (Root, branchSize (depth));
+        //Branches split keys the way their root does
+        if (branch instanceof FastHashTreeNode)
+            ((FastHashTreeNode) branch).setKeyDelimiter (Delimiter);
+        else if (branch instanceof ConcurrentHashTreeNode)
+            ((ConcurrentHashTreeNode) branch).setKeyDelimiter (Delimiter);
+        return branch;
+    }
+
+    private boolean isBranch (Object o)
+    {
+        if (Root instanceof HashVectorTreeNode)
+            return o instanceof HashVectorTreeNode;
+        if (Root instanceof HashTreeNode)
+            return o instanceof HashTreeNode;
+        if (Root instanceof FastHashTreeNode)
+            return o instanceof FastHashTreeNode;
+        if (Root instanceof ConcurrentHashTreeNode)
+            return o instanceof ConcurrentHashTreeNode;
+        return o instanceof Map;
+    }
+
+    private int branchSize (int depth)
+    {
+        if (BranchSizes == null || BranchSizes.length == 0)
+            return 0;
+        return BranchSizes[Math.min (depth, BranchSizes.length) - 1];
+    }
+
+    /**
+	 * RowSource Interface. A cursor over {key, value} rows, such as over a
+	 * ResultSet with the key in one column and the value in another.
+	 */
+    static public interface RowSource<X extends Exception>
+    {
+        /**
+		 * Move to the next row.
+		 *
+		 * @return false if there are no more rows.
+		 */
+        public boolean next () throws X;
+
+        /**
+		 * @return hash key progression of the current row.
+		 */
+        public Object getKey () throws X;
+
+        /**
+		 * @return value of the current row.
+		 */
+        public Object getValue () throws X;
+    }
+
+    /** Variable Root. */
+    protected final T Root;
+
+    /** Variable Delimiter. */
+    protected char Delimiter = '/';
+
+    /** Variable Flat. Keys are taken whole, without key progression. */
+    protected boolean Flat = false;
+
+    /** Variable BranchSizes. Expected member counts of branches, per level. */
+    protected int[] BranchSizes;
+
+    private String LastPrefix;
+
+    private Map<?, ?> LastBranch;
+}
@@ -0,0 +1,274 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * TreePath Class. A hash key progression, such as "keya/keyb/keyc", split
+ * once into its key segments so that it can be used repeatedly to get, put
+ * or cut in a tree without being parsed again.
+ * <BR>
+ * Compiled paths are interned per delimiter, so compiling the same path
+ * string again returns the same TreePath without allocating, and without
+ * locking. The cache is bounded; once full, the paths not used since it was
+ * last swept are evicted, approximating least recently used. Use parse for
+ * one-off paths so as not to evict the hot ones.
+ * <BR>
+ * Segments follow String.split: trailing empty segments are dropped, other
+ * empty segments are kept.
+ */
+public final class TreePath
+implements Serializable
+{
+
+    /**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+    private TreePath (String path, char delimiter, String[] segments)
+    {
+        this.Path = path;
+        this.Delimiter = delimiter;
+        this.Segments = segments;
+    }
+
+    /**
+	 * Compile a hash key progression, or get it from the cache of paths
+	 * compiled before.
+	 *
+	 * @param path
+	 *            hash key progression, e.g. "keya/keyb/keyc"
+	 * @param delimiter
+	 *            delimiter of key segments in path
+	 *
+	 * @return the compiled TreePath
+	 */
+    static public TreePath compile (String path, char delimiter)
+    {
+        PathCache cache = Cache.get (delimiter);
+        if (cache == null)
+        {
+            cache = new PathCache ();
+            PathCache c = Cache.putIfAbsent (delimiter, cache);
+            if (c != null)
+                cache = c;
+        }
+
+        return cache.intern (path, delimiter);
+    }
+
+    /**
+	 * Parse a hash key progression, using the cache of compiled paths if it
+	 * is there, but without interning it. For one-off paths, such as those of
+	 * bulk loads, which would otherwise crowd out the paths that are looked
+	 * up repeatedly.
+	 *
+	 * @param path
+	 *            hash key progression, e.g. "keya/keyb/keyc"
+	 * @param delimiter
+	 *            delimiter of key segments in path
+	 *
+	 * @return the parsed TreePath
+	 */
+    static public TreePath parse (String path, char delimiter)
+    {
+        PathCache cache = Cache.get (delimiter);
+        TreePath treePath = cache == null ? null : cache.get (path);
+        if (treePath != null)
+            return treePath;
+
+        return new TreePath (path, delimiter, split (path, delimiter));
+    }
+
+    /**
+	 * Split s into segments separated by sepr, without compiling a regex.
+	 * Same result as s.split("[" + sepr + ']').
+	 *
+	 * @param s
+	 * @param sepr
+	 *
+	 * @return the segments of s
+	 */
+    static public String[] split (String s, char sepr)
+    {
+        int n = 1;
+        for (int i = s.indexOf (sepr); i >= 0; i = s.indexOf (sepr, i + 1))
+            n++;
+        if (n == 1)
+            return new String[] {s};
+
+        String[] segs = new String[n];
+        int c0 = 0;
+        int k = 0;
+        for (int i = s.indexOf (sepr); i >= 0; i = s.indexOf (sepr, c0))
+        {
+            segs[k++] = s.substring (c0, i);
+            c0 = i + 1;
+        }
+        segs[k] = s.substring (c0);
+
+        //Drop trailing empty segments, as String.split does
+        int len = n;
+        while (len > 0 && segs[len - 1].length () == 0)
+            len--;
+        return len == n ? segs : Arrays.copyOf (segs, len);
+    }
+
+    /**
+	 * @return number of key segments.
+	 */
+    public int depth ()
+    {
+        return Segments.length;
+    }
+
+    /**
+	 * @param i
+	 *
+	 * @return key segment at level i.
+	 */
+    public String getSegment (int i)
+    {
+        return Segments[i];
+    }
+
+    /**
+	 * @return the last key segment, or null if there are no segments.
+	 */
+    public String getLeaf ()
+    {
+        return Segments.length > 0 ? Segments[Segments.length - 1] : null;
+    }
+
+    /**
+	 * @return a copy of the key segments.
+	 */
+    public String[] getSegments ()
+    {
+        return Segments.clone ();
+    }
+
+    /**
+	 * @return the delimiter of key segments.
+	 */
+    public char getDelimiter ()
+    {
+        return Delimiter;
+    }
+
+    /**
+	 * @return the hash key progression this path was compiled from.
+	 */
+    public String toString ()
+    {
+        return Path;
+    }
+
+    public int hashCode ()
+    {
+        return Path.hashCode () * 31 + Delimiter;
+    }
+
+    public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (! (o instanceof TreePath))
+            return false;
+        TreePath p = (TreePath) o;
+        return Delimiter == p.Delimiter && Path.equals (p.Path);
+    }
+
+    /** Variable Path. */
+    final String Path;
+
+    /** Variable Delimiter. */
+    final char Delimiter;
+
+    /** Variable Segments. Shared with the tree nodes, never to be modified. */
+    final String[] Segments;
+
+    /** Whether used since the cache was last swept, if cached. */
+    transient volatile boolean Used = true;
+
+    /** Bound on interned paths per delimiter. */
+    final static private int MaxCachedPaths = 8192;
+
+    final static private ConcurrentHashMap<Character, PathCache> Cache =
+        new ConcurrentHashMap<Character, PathCache> ();
+
+    /**
+     * PathCache Class. Compiled paths of one delimiter. Reads do not lock,
+     * only marking the path used. Beyond MaxCachedPaths, one thread sweeps
+     * the cache down to three quarters of that, evicting the paths not used
+     * since the last sweep and marking the rest unused.
+     */
+    final static private class PathCache
+    {
+        TreePath get (String path)
+        {
+            TreePath treePath = Paths.get (path);
+            if (treePath != null && !treePath.Used)
+                treePath.Used = true;
+            return treePath;
+        }
+
+        TreePath intern (String path, char delimiter)
+        {
+            TreePath treePath = get (path);
+            if (treePath != null)
+                return treePath;
+
+            treePath = new TreePath (path, delimiter, split (path, delimiter));
+            TreePath t = Paths.putIfAbsent (path, treePath);
+            if (t != null)
+                return t;
+
+            if (Paths.size () > MaxCachedPaths)
+                sweep ();
+            return treePath;
+        }
+
+        private void sweep ()
+        {
+            if (!Sweeping.compareAndSet (false, true))
+                return;
+            try
+            {
+                int keep = MaxCachedPaths * 3 / 4;
+                //The second pass evicts those unused since the first
+                for (int pass = 0; pass < 2 && Paths.size () > keep; pass++)
+                {
+                    Iterator<TreePath> it = Paths.values ().iterator ();
+                    while (it.hasNext () && Paths.size () > keep)
+                    {
+                        TreePath treePath = it.next ();
+                        if (treePath.Used)
+                            treePath.Used = false;
+                        else
+                            it.remove ();
+                    }
+                }
+            }
+            finally
+            {
+                Sweeping.set (false);
+            }
+        }
+
+        private final ConcurrentHashMap<String, TreePath> Paths =
+            new ConcurrentHashMap<String, TreePath> (256);
+
+        private final AtomicBoolean Sweeping = new AtomicBoolean ();
+    }
+}
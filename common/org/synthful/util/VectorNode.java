@@ -97,28 +97,48 @@ implements TreeNode, ToStringBufferable
     }
     
     /**
-	 * Adds the.
+	 * Put value at the multi level int key, from key[keylevel] on, creating
+	 * the nested VectorNodes of the levels below and padding each vector with
+	 * nulls up to its key. A value already at a level that has to branch is
+	 * replaced by a VectorNode.
+	 * <BR>
+	 * For a large or sparse N dimensional array, a SparseCube stores the same
+	 * cells without a vector per row.
 	 * 
 	 * @param keylevel
 	 * @param key
 	 * @param value
 	 * 
-	 * @return Adds the as VectorNode
+	 * @return this, or null if keylevel is outside key.
 	 */
+    @SuppressWarnings("unchecked")
     public VectorNode<E> add (int keylevel, int[] key, Object value)
     {
         if (keylevel >= key.length || keylevel < 0)
             return null;
         
-        //todo: Something's wrong here. new vectornode is not used
-        //there should be a for loop to traverse until reaches the specified
-        //key level then insert new vectornode or value into that.
-        Object o
-	        = (keylevel == key.length - 1)
-	        ? value
-	        : new VectorNode<E> ().add (keylevel + 1, key, value);
-	        ;
+        //Levels hold values of any type, as a VectorNode of Object
+        VectorNode<Object> node = (VectorNode<Object>) this;
+        for (int i = keylevel; i < key.length - 1; i++)
+        {
+            int k = key[i];
+            if (k >= node.size ())
+                node.setSize (k + 1);
+            Object o = node.get (k);
+            if (! (o instanceof VectorNode))
+            {
+                VectorNode<Object> child = new VectorNode<Object> ();
+                child.setParentNode (node);
+                node.set (k, child);
+                o = child;
+            }
+            node = (VectorNode<Object>) o;
+        }
         
+        int k = key[key.length - 1];
+        if (k >= node.size ())
+            node.setSize (k + 1);
+        node.set (k, value);
         return this;
     }
     
@@ -135,28 +155,65 @@ implements TreeNode, ToStringBufferable
     }
     
     /**
-	 * Gets the.
+	 * get stored object by multi level int key, from key[keylevel] on,
+	 * walking down the nested VectorNodes.
 	 * 
 	 * @param keylevel
 	 * @param key
 	 * 
-	 * @return Gets the as Object
+	 * @return the object at key, or the first object on the way that is not a
+	 *         VectorNode, or null if a level has no such position.
 	 */
     public Object get (int keylevel, int[] key)
     {
         if (keylevel >= key.length || keylevel < 0)
             return null;
-        Object o = get (key[keylevel]);
-        
-        if (keylevel == key.length - 1)
-            return o;
-        
-        if (o.getClass().isInstance(this) )
-            return ( (VectorNode<E>) o).get (keylevel + 1, key);
         
+        Object o = this;
+        for (int i = keylevel; i < key.length; i++)
+        {
+            VectorNode<?> node = (VectorNode<?>) o;
+            int k = key[i];
+            if (k < 0 || k >= node.size ())
+                return null;
+            o = node.get (k);
+            if (! (o instanceof VectorNode))
+                return o;
+        }
         return o;
     }
     
+    /**
+	 * Copy the cells of this multi level VectorNode into a new SparseCube.
+	 * 
+	 * @param extents
+	 *            number of coordinates of each dimension; the nesting depth
+	 *            of this node is the number of dimensions.
+	 * 
+	 * @return the SparseCube
+	 */
+    public SparseCube<Object> toSparseCube (int[] extents)
+    {
+        SparseCube<Object> cube = new SparseCube<Object> (extents);
+        copyCells (cube, 0, new int[extents.length]);
+        return cube;
+    }
+    
+    private void copyCells (SparseCube<Object> cube, int level, int[] key)
+    {
+        for (int i = 0; i < size (); i++)
+        {
+            Object o = get (i);
+            if (o == null)
+                continue;
+            key[level] = i;
+            if (level < key.length - 1 && o instanceof VectorNode)
+                ((VectorNode<?>) o).copyCells (cube, level + 1, key);
+            else if (level == key.length - 1)
+                cube.put (key, o);
+        }
+    }
+    
     /* (non-Javadoc)
      * @see org.synthful.util.TreeNode#getKeyDelimiter()
      */
@@ -215,8 +272,9 @@ implements TreeNode, ToStringBufferable
 	 */
     public VectorNode<E> fromString (String s, char cSeparator)
     {
-        this.fromString (s, "[" + cSeparator + ']');
-        return this;
+        if (s == null)
+            return this;
+        return add (TreePath.split (s, cSeparator));
     }
     
     /**
@@ -260,11 +318,10 @@ implements TreeNode, ToStringBufferable
      */
     public StringBuffer toStringBuffer (ToStringBuffer tostrbuf, int depth, int iteration)
     {
-        StringBuffer indent = tostrbuf.mkIndentation(depth);
+        String indent = tostrbuf.indentation(depth);
     	StringBuffer strBuf = tostrbuf.getStringBuffer();
     	
-        if (indent!=null)
-            strBuf.append(indent).append(indent);
+        strBuf.append(indent).append(indent);
     	strBuf.append(tostrbuf.ItemTerminatorLeft);
     	
     	for(int i=0; i<this.size(); i++)
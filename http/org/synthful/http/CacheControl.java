@@ -65,13 +65,35 @@ public class CacheControl
 	 * @return the threshold time
 	 */
     public static long getThresholdTime(java.sql.Connection jdbcConnection, String sql)
+    {
+        return getThresholdTime(jdbcConnection, sql, new Object[0]);
+    }
+    
+    /**
+	 * Gets the threshold time by parameterized sql, on a PreparedStatement
+	 * cached for the connection, since it is run on every page hit. Without
+	 * params, the sql is run on a plain Statement, as by getThresholdTime
+	 * (Connection, String).
+	 * 
+	 * @param jdbcConnection
+	 *            the jdbc connection
+	 * @param sql
+	 *            the sql, with ? for each parameter
+	 * @param params
+	 *            the parameters
+	 * 
+	 * @return the threshold time
+	 */
+    public static long getThresholdTime(java.sql.Connection jdbcConnection, String sql, Object... params)
     {
         long sigTime = 0;
         
-        if (jdbcConnection!=null && sql != null || sql.length() > 0)
+        if (jdbcConnection!=null && sql != null && sql.length() > 0)
         {                
             Object[][] xxSigTime
-                = JUtil.SqlFetch(jdbcConnection, sql);
+                = params == null || params.length == 0
+                ? JUtil.SqlFetch(jdbcConnection, sql)
+                : JUtil.SqlFetch(jdbcConnection, sql, params);
             try{
             sigTime = ((java.util.Date)xxSigTime[0][0]).getTime();
             }
@@ -94,13 +116,34 @@ public class CacheControl
 	 * @return the cache signature string
 	 */
     public static String getSigString(java.sql.Connection jdbcConnection, String sql)
+    {
+        return getSigString(jdbcConnection, sql, new Object[0]);
+    }
+    
+    /**
+	 * Gets the cache signature string by parameterized sql, on a
+	 * PreparedStatement cached for the connection. Without params, the sql
+	 * is run on a plain Statement, as by getSigString(Connection, String).
+	 * 
+	 * @param jdbcConnection
+	 *            the jdbc connection
+	 * @param sql
+	 *            the sql, with ? for each parameter
+	 * @param params
+	 *            the parameters
+	 * 
+	 * @return the cache signature string
+	 */
+    public static String getSigString(java.sql.Connection jdbcConnection, String sql, Object... params)
     {
         String sigStr = "";
         
-        if (jdbcConnection!=null && sql != null || sql.length() > 0)
+        if (jdbcConnection!=null && sql != null && sql.length() > 0)
         {        
             Object[][] xxSigStr
-                = JUtil.SqlFetch(jdbcConnection, sql);
+                = params == null || params.length == 0
+                ? JUtil.SqlFetch(jdbcConnection, sql)
+                : JUtil.SqlFetch(jdbcConnection, sql, params);
             try{
             sigStr = xxSigStr[0][0].toString().trim();
             }
@@ -45,12 +45,12 @@ public class JDataArrayVector extends JDataBufferVector
 	}
 
 	/* (non-Javadoc)
-	 * @see org.synthful.jdbc.JDataBufferVector#fetchDataRow()
+	 * @see org.synthful.jdbc.JDataBufferVector#fetchRow()
 	 */
-	protected void fetchDataRow()
+	protected Object fetchRow()
 		throws SQLException
 	{
-		this.add(fetchDataRowCells());
+		return fetchDataRowCells();
 	}
 
 	/**
@@ -77,9 +77,9 @@ public class JDataArrayVector extends JDataBufferVector
 
     
 	/* (non-Javadoc)
-	 * @see org.synthful.jdbc.JDataBufferVector#fetchDataRowInit()
+	 * @see org.synthful.jdbc.JDataBufferVector#fetchHeaderRow()
 	 */
-	protected void fetchDataRowInit()
+	protected Object fetchHeaderRow()
 		throws SQLException
 	{
 		Object[] cells = new Object[numColumns + (RowNumColumn ? 1 : 0)];
@@ -89,9 +89,9 @@ public class JDataArrayVector extends JDataBufferVector
 
 		for (int i = 1; i <= numColumns; i++)
 			cells[i - 1 + (RowNumColumn ? 1 : 0)] =
-                getColumnTitle(i-1);
+                getColumnTitle(i - 1 + (RowNumColumn ? 1 : 0));
         
-        this.add(cells);
+        return cells;
 	}
 
 	/**
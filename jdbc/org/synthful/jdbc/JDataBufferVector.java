@@ -86,6 +86,19 @@ extends Vector
 		dbLogin.logout();
 	}
 
+	/**
+	 * Release the Statement of this buffer, such as one made from a
+	 * Connection given to the constructor. Statements of a JDbLogin are left
+	 * to it. Rows already fetched are kept.
+	 */
+	public void ReleaseStatement()
+	{
+		if (dbLogin != null)
+			return;
+		JUtil.closeStatement(jStmt);
+		jStmt = null;
+	}
+
 	/**
 	 * Execute SQL by resetting row and column counts.
 	 * 
@@ -112,9 +125,74 @@ extends Vector
 	public JDataBufferVector exec(
 		String sql, boolean reset)
 	{
+		int errors = ResultStatus.size();
+		ExecNanos = 0;
 		try
 		{
+			//Borrow again from the pool after a logout
+			if (dbLogin != null && (jStmt == null || jStmt.isClosed()))
+				jStmt = dbLogin.getStatement();
+			if (FetchSize != 0)
+				jStmt.setFetchSize(FetchSize);
+			execStmt = jStmt;
+			long start = System.nanoTime();
 			results = jStmt.execute(sql);
+			ExecNanos = System.nanoTime() - start;
+			if (reset)
+			{
+				rowsAffected = 0;
+				rowNum = 0;
+				numColumns = 0;
+			}
+		}
+		catch (SQLException sqle)
+		{
+			ResultStatus.add(sqle);
+		}
+		catch (Exception e)
+		{
+			ResultStatus.add(e);
+		}
+		if (!Fetching)
+			reportExec(sql, errors);
+		return this;
+	}
+
+	/**
+	 * Exec parameterized SQL, on a PreparedStatement cached for the
+	 * Connection by JDbStatementCache, so that the server parses it only once.
+	 * 
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * @param reset
+	 *            true if row and column count is to be reset.
+	 * 
+	 * @return this.
+	 */
+	public JDataBufferVector exec(
+		String sql, Object[] params, boolean reset)
+	{
+		int errors = ResultStatus.size();
+		ExecNanos = 0;
+		try
+		{
+			Connection conn = JConn;
+			if (dbLogin != null)
+			{
+				//Borrows again from the pool after a logout
+				dbLogin.getStatement();
+				conn = dbLogin.getConnection();
+			}
+			PreparedStatement ps = JDbStatementCache.forConnection(conn).prepare(sql);
+			JUtil.setParameters(ps, params);
+			if (FetchSize != 0)
+				ps.setFetchSize(FetchSize);
+			execStmt = ps;
+			long start = System.nanoTime();
+			results = ps.execute();
+			ExecNanos = System.nanoTime() - start;
 			if (reset)
 			{
 				rowsAffected = 0;
@@ -130,6 +208,8 @@ extends Vector
 		{
 			ResultStatus.add(e);
 		}
+		if (!Fetching)
+			reportExec(sql, errors);
 		return this;
 	}
 
@@ -148,6 +228,22 @@ extends Vector
 		return this;
 	}
 
+	/**
+	 * Perform fetchResult of parameterized SQL with reset set to true.
+	 * 
+	 * @param query
+	 *            SQL query to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return this.
+	 */
+	public JDataBufferVector fetch(String query, Object... params)
+	{
+		fetchResult(query, params, true, true);
+		return this;
+	}
+
 	/**
 	 * Perform fetchResult with reset set to false to allow accumulation of
 	 * results with previous queries.
@@ -163,6 +259,22 @@ extends Vector
 		return this;
 	}
 
+	/**
+	 * Perform fetchResult of parameterized SQL with reset set to false.
+	 * 
+	 * @param query
+	 *            SQL query to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return this.
+	 */
+	public JDataBufferVector fetchAppend(String query, Object... params)
+	{
+		fetchResult(query, params, false, true);
+		return this;
+	}
+
 	/**
 	 * Fetch result.
 	 * 
@@ -184,19 +296,53 @@ extends Vector
 	 */
 	public ResultSet fetchResult(
 		String query, boolean reset, boolean fetchrows)
+	{
+		return fetchResult(query, null, reset, fetchrows);
+	}
+
+	/**
+	 * Fetch result, of parameterized SQL if params is not null.
+	 * 
+	 * @param query
+	 *            SQL query to be executed.
+	 * @param params
+	 *            values of the parameters, in order, or null to execute the
+	 *            query as it is on the Statement of this buffer.
+	 * @param reset
+	 *            true if row and column counts are to be reset and buffer
+	 *            cleared.
+	 * @param fetchrows
+	 *            true if rows are to be fetched from result set.
+	 * 
+	 * @return JDBC ResultSet, the handle used to fetch the rows.
+	 */
+	public ResultSet fetchResult(
+		String query, Object[] params, boolean reset, boolean fetchrows)
 	{
 		if (reset)
 			clear();
+		int firstrow = size();
+		int firstrownum = reset ? 0 : rowNum;
+		int errors = ResultStatus.size();
+		long fetchstart = 0;
+		Fetching = true;
 		try
 		{
-			exec(query, reset);
+			execStmt = null;
+			if (params == null)
+				exec(query, reset);
+			else
+				exec(query, params, reset);
 
+			fetchstart = System.nanoTime();
+			int resultnum = 0;
 			do
 			{
 				if (results)
 				{
-					rs = jStmt.getResultSet();
+					rs = execStmt.getResultSet();
 					rsmd = rs.getMetaData();
+					MetaDataKey = metaDataKey(execStmt, query, resultnum++);
                     if (dbLogin!=null)
                     {
                         dbLogin.ResultSet = rs;
@@ -222,12 +368,12 @@ extends Vector
 				}
 				else
 				{
-					rowsAffected = jStmt.getUpdateCount();
+					rowsAffected = execStmt.getUpdateCount();
 
 					if (Debug)
 						System.out.println("DataBuffVec: No Results:" + rowsAffected);
 				}
-				results = jStmt.getMoreResults();
+				results = execStmt.getMoreResults();
 			}
 			while (results || rowsAffected != -1);
 		}
@@ -239,10 +385,122 @@ extends Vector
 		{
 			ResultStatus.add(e);
 		}
+		finally
+		{
+			Fetching = false;
+		}
+
+		if (JDbInstrumentation.isEnabled())
+			JDbInstrumentation.statementDone(getClass().getSimpleName(), query,
+				ExecNanos, fetchstart == 0 ? 0 : System.nanoTime() - fetchstart,
+				rowNum - firstrownum, estimateBytes(firstrow, rowNum - firstrownum),
+				ResultStatus.size() > errors ? (Throwable) ResultStatus.get(errors) : null);
 
 		return rs;
 	}
 
+	/**
+	 * Execute query and return a cursor over its rows instead of buffering
+	 * them, so that memory stays constant however many rows the query
+	 * returns. The rows are in the form fetchResult would add them, the
+	 * header row first if setHeaderRow, and numbered if setRowNumColumn.
+	 * <br>
+	 * The query runs on its own forward only, read only Statement, with the
+	 * fetch size of setFetchSize, which the cursor closes when its rows run
+	 * out or when it is closed. This buffer is cleared, and holds the column
+	 * lookups of the query while the cursor is open, so only one cursor of a
+	 * buffer may be open at a time. Errors are added to ResultStatus and end
+	 * the rows, as with fetchResult.
+	 * 
+	 * @param query
+	 *            SQL query to be executed.
+	 * 
+	 * @return the cursor, empty if the query has no result set.
+	 */
+	public JDataRowCursor fetchCursor(String query)
+	{
+		clear();
+		rowsAffected = 0;
+		rowNum = 0;
+		numColumns = 0;
+
+		Statement stmt = null;
+		try
+		{
+			Connection conn = JConn;
+			if (dbLogin != null)
+			{
+				//Borrows again from the pool after a logout
+				dbLogin.getStatement();
+				conn = dbLogin.getConnection();
+			}
+			stmt = conn.createStatement(
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if (FetchSize != 0)
+				stmt.setFetchSize(FetchSize);
+
+			long start = System.nanoTime();
+			boolean hasresults = stmt.execute(query);
+			while (!hasresults && stmt.getUpdateCount() != -1)
+				hasresults = stmt.getMoreResults();
+			if (!hasresults)
+			{
+				stmt.close();
+				return new JDataRowCursor(this, null, null, null);
+			}
+
+			rs = stmt.getResultSet();
+			rsmd = rs.getMetaData();
+			MetaDataKey = metaDataKey(stmt, query, 0);
+			if (dbLogin != null)
+			{
+				dbLogin.ResultSet = rs;
+				dbLogin.ResultSetMetaData = rsmd;
+			}
+
+			fetchDataRowInit(rsmd);
+			Object header = HeaderRow ? fetchHeaderRow() : null;
+			JDataRowCursor cursor = new JDataRowCursor(this, stmt, rs, header);
+			cursor.instrument(query, System.nanoTime() - start);
+			return cursor;
+		}
+		catch (SQLException sqle)
+		{
+			catchSQLException(sqle);
+		}
+		catch (Exception e)
+		{
+			catchException(e);
+		}
+
+		try
+		{
+			if (stmt != null)
+				stmt.close();
+		}
+		catch (SQLException sqle)
+		{
+			catchSQLException(sqle);
+		}
+		return new JDataRowCursor(this, null, null, null);
+	}
+
+	/**
+	 * Number of rows the JDBC driver is to fetch from the server at a time,
+	 * for fetchResult and fetchCursor. Some drivers, such as MySQL's, stream
+	 * rows only with a fetch size of Integer.MIN_VALUE.
+	 * 
+	 * @param fetchsize
+	 *            rows per round trip, or 0 for the driver default.
+	 * 
+	 * @return this.
+	 */
+	public JDataBufferVector setFetchSize(int fetchsize)
+	{
+		FetchSize = fetchsize;
+		return this;
+	}
+
 	/**
 	 * Gets the num columns.
 	 * 
@@ -273,8 +531,20 @@ extends Vector
 	 */
 	public int getColumnIndex(String var)
 	{
-		Integer I = (Integer) ColumnIndex.get(var);
-		return (I == null) ? -1 : I.intValue();
+		if (ColumnMetaData == null)
+			return -1;
+		return ColumnMetaData.indexOf(var);
+	}
+
+	/**
+	 * Gets the column meta data, shared with other fetches of the query.
+	 * 
+	 * @return description of the columns of executed query, with the row
+	 *         number column if there is one, or null before any.
+	 */
+	public JDbColumnMetaData getColumnMetaData()
+	{
+		return ColumnMetaData;
 	}
 
 	/**
@@ -505,7 +775,24 @@ extends Vector
 	protected void fetchDataRow()
 		throws SQLException
 	{
-		this.add(fetchDataRowVector());
+		this.add(fetchRow());
+	}
+
+	/**
+	 * Fetch the current row of resultset rs in the form rows of this buffer
+	 * take, without adding it. Subclasses that buffer rows in another form
+	 * override this rather than fetchDataRow, so that cursors return the same
+	 * form.
+	 * 
+	 * @return the row fetched
+	 * 
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	protected Object fetchRow()
+		throws SQLException
+	{
+		return fetchDataRowVector();
 	}
 
 	/**
@@ -548,28 +835,34 @@ extends Vector
 	protected void fetchDataRowInit(ResultSetMetaData rsmd)
 		throws SQLException
 	{
-		numColumns = rsmd.getColumnCount();
-		int rownumcol = RowNumColumn ? 1 : 0;
-		int cols = numColumns + rownumcol;
-		ColumnTypes = new int[cols];
-		ColumnNames = new String[cols];
-		ColumnLabels = new String[cols];
-		ColumnIndex = new Hashtable(cols);
-
+		JDbColumnMetaData md = JDbMetaDataCache.describe(MetaDataKey, rsmd);
+		numColumns = md.getColumnCount();
 		if (RowNumColumn)
-		{
-			ColumnTypes[0] = 0;
-			ColumnNames[0] = "ROW";
-			ColumnIndex.put(ColumnNames[0], new Integer(0));
-		}
+			md = md.withRowNumColumn();
+		ColumnMetaData = md;
+		//Copies, as md is shared by all buffers of the query
+		ColumnTypes = md.Types.clone();
+		ColumnNames = md.Names.clone();
+		ColumnLabels = md.Labels.clone();
+		ColumnIndex = md.getColumnIndex();
+	}
 
-		for (int i = 0; i < numColumns; i++)
-		{
-			ColumnTypes[i + rownumcol] = rsmd.getColumnType(i + 1);
-			ColumnNames[i + rownumcol] = rsmd.getColumnName(i + 1);
-			ColumnLabels[i + rownumcol] = rsmd.getColumnLabel(i + 1);
-			ColumnIndex.put(ColumnNames[i + rownumcol], new Integer(i + rownumcol));
-		}
+	/**
+	 * Key of the cached column description of a result of query.
+	 * 
+	 * @param stmt
+	 *            the Statement query was executed on.
+	 * @param query
+	 * @param result
+	 *            which result set of the query, from 0.
+	 * 
+	 * @return the key, as from JDbMetaDataCache.keyOf
+	 */
+	protected String metaDataKey(Statement stmt, String query, int result)
+	{
+		//Kept per Connection, so as to follow a reconnect
+		ConnectionURL = JDbMetaDataCache.urlOf(stmt);
+		return JDbMetaDataCache.keyOf(ConnectionURL, query, result);
 	}
 
 	/**
@@ -582,11 +875,25 @@ extends Vector
 	 */
 	protected void fetchDataRowInit()
 		throws SQLException
+	{
+		this.add(fetchHeaderRow());
+	}
+
+	/**
+	 * Make the header row of column titles in the form rows of this buffer
+	 * take, without adding it.
+	 * 
+	 * @return the header row
+	 * 
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	protected Object fetchHeaderRow()
+		throws SQLException
 	{
 		JRowBufferVector rowvec
 			= new JRowBufferVector
 			(numColumns + 1 + (RowNumColumn ? 1 : 0), ColumnIndex, ColumnTypes);
-		this.add(rowvec);
 
 		if (RowNumColumn)
 			rowvec.add("ROW");
@@ -594,6 +901,59 @@ extends Vector
 		for (int i = + (RowNumColumn ? 1 : 0);
 				 i < numColumns + (RowNumColumn ? 1 : 0); i++)
 			rowvec.add(getColumnTitle(i));
+		return rowvec;
+	}
+
+	/**
+	 * Estimate the memory taken by rows fetched, for JDbInstrumentation.
+	 * 
+	 * @param firstrow
+	 *            index in this of the first of them.
+	 * @param rows
+	 *            number of rows fetched.
+	 * 
+	 * @return estimated bytes, or 0 if not estimated.
+	 */
+	protected long estimateBytes(int firstrow, int rows)
+	{
+		if (firstrow >= size())
+			return 0;
+		return JDbInstrumentation.estimateBytes(subList(firstrow, size()));
+	}
+
+	/**
+	 * Report sql executed without fetching its rows.
+	 */
+	private void reportExec(String sql, int errors)
+	{
+		if (!JDbInstrumentation.isEnabled())
+			return;
+		JDbInstrumentation.statementDone(getClass().getSimpleName(), sql,
+			ExecNanos, 0, -1, 0,
+			ResultStatus.size() > errors ? (Throwable) ResultStatus.get(errors) : null);
+	}
+
+	/**
+	 * Cancel the query running for this buffer, from another thread, by
+	 * Statement.cancel(). The fetch that was running records the exception
+	 * the driver raises for it.
+	 * 
+	 * @return false if no query has run, or the driver could not cancel.
+	 */
+	public boolean cancel()
+	{
+		Statement stmt = execStmt;
+		if (stmt == null)
+			return false;
+		try
+		{
+			stmt.cancel();
+			return true;
+		}
+		catch (SQLException sqle)
+		{
+			return false;
+		}
 	}
 
 	/**
@@ -627,6 +987,9 @@ extends Vector
 	
 	protected Statement jStmt;
 	
+	/** The Statement last executed on, jStmt or a cached PreparedStatement. */
+	protected volatile Statement execStmt;
+	
 	/** The row num. */
 	protected int rowNum = 0;
 	
@@ -648,6 +1011,21 @@ extends Vector
 	/** The Column index. */
 	protected Hashtable ColumnIndex;
 	
+	/** The Column meta data, shared with other fetches of the query. */
+	protected JDbColumnMetaData ColumnMetaData;
+	
+	/** Key of ColumnMetaData in JDbMetaDataCache, or null not to cache it. */
+	protected String MetaDataKey;
+	
+	/** URL of the Connection, to key the column meta data of queries by. */
+	protected String ConnectionURL;
+	
+	/** Nanoseconds the last statement took to execute. */
+	protected long ExecNanos;
+	
+	/** True while fetchResult runs, which reports its exec itself. */
+	private boolean Fetching = false;
+	
 	protected Vector ResultStatus;
 	
 	protected ResultSet rs;
@@ -659,6 +1037,9 @@ extends Vector
 	protected int rowsAffected;
 	
 	protected boolean Debug = false;
+
+	/** Rows per fetch round trip, or 0 for the driver default. */
+	protected int FetchSize = 0;
     
 	/** True if show Header row. */
 	protected boolean HeaderRow = false;
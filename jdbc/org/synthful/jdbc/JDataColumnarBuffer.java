@@ -0,0 +1,778 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ * 
+ */
+package org.synthful.jdbc;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * JDataColumnarBuffer Class. Buffers the rows fetched by a query column by
+ * column, in one primitive array per column typed from ColumnTypes, instead
+ * of as a JRowBufferVector of boxed cells per row.
+ * <br>
+ * Integer columns are held as int[], BIGINT and whole DECIMAL or NUMERIC of
+ * up to 18 digits as long[], floating point as double[], BOOLEAN and BIT of
+ * one bit as a bitmap, dates and times as long[] of milliseconds, and
+ * character columns dictionary encoded, as an int[] of codes into the
+ * distinct values. Other columns, such as fractional DECIMALs and BIT of
+ * several bits, are held as Object[] as the driver reads them. Each column
+ * has a bitmap of its nulls.
+ * <br>
+ * Cells are read by row and column with the typed getters, which read the
+ * arrays directly. Rows are not elements of this Vector, which stays empty;
+ * getNumRows is the number of rows buffered. The header row of setHeaderRow
+ * is not buffered, the column titles being at hand by getColumnTitles.
+ * Not synchronized.
+ */
+public class JDataColumnarBuffer
+extends JDataBufferVector
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new JDataColumnarBuffer.
+	 * 
+	 * @param dblogin
+	 *            the dblogin as JDbLogin
+	 */
+	public JDataColumnarBuffer(JDbLogin dblogin)
+	{
+		super(dblogin);
+		ColumnNames = new String[0];
+	}
+
+	/**
+	 * Instantiates a new JDataColumnarBuffer.
+	 * 
+	 * @param jconn
+	 *            the jconn as Connection
+	 */
+	public JDataColumnarBuffer(Connection jconn)
+	{
+		super(jconn);
+		ColumnNames = new String[0];
+	}
+
+	/**
+	 * Presize the column arrays of the next query, such as to its known row
+	 * count, so that they need not grow as rows are fetched.
+	 * 
+	 * @param rows
+	 *            the expected number of rows.
+	 * 
+	 * @return this.
+	 */
+	public JDataColumnarBuffer setExpectedRows(int rows)
+	{
+		ExpectedRows = Math.max(rows, 16);
+		return this;
+	}
+
+	/**
+	 * Set up the columns of the query, typed by their ColumnTypes, after the
+	 * column lookups of JDataBufferVector.
+	 * 
+	 * @param rsmd
+	 *            the rsmd as ResultSetMetaData
+	 * 
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	protected void fetchDataRowInit(ResultSetMetaData rsmd)
+		throws SQLException
+	{
+		super.fetchDataRowInit(rsmd);
+		int rownumcol = RowNumColumn ? 1 : 0;
+		Columns = new Column[ColumnTypes.length];
+		Capacity = ExpectedRows;
+		Rows = 0;
+
+		if (RowNumColumn)
+			Columns[0] = new IntColumn(Capacity);
+
+		for (int i = 0; i < numColumns; i++)
+			Columns[i + rownumcol] =
+				newColumn(ColumnTypes[i + rownumcol],
+					ColumnMetaData.getPrecision(i + rownumcol),
+					ColumnMetaData.getScale(i + rownumcol));
+	}
+
+	/**
+	 * Rows are not kept in this as Objects, so estimate them by their cells.
+	 */
+	protected long estimateBytes(int firstrow, int rows)
+	{
+		if (!JDbInstrumentation.isEstimateBytes() || Columns == null)
+			return 0;
+		return 8L * rows * Columns.length;
+	}
+
+	/**
+	 * The header row is not buffered.
+	 */
+	protected void fetchDataRowInit()
+		throws SQLException
+	{
+	}
+
+	/**
+	 * Fetch the current row of resultset rs into the column arrays.
+	 * 
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	protected void fetchDataRow()
+		throws SQLException
+	{
+		if (Rows == Capacity)
+		{
+			Capacity = Capacity + (Capacity >> 1);
+			for (int i = 0; i < Columns.length; i++)
+				Columns[i].grow(Capacity);
+		}
+
+		int rownumcol = RowNumColumn ? 1 : 0;
+		if (RowNumColumn)
+			((IntColumn) Columns[0]).Values[Rows] = rowNum;
+
+		for (int i = 0; i < numColumns; i++)
+		{
+			Column column = Columns[i + rownumcol];
+			column.fetch(rs, i + 1, Rows);
+			if (rs.wasNull())
+				column.Nulls.set(Rows);
+		}
+		Rows++;
+	}
+
+	/**
+	 * Clear the rows buffered, keeping the columns.
+	 */
+	public void clear()
+	{
+		super.clear();
+		Rows = 0;
+		if (Columns != null)
+			for (int i = 0; i < Columns.length; i++)
+				Columns[i].Nulls.clear();
+	}
+
+	/**
+	 * Gets the number of rows.
+	 * 
+	 * @return number of rows buffered.
+	 */
+	public int getNumRows()
+	{
+		return Rows;
+	}
+
+	/**
+	 * Checks if a cell is null.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return true if the cell is SQL NULL.
+	 */
+	public boolean isNull(int row, int col)
+	{
+		return column(row, col).Nulls.get(row);
+	}
+
+	/**
+	 * Gets the cell as int.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return the cell as int, or 0 if null.
+	 */
+	public int getInt(int row, int col)
+	{
+		Column column = column(row, col);
+		if (column instanceof IntColumn)
+			return ((IntColumn) column).Values[row];
+		return (int) column.getLong(row);
+	}
+
+	/**
+	 * Gets the cell as long.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return the cell as long, or 0 if null.
+	 */
+	public long getLong(int row, int col)
+	{
+		return column(row, col).getLong(row);
+	}
+
+	/**
+	 * Gets the cell as double.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return the cell as double, or 0 if null.
+	 */
+	public double getDouble(int row, int col)
+	{
+		return column(row, col).getDouble(row);
+	}
+
+	/**
+	 * Gets the cell as boolean.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return the cell as boolean, or false if null.
+	 */
+	public boolean getBoolean(int row, int col)
+	{
+		Column column = column(row, col);
+		if (column instanceof BooleanColumn)
+			return ((BooleanColumn) column).Values.get(row);
+		return column.getLong(row) != 0;
+	}
+
+	/**
+	 * Gets the cell as String.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return the cell as String, or null if null.
+	 */
+	public String getString(int row, int col)
+	{
+		Column column = column(row, col);
+		if (column.Nulls.get(row))
+			return null;
+		if (column instanceof StringColumn)
+			return ((StringColumn) column).get(row);
+		return String.valueOf(column.get(row));
+	}
+
+	/**
+	 * Gets the cell as Object, boxed as rs.getObject would return it.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return the cell, or null if null.
+	 */
+	public Object getObject(int row, int col)
+	{
+		Column column = column(row, col);
+		if (column.Nulls.get(row))
+			return null;
+		return column.get(row);
+	}
+
+	/**
+	 * Gets the cell as Object.
+	 * 
+	 * @param row
+	 * @param var
+	 *            name of column of executed query.
+	 * 
+	 * @return the cell, or null if null or there is no such column.
+	 */
+	public Object getObject(int row, String var)
+	{
+		int col = getColumnIndex(var);
+		if (col < 0)
+			return null;
+		return getObject(row, col);
+	}
+
+	/**
+	 * Sum a numeric column, skipping nulls.
+	 * 
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return sum of the column as double
+	 */
+	public double sum(int col)
+	{
+		Column column = Columns[col];
+		BitSet nulls = column.Nulls;
+		double sum = 0;
+		if (column instanceof IntColumn)
+		{
+			int[] values = ((IntColumn) column).Values;
+			for (int row = 0; row < Rows; row++)
+				sum += values[row];
+		}
+		else if (column instanceof LongColumn)
+		{
+			long[] values = ((LongColumn) column).Values;
+			for (int row = 0; row < Rows; row++)
+				sum += values[row];
+		}
+		else if (column instanceof DoubleColumn)
+		{
+			//Nulls are held as 0, so need not be skipped
+			double[] values = ((DoubleColumn) column).Values;
+			for (int row = 0; row < Rows; row++)
+				sum += values[row];
+		}
+		else
+		{
+			for (int row = 0; row < Rows; row++)
+				if (!nulls.get(row))
+					sum += column.getDouble(row);
+		}
+		return sum;
+	}
+
+	/**
+	 * Gets the distinct values of a dictionary encoded character column.
+	 * 
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return distinct values in order of first appearance, or null if the
+	 *         column is not dictionary encoded.
+	 */
+	public String[] getDictionary(int col)
+	{
+		Column column = Columns[col];
+		if (!(column instanceof StringColumn))
+			return null;
+		StringColumn s = (StringColumn) column;
+		return Arrays.copyOf(s.Dictionary, s.Distinct);
+	}
+
+	/**
+	 * Gets the dictionary code of a cell of a dictionary encoded character
+	 * column, for grouping by the column without comparing Strings.
+	 * 
+	 * @param row
+	 * @param col
+	 *            index of column of executed query.
+	 * 
+	 * @return index of the cell's value in getDictionary, or -1 if null.
+	 */
+	public int getCode(int row, int col)
+	{
+		Column column = column(row, col);
+		if (!(column instanceof StringColumn))
+			throw new IllegalArgumentException("column " + col + " is not dictionary encoded");
+		return ((StringColumn) column).Codes[row];
+	}
+
+	private Column column(int row, int col)
+	{
+		if (row < 0 || row >= Rows)
+			throw new ArrayIndexOutOfBoundsException(row);
+		return Columns[col];
+	}
+
+	/**
+	 * New column of the type of a column of the query.
+	 * 
+	 * @param type
+	 *            java.sql.Types of the column.
+	 * @param precision
+	 * @param scale
+	 * 
+	 * @return the column
+	 */
+	protected Column newColumn(int type, int precision, int scale)
+	{
+		switch (type)
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return new IntColumn(Capacity);
+			case Types.BIGINT:
+				return new LongColumn(Capacity);
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				if (scale == 0 && precision > 0 && precision <= 18)
+					return new LongColumn(Capacity);
+				return new ObjectColumn(Capacity);
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return new DoubleColumn(Capacity);
+			case Types.BIT:
+				//BIT(n) of MySQL and PostgreSQL holds n bits
+				if (precision > 1)
+					return new ObjectColumn(Capacity);
+				return new BooleanColumn();
+			case Types.BOOLEAN:
+				return new BooleanColumn();
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return new TimeColumn(Capacity, type);
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				return new StringColumn(Capacity);
+			default:
+				return new ObjectColumn(Capacity);
+		}
+	}
+
+	/**
+	 * Column Class. Cells of one column, in an array of its type.
+	 */
+	static abstract protected class Column
+	{
+		/** Rows whose cell is SQL NULL. */
+		final BitSet Nulls = new BitSet();
+
+		/**
+		 * Fetch the cell of column col of the current row of rs into row.
+		 */
+		abstract void fetch(ResultSet rs, int col, int row)
+			throws SQLException;
+
+		abstract void grow(int capacity);
+
+		abstract Object get(int row);
+
+		long getLong(int row)
+		{
+			Object o = get(row);
+			return o instanceof Number ? ((Number) o).longValue() : 0;
+		}
+
+		double getDouble(int row)
+		{
+			Object o = get(row);
+			return o instanceof Number ? ((Number) o).doubleValue() : 0;
+		}
+	}
+
+	static final class IntColumn
+	extends Column
+	{
+		IntColumn(int capacity)
+		{
+			Values = new int[capacity];
+		}
+
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			Values[row] = rs.getInt(col);
+		}
+
+		void grow(int capacity)
+		{
+			Values = Arrays.copyOf(Values, capacity);
+		}
+
+		Object get(int row)
+		{
+			return Integer.valueOf(Values[row]);
+		}
+
+		long getLong(int row)
+		{
+			return Values[row];
+		}
+
+		double getDouble(int row)
+		{
+			return Values[row];
+		}
+
+		int[] Values;
+	}
+
+	static final class LongColumn
+	extends Column
+	{
+		LongColumn(int capacity)
+		{
+			Values = new long[capacity];
+		}
+
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			Values[row] = rs.getLong(col);
+		}
+
+		void grow(int capacity)
+		{
+			Values = Arrays.copyOf(Values, capacity);
+		}
+
+		Object get(int row)
+		{
+			return Long.valueOf(Values[row]);
+		}
+
+		long getLong(int row)
+		{
+			return Values[row];
+		}
+
+		double getDouble(int row)
+		{
+			return Values[row];
+		}
+
+		long[] Values;
+	}
+
+	static final class DoubleColumn
+	extends Column
+	{
+		DoubleColumn(int capacity)
+		{
+			Values = new double[capacity];
+		}
+
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			Values[row] = rs.getDouble(col);
+		}
+
+		void grow(int capacity)
+		{
+			Values = Arrays.copyOf(Values, capacity);
+		}
+
+		Object get(int row)
+		{
+			return Double.valueOf(Values[row]);
+		}
+
+		long getLong(int row)
+		{
+			return (long) Values[row];
+		}
+
+		double getDouble(int row)
+		{
+			return Values[row];
+		}
+
+		double[] Values;
+	}
+
+	static final class BooleanColumn
+	extends Column
+	{
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			if (rs.getBoolean(col))
+				Values.set(row);
+			else
+				Values.clear(row);
+		}
+
+		void grow(int capacity)
+		{
+		}
+
+		Object get(int row)
+		{
+			return Boolean.valueOf(Values.get(row));
+		}
+
+		long getLong(int row)
+		{
+			return Values.get(row) ? 1 : 0;
+		}
+
+		double getDouble(int row)
+		{
+			return getLong(row);
+		}
+
+		final BitSet Values = new BitSet();
+	}
+
+	/**
+	 * Dates, times and timestamps as milliseconds. Nanoseconds of timestamps
+	 * beyond the millisecond are not kept.
+	 */
+	static final class TimeColumn
+	extends Column
+	{
+		TimeColumn(int capacity, int type)
+		{
+			Values = new long[capacity];
+			Type = type;
+		}
+
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			java.util.Date d;
+			if (Type == Types.DATE)
+				d = rs.getDate(col);
+			else if (Type == Types.TIME)
+				d = rs.getTime(col);
+			else
+				d = rs.getTimestamp(col);
+			Values[row] = d == null ? 0 : d.getTime();
+		}
+
+		void grow(int capacity)
+		{
+			Values = Arrays.copyOf(Values, capacity);
+		}
+
+		Object get(int row)
+		{
+			if (Type == Types.DATE)
+				return new Date(Values[row]);
+			if (Type == Types.TIME)
+				return new Time(Values[row]);
+			return new Timestamp(Values[row]);
+		}
+
+		long getLong(int row)
+		{
+			return Values[row];
+		}
+
+		double getDouble(int row)
+		{
+			return Values[row];
+		}
+
+		long[] Values;
+		final int Type;
+	}
+
+	/**
+	 * Character cells as codes into a dictionary of the distinct values.
+	 */
+	static final class StringColumn
+	extends Column
+	{
+		StringColumn(int capacity)
+		{
+			Codes = new int[capacity];
+		}
+
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			String s = rs.getString(col);
+			if (s == null)
+			{
+				Codes[row] = -1;
+				return;
+			}
+
+			Integer code = Index.get(s);
+			if (code == null)
+			{
+				if (Distinct == Dictionary.length)
+					Dictionary = Arrays.copyOf(Dictionary, Distinct << 1);
+				code = Integer.valueOf(Distinct);
+				Dictionary[Distinct++] = s;
+				Index.put(s, code);
+			}
+			Codes[row] = code.intValue();
+		}
+
+		void grow(int capacity)
+		{
+			Codes = Arrays.copyOf(Codes, capacity);
+		}
+
+		String get(int row)
+		{
+			int code = Codes[row];
+			return code < 0 ? null : Dictionary[code];
+		}
+
+		double getDouble(int row)
+		{
+			String s = get(row);
+			try
+			{
+				return s == null ? 0 : Double.parseDouble(s.trim());
+			}
+			catch (NumberFormatException e)
+			{
+				return 0;
+			}
+		}
+
+		long getLong(int row)
+		{
+			return (long) getDouble(row);
+		}
+
+		int[] Codes;
+		String[] Dictionary = new String[16];
+		int Distinct = 0;
+		final HashMap<String, Integer> Index = new HashMap<String, Integer>();
+	}
+
+	static final class ObjectColumn
+	extends Column
+	{
+		ObjectColumn(int capacity)
+		{
+			Values = new Object[capacity];
+		}
+
+		void fetch(ResultSet rs, int col, int row)
+			throws SQLException
+		{
+			Values[row] = rs.getObject(col);
+		}
+
+		void grow(int capacity)
+		{
+			Values = Arrays.copyOf(Values, capacity);
+		}
+
+		Object get(int row)
+		{
+			return Values[row];
+		}
+
+		Object[] Values;
+	}
+
+	/** The Columns, in order of ColumnNames. */
+	protected Column[] Columns;
+
+	/** Number of rows buffered. */
+	protected int Rows = 0;
+
+	/** Length of the column arrays. */
+	protected int Capacity = 1024;
+
+	/** Initial length of the column arrays of a query. */
+	protected int ExpectedRows = 1024;
+}
@@ -47,6 +47,19 @@ public class JDataColumns
         getDataColumns();
     }
     
+    /**
+	 * Instantiates a new JDataColumns from columns already described, such
+	 * as by getColumnMetaData of a buffer, without reading the meta data
+	 * again.
+	 * 
+	 * @param md
+	 *            md as JDbColumnMetaData
+	 */
+    public JDataColumns(JDbColumnMetaData md)
+    {
+        getDataColumns(md);
+    }
+    
     /**
 	 * Gets data and store into this.DataColumns.
 	 * 
@@ -56,15 +69,27 @@ public class JDataColumns
     public void getDataColumns()
     throws SQLException
     {
-        ColumnCount = RSMD.getColumnCount();
+        getDataColumns(JDbColumnMetaData.of(RSMD));
+    }
+    
+    /**
+	 * Gets data from md and store into this.DataColumns, counted from 1.
+	 * 
+	 * @param md
+	 */
+    protected void getDataColumns(JDbColumnMetaData md)
+    {
+        ColumnCount = md.getColumnCount();
+        DataColumns = new JDataColumn[ColumnCount + 1];
         for (int i=1; i<=ColumnCount; i++)
         {
             DataColumns[i] = new JDataColumn();
-            DataColumns[i].ClassName = RSMD.getColumnClassName(i);
-            DataColumns[i].length = RSMD.getColumnDisplaySize(i);
-            DataColumns[i].Label = RSMD.getColumnLabel(i);
-            DataColumns[i].Type = RSMD.getColumnType(i);
-            DataColumns[i].TypeName = RSMD.getColumnTypeName(i);
+            DataColumns[i].ClassName = md.getClassName(i - 1);
+            DataColumns[i].length = md.getDisplaySize(i - 1);
+            DataColumns[i].Label = md.getLabel(i - 1);
+            DataColumns[i].Type = md.getType(i - 1);
+            DataColumns[i].TypeName = md.getTypeName(i - 1);
+            DataColumns[i].Column = i;
         }
         
     }
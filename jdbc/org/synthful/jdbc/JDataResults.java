@@ -44,6 +44,30 @@ public class JDataResults
 		}
 	}
 	
+	/**
+	 * Instantiates a new JDataResults, executing on the Statement of dblogin,
+	 * and so on a pooled Connection if dblogin pools.
+	 * 
+	 * @param dblogin
+	 *            the dblogin as JDbLogin
+	 */
+	public JDataResults(JDbLogin dblogin)
+	{
+		dbLogin = dblogin;
+		jStmt = dbLogin.getStatement();
+		ResultStatus = new Vector();
+	}
+
+	/**
+	 * Release connection.
+	 * Logout, returning a pooled Connection to its pool. The next exec
+	 * borrows again.
+	 */
+	public void ReleaseConnection()
+	{
+		if (dbLogin != null)
+			dbLogin.logout();
+	}
 
 	/**
 	 * Execute query
@@ -55,9 +79,17 @@ public class JDataResults
 	 */
 	public JDataResults exec(String sql)
 	{
+		int errors = ResultStatus.size();
+		ExecNanos = 0;
 		try
 		{
+			//Borrow again from the pool after a logout
+			if (dbLogin != null && (jStmt == null || jStmt.isClosed()))
+				jStmt = dbLogin.getStatement();
+			execStmt = jStmt;
+			long start = System.nanoTime();
 			results = jStmt.execute(sql);
+			ExecNanos = System.nanoTime() - start;
 		}
 		catch (SQLException sqle)
 		{
@@ -67,6 +99,52 @@ public class JDataResults
 		{
 			ResultStatus.add(e);
 		}
+		if (!Fetching)
+			reportExec(sql, errors);
+		return this;
+	}
+
+	/**
+	 * Execute parameterized query, on a PreparedStatement cached for the
+	 * Connection by JDbStatementCache.
+	 * 
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return this.
+	 */
+	public JDataResults exec(String sql, Object... params)
+	{
+		int errors = ResultStatus.size();
+		ExecNanos = 0;
+		try
+		{
+			Connection conn = JConn;
+			if (dbLogin != null)
+			{
+				//Borrows again from the pool after a logout
+				dbLogin.getStatement();
+				conn = dbLogin.getConnection();
+			}
+			PreparedStatement ps = JDbStatementCache.forConnection(conn).prepare(sql);
+			JUtil.setParameters(ps, params);
+			execStmt = ps;
+			long start = System.nanoTime();
+			results = ps.execute();
+			ExecNanos = System.nanoTime() - start;
+		}
+		catch (SQLException sqle)
+		{
+			ResultStatus.add(sqle);
+		}
+		catch (Exception e)
+		{
+			ResultStatus.add(e);
+		}
+		if (!Fetching)
+			reportExec(sql, errors);
 		return this;
 	}
 
@@ -85,6 +163,22 @@ public class JDataResults
 		return this;
 	}
 
+	/**
+	 * Perform fetchResult of parameterized SQL.
+	 * 
+	 * @param query
+	 *            SQL query to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return this.
+	 */
+	public JDataResults fetch(String query, Object... params)
+	{
+		fetchResult(query, params, true);
+		return this;
+	}
+
 	/**
 	 * Perform fetchResult with reset set to false to allow accumulation of
 	 * results with previous queries.
@@ -116,16 +210,46 @@ public class JDataResults
 	public ResultSet fetchResult(
 		String query, boolean fetchrows)
 	{
+		return fetchResult(query, null, fetchrows);
+	}
+
+	/**
+	 * Fetch result, of parameterized SQL if params is not null.
+	 * 
+	 * @param query
+	 *            SQL query to be executed.
+	 * @param params
+	 *            values of the parameters, in order, or null to execute the
+	 *            query as it is.
+	 * @param fetchrows
+	 *            true if rows are to be fetched from result set.
+	 * 
+	 * @return JDBC ResultSet, the handle used to fetch the rows.
+	 */
+	public ResultSet fetchResult(
+		String query, Object[] params, boolean fetchrows)
+	{
+		int firstrownum = rowNum;
+		int errors = ResultStatus.size();
+		long fetchstart = 0;
+		Fetching = true;
 		try
 		{
-			exec(query);
-
+			execStmt = null;
+			if (params == null)
+				exec(query);
+			else
+				exec(query, params);
+
+			fetchstart = System.nanoTime();
+			int resultnum = 0;
 			do
 			{               
 				if (results)
 				{
-                    rs = jStmt.getResultSet();
+                    rs = execStmt.getResultSet();
                     rsmd = rs.getMetaData();
+                    MetaDataKey = metaDataKey(execStmt, query, resultnum++);
                     
                     if (fetchrows)
                     {
@@ -140,12 +264,12 @@ public class JDataResults
 				}
 				else
 				{
-					rowsAffected = jStmt.getUpdateCount();
+					rowsAffected = execStmt.getUpdateCount();
 
 					if (Debug)
 						System.out.println("DataBuffVec: No Results:" + rowsAffected);
 				}
-				results = jStmt.getMoreResults();
+				results = execStmt.getMoreResults();
 			}
 			while (results || rowsAffected != -1);
 		}
@@ -157,10 +281,32 @@ public class JDataResults
 		{
 			ResultStatus.add(e);
 		}
+		finally
+		{
+			Fetching = false;
+		}
+
+		//Rows are not kept, so take no memory to estimate
+		if (JDbInstrumentation.isEnabled())
+			JDbInstrumentation.statementDone("JDataResults", query,
+				ExecNanos, fetchstart == 0 ? 0 : System.nanoTime() - fetchstart,
+				rowNum - firstrownum, 0,
+				ResultStatus.size() > errors ? (Throwable) ResultStatus.get(errors) : null);
 
 		return rs;
 	}
 
+	/**
+	 * Report sql executed without fetching its rows.
+	 */
+	private void reportExec(String sql, int errors)
+	{
+		if (!JDbInstrumentation.isEnabled())
+			return;
+		JDbInstrumentation.statementDone("JDataResults", sql, ExecNanos, 0, -1, 0,
+			ResultStatus.size() > errors ? (Throwable) ResultStatus.get(errors) : null);
+	}
+
 	/*
      Reminder when over-riding any of the following routines.
 	 RowNumColumn must be equitably treated by fetchDataRow,
@@ -215,7 +361,7 @@ public class JDataResults
             fields[0] = new Integer(rowNum);
         
 		for (int i = 1; i <= numColumns; i++)
-			fields[i+offset] = rs.getObject(i);
+			fields[i - 1 + offset] = rs.getObject(i);
 
 //		this.add(fields);
 	}
@@ -229,28 +375,34 @@ public class JDataResults
 	protected void fetchResultsInit()
 		throws SQLException
 	{
-		numColumns = rsmd.getColumnCount();
-		int rownumcol = RowNumColumn ? 1 : 0;
-		int cols = numColumns + rownumcol;
-		ColumnTypes = new int[cols];
-		ColumnNames = new String[cols];
-		ColumnLabels = new String[cols];
-		ColumnIndex = new Hashtable(cols);
-
+		JDbColumnMetaData md = JDbMetaDataCache.describe(MetaDataKey, rsmd);
+		numColumns = md.getColumnCount();
 		if (RowNumColumn)
-		{
-			ColumnTypes[0] = 0;
-			ColumnNames[0] = "ROW";
-			ColumnIndex.put(ColumnNames[0], new Integer(0));
-		}
+			md = md.withRowNumColumn();
+		ColumnMetaData = md;
+		//Copies, as md is shared by all buffers of the query
+		ColumnTypes = md.Types.clone();
+		ColumnNames = md.Names.clone();
+		ColumnLabels = md.Labels.clone();
+		ColumnIndex = md.getColumnIndex();
+	}
 
-		for (int i = 0; i < numColumns; i++)
-		{
-			ColumnTypes[i + rownumcol] = rsmd.getColumnType(i + 1);
-			ColumnNames[i + rownumcol] = rsmd.getColumnName(i + 1);
-			ColumnLabels[i + rownumcol] = rsmd.getColumnLabel(i + 1);
-			ColumnIndex.put(ColumnNames[i + rownumcol], new Integer(i + rownumcol));
-		}
+	/**
+	 * Key of the cached column description of a result of query.
+	 * 
+	 * @param stmt
+	 *            the Statement query was executed on.
+	 * @param query
+	 * @param result
+	 *            which result set of the query, from 0.
+	 * 
+	 * @return the key, as from JDbMetaDataCache.keyOf
+	 */
+	protected String metaDataKey(Statement stmt, String query, int result)
+	{
+		//Kept per Connection, so as to follow a reconnect
+		ConnectionURL = JDbMetaDataCache.urlOf(stmt);
+		return JDbMetaDataCache.keyOf(ConnectionURL, query, result);
 	}
     
     
@@ -284,8 +436,20 @@ public class JDataResults
 	 */
 	public int getColumnIndex(String var)
 	{
-		Integer I = (Integer) ColumnIndex.get(var);
-		return (I == null) ? -1 : I.intValue();
+		if (ColumnMetaData == null)
+			return -1;
+		return ColumnMetaData.indexOf(var);
+	}
+
+	/**
+	 * Gets the column meta data, shared with other fetches of the query.
+	 * 
+	 * @return description of the columns of executed query, with the row
+	 *         number column if there is one, or null before any.
+	 */
+	public JDbColumnMetaData getColumnMetaData()
+	{
+		return ColumnMetaData;
 	}
 
 	/**
@@ -508,8 +672,13 @@ public class JDataResults
 
 	protected Connection JConn;
 	
+	protected JDbLogin dbLogin;
+	
 	protected Statement jStmt;
 	
+	/** The Statement last executed on, jStmt or a cached PreparedStatement. */
+	protected Statement execStmt;
+	
 	protected int rowNum = 0;
 	
 	protected int numColumns = 0;
@@ -532,6 +701,21 @@ public class JDataResults
 	/** The Column index. */
 	protected Hashtable ColumnIndex;
 	
+	/** The Column meta data, shared with other fetches of the query. */
+	protected JDbColumnMetaData ColumnMetaData;
+	
+	/** Key of ColumnMetaData in JDbMetaDataCache, or null not to cache it. */
+	protected String MetaDataKey;
+	
+	/** URL of the Connection, to key the column meta data of queries by. */
+	protected String ConnectionURL;
+	
+	/** Nanoseconds the last statement took to execute. */
+	protected long ExecNanos;
+	
+	/** True while fetchResult runs, which reports its exec itself. */
+	private boolean Fetching = false;
+	
 	protected Vector ResultStatus;
 	
 	protected ResultSet rs;
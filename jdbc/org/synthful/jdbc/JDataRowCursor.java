@@ -0,0 +1,211 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ * 
+ */
+package org.synthful.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * JDataRowCursor Class. Forward only cursor over the rows of a query, as
+ * returned by JDataBufferVector.fetchCursor. Each row is fetched from the
+ * ResultSet only when asked for and is not kept, so a cursor over millions of
+ * rows holds one row at a time.
+ * <br>
+ * The Statement of the query is closed when the rows run out, on an error,
+ * or on close, whichever comes first; close it in a finally block, or use it
+ * in try with resources, if the rows may not all be read. A cursor iterates
+ * once. Not synchronized.
+ */
+public class JDataRowCursor
+implements Iterator<Object>, Iterable<Object>, AutoCloseable
+{
+
+	/**
+	 * Instantiates a new JDataRowCursor.
+	 * 
+	 * @param buffer
+	 *            buffer whose row form and column lookups the rows take.
+	 * @param stmt
+	 *            statement of the query, or null for no rows.
+	 * @param rs
+	 *            result set of the query, or null for no rows.
+	 * @param header
+	 *            header row to return first, or null.
+	 */
+	JDataRowCursor(
+		JDataBufferVector buffer, Statement stmt, ResultSet rs, Object header)
+	{
+		Buffer = buffer;
+		Stmt = stmt;
+		Rs = rs;
+		NextRow = header;
+		Closed = rs == null;
+	}
+
+	/**
+	 * Fetch the next row, if not already fetched.
+	 * 
+	 * @return true if there is another row.
+	 */
+	public boolean hasNext()
+	{
+		if (NextRow != null)
+			return true;
+		if (Closed)
+			return false;
+
+		try
+		{
+			if (Rs.next())
+			{
+				Buffer.rowNum++;
+				NextRow = Buffer.fetchRow();
+				return true;
+			}
+		}
+		catch (SQLException sqle)
+		{
+			Buffer.catchSQLException(sqle);
+		}
+		close();
+		return false;
+	}
+
+	/**
+	 * @return the next row, as JRowBufferVector or whatever row form the
+	 *         buffer takes.
+	 * 
+	 * @throws NoSuchElementException
+	 *             if there are no more rows.
+	 */
+	public Object next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+		Object row = NextRow;
+		NextRow = null;
+		return row;
+	}
+
+	/**
+	 * Not supported.
+	 */
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return this, since a cursor iterates once.
+	 */
+	public Iterator<Object> iterator()
+	{
+		return this;
+	}
+
+	/**
+	 * Stream the remaining rows. Closing the stream closes the cursor.
+	 * 
+	 * @return sequential Stream of rows
+	 */
+	public Stream<Object> stream()
+	{
+		return StreamSupport.stream(
+			Spliterators.spliteratorUnknownSize(
+				this, Spliterator.ORDERED | Spliterator.NONNULL),
+			false).onClose(new Runnable()
+			{
+				public void run()
+				{
+					close();
+				}
+			});
+	}
+
+	/**
+	 * Gets the number of rows fetched so far.
+	 * 
+	 * @return number of rows fetched, not counting the header row.
+	 */
+	public int getNumRows()
+	{
+		return Buffer.rowNum;
+	}
+
+	/**
+	 * Close the result set and release the Statement. Rows not yet read are
+	 * discarded. Closing again does nothing.
+	 */
+	public void close()
+	{
+		NextRow = null;
+		if (Closed)
+			return;
+		Closed = true;
+		if (Sql != null && JDbInstrumentation.isEnabled())
+			JDbInstrumentation.statementDone("JDataRowCursor", Sql, ExecNanos,
+				System.nanoTime() - OpenNanos, Buffer.rowNum, 0,
+				Buffer.ResultStatus.size() > Errors
+					? (Throwable) Buffer.ResultStatus.get(Errors) : null);
+
+		try
+		{
+			Rs.close();
+		}
+		catch (SQLException sqle)
+		{
+			Buffer.catchSQLException(sqle);
+		}
+		try
+		{
+			Stmt.close();
+		}
+		catch (SQLException sqle)
+		{
+			Buffer.catchSQLException(sqle);
+		}
+	}
+
+	/**
+	 * Checks if is Closed.
+	 * 
+	 * @return true if the Statement has been released.
+	 */
+	public boolean isClosed()
+	{
+		return Closed;
+	}
+
+	/**
+	 * Report the query to JDbInstrumentation when closed, with the time
+	 * from now on as its fetch time.
+	 */
+	void instrument(String sql, long execnanos)
+	{
+		Sql = sql;
+		ExecNanos = execnanos;
+		OpenNanos = System.nanoTime();
+		Errors = Buffer.ResultStatus.size();
+	}
+
+	private final JDataBufferVector Buffer;
+	private final Statement Stmt;
+	private final ResultSet Rs;
+	private Object NextRow;
+	private boolean Closed;
+	private String Sql;
+	private long ExecNanos;
+	private long OpenNanos;
+	private int Errors;
+}
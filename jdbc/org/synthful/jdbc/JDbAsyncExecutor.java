@@ -0,0 +1,370 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * JDbAsyncExecutor Class. Runs fetches into JDataArrayVectors without
+ * blocking the caller, each on its own Connection borrowed from the pool of
+ * a JDbLogin, so that independent queries, such as those of one page, run
+ * at the same time rather than one after another.
+ * <br>
+ * Queries run on virtual threads where the JDK has them, otherwise on a
+ * fixed number of threads, as many as the pool has Connections. Without a
+ * pool, queries run one at a time on the Connection of the JDbLogin.
+ * <br>
+ * The future of a query completes with its buffer once all of its rows are
+ * fetched; errors of the query itself are in getResultStatus of the buffer,
+ * as for fetch. The future fails with SQLTimeoutException if the query
+ * outruns its timeout, and with the SQLException if no Connection could be
+ * borrowed. Cancelling the future, or its timing out, cancels the running
+ * query by Statement.cancel().
+ * <pre>
+ * JDbAsyncExecutor x = new JDbAsyncExecutor(dblogin).setTimeout(5000);
+ * CompletableFuture&lt;JDataArrayVector[]&gt; all = x.fetchAll(sql1, sql2, sql3);
+ * JDataArrayVector[] v = all.join();
+ * </pre>
+ */
+public class JDbAsyncExecutor
+implements AutoCloseable
+{
+
+	/**
+	 * Instantiates a new JDbAsyncExecutor.
+	 *
+	 * @param dblogin
+	 *            the dblogin as JDbLogin, already logged in.
+	 */
+	public JDbAsyncExecutor(JDbLogin dblogin)
+	{
+		dbLogin = dblogin;
+		JDbConnectionPool pool = dbLogin.getConnectionPool();
+		Executor = pool == null
+			? Executors.newSingleThreadExecutor(Daemons)
+			: newExecutor(pool.getMaxSize());
+	}
+
+	/**
+	 * Sets the Timeout of each query.
+	 *
+	 * @param millis
+	 *            timeout in milliseconds, or 0 for none.
+	 *
+	 * @return this.
+	 */
+	public JDbAsyncExecutor setTimeout(long millis)
+	{
+		Timeout = millis;
+		return this;
+	}
+
+	/**
+	 * Sets the HeaderRow of each buffer fetched into.
+	 *
+	 * @param yes
+	 *
+	 * @return this.
+	 */
+	public JDbAsyncExecutor setHeaderRow(boolean yes)
+	{
+		HeaderRow = yes;
+		return this;
+	}
+
+	/**
+	 * Fetch query into a new JDataArrayVector, with the Timeout of this.
+	 *
+	 * @param query
+	 *            SQL query to be executed.
+	 *
+	 * @return future of the buffer.
+	 */
+	public CompletableFuture<JDataArrayVector> fetch(String query)
+	{
+		return fetch(query, null, Timeout);
+	}
+
+	/**
+	 * Fetch parameterized query into a new JDataArrayVector, with the Timeout
+	 * of this.
+	 *
+	 * @param query
+	 *            SQL query to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 *
+	 * @return future of the buffer.
+	 */
+	public CompletableFuture<JDataArrayVector> fetch(String query, Object... params)
+	{
+		return fetch(query, params, Timeout);
+	}
+
+	/**
+	 * Fetch query into a new JDataArrayVector.
+	 *
+	 * @param query
+	 *            SQL query to be executed.
+	 * @param params
+	 *            values of the parameters, in order, or null if the query
+	 *            has none.
+	 * @param timeout
+	 *            milliseconds the query may take, or 0 for no limit.
+	 *
+	 * @return future of the buffer.
+	 */
+	public CompletableFuture<JDataArrayVector> fetch(
+		String query, Object[] params, final long timeout)
+	{
+		final Query q = new Query(query, params);
+		if (timeout > 0)
+		{
+			final ScheduledFuture<?> timer = Timer.schedule(new Runnable()
+			{
+				public void run()
+				{
+					q.completeExceptionally(
+						new SQLTimeoutException("Query timed out after " + timeout + "ms"));
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+			q.whenComplete(new BiConsumer<JDataArrayVector, Throwable>()
+			{
+				public void accept(JDataArrayVector v, Throwable t)
+				{
+					timer.cancel(false);
+				}
+			});
+		}
+		Executor.execute(q);
+		return q;
+	}
+
+	/**
+	 * Fetch queries at the same time, with the Timeout of this for each.
+	 *
+	 * @param queries
+	 *            SQL queries to be executed.
+	 *
+	 * @return future of the buffers, in the order of queries, which fails if
+	 *         any query fails, once all are done. Cancelling it cancels the
+	 *         queries still running.
+	 */
+	public CompletableFuture<JDataArrayVector[]> fetchAll(String... queries)
+	{
+		Object[][] params = new Object[queries.length][];
+		return fetchAll(queries, params, Timeout);
+	}
+
+	/**
+	 * Fetch parameterized queries at the same time.
+	 *
+	 * @param queries
+	 *            SQL queries to be executed.
+	 * @param params
+	 *            parameters of each query, or null for a query without.
+	 * @param timeout
+	 *            milliseconds each query may take, or 0 for no limit.
+	 *
+	 * @return future of the buffers, in the order of queries, which fails if
+	 *         any query fails, once all are done. Cancelling it cancels the
+	 *         queries still running.
+	 */
+	public CompletableFuture<JDataArrayVector[]> fetchAll(
+		String[] queries, Object[][] params, long timeout)
+	{
+		final CompletableFuture<?>[] fetches = new CompletableFuture<?>[queries.length];
+		for (int i = 0; i < queries.length; i++)
+			fetches[i] = fetch(queries[i], params == null ? null : params[i], timeout);
+
+		final CompletableFuture<JDataArrayVector[]> all = CompletableFuture.allOf(fetches)
+			.thenApply(new Function<Void, JDataArrayVector[]>()
+			{
+				public JDataArrayVector[] apply(Void v)
+				{
+					JDataArrayVector[] buffers = new JDataArrayVector[fetches.length];
+					for (int i = 0; i < fetches.length; i++)
+						buffers[i] = (JDataArrayVector) fetches[i].join();
+					return buffers;
+				}
+			});
+		all.whenComplete(new BiConsumer<JDataArrayVector[], Throwable>()
+		{
+			public void accept(JDataArrayVector[] v, Throwable t)
+			{
+				if (all.isCancelled())
+					for (CompletableFuture<?> f : fetches)
+						f.cancel(true);
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * Stop taking queries, and cancel those still running.
+	 */
+	public void close()
+	{
+		Executor.shutdownNow();
+		Timer.shutdownNow();
+	}
+
+	/**
+	 * Gets the Executor, such as to chain further stages on.
+	 *
+	 * @return the Executor as ExecutorService
+	 */
+	public ExecutorService getExecutor()
+	{
+		return Executor;
+	}
+
+	/**
+	 * A virtual thread per task where the JDK has them, found reflectively so
+	 * that this compiles on older JDKs, otherwise a fixed number of threads.
+	 */
+	static private ExecutorService newExecutor(int threads)
+	{
+		try
+		{
+			return (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (Exception e)
+		{
+			return Executors.newFixedThreadPool(Math.max(threads, 1), Daemons);
+		}
+	}
+
+	/**
+	 * Query Class. Future of one fetch, which runs the fetch when executed.
+	 */
+	private class Query
+	extends CompletableFuture<JDataArrayVector>
+	implements Runnable
+	{
+		Query(String query, Object[] params)
+		{
+			QueryString = query;
+			Params = params;
+		}
+
+		public void run()
+		{
+			if (isDone())
+				return;
+			JDbConnectionPool pool = dbLogin.getConnectionPool();
+			Connection conn = null;
+			try
+			{
+				if (pool != null)
+					conn = pool.borrow();
+				else
+				{
+					dbLogin.getStatement();
+					conn = dbLogin.getConnection();
+				}
+				JDataArrayVector v = new JDataArrayVector(conn);
+				v.setHeaderRow(HeaderRow);
+				Buffer = v;
+				//Cancelled while the buffer was being made
+				if (isDone())
+					return;
+				if (Params == null)
+					v.fetch(QueryString);
+				else
+					v.fetch(QueryString, Params);
+				v.ReleaseStatement();
+				complete(v);
+			}
+			catch (SQLException sqle)
+			{
+				completeExceptionally(sqle);
+			}
+			catch (RuntimeException e)
+			{
+				completeExceptionally(e);
+			}
+			finally
+			{
+				Buffer = null;
+				if (pool != null && conn != null)
+				{
+					try
+					{
+						//Returns it to the pool
+						conn.close();
+					}
+					catch (SQLException e)
+					{
+					}
+				}
+			}
+		}
+
+		public boolean completeExceptionally(Throwable t)
+		{
+			boolean done = super.completeExceptionally(t);
+			if (done)
+				cancelQuery();
+			return done;
+		}
+
+		public boolean cancel(boolean mayInterrupt)
+		{
+			boolean done = super.cancel(mayInterrupt);
+			if (done)
+				cancelQuery();
+			return done;
+		}
+
+		private void cancelQuery()
+		{
+			JDataArrayVector v = Buffer;
+			if (v != null)
+				v.cancel();
+		}
+
+		final String QueryString;
+		final Object[] Params;
+		volatile JDataArrayVector Buffer;
+	}
+
+	static private final ThreadFactory Daemons = new ThreadFactory()
+	{
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "JDbAsyncExecutor");
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
+	protected JDbLogin dbLogin;
+
+	/** Milliseconds each query may take, or 0 for no limit. */
+	protected long Timeout = 0;
+
+	/** The HeaderRow of each buffer fetched into. */
+	protected boolean HeaderRow = false;
+
+	protected final ExecutorService Executor;
+
+	private final ScheduledExecutorService Timer =
+		Executors.newSingleThreadScheduledExecutor(Daemons);
+}
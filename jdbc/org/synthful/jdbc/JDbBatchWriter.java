@@ -0,0 +1,551 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ * 
+ */
+package org.synthful.jdbc;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDbBatchWriter Class. Writes rows of parameters through one parameterized
+ * SQL statement, such as an insert, in JDBC batches of setBatchSize rows,
+ * each batch committed as one transaction.
+ * <br>
+ * With setParallelism above 1 and a JDbLogin that pools, batches are written
+ * on that many pooled Connections at once, at most two batches per
+ * Connection being held in memory; otherwise they are written in turn on the
+ * Connection of the JDbLogin, as they fill. The threads writing in parallel
+ * are daemons, so that a writer not closed does not keep the JVM from
+ * exiting, and batches still under way then are lost; close the writer to
+ * have them all written.
+ * <br>
+ * A row that fails is recorded, with its exception, in the Batch result of
+ * its batch and in getResultStatus, and the rest of its batch is written
+ * again without it. With setStopOnError, no further rows are taken after a
+ * failure, although batches already under way complete.
+ * <pre>
+ * JDbBatchWriter w = new JDbBatchWriter(dblogin, "insert into T values(?,?)");
+ * for (...)
+ *     w.add(a, b);
+ * w.close();
+ * </pre>
+ */
+public class JDbBatchWriter
+implements AutoCloseable
+{
+
+	/**
+	 * Instantiates a new JDbBatchWriter.
+	 * 
+	 * @param dblogin
+	 *            the dblogin as JDbLogin
+	 * @param sql
+	 *            to be executed for each row, with ? for each parameter.
+	 */
+	public JDbBatchWriter(JDbLogin dblogin, String sql)
+	{
+		dbLogin = dblogin;
+		Sql = sql;
+	}
+
+	/**
+	 * Sets the BatchSize.
+	 * 
+	 * @param size
+	 *            rows per batch, default 1000.
+	 * 
+	 * @return this.
+	 */
+	public JDbBatchWriter setBatchSize(int size)
+	{
+		BatchSize = Math.max(size, 1);
+		return this;
+	}
+
+	/**
+	 * Sets the Parallelism. Only a JDbLogin that pools can write on more
+	 * than one Connection. Set before the first row is added.
+	 * 
+	 * @param threads
+	 *            Connections to write on at once, default 1.
+	 * 
+	 * @return this.
+	 */
+	public JDbBatchWriter setParallelism(int threads)
+	{
+		Parallelism = Math.max(threads, 1);
+		return this;
+	}
+
+	/**
+	 * Sets StopOnError.
+	 * 
+	 * @param yes
+	 *            true to take no further rows after a row fails.
+	 * 
+	 * @return this.
+	 */
+	public JDbBatchWriter setStopOnError(boolean yes)
+	{
+		StopOnError = yes;
+		return this;
+	}
+
+	/**
+	 * Add a row of parameters, writing the batch if it is full.
+	 * 
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return false if the row was not taken, having stopped on error.
+	 */
+	public boolean add(Object... params)
+	{
+		if (Stopped)
+			return false;
+		if (Pending == null)
+			Pending = new ArrayList<Object[]>(BatchSize);
+		Pending.add(params);
+		if (Pending.size() >= BatchSize)
+			submit();
+		return true;
+	}
+
+	/**
+	 * Add rows of parameters.
+	 * 
+	 * @param rows
+	 * 
+	 * @return number of rows taken.
+	 */
+	public int addAll(Iterable<Object[]> rows)
+	{
+		int n = 0;
+		for (Object[] row : rows)
+		{
+			if (!add(row))
+				break;
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Add rows of parameters.
+	 * 
+	 * @param rows
+	 * 
+	 * @return number of rows taken.
+	 */
+	public int addAll(Object[][] rows)
+	{
+		return addAll(Arrays.asList(rows));
+	}
+
+	/**
+	 * Write the rows added so far, and wait for all batches under way.
+	 * 
+	 * @return this.
+	 */
+	public JDbBatchWriter flush()
+	{
+		if (Pending != null && !Pending.isEmpty())
+			submit();
+		if (Executor != null)
+		{
+			try
+			{
+				InFlight.acquire(MaxInFlight);
+				InFlight.release(MaxInFlight);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				catchException(e);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Flush, and stop the threads of parallel writing.
+	 */
+	public void close()
+	{
+		flush();
+		if (Executor != null)
+		{
+			Executor.shutdown();
+			try
+			{
+				Executor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			Executor = null;
+		}
+	}
+
+	/**
+	 * Gets the Batches.
+	 * 
+	 * @return Batch results, in the order the batches were written.
+	 */
+	public Vector<Batch> getBatches()
+	{
+		return Batches;
+	}
+
+	/**
+	 * Gets the result status.
+	 * 
+	 * @return exceptions of rows and batches that failed, as Vector.
+	 */
+	public Vector<Object> getResultStatus()
+	{
+		return ResultStatus;
+	}
+
+	/**
+	 * Gets the RowsAdded.
+	 * 
+	 * @return number of rows taken.
+	 */
+	public synchronized long getRowsAdded()
+	{
+		return RowsAdded;
+	}
+
+	/**
+	 * Gets the RowsWritten.
+	 * 
+	 * @return number of rows written and committed.
+	 */
+	public synchronized long getRowsWritten()
+	{
+		return RowsWritten;
+	}
+
+	/**
+	 * Gets the RowsFailed.
+	 * 
+	 * @return number of rows that failed.
+	 */
+	public synchronized long getRowsFailed()
+	{
+		return RowsFailed;
+	}
+
+	/**
+	 * Checks if is Stopped.
+	 * 
+	 * @return true if stopped on error.
+	 */
+	public boolean isStopped()
+	{
+		return Stopped;
+	}
+
+	private void submit()
+	{
+		final Batch batch;
+		synchronized (this)
+		{
+			batch = new Batch(RowsAdded, Pending);
+			RowsAdded += Pending.size();
+		}
+		Pending = null;
+
+		final JDbConnectionPool pool = dbLogin.getConnectionPool();
+		if (Parallelism <= 1 || pool == null)
+		{
+			dbLogin.getStatement();
+			write(dbLogin.getConnection(), batch);
+			return;
+		}
+
+		if (Executor == null)
+		{
+			MaxInFlight = Parallelism * 2;
+			InFlight = new Semaphore(MaxInFlight);
+			Executor = Executors.newFixedThreadPool(Parallelism, Daemons);
+		}
+		//Hold back the adder while enough batches are under way
+		InFlight.acquireUninterruptibly();
+		Executor.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					Connection conn;
+					try
+					{
+						conn = pool.borrow();
+					}
+					catch (SQLException sqle)
+					{
+						batch.fail(0, batch.Rows.size(), sqle);
+						finish(batch);
+						return;
+					}
+					write(conn, batch);
+					try
+					{
+						//Returns it to the pool
+						conn.close();
+					}
+					catch (SQLException e)
+					{
+					}
+				}
+				finally
+				{
+					InFlight.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write a batch as one transaction, writing it again without any row
+	 * that fails.
+	 * 
+	 * @param conn
+	 * @param batch
+	 */
+	protected void write(Connection conn, Batch batch)
+	{
+		int n = batch.Rows.size();
+		boolean autocommit = true;
+		try
+		{
+			autocommit = conn.getAutoCommit();
+			if (autocommit)
+				conn.setAutoCommit(false);
+			PreparedStatement ps = JDbStatementCache.forConnection(conn).prepare(Sql);
+
+			//Rows still to write, by index in the batch
+			int[] todo = new int[n];
+			for (int i = 0; i < n; i++)
+				todo[i] = i;
+			int left = n;
+
+			while (left > 0)
+			{
+				try
+				{
+					for (int i = 0; i < left; i++)
+					{
+						JUtil.setParameters(ps, batch.Rows.get(todo[i]));
+						ps.addBatch();
+					}
+					int[] counts = ps.executeBatch();
+					conn.commit();
+					for (int i = 0; i < left && i < counts.length; i++)
+						batch.UpdateCounts[todo[i]] = counts[i];
+					break;
+				}
+				catch (BatchUpdateException bue)
+				{
+					ps.clearBatch();
+					conn.rollback();
+
+					//Drivers either stop at the failed row or mark every failed row
+					int[] counts = bue.getUpdateCounts();
+					int kept = 0;
+					for (int i = 0; i < left; i++)
+					{
+						boolean failed = (counts == null || counts.length < left)
+							? i == (counts == null ? 0 : counts.length)
+							: counts[i] == Statement.EXECUTE_FAILED;
+						if (failed)
+							batch.fail(todo[i], todo[i] + 1, bue);
+						else
+							todo[kept++] = todo[i];
+					}
+					if (kept == left)
+					{
+						//No row is to blame, so fail them all
+						batch.fail(todo, left, bue);
+						kept = 0;
+					}
+					left = kept;
+					if (StopOnError)
+						Stopped = true;
+				}
+			}
+		}
+		catch (SQLException sqle)
+		{
+			try
+			{
+				conn.rollback();
+			}
+			catch (SQLException e)
+			{
+			}
+			batch.fail(0, n, sqle);
+		}
+		catch (RuntimeException re)
+		{
+			//Such as a parameter the driver cannot set, failing the batch
+			//rather than the writer thread
+			try
+			{
+				conn.rollback();
+			}
+			catch (SQLException e)
+			{
+			}
+			batch.fail(0, n, re);
+		}
+		finally
+		{
+			try
+			{
+				if (autocommit)
+					conn.setAutoCommit(true);
+			}
+			catch (SQLException e)
+			{
+			}
+		}
+		finish(batch);
+	}
+
+	private void finish(Batch batch)
+	{
+		int written = 0;
+		for (int i = 0; i < batch.UpdateCounts.length; i++)
+			if (batch.UpdateCounts[i] != Statement.EXECUTE_FAILED)
+				written++;
+		synchronized (this)
+		{
+			RowsWritten += written;
+			RowsFailed += batch.UpdateCounts.length - written;
+		}
+		if (!batch.Failures.isEmpty())
+		{
+			ResultStatus.addAll(batch.Failures);
+			if (StopOnError)
+				Stopped = true;
+		}
+		//Rows are not needed once written
+		batch.Rows = null;
+		Batches.add(batch);
+	}
+
+	/**
+	 * Used internally by this as a standard method to treat Exceptions.
+	 * 
+	 * @param e
+	 *            the e as Exception
+	 */
+	protected void catchException(Exception e)
+	{
+		ResultStatus.add(e);
+	}
+
+	/**
+	 * Batch Class. Result of writing one batch of rows.
+	 */
+	static public class Batch
+	{
+		Batch(long firstrow, ArrayList<Object[]> rows)
+		{
+			FirstRow = firstrow;
+			Rows = rows;
+			UpdateCounts = new int[rows.size()];
+			Arrays.fill(UpdateCounts, Statement.SUCCESS_NO_INFO);
+		}
+
+		void fail(int from, int to, Exception e)
+		{
+			for (int i = from; i < to; i++)
+				fail(i, e);
+		}
+
+		void fail(int[] rows, int n, Exception e)
+		{
+			for (int i = 0; i < n; i++)
+				fail(rows[i], e);
+		}
+
+		private void fail(int row, Exception e)
+		{
+			if (UpdateCounts[row] == Statement.EXECUTE_FAILED)
+				return;
+			UpdateCounts[row] = Statement.EXECUTE_FAILED;
+			FailedRows.add(Long.valueOf(FirstRow + row));
+			if (!Failures.contains(e))
+				Failures.add(e);
+		}
+
+		/** Number of rows added before this batch. */
+		public final long FirstRow;
+
+		/**
+		 * Update count of each row, as from executeBatch, or
+		 * Statement.EXECUTE_FAILED if the row failed.
+		 */
+		public final int[] UpdateCounts;
+
+		/** Numbers, as Long counted from 0, of the rows that failed. */
+		public final Vector<Long> FailedRows = new Vector<Long>();
+
+		/** Exceptions the rows failed with. */
+		public final Vector<Exception> Failures = new Vector<Exception>();
+
+		ArrayList<Object[]> Rows;
+	}
+
+	static private final ThreadFactory Daemons = new ThreadFactory()
+	{
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "JDbBatchWriter");
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
+	protected JDbLogin dbLogin;
+
+	protected String Sql;
+
+	/** Rows per batch. */
+	protected int BatchSize = 1000;
+
+	/** Connections to write on at once. */
+	protected int Parallelism = 1;
+
+	/** True to take no further rows after a row fails. */
+	protected boolean StopOnError = false;
+
+	protected final Vector<Object> ResultStatus = new Vector<Object>();
+
+	protected final Vector<Batch> Batches = new Vector<Batch>();
+
+	private ArrayList<Object[]> Pending;
+	private volatile boolean Stopped = false;
+	private long RowsAdded = 0;
+	private long RowsWritten = 0;
+	private long RowsFailed = 0;
+
+	private ExecutorService Executor;
+	private Semaphore InFlight;
+	private int MaxInFlight;
+}
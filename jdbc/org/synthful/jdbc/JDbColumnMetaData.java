@@ -0,0 +1,311 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Hashtable;
+
+/**
+ * JDbColumnMetaData Class. Immutable description of the columns of a result
+ * set, read once from its ResultSetMetaData, so that it can be shared by
+ * every fetch of the same query through JDbMetaDataCache.
+ * <br>
+ * Columns are counted from 0. Column names are looked up in an open
+ * addressed table of column positions, without boxing. Buffers take copies
+ * of its arrays and column index, so that a buffer changing its own does not
+ * change those of the others.
+ */
+public final class JDbColumnMetaData
+{
+
+	/**
+	 * Read the columns of rsmd.
+	 *
+	 * @param rsmd
+	 *
+	 * @return the description
+	 *
+	 * @throws SQLException
+	 */
+	static public JDbColumnMetaData of(ResultSetMetaData rsmd)
+		throws SQLException
+	{
+		int n = rsmd.getColumnCount();
+		JDbColumnMetaData md = new JDbColumnMetaData(n);
+		for (int i = 0; i < n; i++)
+		{
+			md.Types[i] = rsmd.getColumnType(i + 1);
+			md.Names[i] = rsmd.getColumnName(i + 1);
+			md.Labels[i] = rsmd.getColumnLabel(i + 1);
+			md.TypeNames[i] = rsmd.getColumnTypeName(i + 1);
+			md.ClassNames[i] = rsmd.getColumnClassName(i + 1);
+			md.DisplaySizes[i] = rsmd.getColumnDisplaySize(i + 1);
+			md.Precisions[i] = rsmd.getPrecision(i + 1);
+			md.Scales[i] = rsmd.getScale(i + 1);
+		}
+		md.indexNames();
+		return md;
+	}
+
+	private JDbColumnMetaData(int n)
+	{
+		Types = new int[n];
+		Names = new String[n];
+		Labels = new String[n];
+		TypeNames = new String[n];
+		ClassNames = new String[n];
+		DisplaySizes = new int[n];
+		Precisions = new int[n];
+		Scales = new int[n];
+	}
+
+	/**
+	 * The same columns, after a column "ROW" of type 0 for the row number, as
+	 * a buffer with RowNumColumn set has them.
+	 *
+	 * @return the description
+	 */
+	public JDbColumnMetaData withRowNumColumn()
+	{
+		JDbColumnMetaData md = RowNumVariant;
+		if (md != null)
+			return md;
+
+		int n = Types.length;
+		md = new JDbColumnMetaData(n + 1);
+		md.Names[0] = "ROW";
+		md.Labels[0] = "ROW";
+		System.arraycopy(Types, 0, md.Types, 1, n);
+		System.arraycopy(Names, 0, md.Names, 1, n);
+		System.arraycopy(Labels, 0, md.Labels, 1, n);
+		System.arraycopy(TypeNames, 0, md.TypeNames, 1, n);
+		System.arraycopy(ClassNames, 0, md.ClassNames, 1, n);
+		System.arraycopy(DisplaySizes, 0, md.DisplaySizes, 1, n);
+		System.arraycopy(Precisions, 0, md.Precisions, 1, n);
+		System.arraycopy(Scales, 0, md.Scales, 1, n);
+		md.indexNames();
+		//A race only makes a second, equal, variant
+		RowNumVariant = md;
+		return md;
+	}
+
+	/**
+	 * Get index of column from column name. Of columns of the same name, the
+	 * last is found.
+	 *
+	 * @param name
+	 *
+	 * @return index of the column, or -1 if there is none of that name.
+	 */
+	public int indexOf(String name)
+	{
+		if (name == null)
+			return -1;
+		int mask = Slots.length - 1;
+		for (int h = spread(name.hashCode()) & mask;; h = (h + 1) & mask)
+		{
+			int slot = Slots[h];
+			if (slot == 0)
+				return -1;
+			if (name.equals(Names[slot - 1]))
+				return slot - 1;
+		}
+	}
+
+	/**
+	 * Gets the column index as a Hashtable of column name to Integer
+	 * position, for JRowBufferVector. The index is made once on first use,
+	 * and each caller is given its own copy, as this description is shared.
+	 *
+	 * @return the column index as Hashtable
+	 */
+	@SuppressWarnings("unchecked")
+	public Hashtable<String, Integer> getColumnIndex()
+	{
+		Hashtable<String, Integer> index = ColumnIndex;
+		if (index == null)
+		{
+			index = new Hashtable<String, Integer>(Names.length);
+			for (int i = 0; i < Names.length; i++)
+				if (Names[i] != null)
+					index.put(Names[i], Integer.valueOf(i));
+			ColumnIndex = index;
+		}
+		return (Hashtable<String, Integer>) index.clone();
+	}
+
+	/**
+	 * Checks if this describes the columns of rsmd, having as many columns,
+	 * of the same types and labels.
+	 *
+	 * @param rsmd
+	 *
+	 * @return true if it does.
+	 *
+	 * @throws SQLException
+	 */
+	public boolean matches(ResultSetMetaData rsmd)
+		throws SQLException
+	{
+		int n = Types.length;
+		if (rsmd.getColumnCount() != n)
+			return false;
+		for (int i = 0; i < n; i++)
+		{
+			if (rsmd.getColumnType(i + 1) != Types[i]
+				|| !String.valueOf(rsmd.getColumnLabel(i + 1)).equals(String.valueOf(Labels[i])))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the ColumnCount.
+	 *
+	 * @return the ColumnCount as int
+	 */
+	public int getColumnCount()
+	{
+		return Types.length;
+	}
+
+	/**
+	 * Gets the Type.
+	 *
+	 * @param col
+	 *
+	 * @return java.sql.Types of the column
+	 */
+	public int getType(int col)
+	{
+		return Types[col];
+	}
+
+	/**
+	 * Gets the Name.
+	 *
+	 * @param col
+	 *
+	 * @return the Name as String
+	 */
+	public String getName(int col)
+	{
+		return Names[col];
+	}
+
+	/**
+	 * Gets the Label.
+	 *
+	 * @param col
+	 *
+	 * @return the Label as String
+	 */
+	public String getLabel(int col)
+	{
+		return Labels[col];
+	}
+
+	/**
+	 * Gets the TypeName.
+	 *
+	 * @param col
+	 *
+	 * @return database specific type name of the column
+	 */
+	public String getTypeName(int col)
+	{
+		return TypeNames[col];
+	}
+
+	/**
+	 * Gets the ClassName.
+	 *
+	 * @param col
+	 *
+	 * @return name of the class getObject returns for the column
+	 */
+	public String getClassName(int col)
+	{
+		return ClassNames[col];
+	}
+
+	/**
+	 * Gets the DisplaySize.
+	 *
+	 * @param col
+	 *
+	 * @return the DisplaySize as int
+	 */
+	public int getDisplaySize(int col)
+	{
+		return DisplaySizes[col];
+	}
+
+	/**
+	 * Gets the Precision.
+	 *
+	 * @param col
+	 *
+	 * @return the Precision as int
+	 */
+	public int getPrecision(int col)
+	{
+		return Precisions[col];
+	}
+
+	/**
+	 * Gets the Scale.
+	 *
+	 * @param col
+	 *
+	 * @return the Scale as int
+	 */
+	public int getScale(int col)
+	{
+		return Scales[col];
+	}
+
+	private void indexNames()
+	{
+		int size = 2;
+		while (size < Names.length * 2)
+			size <<= 1;
+		Slots = new int[size];
+		int mask = size - 1;
+		for (int i = 0; i < Names.length; i++)
+		{
+			String name = Names[i];
+			if (name == null)
+				continue;
+			int h = spread(name.hashCode()) & mask;
+			while (Slots[h] != 0 && !name.equals(Names[Slots[h] - 1]))
+				h = (h + 1) & mask;
+			Slots[h] = i + 1;
+		}
+	}
+
+	static private int spread(int h)
+	{
+		return h ^ (h >>> 16);
+	}
+
+	final int[] Types;
+	final String[] Names;
+	final String[] Labels;
+	final String[] TypeNames;
+	final String[] ClassNames;
+	final int[] DisplaySizes;
+	final int[] Precisions;
+	final int[] Scales;
+
+	/** Position + 1 of each column, by hash of its name, or 0. */
+	private int[] Slots;
+
+	private volatile Hashtable<String, Integer> ColumnIndex;
+	private volatile JDbColumnMetaData RowNumVariant;
+}
@@ -0,0 +1,571 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ * 
+ */
+package org.synthful.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JDbConnectionPool Class. Bounded pool of JDBC Connections to one server,
+ * shared by every JDbLogin given the same connection Properties with
+ * pool="true".
+ * <br>
+ * A Connection borrowed from the pool is handed out behind a proxy whose
+ * close() returns it to the pool, closing the Statements made from it, rolling
+ * back any uncommitted work and restoring auto commit. A Connection is
+ * validated when borrowed, and Connections idle longer than the idle timeout
+ * are closed. A borrower waits at most the maximum wait for a Connection
+ * to be free, after which borrow throws SQLTimeoutException.
+ * <br>
+ * Pool settings are read from the connection Properties:
+ * <pre>
+ * poolSize="maximum Connections open, default 8";
+ * poolMaxWait="milliseconds to wait for a free Connection, default 30000";
+ * poolIdleTimeout="milliseconds a Connection may stay idle, default 300000";
+ * poolValidationTimeout="seconds to wait to validate a Connection, default 2";
+ * statementCacheSize="PreparedStatements kept open per Connection, default 32";
+ * </pre>
+ * Each pooled Connection has its JDbStatementCache, which is kept while the
+ * Connection is idle and invalidated when the Connection is closed.
+ */
+public class JDbConnectionPool
+{
+
+	/**
+	 * Instantiates a new JDbConnectionPool. Use getPool to share pools.
+	 * 
+	 * @param p
+	 *            Properties of the connection, as for JDbLogin.
+	 */
+	public JDbConnectionPool(Properties p)
+	{
+		Info = (Properties) p.clone();
+		Key = new HashMap<Object, Object>(p);
+		Url = p.getProperty("url");
+		MaxSize = intProperty(p, "poolSize", 8);
+		MaxWait = intProperty(p, "poolMaxWait", 30000);
+		IdleTimeout = intProperty(p, "poolIdleTimeout", 300000);
+		ValidationTimeout = intProperty(p, "poolValidationTimeout", 2);
+		StatementCacheSize = intProperty(p, "statementCacheSize", JDbStatementCache.DefaultSize);
+		Permits = new Semaphore(MaxSize, true);
+	}
+
+	/**
+	 * Get the pool shared by all users of connection Properties p, creating
+	 * it on first use, or again once closed.
+	 * 
+	 * @param p
+	 *            Properties of the connection, as for JDbLogin.
+	 * 
+	 * @return the pool
+	 */
+	static public JDbConnectionPool getPool(Properties p)
+	{
+		Map<Object, Object> key = new HashMap<Object, Object>(p);
+		while (true)
+		{
+			JDbConnectionPool pool = Pools.get(key);
+			if (pool != null && !pool.Closed)
+				return pool;
+
+			JDbConnectionPool fresh = new JDbConnectionPool(p);
+			if (pool == null
+				? Pools.putIfAbsent(key, fresh) == null
+				: Pools.replace(key, pool, fresh))
+				return fresh;
+		}
+	}
+
+	/**
+	 * Borrow a Connection, waiting at most poolMaxWait for one to be free.
+	 * Close the Connection to return it.
+	 * 
+	 * @return a validated Connection
+	 * 
+	 * @throws SQLException
+	 *             if a new Connection cannot be made.
+	 * @throws SQLTimeoutException
+	 *             if no Connection was free in time.
+	 */
+	public Connection borrow()
+		throws SQLException
+	{
+		if (Closed)
+			throw new SQLException("Connection pool closed: " + Url);
+
+		long start = System.nanoTime();
+		boolean acquired;
+		try
+		{
+			acquired = Permits.tryAcquire(MaxWait, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for connection: " + Url);
+		}
+
+		long waited = (System.nanoTime() - start) / 1000000;
+		WaitMillis.addAndGet(waited);
+		if (waited > MaxWaitedMillis)
+			MaxWaitedMillis = waited;
+		if (!acquired)
+		{
+			Timeouts.incrementAndGet();
+			throw new SQLTimeoutException(
+				"No connection free within " + MaxWait + "ms: " + Url);
+		}
+
+		try
+		{
+			while (true)
+			{
+				IdleConnection idle = pollIdle();
+				if (idle == null)
+				{
+					Connection conn = DriverManager.getConnection(Url, Info);
+					Created.incrementAndGet();
+					idle = new IdleConnection(conn,
+						new JDbStatementCache(conn, StatementCacheSize));
+				}
+				else if (!isValid(idle.Conn))
+				{
+					discard(idle.Conn, idle.Cache);
+					continue;
+				}
+
+				Borrows.incrementAndGet();
+				Active.incrementAndGet();
+				JDbInstrumentation.connectionAcquired(Url, System.nanoTime() - start, true);
+				return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class<?>[] {Connection.class},
+					new Lease(idle.Conn, idle.Cache));
+			}
+		}
+		catch (SQLException e)
+		{
+			Permits.release();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			Permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Close the Connections that have been idle longer than poolIdleTimeout.
+	 * Done also whenever a Connection is borrowed or returned.
+	 * 
+	 * @return number of Connections closed.
+	 */
+	public int evictIdle()
+	{
+		long oldest = System.currentTimeMillis() - IdleTimeout;
+		ArrayList<IdleConnection> evicted = new ArrayList<IdleConnection>();
+		synchronized (Idle)
+		{
+			//Returned Connections are pushed at the head, so the oldest are last
+			while (!Idle.isEmpty() && Idle.peekLast().Since < oldest)
+				evicted.add(Idle.pollLast());
+		}
+		for (IdleConnection idle : evicted)
+			discard(idle.Conn, idle.Cache);
+		return evicted.size();
+	}
+
+	/**
+	 * Close the pool and its idle Connections, and let go of it so that
+	 * getPool makes a new one. Connections still borrowed are closed when
+	 * returned.
+	 */
+	public void close()
+	{
+		Closed = true;
+		Pools.remove(Key, this);
+		ArrayList<IdleConnection> idle = new ArrayList<IdleConnection>();
+		synchronized (Idle)
+		{
+			while (!Idle.isEmpty())
+				idle.add(Idle.pollFirst());
+		}
+		for (IdleConnection i : idle)
+			discard(i.Conn, i.Cache);
+	}
+
+	/**
+	 * Gets the number of Connections borrowed and not yet returned.
+	 * 
+	 * @return the Active count
+	 */
+	public int getActive()
+	{
+		return Active.get();
+	}
+
+	/**
+	 * Gets the number of Connections open and free.
+	 * 
+	 * @return the Idle count
+	 */
+	public int getIdle()
+	{
+		synchronized (Idle)
+		{
+			return Idle.size();
+		}
+	}
+
+	/**
+	 * Gets the MaxSize.
+	 * 
+	 * @return maximum number of Connections open.
+	 */
+	public int getMaxSize()
+	{
+		return MaxSize;
+	}
+
+	/**
+	 * Gets the number of borrowers waiting for a Connection.
+	 * 
+	 * @return the Waiting count
+	 */
+	public int getWaiting()
+	{
+		return Permits.getQueueLength();
+	}
+
+	/**
+	 * Gets the BorrowCount.
+	 * 
+	 * @return number of Connections borrowed since the pool was made.
+	 */
+	public long getBorrowCount()
+	{
+		return Borrows.get();
+	}
+
+	/**
+	 * Gets the CreatedCount.
+	 * 
+	 * @return number of Connections opened since the pool was made.
+	 */
+	public long getCreatedCount()
+	{
+		return Created.get();
+	}
+
+	/**
+	 * Gets the TimeoutCount.
+	 * 
+	 * @return number of borrows that timed out waiting.
+	 */
+	public long getTimeoutCount()
+	{
+		return Timeouts.get();
+	}
+
+	/**
+	 * Gets the total WaitTime.
+	 * 
+	 * @return milliseconds borrowers have waited, in total.
+	 */
+	public long getWaitTime()
+	{
+		return WaitMillis.get();
+	}
+
+	/**
+	 * Gets the MaxWaitTime.
+	 * 
+	 * @return longest milliseconds a borrower has waited.
+	 */
+	public long getMaxWaitTime()
+	{
+		return MaxWaitedMillis;
+	}
+
+	public String toString()
+	{
+		return "JDbConnectionPool[" + Url
+			+ " active=" + getActive()
+			+ " idle=" + getIdle()
+			+ " waiting=" + getWaiting()
+			+ " borrows=" + getBorrowCount()
+			+ " created=" + getCreatedCount()
+			+ " timeouts=" + getTimeoutCount()
+			+ " waitms=" + getWaitTime()
+			+ " maxwaitms=" + getMaxWaitTime()
+			+ "]";
+	}
+
+	/**
+	 * Gets the statement cache of a Connection borrowed from a pool.
+	 * 
+	 * @param conn
+	 * 
+	 * @return the JDbStatementCache of the pooled Connection under conn, or
+	 *         null if conn is not a borrowed Connection.
+	 */
+	static JDbStatementCache statementCacheOf(Connection conn)
+	{
+		if (!Proxy.isProxyClass(conn.getClass()))
+			return null;
+		InvocationHandler h = Proxy.getInvocationHandler(conn);
+		if (!(h instanceof Lease) || ((Lease) h).Returned)
+			return null;
+		return ((Lease) h).Cache;
+	}
+
+	private IdleConnection pollIdle()
+	{
+		evictIdle();
+		synchronized (Idle)
+		{
+			return Idle.pollFirst();
+		}
+	}
+
+	private boolean isValid(Connection conn)
+	{
+		try
+		{
+			return conn.isValid(ValidationTimeout);
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+		catch (AbstractMethodError e)
+		{
+			//Drivers older than JDBC 4
+			try
+			{
+				return !conn.isClosed();
+			}
+			catch (SQLException ex)
+			{
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Take back a Connection whose lease is closed.
+	 * 
+	 * @param conn
+	 * @param reusable
+	 *            false if the Connection is to be closed rather than kept.
+	 */
+	private void giveBack(Connection conn, JDbStatementCache cache, boolean reusable)
+	{
+		Active.decrementAndGet();
+		try
+		{
+			if (reusable && !Closed)
+			{
+				synchronized (Idle)
+				{
+					Idle.addFirst(new IdleConnection(conn, cache));
+				}
+			}
+			else
+				discard(conn, cache);
+		}
+		finally
+		{
+			Permits.release();
+		}
+		evictIdle();
+	}
+
+	static private void discard(Connection conn, JDbStatementCache cache)
+	{
+		cache.invalidate();
+		try
+		{
+			conn.close();
+		}
+		catch (SQLException e)
+		{
+		}
+	}
+
+	static private int intProperty(Properties p, String name, int dflt)
+	{
+		String s = p.getProperty(name);
+		if (s == null)
+			return dflt;
+		try
+		{
+			int i = Integer.parseInt(s.trim());
+			return i > 0 ? i : dflt;
+		}
+		catch (NumberFormatException e)
+		{
+			return dflt;
+		}
+	}
+
+	/**
+	 * IdleConnection Class. A free Connection, its statement cache and since
+	 * when it is free.
+	 */
+	static private final class IdleConnection
+	{
+		IdleConnection(Connection conn, JDbStatementCache cache)
+		{
+			Conn = conn;
+			Cache = cache;
+			Since = System.currentTimeMillis();
+		}
+
+		final Connection Conn;
+		final JDbStatementCache Cache;
+		final long Since;
+	}
+
+	/**
+	 * Lease Class. Behind the proxy of a borrowed Connection, passing calls
+	 * on to it until closed, and keeping the Statements made from it.
+	 */
+	private final class Lease
+	implements InvocationHandler
+	{
+		Lease(Connection conn, JDbStatementCache cache)
+		{
+			Conn = conn;
+			Cache = cache;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable
+		{
+			String name = method.getName();
+			if (name.equals("close"))
+			{
+				release();
+				return null;
+			}
+			if (name.equals("isClosed"))
+				return Boolean.valueOf(Returned || Conn.isClosed());
+			if (name.equals("equals"))
+				return Boolean.valueOf(proxy == args[0]);
+			if (name.equals("hashCode"))
+				return Integer.valueOf(System.identityHashCode(proxy));
+			if (name.equals("toString"))
+				return "Pooled:" + Conn;
+			if (Returned)
+				throw new SQLException("Connection returned to pool: " + Url);
+
+			Object o;
+			try
+			{
+				o = method.invoke(Conn, args);
+			}
+			catch (InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+			if (name.equals("setSchema") || name.equals("setCatalog"))
+				JDbMetaDataCache.forgetConnection(Conn);
+			//Weakly, so that Statements closed and dropped by the borrower go
+			if (o instanceof Statement)
+				Statements.add((Statement) o);
+			return o;
+		}
+
+		private synchronized void release()
+		{
+			if (Returned)
+				return;
+			Returned = true;
+
+			boolean reusable = true;
+			Statement[] stmts;
+			synchronized (Statements)
+			{
+				stmts = Statements.toArray(new Statement[Statements.size()]);
+				Statements.clear();
+			}
+			for (Statement stmt : stmts)
+			{
+				try
+				{
+					stmt.close();
+				}
+				catch (SQLException e)
+				{
+				}
+			}
+			Cache.closeResults();
+			try
+			{
+				if (!Conn.getAutoCommit())
+				{
+					Conn.rollback();
+					Conn.setAutoCommit(true);
+				}
+				Conn.clearWarnings();
+			}
+			catch (SQLException e)
+			{
+				reusable = false;
+			}
+			giveBack(Conn, Cache, reusable);
+		}
+
+		private final Connection Conn;
+		private final JDbStatementCache Cache;
+		private final Set<Statement> Statements = Collections.synchronizedSet(
+			Collections.newSetFromMap(new WeakHashMap<Statement, Boolean>()));
+		private volatile boolean Returned = false;
+	}
+
+	/** Pools by connection Properties. */
+	static private final ConcurrentHashMap<Map<Object, Object>, JDbConnectionPool> Pools
+		= new ConcurrentHashMap<Map<Object, Object>, JDbConnectionPool>();
+
+	private final Properties Info;
+	private final Map<Object, Object> Key;
+	private final String Url;
+	private final int MaxSize;
+	private final int MaxWait;
+	private final int IdleTimeout;
+	private final int ValidationTimeout;
+	private final int StatementCacheSize;
+
+	private final Semaphore Permits;
+	private final ArrayDeque<IdleConnection> Idle = new ArrayDeque<IdleConnection>();
+	private volatile boolean Closed = false;
+
+	private final AtomicInteger Active = new AtomicInteger();
+	private final AtomicLong Borrows = new AtomicLong();
+	private final AtomicLong Created = new AtomicLong();
+	private final AtomicLong Timeouts = new AtomicLong();
+	private final AtomicLong WaitMillis = new AtomicLong();
+	private volatile long MaxWaitedMillis = 0;
+}
@@ -0,0 +1,324 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JDbInstrumentation Class. Where JDataBufferVector, JDataResults, JUtil,
+ * JDbLogin and JDbConnectionPool report each statement they execute, with
+ * its execute and fetch time, rows and, if setEstimateBytes, estimated bytes,
+ * and each Connection they acquire, with the time it took.
+ * <br>
+ * Reports are counted in JDbStats, which registerMBean puts up as the JMX
+ * MBean org.synthful.jdbc:type=JDbStats, and handed to each
+ * JDbQueryListener added. A statement taking SlowQueryMillis or longer is
+ * logged at WARNING to the java.util.logging Logger
+ * "org.synthful.jdbc.SlowQuery", with the context of its thread, which a
+ * page can set by setContext to be found by its expensive SQL.
+ * <br>
+ * SlowQueryMillis is 1000 unless set by the system property
+ * org.synthful.jdbc.slowQueryMillis; 0 stops the log.
+ */
+public class JDbInstrumentation
+{
+
+	private JDbInstrumentation()
+	{
+	}
+
+	/**
+	 * Report a statement executed, and its rows fetched.
+	 *
+	 * @param source
+	 *            what executed it, such as "JDataBufferVector".
+	 * @param sql
+	 * @param executenanos
+	 * @param fetchnanos
+	 * @param rows
+	 *            rows fetched, or rows updated, or -1 if not known.
+	 * @param bytes
+	 *            estimated size of the rows, or 0 if not estimated.
+	 * @param error
+	 *            first error of the statement, or null.
+	 */
+	static public void statementDone(
+		String source, String sql, long executenanos, long fetchnanos,
+		long rows, long bytes, Throwable error)
+	{
+		if (!Enabled)
+			return;
+		JDbQueryEvent event = new JDbQueryEvent(
+			source, sql, executenanos, fetchnanos, rows, bytes, error);
+		long slowms = SlowQueryMillis;
+		boolean slow = slowms > 0 && event.getTotalMillis() >= slowms;
+		Stats.record(event, slow);
+		if (slow && SlowQueryLog.isLoggable(Level.WARNING))
+			SlowQueryLog.warning("Slow query " + event);
+		for (JDbQueryListener listener : Listeners)
+		{
+			try
+			{
+				listener.statementDone(event);
+			}
+			catch (RuntimeException e)
+			{
+				SlowQueryLog.log(Level.FINE, "JDbQueryListener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Report a Connection acquired.
+	 *
+	 * @param url
+	 * @param nanos
+	 *            time taken, including any wait for a pooled Connection.
+	 * @param pooled
+	 */
+	static public void connectionAcquired(String url, long nanos, boolean pooled)
+	{
+		if (!Enabled)
+			return;
+		Stats.recordAcquire(nanos);
+		for (JDbQueryListener listener : Listeners)
+		{
+			try
+			{
+				listener.connectionAcquired(url, nanos, pooled);
+			}
+			catch (RuntimeException e)
+			{
+				SlowQueryLog.log(Level.FINE, "JDbQueryListener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Estimate the memory taken by rows of cells, being Object arrays or
+	 * Collections such as JRowBufferVector.
+	 *
+	 * @param rows
+	 *
+	 * @return estimated bytes, or 0 if EstimateBytes is not set.
+	 */
+	static public long estimateBytes(Collection<?> rows)
+	{
+		if (!Enabled || !EstimateBytes)
+			return 0;
+		long bytes = 0;
+		for (Object row : rows)
+			bytes += estimateRowBytes(row);
+		return bytes;
+	}
+
+	/**
+	 * Estimate the memory taken by a row of cells.
+	 *
+	 * @param row
+	 *            Object array or Collection of cells.
+	 *
+	 * @return estimated bytes
+	 */
+	static public long estimateRowBytes(Object row)
+	{
+		long bytes = 16;
+		if (row instanceof Object[])
+		{
+			for (Object cell : (Object[]) row)
+				bytes += estimateCellBytes(cell);
+		}
+		else if (row instanceof Collection)
+		{
+			for (Object cell : (Collection) row)
+				bytes += estimateCellBytes(cell);
+		}
+		return bytes;
+	}
+
+	static private long estimateCellBytes(Object cell)
+	{
+		if (cell == null)
+			return 8;
+		if (cell instanceof String)
+			return 40 + 2L * ((String) cell).length();
+		if (cell instanceof byte[])
+			return 16 + ((byte[]) cell).length;
+		if (cell instanceof Integer || cell instanceof Short
+			|| cell instanceof Byte || cell instanceof Boolean)
+			return 24;
+		return 32;
+	}
+
+	/**
+	 * Sets the context of this thread, such as the page it serves, for the
+	 * statements it executes to be reported with.
+	 *
+	 * @param context
+	 *            or null to clear it.
+	 */
+	static public void setContext(String context)
+	{
+		if (context == null)
+			Context.remove();
+		else
+			Context.set(context);
+	}
+
+	/**
+	 * Gets the context of this thread.
+	 *
+	 * @return the context, or null.
+	 */
+	static public String getContext()
+	{
+		return Context.get();
+	}
+
+	/**
+	 * Add a listener.
+	 *
+	 * @param listener
+	 */
+	static public void addListener(JDbQueryListener listener)
+	{
+		Listeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener
+	 */
+	static public void removeListener(JDbQueryListener listener)
+	{
+		Listeners.remove(listener);
+	}
+
+	/**
+	 * Register the JDbStats as the MBean org.synthful.jdbc:type=JDbStats of
+	 * the platform MBeanServer, if not yet.
+	 *
+	 * @return false if the MBean could not be registered.
+	 */
+	static public synchronized boolean registerMBean()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBeanName);
+			if (!server.isRegistered(name))
+				server.registerMBean(Stats, name);
+			return true;
+		}
+		catch (Exception e)
+		{
+			SlowQueryLog.log(Level.WARNING, "Cannot register " + MBeanName, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the Stats.
+	 *
+	 * @return the Stats as JDbStats
+	 */
+	static public JDbStats getStats()
+	{
+		return Stats;
+	}
+
+	/**
+	 * Sets Enabled.
+	 *
+	 * @param yes
+	 *            false to report nothing, default true.
+	 */
+	static public void setEnabled(boolean yes)
+	{
+		Enabled = yes;
+	}
+
+	/**
+	 * Checks if is Enabled.
+	 *
+	 * @return true, if is Enabled
+	 */
+	static public boolean isEnabled()
+	{
+		return Enabled;
+	}
+
+	/**
+	 * Sets EstimateBytes.
+	 *
+	 * @param yes
+	 *            true to estimate the bytes of the rows fetched, by walking
+	 *            them, default false.
+	 */
+	static public void setEstimateBytes(boolean yes)
+	{
+		EstimateBytes = yes;
+	}
+
+	/**
+	 * Checks if is EstimateBytes.
+	 *
+	 * @return true, if is EstimateBytes
+	 */
+	static public boolean isEstimateBytes()
+	{
+		return EstimateBytes;
+	}
+
+	/**
+	 * Sets the SlowQueryMillis.
+	 *
+	 * @param millis
+	 *            time from which statements are logged, or 0 for none.
+	 */
+	static public void setSlowQueryMillis(long millis)
+	{
+		SlowQueryMillis = millis;
+	}
+
+	/**
+	 * Gets the SlowQueryMillis.
+	 *
+	 * @return the SlowQueryMillis as long
+	 */
+	static public long getSlowQueryMillis()
+	{
+		return SlowQueryMillis;
+	}
+
+	/** Name the JDbStats MBean is registered by. */
+	static public final String MBeanName = "org.synthful.jdbc:type=JDbStats";
+
+	static private volatile boolean Enabled = true;
+
+	static private volatile boolean EstimateBytes = false;
+
+	static private volatile long SlowQueryMillis =
+		Long.getLong("org.synthful.jdbc.slowQueryMillis", 1000L).longValue();
+
+	static private final Logger SlowQueryLog = Logger.getLogger("org.synthful.jdbc.SlowQuery");
+
+	static private final JDbStats Stats = new JDbStats();
+
+	static private final CopyOnWriteArrayList<JDbQueryListener> Listeners =
+		new CopyOnWriteArrayList<JDbQueryListener>();
+
+	static private final ThreadLocal<String> Context = new ThreadLocal<String>();
+}
@@ -38,6 +38,13 @@ public class JDbLogin
 	 * driver="com.sybase.jdbc.SybDriver";
 	 * driver="com.sas.net.sharenet.ShareNetDriver";
 	 * </pre>
+	 *
+	 * With property pool="true", Connections are borrowed from the
+	 * JDbConnectionPool shared by all JDbLogins given the same properties,
+	 * sized by the pool properties described there. A pooled JDbLogin holds
+	 * its Connection, and so one of the pool's Connections, until logout.
+	 * Property jmx="true" registers the JDbStats of JDbInstrumentation as
+	 * a JMX MBean.
 	 */
 	public JDbLogin(Properties p)
 	{
@@ -96,6 +103,7 @@ public class JDbLogin
 
 		try
 		{
+			//A pooled Connection is returned to its pool
 			if (jCon != null)
 			{
 				jCon.close();
@@ -109,7 +117,21 @@ public class JDbLogin
 				DriverRegistered = true;
 			}
 
-			jCon = DriverManager.getConnection(url, connectInfo);
+			if ("true".equalsIgnoreCase(connectInfo.getProperty("jmx")))
+				JDbInstrumentation.registerMBean();
+
+			if ("true".equalsIgnoreCase(connectInfo.getProperty("pool")))
+			{
+				connectionPool = JDbConnectionPool.getPool(connectInfo);
+				jCon = connectionPool.borrow();
+			}
+			else
+			{
+				long start = System.nanoTime();
+				jCon = JDbStatementCache.withCache(
+					DriverManager.getConnection(url, connectInfo));
+				JDbInstrumentation.connectionAcquired(url, System.nanoTime() - start, false);
+			}
 //			jCon = DriverManager.getConnection(url);
 			jStmt = jCon.createStatement();
 		}
@@ -133,7 +155,9 @@ public class JDbLogin
 
 	/**
 	 * Close Connection. Connection would no longer be functional. New
-	 * Connection must be obtained be performing loginConnect again.
+	 * Connection must be obtained be performing loginConnect again, except
+	 * that a pooled Connection, being returned to its pool, is borrowed again
+	 * by the next getStatement.
 	 * 
 	 * @return true if successful and false otherwise.
 	 */
@@ -142,6 +166,11 @@ public class JDbLogin
 		try
 		{
 			jCon.close();
+			if (connectionPool != null)
+			{
+				jCon = null;
+				jStmt = null;
+			}
 		}
 		catch (SQLException sqle)
 		{
@@ -199,6 +228,17 @@ public class JDbLogin
 		return jCon;
 	}
 
+	/**
+	 * Gets the connection pool.
+	 * 
+	 * @return the JDbConnectionPool Connections are borrowed from, or null if
+	 *         not pooled.
+	 */
+	public JDbConnectionPool getConnectionPool()
+	{
+		return connectionPool;
+	}
+
 	/**
 	 * Obtain JDBC Statement executor.<br>
 	 * JDBC Statement is used for performing SQL execs.<br>
@@ -213,6 +253,8 @@ public class JDbLogin
 	{
 		try
 		{
+			if (jCon == null && connectionPool != null)
+				return loginConnect().jStmt;
 			if (jStmt == null)
 				jStmt = jCon.createStatement();
 		}
@@ -229,6 +271,9 @@ public class JDbLogin
 	public Statement jStmt = null;
 	public ResultSet ResultSet;
 	public ResultSetMetaData ResultSetMetaData;
+
+	/** The pool Connections are borrowed from, if pooled. */
+	private JDbConnectionPool connectionPool;
     
 	/** The login timeout. */
 	private int loginTimeout = 10;
@@ -0,0 +1,352 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * JDbMetaDataCache Class. Least recently used cache, shared by all buffers,
+ * of the JDbColumnMetaData of each query, by connection URL, user and schema
+ * and the SQL with its white space collapsed, so that a query fetched again
+ * has its columns described without reading all of its ResultSetMetaData
+ * nor building its column arrays and index again.
+ * <br>
+ * A cached description is taken only if it has the columns of the result set,
+ * as many and of the same types and labels, which catches most changes made
+ * to the tables of a query meanwhile. After other changes, such as to the
+ * precision of columns, clear the cache.
+ * <br>
+ * The URL, user and schema of each Connection are asked of it once, as they
+ * may take the server a round trip each, and kept until the Connection is
+ * dropped or, if pooled or opened by JDbLogin, its schema or catalog is set.
+ * A schema changed on any other Connection otherwise, such as by SQL, is to
+ * be followed by forgetConnection.
+ */
+public class JDbMetaDataCache
+{
+
+	private JDbMetaDataCache()
+	{
+	}
+
+	/**
+	 * Key of the description of a result of a query.
+	 *
+	 * @param url
+	 *            URL of the Connection with its user and schema, as from
+	 *            urlOf, or null if not known.
+	 * @param sql
+	 *            SQL of the query.
+	 * @param result
+	 *            which result set of the query, from 0.
+	 *
+	 * @return the key, or null if the query is not to be cached.
+	 */
+	static public String keyOf(String url, String sql, int result)
+	{
+		if (url == null || sql == null)
+			return null;
+		StringBuilder key = new StringBuilder(url.length() + sql.length() + 8);
+		key.append(url).append('\n').append(result).append('\n');
+		normalize(sql, key);
+		return key.toString();
+	}
+
+	/**
+	 * Gets the URL of the Connection of stmt with its user and schema, to key
+	 * its queries by, as users and schemas on one URL see different tables.
+	 *
+	 * @param stmt
+	 *
+	 * @return the URL, user and schema, or null if the driver would not tell
+	 *         the URL.
+	 */
+	static public String urlOf(Statement stmt)
+	{
+		Connection conn;
+		try
+		{
+			conn = stmt.getConnection();
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+		if (conn == null)
+			return null;
+
+		String url = ConnectionURLs.get(conn);
+		if (url == null)
+		{
+			url = connectionURL(conn);
+			if (url != null)
+				ConnectionURLs.put(conn, url);
+		}
+		return url;
+	}
+
+	/**
+	 * Forget the URL, user and schema of a Connection, as when its schema is
+	 * changed.
+	 *
+	 * @param conn
+	 *            the Connection, as from Statement.getConnection.
+	 */
+	static public void forgetConnection(Connection conn)
+	{
+		ConnectionURLs.remove(conn);
+	}
+
+	static private String connectionURL(Connection conn)
+	{
+		DatabaseMetaData dbmd;
+		String url;
+		try
+		{
+			dbmd = conn.getMetaData();
+			url = dbmd.getURL();
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+		if (url == null)
+			return null;
+
+		String user = null;
+		String schema = null;
+		try
+		{
+			user = dbmd.getUserName();
+		}
+		catch (Exception e)
+		{
+		}
+		try
+		{
+			schema = conn.getSchema();
+		}
+		catch (Exception e)
+		{
+		}
+		catch (AbstractMethodError e)
+		{
+			//Drivers before JDBC 4.1 have no getSchema
+		}
+		return url + '\n' + user + '\n' + schema;
+	}
+
+	/**
+	 * Describe the columns of a result set, from the cache if they are
+	 * there, otherwise from rsmd.
+	 *
+	 * @param key
+	 *            from keyOf, or null not to cache.
+	 * @param rsmd
+	 *
+	 * @return the description
+	 *
+	 * @throws SQLException
+	 */
+	static public JDbColumnMetaData describe(String key, ResultSetMetaData rsmd)
+		throws SQLException
+	{
+		if (key == null)
+			return JDbColumnMetaData.of(rsmd);
+
+		JDbColumnMetaData md;
+		synchronized (Cache)
+		{
+			md = Cache.get(key);
+		}
+		if (md != null && md.matches(rsmd))
+		{
+			synchronized (Cache)
+			{
+				Hits++;
+			}
+			return md;
+		}
+
+		md = JDbColumnMetaData.of(rsmd);
+		synchronized (Cache)
+		{
+			Misses++;
+			Cache.put(key, md);
+		}
+		return md;
+	}
+
+	/**
+	 * Clear the cache, such as after the tables of its queries changed.
+	 */
+	static public void clear()
+	{
+		synchronized (Cache)
+		{
+			Cache.clear();
+		}
+	}
+
+	/**
+	 * Sets the MaxSize.
+	 *
+	 * @param maxsize
+	 *            most queries to keep the description of, default 256.
+	 */
+	static public void setMaxSize(int maxsize)
+	{
+		synchronized (Cache)
+		{
+			MaxSize = Math.max(maxsize, 0);
+			//Let the next put trim it
+			while (Cache.size() > MaxSize)
+				Cache.remove(Cache.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Gets the Size.
+	 *
+	 * @return number of queries described in the cache.
+	 */
+	static public int getSize()
+	{
+		synchronized (Cache)
+		{
+			return Cache.size();
+		}
+	}
+
+	/**
+	 * Gets the Hits.
+	 *
+	 * @return the Hits as long
+	 */
+	static public long getHits()
+	{
+		synchronized (Cache)
+		{
+			return Hits;
+		}
+	}
+
+	/**
+	 * Gets the Misses.
+	 *
+	 * @return the Misses as long
+	 */
+	static public long getMisses()
+	{
+		synchronized (Cache)
+		{
+			return Misses;
+		}
+	}
+
+	/**
+	 * Gets sql with each run of white space outside quotes made one blank,
+	 * and none at either end.
+	 *
+	 * @param sql
+	 *
+	 * @return the normalized sql
+	 */
+	static String normalize(String sql)
+	{
+		if (isNormal(sql))
+			return sql;
+		StringBuilder b = new StringBuilder(sql.length());
+		normalize(sql, b);
+		return b.toString();
+	}
+
+	/**
+	 * Checks if sql is normalized already, so that it need not be copied.
+	 */
+	static private boolean isNormal(String sql)
+	{
+		int n = sql.length();
+		if (n > 0 && (Character.isWhitespace(sql.charAt(0))
+			|| Character.isWhitespace(sql.charAt(n - 1))))
+			return false;
+		char quote = 0;
+		boolean blank = false;
+		for (int i = 0; i < n; i++)
+		{
+			char c = sql.charAt(i);
+			if (quote == 0 && Character.isWhitespace(c))
+			{
+				if (blank || c != ' ')
+					return false;
+				blank = true;
+				continue;
+			}
+			blank = false;
+			if (quote == 0 && (c == '\'' || c == '"'))
+				quote = c;
+			else if (c == quote)
+				quote = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Append sql with each run of white space outside quotes made one blank,
+	 * and none at either end.
+	 */
+	static private void normalize(String sql, StringBuilder key)
+	{
+		int start = key.length();
+		char quote = 0;
+		boolean blank = false;
+		for (int i = 0; i < sql.length(); i++)
+		{
+			char c = sql.charAt(i);
+			if (quote == 0 && Character.isWhitespace(c))
+			{
+				blank = true;
+				continue;
+			}
+			if (blank && key.length() > start)
+				key.append(' ');
+			blank = false;
+			key.append(c);
+			if (quote == 0 && (c == '\'' || c == '"'))
+				quote = c;
+			else if (c == quote)
+				quote = 0;
+		}
+	}
+
+	static private int MaxSize = 256;
+
+	/** URL, user and schema of each Connection, weakly by Connection. */
+	static private final Map<Connection, String> ConnectionURLs =
+		Collections.synchronizedMap(new WeakHashMap<Connection, String>());
+
+	static private long Hits = 0;
+
+	static private long Misses = 0;
+
+	static private final LinkedHashMap<String, JDbColumnMetaData> Cache =
+		new LinkedHashMap<String, JDbColumnMetaData>(64, 0.75f, true)
+		{
+			protected boolean removeEldestEntry(Map.Entry<String, JDbColumnMetaData> eldest)
+			{
+				return size() > MaxSize;
+			}
+		};
+}
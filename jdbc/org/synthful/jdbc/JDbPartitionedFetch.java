@@ -0,0 +1,661 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * JDbPartitionedFetch Class. Fetches a large query in partitions, by ranges
+ * of a numeric or date key column, on several pooled Connections at once,
+ * and merges their rows into one JDataArrayVector, or streams them in order
+ * of the key.
+ * <br>
+ * The query is wrapped as
+ * <pre>
+ * select * from (query) P where key &gt;= ? and key &lt; ? order by key
+ * </pre>
+ * once per partition, the last partition taking the upper end of the range
+ * as well. Rows whose key is null, or outside the range, are not fetched.
+ * Without setRange, the range is that of the key over the whole query, found
+ * first by one more query, and the first partition is left open below and
+ * the last open above, so that no row is lost to bounds rounded to whole
+ * numbers or milliseconds.
+ * <br>
+ * With a JDbLogin that does not pool, partitions are fetched one after
+ * another on its Connection.
+ * <pre>
+ * JDataArrayVector v = new JDbPartitionedFetch(dblogin, "select * from ORDERS", "ORDER_ID")
+ *     .setPartitions(16).setParallelism(4).fetch();
+ * </pre>
+ */
+public class JDbPartitionedFetch
+{
+
+	/**
+	 * Instantiates a new JDbPartitionedFetch.
+	 *
+	 * @param dblogin
+	 *            the dblogin as JDbLogin, already logged in.
+	 * @param query
+	 *            SQL query to be fetched, without order by.
+	 * @param keycolumn
+	 *            name of the numeric or date column among those of query, to
+	 *            partition by.
+	 */
+	public JDbPartitionedFetch(JDbLogin dblogin, String query, String keycolumn)
+	{
+		dbLogin = dblogin;
+		Query = query;
+		KeyColumn = keycolumn;
+		JDbConnectionPool pool = dblogin.getConnectionPool();
+		Parallelism = pool == null ? 1 : pool.getMaxSize();
+		Partitions = Parallelism;
+	}
+
+	/**
+	 * Sets the range of a numeric key.
+	 *
+	 * @param low
+	 *            lowest key fetched.
+	 * @param high
+	 *            highest key fetched.
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setRange(long low, long high)
+	{
+		Low = low;
+		High = high;
+		DateKey = false;
+		RangeSet = true;
+		return this;
+	}
+
+	/**
+	 * Sets the range of a date key.
+	 *
+	 * @param low
+	 *            earliest key fetched.
+	 * @param high
+	 *            latest key fetched.
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setRange(java.util.Date low, java.util.Date high)
+	{
+		Low = low.getTime();
+		High = high.getTime();
+		DateKey = true;
+		RangeSet = true;
+		return this;
+	}
+
+	/**
+	 * Sets the number of Partitions.
+	 *
+	 * @param partitions
+	 *            ranges the key is split into, by default as many as
+	 *            Parallelism.
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setPartitions(int partitions)
+	{
+		Partitions = Math.max(partitions, 1);
+		return this;
+	}
+
+	/**
+	 * Sets the Parallelism.
+	 *
+	 * @param threads
+	 *            partitions fetched at once, by default as many as the pool
+	 *            has Connections.
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setParallelism(int threads)
+	{
+		Parallelism = Math.max(threads, 1);
+		return this;
+	}
+
+	/**
+	 * Sets Ordered, for rows to come in order of the key.
+	 *
+	 * @param yes
+	 *            default true; false spares each partition its sort.
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setOrdered(boolean yes)
+	{
+		Ordered = yes;
+		return this;
+	}
+
+	/**
+	 * Sets the HeaderRow of the merged buffer.
+	 *
+	 * @param yes
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setHeaderRow(boolean yes)
+	{
+		HeaderRow = yes;
+		return this;
+	}
+
+	/**
+	 * Sets the Progress listener, told as each partition is done.
+	 *
+	 * @param progress
+	 *
+	 * @return this.
+	 */
+	public JDbPartitionedFetch setProgress(Progress progress)
+	{
+		ProgressListener = progress;
+		return this;
+	}
+
+	/**
+	 * Fetch all partitions and merge their rows, in order of the key, into
+	 * one buffer. Errors of all partitions are in its getResultStatus.
+	 *
+	 * @return the buffer
+	 */
+	@SuppressWarnings("unchecked")
+	public JDataArrayVector fetch()
+	{
+		JDataArrayVector merged = new JDataArrayVector(dbLogin);
+		merged.setHeaderRow(HeaderRow);
+		ResultStatus = merged.ResultStatus;
+		Fetches fetches = start();
+		if (fetches == null)
+			return merged;
+
+		int n = fetches.size();
+		fetches.submit(n - 1);
+		for (int i = 0; i < n; i++)
+		{
+			Partition p = PartitionList.get(i);
+			JDataArrayVector part = fetches.take(i);
+			if (part == null)
+			{
+				merged.ResultStatus.addAll(p.ResultStatus);
+				continue;
+			}
+			if (merged.ColumnMetaData == null && part.ColumnMetaData != null)
+			{
+				merged.ColumnMetaData = part.ColumnMetaData;
+				merged.numColumns = part.numColumns;
+				merged.ColumnTypes = part.ColumnTypes;
+				merged.ColumnNames = part.ColumnNames;
+				merged.ColumnLabels = part.ColumnLabels;
+				merged.ColumnIndex = part.ColumnIndex;
+				if (HeaderRow)
+				{
+					try
+					{
+						merged.fetchDataRowInit();
+					}
+					catch (SQLException sqle)
+					{
+						merged.catchSQLException(sqle);
+					}
+				}
+			}
+			merged.addAll(part);
+			merged.rowNum += part.rowNum;
+			merged.ResultStatus.addAll(part.ResultStatus);
+		}
+		return merged;
+	}
+
+	/**
+	 * Fetch the partitions and stream their rows, in order of the key, as
+	 * each partition in turn is fetched. No more than Parallelism partitions
+	 * are fetched ahead of the one being read, so that no more than that many
+	 * and the one being read are held in memory. Errors of the partitions are
+	 * in getResultStatus once the stream is read.
+	 *
+	 * @return stream of Object[] rows.
+	 */
+	public Stream<Object[]> stream()
+	{
+		ResultStatus = new Vector<Object>();
+		final Fetches fetches = start();
+		if (fetches != null)
+			fetches.submit(Parallelism - 1);
+		Iterator<Object[]> rows = new Iterator<Object[]>()
+		{
+			public boolean hasNext()
+			{
+				while (Rows == null || !Rows.hasNext())
+				{
+					Rows = null;
+					if (fetches == null || Next >= fetches.size())
+						return false;
+					//Keep Parallelism partitions under way beyond this one
+					fetches.submit(Next + Parallelism);
+					Partition p = PartitionList.get(Next);
+					JDataArrayVector part = fetches.take(Next++);
+					ResultStatus.addAll(p.ResultStatus);
+					if (part == null)
+						continue;
+					Rows = part.iterator();
+				}
+				return true;
+			}
+
+			public Object[] next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return (Object[]) Rows.next();
+			}
+
+			Iterator<?> Rows;
+			int Next = 0;
+		};
+		return StreamSupport.stream(
+			Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL),
+			false);
+	}
+
+	/**
+	 * Gets the partitions of the last fetch, with their progress.
+	 *
+	 * @return Vector of Partition, in order of the key.
+	 */
+	public Vector<Partition> getPartitions()
+	{
+		return PartitionList;
+	}
+
+	/**
+	 * Gets the result status of the last fetch or stream.
+	 *
+	 * @return the result status as Vector
+	 */
+	public Vector<Object> getResultStatus()
+	{
+		return ResultStatus;
+	}
+
+	/**
+	 * Split the range into partitions, to be submitted by the caller.
+	 *
+	 * @return fetches of the partitions, or null if the range could not be
+	 *         found.
+	 */
+	private Fetches start()
+	{
+		PartitionList = new Vector<Partition>();
+		if (!RangeSet && !findRange())
+			return null;
+		if (High < Low)
+			return new Fetches(dbLogin.getConnectionPool(), 0);
+
+		//Spread the keys evenly, the first partitions taking one more
+		long span = High - Low + 1;
+		int n = (int) Math.max(1, Math.min(Partitions, span));
+		long size = span / n;
+		long extra = span % n;
+		String sql = "select * from (" + Query + ") P where "
+			+ KeyColumn + " >= ? and " + KeyColumn + " < ?";
+		String lastsql = "select * from (" + Query + ") P where "
+			+ KeyColumn + " >= ? and " + KeyColumn + " <= ?";
+		//A range found is open at its ends
+		String firstsql = "select * from (" + Query + ") P where "
+			+ KeyColumn + " < ?";
+		String opensql = "select * from (" + Query + ") P where "
+			+ KeyColumn + " >= ?";
+		String allsql = "select * from (" + Query + ") P where "
+			+ KeyColumn + " is not null";
+		if (Ordered)
+		{
+			String order = " order by " + KeyColumn;
+			sql += order;
+			lastsql += order;
+			firstsql += order;
+			opensql += order;
+			allsql += order;
+		}
+
+		Fetches fetches = new Fetches(dbLogin.getConnectionPool(), n);
+		long low = Low;
+		for (int i = 0; i < n; i++)
+		{
+			boolean first = i == 0;
+			boolean last = i == n - 1;
+			long high = last ? High : low + size + (i < extra ? 1 : 0);
+			PartitionList.add(new Partition(i, low, high));
+			if (RangeSet || !(first || last))
+			{
+				fetches.Sqls[i] = last ? lastsql : sql;
+				fetches.Params[i] = new Object[] {bound(low), bound(high)};
+			}
+			else if (first && last)
+			{
+				fetches.Sqls[i] = allsql;
+				fetches.Params[i] = new Object[0];
+			}
+			else
+			{
+				fetches.Sqls[i] = first ? firstsql : opensql;
+				fetches.Params[i] = new Object[] {bound(first ? high : low)};
+			}
+			low = high;
+		}
+		return fetches;
+	}
+
+	private JDataArrayVector fetchPartition(JDbConnectionPool pool, Partition p,
+		String sql, Object[] params)
+		throws SQLException
+	{
+		p.State = Partition.RUNNING;
+		long t0 = System.currentTimeMillis();
+		Connection conn = null;
+		try
+		{
+			if (pool != null)
+				conn = pool.borrow();
+			else
+			{
+				dbLogin.getStatement();
+				conn = dbLogin.getConnection();
+			}
+			JDataArrayVector v = new JDataArrayVector(conn);
+			v.fetch(sql, params);
+			v.ReleaseStatement();
+			p.Rows = v.getNumRows();
+			p.ResultStatus = v.getResultStatus();
+			return v;
+		}
+		finally
+		{
+			if (pool != null && conn != null)
+				conn.close();
+			p.Millis = System.currentTimeMillis() - t0;
+			p.State = p.ResultStatus == null || !p.ResultStatus.isEmpty()
+				? Partition.FAILED : Partition.DONE;
+			if (ProgressListener != null)
+				ProgressListener.partitionDone(p);
+		}
+	}
+
+	/**
+	 * Wait for the fetch of a partition.
+	 *
+	 * @return its buffer, or null if it failed outright.
+	 */
+	private JDataArrayVector await(Future<JDataArrayVector> fetch, Partition p)
+	{
+		try
+		{
+			return fetch.get();
+		}
+		catch (Exception e)
+		{
+			Throwable t = e.getCause() != null ? e.getCause() : e;
+			p.State = Partition.FAILED;
+			Vector<Object> status = new Vector<Object>();
+			status.add(t);
+			p.ResultStatus = status;
+			return null;
+		}
+	}
+
+	/**
+	 * Fetches Class. The fetches of the partitions of one fetch or stream,
+	 * each submitted when the caller asks for it.
+	 */
+	private final class Fetches
+	{
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Fetches(JDbConnectionPool pool, int n)
+		{
+			Pool = pool;
+			Sqls = new String[n];
+			Params = new Object[n][];
+			Futures = new Future[n];
+			int threads = pool == null ? 1 : Parallelism;
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Daemons);
+			//Lets the threads of a stream left unread end
+			executor.allowCoreThreadTimeOut(true);
+			Executor = executor;
+			if (n == 0)
+				Executor.shutdown();
+		}
+
+		int size()
+		{
+			return Futures.length;
+		}
+
+		/**
+		 * Submit the fetches, in order, of the partitions up to i not yet
+		 * submitted.
+		 */
+		void submit(int i)
+		{
+			while (Submitted <= i && Submitted < Futures.length)
+			{
+				final Partition p = PartitionList.get(Submitted);
+				final String sql = Sqls[Submitted];
+				final Object[] params = Params[Submitted];
+				Futures[Submitted] = Executor.submit(new Callable<JDataArrayVector>()
+				{
+					public JDataArrayVector call()
+						throws SQLException
+					{
+						return fetchPartition(Pool, p, sql, params);
+					}
+				});
+				//Lets the threads end once the partitions are fetched
+				if (++Submitted == Futures.length)
+					Executor.shutdown();
+			}
+		}
+
+		/**
+		 * Wait for the fetch of partition i, submitting it if need be, and
+		 * let go of it.
+		 *
+		 * @return its buffer, or null if it failed outright.
+		 */
+		JDataArrayVector take(int i)
+		{
+			submit(i);
+			JDataArrayVector part = await(Futures[i], PartitionList.get(i));
+			Futures[i] = null;
+			return part;
+		}
+
+		final JDbConnectionPool Pool;
+		final String[] Sqls;
+		final Object[][] Params;
+		final Future<JDataArrayVector>[] Futures;
+		final ExecutorService Executor;
+		int Submitted = 0;
+	}
+
+	/**
+	 * Find the range of the key over the whole query.
+	 */
+	private boolean findRange()
+	{
+		Object[][] minmax = JUtil.SqlFetch(dbLogin,
+			"select min(" + KeyColumn + "), max(" + KeyColumn + ") from (" + Query + ") P");
+		if (minmax == null || minmax.length == 0 || minmax[0][0] == null)
+		{
+			ResultStatus.add(new SQLException("No range of " + KeyColumn + " found"));
+			return false;
+		}
+		Object min = minmax[0][0];
+		Object max = minmax[0][1];
+		if (min instanceof java.util.Date)
+		{
+			DateKey = true;
+			Low = ((java.util.Date) min).getTime();
+			High = ((java.util.Date) max).getTime();
+		}
+		else
+		{
+			Low = floorOf((Number) min);
+			High = ceilOf((Number) max);
+		}
+		return true;
+	}
+
+	static private long floorOf(Number n)
+	{
+		if (n instanceof BigDecimal)
+			return ((BigDecimal) n).setScale(0, RoundingMode.FLOOR).longValue();
+		if (n instanceof Double || n instanceof Float)
+			return (long) Math.floor(n.doubleValue());
+		return n.longValue();
+	}
+
+	static private long ceilOf(Number n)
+	{
+		if (n instanceof BigDecimal)
+			return ((BigDecimal) n).setScale(0, RoundingMode.CEILING).longValue();
+		if (n instanceof Double || n instanceof Float)
+			return (long) Math.ceil(n.doubleValue());
+		return n.longValue();
+	}
+
+	private Object bound(long key)
+	{
+		return DateKey ? new Timestamp(key) : (Object) Long.valueOf(key);
+	}
+
+	/**
+	 * Progress Interface. Told as each partition is done, on the thread that
+	 * fetched it.
+	 */
+	public interface Progress
+	{
+		void partitionDone(Partition p);
+	}
+
+	/**
+	 * Partition Class. A range of the key, and how its fetch went.
+	 */
+	static public class Partition
+	{
+		Partition(int index, long low, long high)
+		{
+			Index = index;
+			Low = low;
+			High = high;
+		}
+
+		/**
+		 * Gets the State.
+		 *
+		 * @return PENDING, RUNNING, DONE or FAILED.
+		 */
+		public int getState()
+		{
+			return State;
+		}
+
+		public String toString()
+		{
+			return "Partition[" + Index + " " + Low + ".." + High
+				+ " state=" + State + " rows=" + Rows + " ms=" + Millis + "]";
+		}
+
+		static public final int PENDING = 0;
+		static public final int RUNNING = 1;
+		static public final int DONE = 2;
+		static public final int FAILED = 3;
+
+		/** Position of the partition, in order of the key. */
+		public final int Index;
+
+		/** Lowest key, or its time in milliseconds for a date key. */
+		public final long Low;
+
+		/** Key the partition ends before, or ends at for the last partition. */
+		public final long High;
+
+		/** Rows fetched. */
+		public volatile int Rows;
+
+		/** Milliseconds the fetch took. */
+		public volatile long Millis;
+
+		/** Errors of the fetch. */
+		public volatile Vector<?> ResultStatus;
+
+		volatile int State = PENDING;
+	}
+
+	static private final ThreadFactory Daemons = new ThreadFactory()
+	{
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "JDbPartitionedFetch");
+			t.setDaemon(true);
+			return t;
+		}
+	};
+
+	protected JDbLogin dbLogin;
+
+	protected String Query;
+
+	protected String KeyColumn;
+
+	protected long Low;
+
+	protected long High;
+
+	protected boolean DateKey = false;
+
+	protected boolean RangeSet = false;
+
+	protected int Partitions;
+
+	protected int Parallelism;
+
+	protected boolean Ordered = true;
+
+	protected boolean HeaderRow = false;
+
+	protected Progress ProgressListener;
+
+	private Vector<Partition> PartitionList = new Vector<Partition>();
+
+	private Vector<Object> ResultStatus = new Vector<Object>();
+}
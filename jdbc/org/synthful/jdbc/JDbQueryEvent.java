@@ -0,0 +1,90 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+/**
+ * JDbQueryEvent Class. What a statement took, as told to each
+ * JDbQueryListener.
+ */
+public class JDbQueryEvent
+{
+
+	/**
+	 * Instantiates a new JDbQueryEvent.
+	 * 
+	 * @param source
+	 *            what executed the statement, such as "JDataBufferVector".
+	 * @param sql
+	 * @param executenanos
+	 * @param fetchnanos
+	 * @param rows
+	 * @param bytes
+	 * @param error
+	 *            the first error of the statement, or null.
+	 */
+	public JDbQueryEvent(
+		String source, String sql, long executenanos, long fetchnanos,
+		long rows, long bytes, Throwable error)
+	{
+		Source = source;
+		Sql = sql;
+		Context = JDbInstrumentation.getContext();
+		ExecuteNanos = executenanos;
+		FetchNanos = fetchnanos;
+		Rows = rows;
+		Bytes = bytes;
+		Error = error;
+		EndMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Gets the TotalMillis.
+	 * 
+	 * @return milliseconds to execute and fetch.
+	 */
+	public long getTotalMillis()
+	{
+		return (ExecuteNanos + FetchNanos) / 1000000;
+	}
+
+	public String toString()
+	{
+		return getTotalMillis() + "ms (execute " + ExecuteNanos / 1000000
+			+ "ms, fetch " + FetchNanos / 1000000 + "ms, " + Rows + " rows, ~"
+			+ Bytes + " bytes)"
+			+ (Context == null ? "" : " [" + Context + "]")
+			+ " " + Source + ": " + Sql
+			+ (Error == null ? "" : " failed: " + Error);
+	}
+
+	/** What executed the statement, such as "JDataBufferVector". */
+	public final String Source;
+
+	/** SQL of the statement. */
+	public final String Sql;
+
+	/** Context of the thread, such as the page, from JDbInstrumentation.setContext. */
+	public final String Context;
+
+	/** Nanoseconds to execute. */
+	public final long ExecuteNanos;
+
+	/** Nanoseconds to fetch the rows. */
+	public final long FetchNanos;
+
+	/** Rows fetched, or rows updated by a statement without results. */
+	public final long Rows;
+
+	/** Estimated size of the rows fetched, or 0 if not estimated. */
+	public final long Bytes;
+
+	/** The first error of the statement, or null. */
+	public final Throwable Error;
+
+	/** System.currentTimeMillis when the statement was done. */
+	public final long EndMillis;
+}
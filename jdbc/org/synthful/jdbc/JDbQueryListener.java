@@ -0,0 +1,35 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+/**
+ * JDbQueryListener Interface. Told by JDbInstrumentation of every statement
+ * the buffers and JUtil execute, and of every Connection acquired, on the
+ * thread that did so, so it should be quick, handing any slow work, such as
+ * writing to a database, to another thread.
+ */
+public interface JDbQueryListener
+{
+	/**
+	 * A statement was executed, and its rows fetched.
+	 * 
+	 * @param event
+	 */
+	void statementDone(JDbQueryEvent event);
+
+	/**
+	 * A Connection was acquired.
+	 * 
+	 * @param url
+	 *            URL of the database.
+	 * @param nanos
+	 *            time taken, including any wait for a pooled Connection.
+	 * @param pooled
+	 *            true if borrowed from a JDbConnectionPool.
+	 */
+	void connectionAcquired(String url, long nanos, boolean pooled);
+}
@@ -0,0 +1,677 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JDbResultExporter Class. Streams the rows of a ResultSet, one at a time,
+ * as CSV, JSON Lines or HTML table rows to a Writer or OutputStream, so that
+ * an export holds no more than one row in memory however many rows there
+ * are, rather than the whole result as an Object[][] and again as its text.
+ * <br>
+ * Each column is read by the getter of its type in ColumnTypes, such as
+ * getInt or getDouble, and numbers are written without boxing. Text goes
+ * through one char buffer, reused for every row. Output to an OutputStream
+ * is UTF-8, gzipped if setGzip is set.
+ * <br>
+ * CSV is as RFC 4180: fields are quoted where they hold a comma, quote or
+ * line break, null is an empty field, and lines end with CR LF. JSON Lines
+ * has one object per row, members named by the column labels, with null,
+ * numbers and booleans as such, and binary columns in Base64. HTML is rows
+ * of td cells, under a row of th cells with the header row, without the
+ * table tags.
+ * <br>
+ * An exporter runs one export at a time.
+ * <pre>
+ * new JDbResultExporter(JDbResultExporter.Format.CSV).setGzip(true)
+ *     .export(conn, "select * from T where D &gt; ?", new Object[]{d}, out);
+ * </pre>
+ */
+public class JDbResultExporter
+{
+
+	/**
+	 * Format Enum.
+	 */
+	public enum Format
+	{
+		CSV,
+		JSONL,
+		HTML
+	}
+
+	/**
+	 * Instantiates a new JDbResultExporter.
+	 *
+	 * @param format
+	 *            the format as Format
+	 */
+	public JDbResultExporter(Format format)
+	{
+		OutFormat = format;
+	}
+
+	/**
+	 * Sets the HeaderRow, a first line of column labels for CSV and HTML.
+	 *
+	 * @param yes
+	 *            default true.
+	 *
+	 * @return this.
+	 */
+	public JDbResultExporter setHeaderRow(boolean yes)
+	{
+		HeaderRow = yes;
+		return this;
+	}
+
+	/**
+	 * Sets Gzip, of export to an OutputStream.
+	 *
+	 * @param yes
+	 *            default false.
+	 *
+	 * @return this.
+	 */
+	public JDbResultExporter setGzip(boolean yes)
+	{
+		Gzip = yes;
+		return this;
+	}
+
+	/**
+	 * Sets the FetchSize of queries this executes.
+	 *
+	 * @param fetchsize
+	 *            rows per fetch round trip, default 1000.
+	 *
+	 * @return this.
+	 */
+	public JDbResultExporter setFetchSize(int fetchsize)
+	{
+		FetchSize = fetchsize;
+		return this;
+	}
+
+	/**
+	 * Execute query and export its rows.
+	 *
+	 * @param conn
+	 * @param query
+	 *            SQL query to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order, or null if none.
+	 * @param out
+	 *
+	 * @return number of rows exported.
+	 *
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(Connection conn, String query, Object[] params, OutputStream out)
+		throws SQLException, IOException
+	{
+		Target target = new Target(out);
+		long rows = export(conn, query, params, target.Writer);
+		target.finish();
+		return rows;
+	}
+
+	/**
+	 * Execute query and export its rows.
+	 *
+	 * @param conn
+	 * @param query
+	 *            SQL query to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order, or null if none.
+	 * @param out
+	 *
+	 * @return number of rows exported.
+	 *
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(Connection conn, String query, Object[] params, Writer out)
+		throws SQLException, IOException
+	{
+		Statement stmt = null;
+		ResultSet rs = null;
+		try
+		{
+			if (params == null)
+			{
+				stmt = conn.createStatement(
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				if (FetchSize != 0)
+					stmt.setFetchSize(FetchSize);
+				rs = stmt.executeQuery(query);
+			}
+			else
+			{
+				PreparedStatement ps = JDbStatementCache.forConnection(conn).prepare(query);
+				JUtil.setParameters(ps, params);
+				if (FetchSize != 0)
+					ps.setFetchSize(FetchSize);
+				rs = ps.executeQuery();
+			}
+			String key = JDbMetaDataCache.keyOf(
+				JDbMetaDataCache.urlOf(rs.getStatement()), query, 0);
+			return export(rs, JDbMetaDataCache.describe(key, rs.getMetaData()), out);
+		}
+		finally
+		{
+			if (rs != null)
+				rs.close();
+			//Statements of the cache stay open
+			JUtil.closeStatement(stmt);
+		}
+	}
+
+	/**
+	 * Export the rows of rs left to read.
+	 *
+	 * @param rs
+	 * @param out
+	 *
+	 * @return number of rows exported.
+	 *
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(ResultSet rs, OutputStream out)
+		throws SQLException, IOException
+	{
+		Target target = new Target(out);
+		long rows = export(rs, target.Writer);
+		target.finish();
+		return rows;
+	}
+
+	/**
+	 * Export the rows of rs left to read.
+	 *
+	 * @param rs
+	 * @param out
+	 *
+	 * @return number of rows exported.
+	 *
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(ResultSet rs, Writer out)
+		throws SQLException, IOException
+	{
+		return export(rs, JDbColumnMetaData.of(rs.getMetaData()), out);
+	}
+
+	/**
+	 * Export the rows of rs left to read, of columns already described.
+	 *
+	 * @param rs
+	 * @param md
+	 *            description of the columns of rs.
+	 * @param out
+	 *
+	 * @return number of rows exported.
+	 *
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(ResultSet rs, JDbColumnMetaData md, Writer out)
+		throws SQLException, IOException
+	{
+		Out = out;
+		Len = 0;
+		int n = md.getColumnCount();
+		int[] kinds = new int[n];
+		for (int i = 0; i < n; i++)
+			kinds[i] = kindOf(md.getType(i));
+
+		//Labels written once, as they are to be repeated
+		String[] labels = new String[n];
+		for (int i = 0; i < n; i++)
+		{
+			String label = md.getLabel(i);
+			labels[i] = label == null || label.length() == 0 ? md.getName(i) : label;
+		}
+		if (OutFormat == Format.JSONL)
+			for (int i = 0; i < n; i++)
+				labels[i] = jsonString(labels[i]);
+		else if (HeaderRow)
+			writeHeader(labels);
+
+		long rows = 0;
+		try
+		{
+			while (rs.next())
+			{
+				rows++;
+				switch (OutFormat)
+				{
+					case CSV:
+						for (int i = 0; i < n; i++)
+						{
+							if (i > 0)
+								put(',');
+							writeCell(rs, i + 1, kinds[i]);
+						}
+						put("\r\n");
+						break;
+
+					case JSONL:
+						put('{');
+						for (int i = 0; i < n; i++)
+						{
+							if (i > 0)
+								put(',');
+							put(labels[i]);
+							put(':');
+							writeCell(rs, i + 1, kinds[i]);
+						}
+						put("}\n");
+						break;
+
+					case HTML:
+						put("<tr>");
+						for (int i = 0; i < n; i++)
+						{
+							put("<td>");
+							writeCell(rs, i + 1, kinds[i]);
+							put("</td>");
+						}
+						put("</tr>\n");
+						break;
+				}
+			}
+		}
+		finally
+		{
+			drain();
+			Out.flush();
+			Out = null;
+		}
+		return rows;
+	}
+
+	private void writeHeader(String[] labels)
+		throws IOException
+	{
+		if (OutFormat == Format.HTML)
+		{
+			put("<tr>");
+			for (int i = 0; i < labels.length; i++)
+			{
+				put("<th>");
+				putText(labels[i]);
+				put("</th>");
+			}
+			put("</tr>\n");
+			return;
+		}
+		for (int i = 0; i < labels.length; i++)
+		{
+			if (i > 0)
+				put(',');
+			putText(labels[i]);
+		}
+		put("\r\n");
+	}
+
+	/**
+	 * Write the value of column col of the current row, read by its kind.
+	 */
+	private void writeCell(ResultSet rs, int col, int kind)
+		throws SQLException, IOException
+	{
+		switch (kind)
+		{
+			case INT:
+			{
+				int v = rs.getInt(col);
+				if (rs.wasNull())
+					putNull();
+				else
+					putLong(v);
+				return;
+			}
+			case LONG:
+			{
+				long v = rs.getLong(col);
+				if (rs.wasNull())
+					putNull();
+				else
+					putLong(v);
+				return;
+			}
+			case DOUBLE:
+			{
+				double v = rs.getDouble(col);
+				if (rs.wasNull() || Double.isNaN(v) || Double.isInfinite(v))
+					putNull();
+				else
+					put(Double.toString(v));
+				return;
+			}
+			case DECIMAL:
+			{
+				BigDecimal v = rs.getBigDecimal(col);
+				if (v == null)
+					putNull();
+				else
+					put(v.toPlainString());
+				return;
+			}
+			case BOOLEAN:
+			{
+				boolean v = rs.getBoolean(col);
+				if (rs.wasNull())
+					putNull();
+				else
+					put(v ? "true" : "false");
+				return;
+			}
+			case BINARY:
+			{
+				byte[] v = rs.getBytes(col);
+				if (v == null)
+					putNull();
+				else
+					putText(Base64.getEncoder().encodeToString(v));
+				return;
+			}
+			case TEMPORAL:
+			{
+				Object v = rs.getObject(col);
+				if (v == null)
+					putNull();
+				else
+					putText(v.toString());
+				return;
+			}
+			default:
+			{
+				String v = rs.getString(col);
+				if (v == null)
+					putNull();
+				else
+					putText(v);
+			}
+		}
+	}
+
+	static private int kindOf(int type)
+	{
+		switch (type)
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return INT;
+			case Types.BIGINT:
+				return LONG;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return DOUBLE;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return DECIMAL;
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return BOOLEAN;
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return BINARY;
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return TEMPORAL;
+			default:
+				return TEXT;
+		}
+	}
+
+	private void putNull()
+		throws IOException
+	{
+		if (OutFormat == Format.JSONL)
+			put("null");
+	}
+
+	/**
+	 * Write text as a string of the format, escaped as it needs.
+	 */
+	private void putText(String s)
+		throws IOException
+	{
+		int n = s.length();
+		switch (OutFormat)
+		{
+			case CSV:
+			{
+				boolean quote = false;
+				for (int i = 0; i < n && !quote; i++)
+				{
+					char c = s.charAt(i);
+					quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+				}
+				if (!quote)
+				{
+					put(s);
+					return;
+				}
+				put('"');
+				for (int i = 0; i < n; i++)
+				{
+					char c = s.charAt(i);
+					if (c == '"')
+						put('"');
+					put(c);
+				}
+				put('"');
+				return;
+			}
+
+			case JSONL:
+				put('"');
+				for (int i = 0; i < n; i++)
+					putJsonChar(s.charAt(i));
+				put('"');
+				return;
+
+			case HTML:
+				for (int i = 0; i < n; i++)
+				{
+					char c = s.charAt(i);
+					switch (c)
+					{
+						case '&': put("&amp;"); break;
+						case '<': put("&lt;"); break;
+						case '>': put("&gt;"); break;
+						case '"': put("&quot;"); break;
+						case '\'': put("&#39;"); break;
+						default: put(c);
+					}
+				}
+		}
+	}
+
+	private void putJsonChar(char c)
+		throws IOException
+	{
+		switch (c)
+		{
+			case '"': put("\\\""); return;
+			case '\\': put("\\\\"); return;
+			case '\n': put("\\n"); return;
+			case '\r': put("\\r"); return;
+			case '\t': put("\\t"); return;
+		}
+		if (c < 0x20)
+		{
+			put("\\u00");
+			put(HEX[c >> 4]);
+			put(HEX[c & 0xF]);
+		}
+		else
+			put(c);
+	}
+
+	private String jsonString(String s)
+	{
+		StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				b.append('\\').append(c);
+			else if (c < 0x20)
+				b.append(String.format("\\u%04x", (int) c));
+			else
+				b.append(c);
+		}
+		return b.append('"').toString();
+	}
+
+	/**
+	 * Write the digits of v, without making a String of them.
+	 */
+	private void putLong(long v)
+		throws IOException
+	{
+		if (v == Long.MIN_VALUE)
+		{
+			put(Long.toString(v));
+			return;
+		}
+		if (v < 0)
+		{
+			put('-');
+			v = -v;
+		}
+		if (Len + 20 > Buf.length)
+			drain();
+		int end = Len + digits(v);
+		for (int i = end - 1; i >= Len; i--)
+		{
+			Buf[i] = (char) ('0' + v % 10);
+			v /= 10;
+		}
+		Len = end;
+	}
+
+	static private int digits(long v)
+	{
+		int d = 1;
+		while (v >= 10)
+		{
+			v /= 10;
+			d++;
+		}
+		return d;
+	}
+
+	private void put(char c)
+		throws IOException
+	{
+		if (Len == Buf.length)
+			drain();
+		Buf[Len++] = c;
+	}
+
+	private void put(String s)
+		throws IOException
+	{
+		int n = s.length();
+		if (Len + n > Buf.length)
+		{
+			drain();
+			if (n > Buf.length)
+			{
+				Out.write(s);
+				return;
+			}
+		}
+		s.getChars(0, n, Buf, Len);
+		Len += n;
+	}
+
+	private void drain()
+		throws IOException
+	{
+		if (Len > 0)
+			Out.write(Buf, 0, Len);
+		Len = 0;
+	}
+
+	/**
+	 * Target Class. UTF-8 Writer over an OutputStream, gzipped if Gzip is
+	 * set, which is finished but left open.
+	 */
+	private class Target
+	{
+		Target(OutputStream out)
+			throws IOException
+		{
+			if (Gzip)
+				out = Zip = new GZIPOutputStream(out, BufferSize);
+			Writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		}
+
+		void finish()
+			throws IOException
+		{
+			Writer.flush();
+			if (Zip != null)
+				Zip.finish();
+		}
+
+		final Writer Writer;
+		GZIPOutputStream Zip;
+	}
+
+	static private final int INT = 1;
+	static private final int LONG = 2;
+	static private final int DOUBLE = 3;
+	static private final int DECIMAL = 4;
+	static private final int BOOLEAN = 5;
+	static private final int BINARY = 6;
+	static private final int TEMPORAL = 7;
+	static private final int TEXT = 0;
+
+	static private final char[] HEX = "0123456789abcdef".toCharArray();
+
+	static private final int BufferSize = 8192;
+
+	/** The format written. */
+	protected final Format OutFormat;
+
+	/** True to write a first line of column labels for CSV and HTML. */
+	protected boolean HeaderRow = true;
+
+	/** True to gzip export to an OutputStream. */
+	protected boolean Gzip = false;
+
+	/** Rows per fetch round trip of queries this executes. */
+	protected int FetchSize = 1000;
+
+	private final char[] Buf = new char[BufferSize];
+	private int Len;
+	private Writer Out;
+}
@@ -0,0 +1,326 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ * 
+ */
+package org.synthful.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JDbStatementCache Class. Least recently used cache of the PreparedStatements
+ * of one Connection, by SQL, so that SQL executed again with other parameters
+ * is not parsed again by the server.
+ * <br>
+ * The cache of a Connection borrowed from a JDbConnectionPool belongs to the
+ * pooled Connection underneath, so its statements outlive the borrower and
+ * serve the next one, and are closed when the pool closes the Connection.
+ * The cache of a Connection wrapped by withCache, as JDbLogin does with the
+ * Connections it opens, is held by the wrapper, is closed when the wrapper
+ * is closed and is dropped with it. Caches of any other Connections are kept
+ * for the MaxOtherConnections used last, so that such a Connection dropped
+ * by its user is let go of once that many others have been used after it.
+ * A statement from the cache is not to be closed by its user, nor kept once
+ * the Connection is returned or closed.
+ */
+public class JDbStatementCache
+{
+
+	/**
+	 * Instantiates a new JDbStatementCache.
+	 * 
+	 * @param conn
+	 *            Connection whose statements are cached.
+	 * @param maxsize
+	 *            most statements to keep open.
+	 */
+	public JDbStatementCache(Connection conn, int maxsize)
+	{
+		Conn = conn;
+		MaxSize = maxsize > 0 ? maxsize : DefaultSize;
+		Statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true)
+		{
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+			{
+				if (size() <= MaxSize)
+					return false;
+				closeQuietly(eldest.getValue());
+				Evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Get the statement cache of a Connection, making it on first use.
+	 * 
+	 * @param conn
+	 * 
+	 * @return the cache
+	 */
+	static public JDbStatementCache forConnection(Connection conn)
+	{
+		JDbStatementCache cache = JDbConnectionPool.statementCacheOf(conn);
+		if (cache != null)
+			return cache;
+
+		if (Proxy.isProxyClass(conn.getClass()))
+		{
+			InvocationHandler h = Proxy.getInvocationHandler(conn);
+			if (h instanceof Owner)
+				return ((Owner) h).Cache;
+		}
+
+		synchronized (Caches)
+		{
+			cache = Caches.get(conn);
+			if (cache == null)
+			{
+				cache = new JDbStatementCache(conn, DefaultSize);
+				Caches.put(conn, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Wrap a Connection with its statement cache, which is invalidated when
+	 * the wrapper is closed and goes with the wrapper when it is dropped.
+	 * 
+	 * @param conn
+	 * 
+	 * @return the wrapper Connection
+	 */
+	static public Connection withCache(Connection conn)
+	{
+		return (Connection) Proxy.newProxyInstance(
+			Connection.class.getClassLoader(),
+			new Class<?>[] {Connection.class},
+			new Owner(conn, new JDbStatementCache(conn, DefaultSize)));
+	}
+
+	/**
+	 * Get the PreparedStatement of sql, preparing it if not cached, with its
+	 * parameters cleared.
+	 * 
+	 * @param sql
+	 * 
+	 * @return the PreparedStatement
+	 * 
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	public synchronized PreparedStatement prepare(String sql)
+		throws SQLException
+	{
+		PreparedStatement ps = Statements.get(sql);
+		if (ps != null)
+		{
+			Hits++;
+			TotalHits.incrementAndGet();
+			ps.clearParameters();
+			return ps;
+		}
+
+		Misses++;
+		TotalMisses.incrementAndGet();
+		ps = Conn.prepareStatement(sql);
+		Statements.put(sql, ps);
+		return ps;
+	}
+
+	/**
+	 * Close the result sets left open by the statements, such as when their
+	 * Connection is returned to its pool, keeping the statements.
+	 */
+	public synchronized void closeResults()
+	{
+		for (PreparedStatement ps : Statements.values())
+		{
+			try
+			{
+				ResultSet rs = ps.getResultSet();
+				if (rs != null)
+					rs.close();
+			}
+			catch (SQLException e)
+			{
+			}
+		}
+	}
+
+	/**
+	 * Close and forget all statements, such as when their Connection is
+	 * closed or found invalid.
+	 */
+	public synchronized void invalidate()
+	{
+		ArrayList<PreparedStatement> stmts = new ArrayList<PreparedStatement>(Statements.values());
+		Statements.clear();
+		for (PreparedStatement ps : stmts)
+			closeQuietly(ps);
+	}
+
+	/**
+	 * Gets the number of statements cached.
+	 * 
+	 * @return the Size
+	 */
+	public synchronized int getSize()
+	{
+		return Statements.size();
+	}
+
+	/**
+	 * Gets the Hits.
+	 * 
+	 * @return number of prepares served from this cache.
+	 */
+	public synchronized long getHits()
+	{
+		return Hits;
+	}
+
+	/**
+	 * Gets the Misses.
+	 * 
+	 * @return number of prepares that had to prepare a new statement.
+	 */
+	public synchronized long getMisses()
+	{
+		return Misses;
+	}
+
+	/**
+	 * Gets the Evictions.
+	 * 
+	 * @return number of statements closed to make room.
+	 */
+	public synchronized long getEvictions()
+	{
+		return Evictions;
+	}
+
+	/**
+	 * Gets the TotalHits.
+	 * 
+	 * @return number of prepares served from all caches.
+	 */
+	static public long getTotalHits()
+	{
+		return TotalHits.get();
+	}
+
+	/**
+	 * Gets the TotalMisses.
+	 * 
+	 * @return number of prepares that missed all caches.
+	 */
+	static public long getTotalMisses()
+	{
+		return TotalMisses.get();
+	}
+
+	public String toString()
+	{
+		return "JDbStatementCache[size=" + getSize()
+			+ " hits=" + getHits()
+			+ " misses=" + getMisses()
+			+ " evictions=" + getEvictions()
+			+ "]";
+	}
+
+	static private void closeQuietly(Statement stmt)
+	{
+		try
+		{
+			stmt.close();
+		}
+		catch (SQLException e)
+		{
+		}
+	}
+
+	/**
+	 * Owner Class. Behind the wrapper of a Connection made by withCache,
+	 * passing calls on to it and invalidating its cache when closed.
+	 */
+	static private final class Owner
+	implements InvocationHandler
+	{
+		Owner(Connection conn, JDbStatementCache cache)
+		{
+			Conn = conn;
+			Cache = cache;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable
+		{
+			String name = method.getName();
+			if (name.equals("close"))
+				Cache.invalidate();
+			else if (name.equals("equals"))
+				return Boolean.valueOf(proxy == args[0]);
+			else if (name.equals("hashCode"))
+				return Integer.valueOf(System.identityHashCode(proxy));
+			else if (name.equals("toString"))
+				return "Cached:" + Conn;
+
+			Object o;
+			try
+			{
+				o = method.invoke(Conn, args);
+			}
+			catch (InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+			if (name.equals("setSchema") || name.equals("setCatalog"))
+				JDbMetaDataCache.forgetConnection(Conn);
+			return o;
+		}
+
+		private final Connection Conn;
+		private final JDbStatementCache Cache;
+	}
+
+	/** Default most statements kept open per Connection. */
+	static public int DefaultSize = 32;
+
+	/** Most Connections, neither pooled nor wrapped, whose caches are kept. */
+	static public int MaxOtherConnections = 16;
+
+	/**
+	 * Caches of Connections neither pooled nor wrapped, least recently used
+	 * first. A cache let go of is not invalidated, as its Connection may still
+	 * be reading results, and its statements close with the Connection.
+	 */
+	static private final LinkedHashMap<Connection, JDbStatementCache> Caches
+		= new LinkedHashMap<Connection, JDbStatementCache>(16, 0.75f, true)
+	{
+		protected boolean removeEldestEntry(Map.Entry<Connection, JDbStatementCache> eldest)
+		{
+			return size() > MaxOtherConnections;
+		}
+	};
+
+	static private final AtomicLong TotalHits = new AtomicLong();
+	static private final AtomicLong TotalMisses = new AtomicLong();
+
+	private final Connection Conn;
+	private final int MaxSize;
+	private final LinkedHashMap<String, PreparedStatement> Statements;
+	private long Hits = 0;
+	private long Misses = 0;
+	private long Evictions = 0;
+}
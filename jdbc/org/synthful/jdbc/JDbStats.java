@@ -0,0 +1,468 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * JDbStats Class. Counts and latency histograms of the statements executed
+ * and Connections acquired, as JDbInstrumentation records them, in all and
+ * per statement, with SQL of the same text apart from white space counted
+ * together. The statements are kept in a concurrent map of about
+ * MaxStatements at most; once it is full, the least recently used quarter
+ * of them is let go to make room.
+ */
+public class JDbStats
+implements JDbStatsMBean
+{
+
+	/**
+	 * Instantiates a new JDbStats.
+	 */
+	public JDbStats()
+	{
+	}
+
+	/**
+	 * Count a statement.
+	 *
+	 * @param event
+	 * @param slow
+	 *            true if it was slow.
+	 */
+	public void record(JDbQueryEvent event, boolean slow)
+	{
+		Statements.incrementAndGet();
+		if (event.Error != null)
+			Errors.incrementAndGet();
+		if (slow)
+			SlowQueries.incrementAndGet();
+		Rows.addAndGet(Math.max(event.Rows, 0));
+		Bytes.addAndGet(event.Bytes);
+		Execute.record(event.ExecuteNanos);
+		Fetch.record(event.FetchNanos);
+
+		if (event.Sql == null)
+			return;
+		String key = JDbMetaDataCache.normalize(event.Sql);
+		StatementStats s = PerStatement.get(key);
+		if (s == null)
+		{
+			if (PerStatement.size() >= MaxStatements)
+				evict();
+			StatementStats t = PerStatement.putIfAbsent(key, s = new StatementStats(key));
+			if (t != null)
+				s = t;
+		}
+		s.record(event, Statements.get());
+	}
+
+	/**
+	 * Let go of the least recently used quarter of the statements.
+	 */
+	private void evict()
+	{
+		synchronized (Evicting)
+		{
+			int n = PerStatement.size() - MaxStatements * 3 / 4;
+			if (n <= 0)
+				return;
+			ArrayList<StatementStats> all = new ArrayList<StatementStats>(PerStatement.values());
+			n = Math.min(n, all.size());
+			if (n <= 0)
+				return;
+			long[] used = new long[all.size()];
+			for (int i = 0; i < used.length; i++)
+				used[i] = all.get(i).LastUsed;
+			Arrays.sort(used);
+			long oldest = used[n - 1];
+			for (StatementStats s : all)
+			{
+				if (s.LastUsed <= oldest)
+					PerStatement.remove(s.Sql, s);
+			}
+		}
+	}
+
+	/**
+	 * Count a Connection acquired.
+	 *
+	 * @param nanos
+	 */
+	public void recordAcquire(long nanos)
+	{
+		Acquire.record(nanos);
+	}
+
+	public long getStatementCount()
+	{
+		return Statements.get();
+	}
+
+	public long getErrorCount()
+	{
+		return Errors.get();
+	}
+
+	public long getRowsFetched()
+	{
+		return Rows.get();
+	}
+
+	public long getBytesFetched()
+	{
+		return Bytes.get();
+	}
+
+	public double getExecuteMeanMillis()
+	{
+		return Execute.getMeanMillis();
+	}
+
+	public double getExecuteP50Millis()
+	{
+		return Execute.getPercentileMillis(50);
+	}
+
+	public double getExecuteP99Millis()
+	{
+		return Execute.getPercentileMillis(99);
+	}
+
+	public double getExecuteMaxMillis()
+	{
+		return Execute.getMaxMillis();
+	}
+
+	public double getFetchMeanMillis()
+	{
+		return Fetch.getMeanMillis();
+	}
+
+	public double getFetchP50Millis()
+	{
+		return Fetch.getPercentileMillis(50);
+	}
+
+	public double getFetchP99Millis()
+	{
+		return Fetch.getPercentileMillis(99);
+	}
+
+	public double getFetchMaxMillis()
+	{
+		return Fetch.getMaxMillis();
+	}
+
+	public long getConnectionAcquireCount()
+	{
+		return Acquire.getCount();
+	}
+
+	public double getConnectionAcquireMeanMillis()
+	{
+		return Acquire.getMeanMillis();
+	}
+
+	public double getConnectionAcquireP99Millis()
+	{
+		return Acquire.getPercentileMillis(99);
+	}
+
+	public double getConnectionAcquireMaxMillis()
+	{
+		return Acquire.getMaxMillis();
+	}
+
+	public long getSlowQueryCount()
+	{
+		return SlowQueries.get();
+	}
+
+	public long getSlowQueryMillis()
+	{
+		return JDbInstrumentation.getSlowQueryMillis();
+	}
+
+	public void setSlowQueryMillis(long millis)
+	{
+		JDbInstrumentation.setSlowQueryMillis(millis);
+	}
+
+	public boolean isEnabled()
+	{
+		return JDbInstrumentation.isEnabled();
+	}
+
+	public void setEnabled(boolean yes)
+	{
+		JDbInstrumentation.setEnabled(yes);
+	}
+
+	public boolean isEstimateBytes()
+	{
+		return JDbInstrumentation.isEstimateBytes();
+	}
+
+	public void setEstimateBytes(boolean yes)
+	{
+		JDbInstrumentation.setEstimateBytes(yes);
+	}
+
+	public String[] getTopStatements()
+	{
+		ArrayList<StatementStats> all = new ArrayList<StatementStats>(PerStatement.size());
+		for (StatementStats s : PerStatement.values())
+			all.add(s.copy());
+		Collections.sort(all, new Comparator<StatementStats>()
+		{
+			public int compare(StatementStats a, StatementStats b)
+			{
+				return Long.compare(b.TotalNanos, a.TotalNanos);
+			}
+		});
+		int n = Math.min(all.size(), TopStatements);
+		String[] top = new String[n];
+		for (int i = 0; i < n; i++)
+			top[i] = all.get(i).toString();
+		return top;
+	}
+
+	public void reset()
+	{
+		Statements.set(0);
+		Errors.set(0);
+		SlowQueries.set(0);
+		Rows.set(0);
+		Bytes.set(0);
+		Execute.reset();
+		Fetch.reset();
+		Acquire.reset();
+		PerStatement.clear();
+	}
+
+	/**
+	 * Gets the Execute histogram.
+	 *
+	 * @return the Execute as Histogram
+	 */
+	public Histogram getExecute()
+	{
+		return Execute;
+	}
+
+	/**
+	 * Gets the Fetch histogram.
+	 *
+	 * @return the Fetch as Histogram
+	 */
+	public Histogram getFetch()
+	{
+		return Fetch;
+	}
+
+	/**
+	 * Gets the Acquire histogram, of Connections acquired.
+	 *
+	 * @return the Acquire as Histogram
+	 */
+	public Histogram getAcquire()
+	{
+		return Acquire;
+	}
+
+	/**
+	 * Histogram Class. Latencies counted in buckets of powers of two
+	 * microseconds, so that recording takes no lock nor allocation.
+	 * Percentiles are the upper bound of the bucket they fall in.
+	 */
+	static public class Histogram
+	{
+		/**
+		 * Count a latency.
+		 *
+		 * @param nanos
+		 */
+		public void record(long nanos)
+		{
+			long micros = Math.max(nanos / 1000, 0);
+			int bucket = 64 - Long.numberOfLeadingZeros(micros);
+			Buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+			Count.incrementAndGet();
+			TotalNanos.addAndGet(nanos);
+			long max;
+			while (nanos > (max = MaxNanos.get()) && !MaxNanos.compareAndSet(max, nanos))
+				;
+		}
+
+		/**
+		 * Gets the Count.
+		 *
+		 * @return the Count as long
+		 */
+		public long getCount()
+		{
+			return Count.get();
+		}
+
+		/**
+		 * Gets the MeanMillis.
+		 *
+		 * @return the MeanMillis as double
+		 */
+		public double getMeanMillis()
+		{
+			long n = Count.get();
+			return n == 0 ? 0 : TotalNanos.get() / 1e6 / n;
+		}
+
+		/**
+		 * Gets the MaxMillis.
+		 *
+		 * @return the MaxMillis as double
+		 */
+		public double getMaxMillis()
+		{
+			return MaxNanos.get() / 1e6;
+		}
+
+		/**
+		 * Gets the PercentileMillis.
+		 *
+		 * @param percent
+		 *            such as 99.
+		 *
+		 * @return latency that percent of those counted were within.
+		 */
+		public double getPercentileMillis(double percent)
+		{
+			long n = 0;
+			long[] counts = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++)
+				n += counts[i] = Buckets.get(i);
+			if (n == 0)
+				return 0;
+			long rank = (long) Math.ceil(n * percent / 100);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				seen += counts[i];
+				if (seen >= rank)
+					return Math.min((1L << i) / 1000.0, getMaxMillis());
+			}
+			return getMaxMillis();
+		}
+
+		/**
+		 * Clear the counts.
+		 */
+		public void reset()
+		{
+			for (int i = 0; i < BUCKETS; i++)
+				Buckets.set(i, 0);
+			Count.set(0);
+			TotalNanos.set(0);
+			MaxNanos.set(0);
+		}
+
+		static private final int BUCKETS = 40;
+
+		private final AtomicLongArray Buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong Count = new AtomicLong();
+		private final AtomicLong TotalNanos = new AtomicLong();
+		private final AtomicLong MaxNanos = new AtomicLong();
+	}
+
+	/**
+	 * StatementStats Class. Counts of one statement, counted without a lock.
+	 * A copy has them as they were at one time.
+	 */
+	static private class StatementStats
+	{
+		StatementStats(String sql)
+		{
+			Sql = sql;
+		}
+
+		void record(JDbQueryEvent event, long now)
+		{
+			long nanos = event.ExecuteNanos + event.FetchNanos;
+			Counts.incrementAndGet(COUNT);
+			Counts.addAndGet(TOTAL, nanos);
+			Counts.addAndGet(ROWS, Math.max(event.Rows, 0));
+			long max;
+			while (nanos > (max = Counts.get(MAX)) && !Counts.compareAndSet(MAX, max, nanos))
+				;
+			if (event.Context != null)
+				LastContext = event.Context;
+			LastUsed = now;
+		}
+
+		StatementStats copy()
+		{
+			StatementStats s = new StatementStats(Sql);
+			s.Count = Counts.get(COUNT);
+			s.TotalNanos = Counts.get(TOTAL);
+			s.MaxNanos = Counts.get(MAX);
+			s.Rows = Counts.get(ROWS);
+			s.LastContext = LastContext;
+			return s;
+		}
+
+		public String toString()
+		{
+			return "total=" + TotalNanos / 1000000 + "ms count=" + Count
+				+ " mean=" + TotalNanos / 1000000 / Math.max(Count, 1) + "ms"
+				+ " max=" + MaxNanos / 1000000 + "ms rows=" + Rows
+				+ (LastContext == null ? "" : " [" + LastContext + "]")
+				+ " " + Sql;
+		}
+
+		final String Sql;
+		long Count;
+		long TotalNanos;
+		long MaxNanos;
+		long Rows;
+		volatile String LastContext;
+
+		/** Statement count of JDbStats when last counted, to evict by. */
+		volatile long LastUsed;
+
+		private final AtomicLongArray Counts = new AtomicLongArray(4);
+
+		static private final int COUNT = 0;
+		static private final int TOTAL = 1;
+		static private final int MAX = 2;
+		static private final int ROWS = 3;
+	}
+
+	/** Most statements counted apart. */
+	static public int MaxStatements = 500;
+
+	/** Statements listed by getTopStatements. */
+	static public int TopStatements = 20;
+
+	private final AtomicLong Statements = new AtomicLong();
+	private final AtomicLong Errors = new AtomicLong();
+	private final AtomicLong SlowQueries = new AtomicLong();
+	private final AtomicLong Rows = new AtomicLong();
+	private final AtomicLong Bytes = new AtomicLong();
+	private final Histogram Execute = new Histogram();
+	private final Histogram Fetch = new Histogram();
+	private final Histogram Acquire = new Histogram();
+
+	private final ConcurrentHashMap<String, StatementStats> PerStatement =
+		new ConcurrentHashMap<String, StatementStats>(64);
+
+	private final Object Evicting = new Object();
+}
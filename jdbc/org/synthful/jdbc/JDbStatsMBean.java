@@ -0,0 +1,71 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2003
+ *
+ */
+package org.synthful.jdbc;
+
+/**
+ * JDbStatsMBean Interface. JMX view of JDbStats, registered by
+ * JDbInstrumentation.registerMBean as org.synthful.jdbc:type=JDbStats.
+ */
+public interface JDbStatsMBean
+{
+	long getStatementCount();
+
+	long getErrorCount();
+
+	long getRowsFetched();
+
+	long getBytesFetched();
+
+	double getExecuteMeanMillis();
+
+	double getExecuteP50Millis();
+
+	double getExecuteP99Millis();
+
+	double getExecuteMaxMillis();
+
+	double getFetchMeanMillis();
+
+	double getFetchP50Millis();
+
+	double getFetchP99Millis();
+
+	double getFetchMaxMillis();
+
+	long getConnectionAcquireCount();
+
+	double getConnectionAcquireMeanMillis();
+
+	double getConnectionAcquireP99Millis();
+
+	double getConnectionAcquireMaxMillis();
+
+	long getSlowQueryCount();
+
+	long getSlowQueryMillis();
+
+	void setSlowQueryMillis(long millis);
+
+	boolean isEnabled();
+
+	void setEnabled(boolean yes);
+
+	boolean isEstimateBytes();
+
+	void setEstimateBytes(boolean yes);
+
+	/**
+	 * @return the statements that took most time in all, slowest first, each
+	 *         with its count, total, mean and max time, rows and last context.
+	 */
+	String[] getTopStatements();
+
+	/**
+	 * Clear the counts and histograms.
+	 */
+	void reset();
+}
@@ -36,21 +36,32 @@ public class JUtil
 	 */
 	static public int SqlExec(Connection jconn, String sql)
 	{
+		Statement stmt = null;
+		long start = System.nanoTime();
+		Throwable error = null;
 		try
 		{
-			boolean hasresults = jconn.createStatement().execute(sql);
+			stmt = jconn.createStatement();
+			boolean hasresults = stmt.execute(sql);
 			if (hasresults)
 				return 1;
 			return 0;
 		}
 		catch (SQLException ex)
 		{
+			error = ex;
 			System.out.println("JUtil.SqlExec:" + ex);
 		}
 		catch (NullPointerException ex)
 		{
+			error = ex;
 			System.out.println("JUtil.SqlExec:" + ex);
 		}
+		finally
+		{
+			closeStatement(stmt);
+			reportExec(sql, start, error);
+		}
 		return -1;
 	}
 
@@ -65,6 +76,8 @@ public class JUtil
 	 */
 	static public int SqlExec(JDbLogin jlogin, String sql)
 	{
+		long start = System.nanoTime();
+		Throwable error = null;
 		try
 		{
 			boolean hasresults = jlogin.getStatement().execute(sql);
@@ -74,12 +87,18 @@ public class JUtil
 		}
 		catch (SQLException ex)
 		{
+			error = ex;
 			System.out.println("JUtil.SqlExec:" + ex);
 		}
 		catch (NullPointerException ex)
 		{
+			error = ex;
 			System.out.println("JUtil.SqlExec:" + ex);
 		}
+		finally
+		{
+			reportExec(sql, start, error);
+		}
 		return -1;
 	}
 
@@ -128,7 +147,14 @@ public class JUtil
 	static public Object[][] SqlFetch(Connection jconn, String sql)
 	{
 		JDataBufferVector sqldata = new JDataBufferVector(jconn);
-		return SqlFetch(sqldata,sql);
+		try
+		{
+			return SqlFetch(sqldata,sql);
+		}
+		finally
+		{
+			sqldata.ReleaseStatement();
+		}
 	}
 
 	/**
@@ -216,6 +242,236 @@ public class JUtil
 	}
     
     
+	/**
+	 * Exec parameterized SQL, on a PreparedStatement cached for the
+	 * Connection.
+	 * 
+	 * @param jconn
+	 *            the jconn as Connection
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return 1 if has results, 0 if has no results, -1 if failure.
+	 */
+	static public int SqlExec(Connection jconn, String sql, Object... params)
+	{
+		long start = System.nanoTime();
+		Throwable error = null;
+		try
+		{
+			PreparedStatement ps = JDbStatementCache.forConnection(jconn).prepare(sql);
+			setParameters(ps, params);
+			if (ps.execute())
+				return 1;
+			return 0;
+		}
+		catch (SQLException ex)
+		{
+			error = ex;
+			System.out.println("JUtil.SqlExec:" + ex);
+		}
+		catch (NullPointerException ex)
+		{
+			error = ex;
+			System.out.println("JUtil.SqlExec:" + ex);
+		}
+		finally
+		{
+			reportExec(sql, start, error);
+		}
+		return -1;
+	}
+
+	/**
+	 * Exec parameterized SQL on the Connection of jlogin.
+	 * 
+	 * @param jlogin
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return 1 if has results, 0 if has no results, -1 if failure.
+	 */
+	static public int SqlExec(JDbLogin jlogin, String sql, Object... params)
+	{
+		jlogin.getStatement();
+		return SqlExec(jlogin.getConnection(), sql, params);
+	}
+
+	/**
+	 * Exec parameterized SQL, on a PreparedStatement cached for the
+	 * Connection, and fetch results into a 2D array.
+	 * 
+	 * @param jconn
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return 2D Object array, empty if failure.
+	 */
+	static public Object[][] SqlFetch(Connection jconn, String sql, Object... params)
+	{
+		Vector<Object[]> rows = new Vector<Object[]>();
+		long start = System.nanoTime();
+		long fetchstart = 0;
+		Throwable error = null;
+		try
+		{
+			PreparedStatement ps = JDbStatementCache.forConnection(jconn).prepare(sql);
+			setParameters(ps, params);
+			ResultSet rs = ps.executeQuery();
+			fetchstart = System.nanoTime();
+			try
+			{
+				int numcols = rs.getMetaData().getColumnCount();
+				while (rs.next())
+				{
+					Object[] row = new Object[numcols];
+					for (int i = 0; i < numcols; i++)
+						row[i] = rs.getObject(i + 1);
+					rows.add(row);
+				}
+			}
+			finally
+			{
+				rs.close();
+			}
+		}
+		catch (SQLException ex)
+		{
+			error = ex;
+			System.out.println("JUtil.SqlFetch:" + ex);
+		}
+		catch (NullPointerException ex)
+		{
+			error = ex;
+			System.out.println("JUtil.SqlFetch:" + ex);
+		}
+		if (JDbInstrumentation.isEnabled())
+		{
+			long end = System.nanoTime();
+			JDbInstrumentation.statementDone("JUtil", sql,
+				(fetchstart == 0 ? end : fetchstart) - start,
+				fetchstart == 0 ? 0 : end - fetchstart,
+				rows.size(), JDbInstrumentation.estimateBytes(rows), error);
+		}
+		return rows.toArray(new Object[rows.size()][]);
+	}
+
+	/**
+	 * Exec parameterized SQL on the Connection of jlogin and fetch results
+	 * into a 2D array.
+	 * 
+	 * @param jlogin
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return 2D Object array, empty if failure.
+	 */
+	static public Object[][] SqlFetch(JDbLogin jlogin, String sql, Object... params)
+	{
+		jlogin.getStatement();
+		return SqlFetch(jlogin.getConnection(), sql, params);
+	}
+
+	/**
+	 * Exec parameterized SQL.
+	 * 
+	 * @param jconn
+	 * @param sql
+	 *            to be executed, with ? for each parameter.
+	 * @param params
+	 *            values of the parameters, in order.
+	 * 
+	 * @return Object of 1st row 1st column
+	 */
+	static public Object SqlFetchSingleField(Connection jconn, String sql, Object... params)
+	{
+		Object[][] oo = SqlFetch(jconn, sql, params);
+		if (oo.length > 0 && oo[0].length > 0)
+			return oo[0][0];
+		return null;
+	}
+
+	/**
+	 * Set the parameters of a PreparedStatement, in order. A java.util.Date
+	 * is set as a Timestamp, and null as SQL NULL of the type the driver
+	 * gives for the parameter, else of VARCHAR, since not all drivers take
+	 * a NULL of type NULL.
+	 * 
+	 * @param ps
+	 * @param params
+	 *            values of the parameters, or null for none.
+	 * 
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	static public void setParameters(PreparedStatement ps, Object[] params)
+	throws SQLException
+	{
+		if (params == null)
+			return;
+		ParameterMetaData pmd = null;
+		boolean described = false;
+		for (int i = 0; i < params.length; i++)
+		{
+			Object o = params[i];
+			if (o == null)
+			{
+				if (!described)
+				{
+					pmd = parameterMetaData(ps);
+					described = true;
+				}
+				ps.setNull(i + 1, nullType(pmd, i + 1));
+			}
+			else if (o instanceof Date && !(o instanceof java.sql.Date
+				|| o instanceof Time || o instanceof Timestamp))
+				ps.setTimestamp(i + 1, new Timestamp(((Date) o).getTime()));
+			else
+				ps.setObject(i + 1, o);
+		}
+	}
+
+	static private ParameterMetaData parameterMetaData(PreparedStatement ps)
+	{
+		try
+		{
+			return ps.getParameterMetaData();
+		}
+		catch (SQLException e)
+		{
+		}
+		catch (AbstractMethodError e)
+		{
+			//Drivers before JDBC 3
+		}
+		return null;
+	}
+
+	static private int nullType(ParameterMetaData pmd, int param)
+	{
+		if (pmd != null)
+		{
+			try
+			{
+				int type = pmd.getParameterType(param);
+				if (type != Types.NULL && type != Types.OTHER)
+					return type;
+			}
+			catch (SQLException e)
+			{
+			}
+		}
+		return Types.VARCHAR;
+	}
+    
     /**
 	 * Gets the Columns.
 	 * 
@@ -280,5 +536,36 @@ public class JUtil
         return s.getResultSet().getMetaData();
     }
     
+	/**
+	 * Close Statement, ignoring failure.
+	 * 
+	 * @param stmt
+	 *            Statement to close, or null.
+	 */
+	static public void closeStatement(Statement stmt)
+	{
+		if (stmt == null)
+			return;
+		try
+		{
+			stmt.close();
+		}
+		catch (SQLException ex)
+		{
+			if (Debug)
+				System.out.println("JUtil.closeStatement:" + ex);
+		}
+	}
+
+	/**
+	 * Report sql executed by SqlExec to JDbInstrumentation.
+	 */
+	static private void reportExec(String sql, long start, Throwable error)
+	{
+		if (JDbInstrumentation.isEnabled())
+			JDbInstrumentation.statementDone("JUtil", sql,
+				System.nanoTime() - start, 0, -1, 0, error);
+	}
+
 	static public boolean Debug = false;
 }
@@ -210,10 +210,8 @@ public class StateTurnPike
         {
             Object o = en.nextElement();
             if (o instanceof Message)
-              messagesbuf.append(
-                PjxParser.resolveElement(
-                  ((Message)o).getXmlElement(), true
-                )
+              PjxParser.renderElement(
+                messagesbuf, ((Message)o).getXmlElement(), true
               );
         }
 
@@ -0,0 +1,226 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2008
+ *
+ */
+
+package org.synthful.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * XmlEntityCache Class. EntityResolver serving DTDs and other external
+ * entities from memory, shared by all XmlParsers, so that each is read from
+ * its system id only the first time a document refers to it. Entities may
+ * also be registered by public or system id ahead of time, such as DTDs
+ * bundled as resources that are not to be fetched at all.
+ * <br>
+ * Registered entities are kept until cleared. Entities read from their system
+ * ids, which may be named by any document parsed, are kept in a least
+ * recently used cache of at most MaxCachedEntities entities and
+ * MaxCachedBytes bytes. An entity larger than MaxEntityBytes is not kept, and
+ * is read by the parser each time.
+ *
+ * @author Blessed Geek
+ */
+public class XmlEntityCache
+    implements EntityResolver
+{
+
+    /**
+     * Instantiates a new XmlEntityCache.
+     */
+    public XmlEntityCache()
+    {
+    }
+
+    /* (non-Javadoc)
+     * @see org.xml.sax.EntityResolver#resolveEntity(java.lang.String, java.lang.String)
+     */
+    public InputSource resolveEntity(String publicId, String systemId)
+    throws IOException
+    {
+        byte[] bytes = null;
+        if (publicId!=null)
+            bytes = (byte[])Registered.get(publicId);
+
+        if (bytes==null && systemId!=null)
+        {
+            bytes = (byte[])Registered.get(systemId);
+            if (bytes==null)
+                bytes = getLoaded(systemId);
+            if (bytes==null)
+            {
+                bytes = load(systemId);
+                if (bytes==null)
+                    return null;
+
+                putLoaded(systemId, bytes);
+            }
+        }
+
+        if (bytes==null)
+            return null;
+
+        InputSource ins = new InputSource(new ByteArrayInputStream(bytes));
+        ins.setPublicId(publicId);
+        ins.setSystemId(systemId);
+        return ins;
+    }
+
+    /**
+     * Register an entity, such as a DTD, to be served for its public or
+     * system id.
+     *
+     * @param id
+     *            public or system id.
+     * @param bytes
+     *            content of the entity.
+     */
+    public static void register(String id, byte[] bytes)
+    {
+        if (id!=null && bytes!=null)
+            Registered.put(id, bytes);
+    }
+
+    /**
+     * Clear the entities cached and registered.
+     */
+    public static void clear()
+    {
+        Registered.clear();
+        synchronized (Loaded)
+        {
+            Loaded.clear();
+            LoadedBytes = 0;
+        }
+    }
+
+    /**
+     * Gets the Size.
+     *
+     * @return number of entities cached and registered.
+     */
+    public static int getSize()
+    {
+        synchronized (Loaded)
+        {
+            return Registered.size() + Loaded.size();
+        }
+    }
+
+    /**
+     * Gets the CachedBytes.
+     *
+     * @return bytes of the entities cached from their system ids.
+     */
+    public static long getCachedBytes()
+    {
+        synchronized (Loaded)
+        {
+            return LoadedBytes;
+        }
+    }
+
+    /**
+     * Gets the shared XmlEntityCache.
+     *
+     * @return the Shared as XmlEntityCache
+     */
+    public static XmlEntityCache getShared()
+    {
+        return Shared;
+    }
+
+    private static byte[] getLoaded(String systemId)
+    {
+        synchronized (Loaded)
+        {
+            return (byte[])Loaded.get(systemId);
+        }
+    }
+
+    /**
+     * Cache an entity read from its system id, letting go of the least
+     * recently used beyond MaxCachedEntities or MaxCachedBytes.
+     */
+    private static void putLoaded(String systemId, byte[] bytes)
+    {
+        if (bytes.length>MaxCachedBytes)
+            return;
+
+        synchronized (Loaded)
+        {
+            byte[] old = (byte[])Loaded.put(systemId, bytes);
+            if (old!=null)
+                LoadedBytes -= old.length;
+            LoadedBytes += bytes.length;
+
+            Iterator eldest = Loaded.values().iterator();
+            while (eldest.hasNext()
+                && (Loaded.size()>MaxCachedEntities || LoadedBytes>MaxCachedBytes))
+            {
+                LoadedBytes -= ((byte[])eldest.next()).length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Read an entity from its system id.
+     *
+     * @return its bytes, or null if larger than MaxEntityBytes.
+     */
+    private static byte[] load(String systemId)
+    throws IOException
+    {
+        InputStream ins = new URL(systemId).openStream();
+        try
+        {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = ins.read(buf))>0)
+            {
+                bout.write(buf, 0, n);
+                if (bout.size()>MaxEntityBytes)
+                    return null;
+            }
+            return bout.toByteArray();
+        }
+        finally
+        {
+            ins.close();
+        }
+    }
+
+    /** Largest entity kept, default 1MB. */
+    public static int MaxEntityBytes = 1 << 20;
+
+    /** Most entities kept from their system ids, default 64. */
+    public static int MaxCachedEntities = 64;
+
+    /** Most bytes of entities kept from their system ids, default 4MB. */
+    public static long MaxCachedBytes = 4 << 20;
+
+    private static final XmlEntityCache Shared = new XmlEntityCache();
+
+    /** Entity bytes registered, by public or system id. */
+    private static final ConcurrentHashMap Registered = new ConcurrentHashMap();
+
+    /** Entity bytes read, by system id, least recently used first. */
+    private static final LinkedHashMap Loaded = new LinkedHashMap(16, 0.75f, true);
+
+    /** Bytes of the entities in Loaded. */
+    private static long LoadedBytes = 0;
+}
@@ -10,7 +10,9 @@ package org.synthful.xml;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -21,10 +23,16 @@ import org.jdom.Content;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.Attribute;
+import org.jdom.Namespace;
 import org.jdom.Text;
 import org.jdom.input.JDOMParseException;
 import org.jdom.input.SAXBuilder;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 import org.synthful.util.HashTreeNode;
 
@@ -89,11 +97,13 @@ public class XmlParser
      */
     public void parse(InputSource ins)
     {
+        boolean validate = validateXML;
+        SAXBuilder saxb = borrowBuilder(validate);
         try
         {
-            SAXBuilder saxb = new SAXBuilder(validateXML);
             String msg = "No errors!";
-            LOG.info(this +"-"+ ins +"-"+ msg);
+            if (LOG.isInfoEnabled())
+                LOG.info(this +"-"+ ins +"-"+ msg);
            
             try
             {
@@ -111,6 +121,32 @@ public class XmlParser
         { 
             LOG.error(e.getMessage());
         }
+        finally
+        {
+            (validate ? ValidatingBuilders : Builders).set(saxb);
+        }
+    }
+    
+    /**
+     * Take the SAXBuilder of this thread, made the first time, which
+     * parse gives back when done, so that a parse within a parse makes
+     * its own. Its SAX parser is reused from one build to the next, and
+     * it resolves DTDs from the XmlEntityCache.
+     */
+    private static SAXBuilder borrowBuilder(boolean validate)
+    {
+        ThreadLocal builders = validate ? ValidatingBuilders : Builders;
+        SAXBuilder saxb = (SAXBuilder)builders.get();
+        if (saxb!=null)
+        {
+            builders.set(null);
+            return saxb;
+        }
+        
+        saxb = new SAXBuilder(validate);
+        saxb.setReuseParser(true);
+        saxb.setEntityResolver(XmlEntityCache.getShared());
+        return saxb;
     }
     
     /**
@@ -125,6 +161,115 @@ public class XmlParser
         parse(insrc);
     }
     
+    /**
+     * Stream the file, digesting each element as it is parsed, without
+     * building the Document.
+     * 
+     * @param file
+     * @see #stream(InputSource)
+     */
+    public void stream(File file)
+    {
+        FileInputStream fins = null;
+        try
+        {
+            fins = new FileInputStream(file);
+            stream(new InputSource(fins));
+        }
+        catch (FileNotFoundException ex)
+        {
+            LOG.error(ex.getMessage());
+        }
+        finally
+        {
+            if (fins!=null)
+                try
+                {
+                    fins.close();
+                }
+                catch (IOException ex)
+                {
+                }
+        }
+    }
+    
+    /**
+     * Stream the string, digesting each element as it is parsed, without
+     * building the Document.
+     * 
+     * @param s
+     * @see #stream(InputSource)
+     */
+    public void streamString(String s)
+    {
+        stream(new InputSource(new StringReader(s)));
+    }
+    
+    /**
+     * Stream the input, digesting each element as it is parsed, without
+     * building the Document, so that a document of any size is digested in
+     * memory bound by its depth.
+     * <br>
+     * The hooks digest does are called from the SAX events: digestAttributes,
+     * and so digestAttribute, as an element starts, digestText for each run
+     * of text, and digestElement as an element ends, the root included.
+     * Each element is given with its attributes, attached to its ancestors
+     * still open, and is detached once digested, along with its text, unless
+     * retainStreamedContent kept the content of an ancestor. digestElement
+     * of an element whose content is retained sees its whole subtree, as
+     * parse would build it. What digestElement returns is not used.
+     * <br>
+     * getDocument is left as it was.
+     * 
+     * @param ins
+     */
+    public void stream(InputSource ins)
+    {
+        boolean validate = validateXML;
+        ThreadLocal parsers = validate ? ValidatingParsers : Parsers;
+        SAXParser saxp = (SAXParser)parsers.get();
+        parsers.set(null);
+        try
+        {
+            if (saxp==null)
+            {
+                SAXParserFactory factory = validate ? ValidatingFactory : Factory;
+                synchronized (factory)
+                {
+                    saxp = factory.newSAXParser();
+                }
+            }
+            
+            saxp.parse(ins, new StreamHandler());
+        }
+        catch (Exception e)
+        {
+            LOG.error(e.getMessage());
+        }
+        finally
+        {
+            if (saxp!=null)
+            {
+                saxp.reset();
+                parsers.set(saxp);
+            }
+        }
+    }
+    
+    /**
+     * Checks if stream is to keep the content of an element until the
+     * element is digested. Override to digest records of a stream whole,
+     * such as each item of a feed.
+     * 
+     * @param ej
+     *            element started, with its attributes.
+     * @return true to retain its content, default false.
+     */
+    protected boolean retainStreamedContent(Element ej)
+    {
+        return false;
+    }
+    
     /**
      * Gets the Children.
      * 
@@ -492,7 +637,168 @@ public class XmlParser
         validateXML = v;
     }
 
+    /**
+     * StreamHandler Class. Digests the SAX events of stream.
+     */
+    private class StreamHandler
+        extends DefaultHandler
+    {
+        public void startElement(
+            String uri, String localName, String qName, Attributes attributes)
+        throws SAXException
+        {
+            digestStreamedText();
+            
+            Element ej = new Element(localName, getNamespace(qName, uri));
+            for (int i=0; i<attributes.getLength(); i++)
+            {
+                String aq = attributes.getQName(i);
+                if (aq.equals("xmlns") || aq.startsWith("xmlns:"))
+                    continue;
+                
+                ej.setAttribute(
+                    new Attribute(
+                        attributes.getLocalName(i),
+                        attributes.getValue(i),
+                        getNamespace(aq, attributes.getURI(i))));
+            }
+            
+            if (Open.size()>0)
+                ((Element)Open.get(Open.size()-1)).addContent(ej);
+            Open.add(ej);
+            
+            if (Retained<0 && retainStreamedContent(ej))
+                Retained = Open.size();
+            
+            try
+            {
+                digestAttributes(ej);
+            }
+            catch (IOException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+        
+        public void endElement(String uri, String localName, String qName)
+        throws SAXException
+        {
+            digestStreamedText();
+            
+            int depth = Open.size();
+            Element ej = (Element)Open.remove(depth-1);
+            try
+            {
+                digestElement(ej);
+            }
+            catch (IOException e)
+            {
+                throw new SAXException(e);
+            }
+            
+            // Kept only within the content of a retained ancestor
+            if (Retained<0 || depth<=Retained)
+                ej.detach();
+            if (depth==Retained)
+                Retained = -1;
+        }
+        
+        public void characters(char[] ch, int start, int length)
+        {
+            TextBuf.append(ch, start, length);
+        }
+        
+        public void ignorableWhitespace(char[] ch, int start, int length)
+        {
+            TextBuf.append(ch, start, length);
+        }
+        
+        public void error(SAXParseException e)
+        throws SAXException
+        {
+            if (validateXML)
+                throw e;
+        }
+        
+        public void warning(SAXParseException e)
+        {
+            LOG.warn(e.getMessage());
+        }
+        
+        public InputSource resolveEntity(String publicId, String systemId)
+        throws IOException
+        {
+            return XmlEntityCache.getShared().resolveEntity(publicId, systemId);
+        }
+        
+        /**
+         * Digest the text gathered since the last tag.
+         */
+        private void digestStreamedText()
+        throws SAXException
+        {
+            if (TextBuf.length()==0 || Open.size()==0)
+            {
+                TextBuf.setLength(0);
+                return;
+            }
+            
+            Text tj = new Text(TextBuf.toString());
+            TextBuf.setLength(0);
+            ((Element)Open.get(Open.size()-1)).addContent(tj);
+            try
+            {
+                digestText(tj);
+            }
+            catch (IOException e)
+            {
+                throw new SAXException(e);
+            }
+            
+            if (Retained<0 || Open.size()<Retained)
+                tj.detach();
+        }
+        
+        private Namespace getNamespace(String qName, String uri)
+        {
+            if (uri==null || uri.length()==0)
+                return Namespace.NO_NAMESPACE;
+            
+            int colon = qName.indexOf(':');
+            return Namespace.getNamespace(
+                colon>0 ? qName.substring(0, colon) : "", uri);
+        }
+        
+        /** Elements started and not yet ended, from the root. */
+        private final ArrayList Open = new ArrayList();
+        
+        /** Depth of the element whose content is retained, or -1. */
+        private int Retained = -1;
+        
+        /** Variable TextBuf, text since the last tag. */
+        private final StringBuilder TextBuf = new StringBuilder();
+    }
+    
+    private static SAXParserFactory newFactory(boolean validate)
+    {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(validate);
+        return factory;
+    }
+    
     private static final Log LOG = LogFactory.getLog(XmlParser.class);
+    
+    /** SAXBuilders of each thread, free for parse to take. */
+    private static final ThreadLocal Builders = new ThreadLocal();
+    private static final ThreadLocal ValidatingBuilders = new ThreadLocal();
+    
+    /** SAXParsers of each thread, free for stream to take. */
+    private static final ThreadLocal Parsers = new ThreadLocal();
+    private static final ThreadLocal ValidatingParsers = new ThreadLocal();
+    
+    private static final SAXParserFactory Factory = newFactory(false);
+    private static final SAXParserFactory ValidatingFactory = newFactory(true);
 
     /** Variable doc. */
     protected Document doc = null;
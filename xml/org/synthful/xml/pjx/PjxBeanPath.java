@@ -0,0 +1,216 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2008
+ *
+ */
+
+package org.synthful.xml.pjx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * PjxBeanPath Class. A dot separated field path, such as child.name of
+ * ${bean:child.name}, resolved against a bean a segment at a time.
+ * <br>
+ * Each segment is read by a MethodHandle of the public field of that name,
+ * else of its public getter getName(), isName() or name(). The accessors of
+ * each class are looked up once and kept for that class, and each segment
+ * remembers the class it last read and its accessor, so that a path is
+ * resolved again without reflection as long as the beans along it keep
+ * their classes.
+ *
+ * @author Blessed Geek
+ */
+public class PjxBeanPath
+{
+
+    /**
+     * Instantiates a new PjxBeanPath.
+     *
+     * @param path
+     *            the dot separated field path.
+     */
+    public PjxBeanPath(String path)
+    {
+        Path = path;
+        Segments = path.split("[.]");
+        Links = new Link[Segments.length];
+    }
+
+    /**
+     * Resolve the path against a bean.
+     *
+     * @param bean
+     * @return the value at the end of the path, or null if a segment is not
+     *         a field or getter of its bean, or is null.
+     */
+    public Object resolve(Object bean)
+    {
+        Object value = bean;
+        for (int i=0; i<Segments.length; i++)
+        {
+            if (value==null)
+                return null;
+
+            Class c = value.getClass();
+            Link link = Links[i];
+            if (link==null || link.Type!=c)
+            {
+                link = new Link(c, getAccessor(c, Segments[i]));
+                Links[i] = link;
+            }
+
+            if (link.Accessor==null)
+                return null;
+
+            try
+            {
+                value = (Object)link.Accessor.invokeExact(value);
+            }
+            catch (Throwable e)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Cannot resolve " + Path + " at " + Segments[i], e);
+                return null;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Forget the accessors remembered by each segment, as when the bean
+     * resolved against has been replaced by one of another class.
+     */
+    public void invalidate()
+    {
+        for (int i=0; i<Links.length; i++)
+            Links[i] = null;
+    }
+
+    /**
+     * Gets the Path.
+     *
+     * @return the Path as String
+     */
+    public String getPath()
+    {
+        return Path;
+    }
+
+    /**
+     * Gets the accessor of a field or getter of a class, looking it up the
+     * first time.
+     *
+     * @param c
+     * @param name
+     * @return MethodHandle of type (Object)Object, or null if none.
+     */
+    public static MethodHandle getAccessor(Class c, String name)
+    {
+        ConcurrentHashMap accessors = (ConcurrentHashMap)Accessors.get(c);
+        Object accessor = accessors.get(name);
+        if (accessor==null)
+        {
+            MethodHandle mh = findAccessor(c, name);
+            accessor = mh!=null ? (Object)mh : NONE;
+            accessors.putIfAbsent(name, accessor);
+        }
+
+        return accessor==NONE ? null : (MethodHandle)accessor;
+    }
+
+    private static MethodHandle findAccessor(Class c, String name)
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try
+        {
+            Field f = c.getField(name);
+            f.setAccessible(true);
+            MethodHandle mh = lookup.unreflectGetter(f);
+            if (Modifier.isStatic(f.getModifiers()))
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            return mh.asType(ACCESSOR_TYPE);
+        }
+        catch (Exception e)
+        {
+        }
+
+        String cap = name.length()==0
+            ? name
+            : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        String[] names = {"get" + cap, "is" + cap, name};
+        for (int i=0; i<names.length; i++)
+        {
+            try
+            {
+                Method m = c.getMethod(names[i], new Class[0]);
+                if (Modifier.isStatic(m.getModifiers())
+                    || m.getReturnType()==Void.TYPE)
+                    continue;
+
+                m.setAccessible(true);
+                return lookup.unreflect(m).asType(ACCESSOR_TYPE);
+            }
+            catch (Exception e)
+            {
+            }
+        }
+
+        LOG.debug(name + " is neither field nor getter of " + c.getName());
+        return null;
+    }
+
+    /**
+     * Link Class. The class a segment last read, and its accessor.
+     */
+    final static class Link
+    {
+        Link(Class type, MethodHandle accessor)
+        {
+            Type = type;
+            Accessor = accessor;
+        }
+
+        /** Variable Type. */
+        final Class Type;
+
+        /** Variable Accessor, null if the Type has none. */
+        final MethodHandle Accessor;
+    }
+
+    private static final Log LOG = LogFactory.getLog(PjxBeanPath.class);
+
+    private static final MethodType ACCESSOR_TYPE =
+        MethodType.methodType(Object.class, Object.class);
+
+    /** Marks a name looked up and found to have no accessor. */
+    private static final Object NONE = new Object();
+
+    /** Accessors of each class, by field name. */
+    private static final ClassValue Accessors = new ClassValue()
+    {
+        protected Object computeValue(Class type)
+        {
+            return new ConcurrentHashMap();
+        }
+    };
+
+    /** Variable Path. */
+    private final String Path;
+
+    /** Variable Segments, the Path split at its dots. */
+    private final String[] Segments;
+
+    /** What each segment last read. */
+    private final Link[] Links;
+}
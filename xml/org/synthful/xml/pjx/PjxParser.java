@@ -8,13 +8,12 @@
 package org.synthful.xml.pjx;
 
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.logging.Log;
@@ -115,7 +114,11 @@ public class PjxParser
             {
                 Attribute name=ej.getAttribute("name");
                 if (name!=null && name.getValue().length()>0)
-                    XmlNodes.put(name.getValue(), ej);                
+                {
+                    XmlNodes.put(name.getValue(), ej);
+                    // Templates compiled a pjx:Var of this node as plain
+                    clearTemplates();
+                }
             }
             else if(ejtag.equals("Bean"))
                 verifyBean(ej);
@@ -269,42 +272,8 @@ public class PjxParser
             String matchedNameSpace = matcher.group(1);
             String matchedFieldVar = matcher.group(4);
             if(matchedNameSpace!=null && matchedFieldVar!=null)
-            {
-                Object o = null;
-                
-                if (matchedNameSpace.equals("pjx"))
-                    o = getValue(matchedFieldVar);
-                else 
-                    o = getBean(matchedNameSpace);
-                
-                if (o==null) continue;
-                
-                Object value = null;
-                
-                
-                if (o instanceof PjxBean || o instanceof PjxValues)
-                {
-                
-                    if (o instanceof PjxBean)
-                    {
-                        PjxBean b = (PjxBean)o;
-
-                        /* The matched field name may be in dotted hierarchy */
-                        String[] fieldPath = matchedFieldVar.split("[.]");
-                        value = resolveDsfPath(b,fieldPath, 0);
-
-                        if (value!=null)
-                            appendNameSpaceVars(resolvedContent, value);
-                    }
-
-                    if (o instanceof PjxValues)
-                        appendNameSpaceVars(
-                            resolvedContent,
-                            ((PjxValues)o).getValue(matchedFieldVar));
-                }
-                else 
-                    appendNameSpaceVars(resolvedContent, o);
-            } 
+                appendVarValues(
+                    resolvedContent, matchedNameSpace, matchedFieldVar, null);
         }
             
         if (func!=null)
@@ -315,28 +284,97 @@ public class PjxParser
     }
     
     /**
-     * DSF = Dot separated field 
+     * Append the values of a namespace:field variable.
      * 
+     * @param resolvedContent
+     * @param nameSpace
+     * @param fieldVar
+     * @param fieldPath
+     *            PjxBeanPath of fieldVar, or null to get it here.
      */
-    private Object resolveDsfPath(Object bean, String[] dsfElements, int level)
+    protected void appendVarValues(
+        Vector resolvedContent, String nameSpace, String fieldVar, PjxBeanPath fieldPath)
     {
-        try{
-            Field f = bean.getClass().getField(dsfElements[level]);                    
-            Object value = f.get(bean);
+        Object o = null;
+        
+        if (nameSpace.equals("pjx"))
+            o = getValue(fieldVar);
+        else 
+            o = getBean(nameSpace);
+        
+        if (o==null) return;
+        
+        Object value = null;
+        
+        
+        if (o instanceof PjxBean || o instanceof PjxValues)
+        {
+        
+            if (o instanceof PjxBean)
+            {
+                PjxBean b = (PjxBean)o;
 
-            if (++level<dsfElements.length)
-                return resolveDsfPath(value,dsfElements, level);
-            
-            if (value instanceof Method)
-            {   // Not working well - Need further debug
-                value = ((Method)value).invoke(bean, new Object[0]);
-                return value;
+                /* The matched field name may be in dotted hierarchy */
+                if (fieldPath==null)
+                    fieldPath = getBeanPath(nameSpace, fieldVar);
+                value = fieldPath.resolve(b);
+
+                if (value!=null)
+                    appendNameSpaceVars(resolvedContent, value);
             }
+
+            if (o instanceof PjxValues)
+                appendNameSpaceVars(
+                    resolvedContent,
+                    ((PjxValues)o).getValue(fieldVar));
+        }
+        else 
+            appendNameSpaceVars(resolvedContent, o);
+    }
+    
+    /**
+     * Gets the PjxBeanPath of a DSF, dot separated field, of the beans of a
+     * namespace, making it the first time.
+     * 
+     * @param nameSpace
+     * @param fieldVar
+     * @return the PjxBeanPath
+     */
+    public PjxBeanPath getBeanPath(String nameSpace, String fieldVar)
+    {
+        synchronized (BeanPaths)
+        {
+            Hashtable paths = (Hashtable)BeanPaths.get(nameSpace);
+            if (paths==null)
+                BeanPaths.put(nameSpace, paths = new Hashtable());
+            
+            PjxBeanPath path = (PjxBeanPath)paths.get(fieldVar);
+            if (path==null)
+                paths.put(fieldVar, path = new PjxBeanPath(fieldVar));
             
-            return value;
+            return path;
+        }
+    }
+    
+    /**
+     * Invalidate the PjxBeanPaths of a namespace, if its bean is replaced
+     * by one of another class.
+     */
+    private void verifyBeanType(String beanName, Object oldBean, Object bean)
+    {
+        if (oldBean==null || oldBean.getClass()==bean.getClass())
+            return;
+        
+        synchronized (BeanPaths)
+        {
+            Hashtable paths = (Hashtable)BeanPaths.get(beanName);
+            if (paths==null)
+                return;
+            
+            Iterator iter = paths.values().iterator();
+            while (iter.hasNext())
+                ((PjxBeanPath)iter.next()).invalidate();
         }
-        catch (Exception e){}
-        return null;
     }
     
     private void appendNameSpaceVars(
@@ -439,7 +477,90 @@ public class PjxParser
      */
     public StringBuilder resolvePjXmlNode(String name, boolean ignoreEmptyNodes)
     {
-        return resolveNode(getXmlNode(name), ignoreEmptyNodes);
+        StringBuilder sbuf = new StringBuilder();
+        renderPjXmlNode(sbuf, name, ignoreEmptyNodes);
+        return sbuf;
+    }
+    
+    /**
+     * Render pj xml node, from its compiled PjxTemplate, as resolveNode
+     * would.
+     * 
+     * @param sbuf
+     *            appended to, which may be reused across renders.
+     * @param name
+     * @param ignoreEmptyNodes
+     */
+    public void renderPjXmlNode(
+        StringBuilder sbuf, String name, boolean ignoreEmptyNodes)
+    {
+        PjxTemplate t = getTemplate(name);
+        if (t!=null)
+            t.renderNode(this, sbuf, ignoreEmptyNodes);
+    }
+    
+    /**
+     * Render element, from its compiled PjxTemplate, as resolveElement
+     * would.
+     * 
+     * @param sbuf
+     *            appended to, which may be reused across renders.
+     * @param ej
+     * @param ignoreEmptyNodes
+     */
+    public void renderElement(
+        StringBuilder sbuf, Element ej, boolean ignoreEmptyNodes)
+    {
+        if (ej!=null)
+            getTemplate(ej).renderElement(this, sbuf, ignoreEmptyNodes);
+    }
+    
+    /**
+     * Gets the PjxTemplate of a registered XmlNode, compiling it the first
+     * time.
+     * 
+     * @param name
+     * @return the PjxTemplate, or null if no such XmlNode.
+     */
+    public PjxTemplate getTemplate(String name)
+    {
+        Element ej = getXmlNode(name);
+        if (ej==null)
+            return null;
+        
+        return getTemplate(ej);
+    }
+    
+    /**
+     * Gets the PjxTemplate of an element, compiling it the first time.
+     * 
+     * @param ej
+     * @return the PjxTemplate
+     */
+    public PjxTemplate getTemplate(Element ej)
+    {
+        synchronized (Templates)
+        {
+            PjxTemplate t = (PjxTemplate)Templates.get(ej);
+            if (t==null)
+            {
+                t = new PjxTemplate(this, ej);
+                Templates.put(ej, t);
+            }
+            return t;
+        }
+    }
+    
+    /**
+     * Clear templates, as must be done after changing an element that was
+     * rendered by its PjxTemplate.
+     */
+    public void clearTemplates()
+    {
+        synchronized (Templates)
+        {
+            Templates.clear();
+        }
     }
     
     /**
@@ -689,7 +810,7 @@ public class PjxParser
     public void registerBeanObjects(String name, Object bean)
     {
         if (name!=null && name.length()>0 && bean!=null)
-        Beans.put(name, bean);
+            verifyBeanType(name, Beans.put(name, bean), bean);
     }
     
     /**
@@ -701,7 +822,7 @@ public class PjxParser
     public void setBean(String beanName, Object bean)
     {
         if (beanName!=null && beanName.length()>0 && bean!=null)
-            Beans.put(beanName, bean);
+            verifyBeanType(beanName, Beans.put(beanName, bean), bean);
     }
     
     /**
@@ -821,4 +942,10 @@ public class PjxParser
     
     /** Variable XmlNodes. */
     protected final Hashtable XmlNodes = new Hashtable();
+    
+    /** PjxBeanPaths by namespace, then by dot separated field. */
+    protected final Hashtable BeanPaths = new Hashtable();
+    
+    /** PjxTemplates compiled, by the elements they were compiled from. */
+    protected final WeakHashMap Templates = new WeakHashMap();
 }
@@ -0,0 +1,623 @@
+/*
+ * Offered under Apache Public Licence 2.0
+ * blessedgeek [@] synthful.org
+ * www.synthful.org 2008
+ *
+ */
+
+package org.synthful.xml.pjx;
+
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.regex.Matcher;
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.jdom.Text;
+
+/**
+ * PjxTemplate Class. An Element compiled by PjxParser into a flat list of
+ * instructions, which renders as PjxParser.resolveNode and resolveElement
+ * would, without walking the Element nor matching the pjx variable patterns
+ * again. Start tags, static attributes and static text are kept as literal
+ * chunks, ${...} variables as the namespace and field path they look up,
+ * pjx:Iterate as a loop over the instructions of its body and pjx:Var as an
+ * include of the template of its node.
+ * <br>
+ * An element instruction holds the index its start tag ends at and the index
+ * after its last child, so that each instruction is run by walking the list,
+ * and a body by running a range of it.
+ * <br>
+ * A template keeps no reference to its Element. It goes stale if its Element
+ * is changed after being compiled, after which PjxParser.clearTemplates must
+ * be done.
+ *
+ * @author Blessed Geek
+ */
+public class PjxTemplate
+{
+
+    /**
+     * Instantiates a new PjxTemplate of an Element.
+     *
+     * @param parser
+     *            registry of the XmlNodes pjx:Var elements include.
+     * @param ei
+     */
+    PjxTemplate(PjxParser parser, Element ei)
+    {
+        compileElement(parser, ei);
+        ElementTo = Size;
+        if (Ops[0]==ELEMENT)
+        {
+            ElementOp e = (ElementOp)Args[0];
+            NodeFrom = e.TagEnd;
+            NodeTo = e.End;
+        }
+        else
+        {
+            NodeFrom = Size;
+            compileContent(parser, ei);
+            NodeTo = Size;
+        }
+    }
+
+    /**
+     * Render the content of the Element, as PjxParser.resolveNode does.
+     *
+     * @param parser
+     *            whose values and beans the variables are looked up in.
+     * @param sbuf
+     *            appended to.
+     * @param ignoreEmptyNodes
+     */
+    public void renderNode(
+        PjxParser parser, StringBuilder sbuf, boolean ignoreEmptyNodes)
+    {
+        runNode(parser, sbuf, ignoreEmptyNodes, NodeFrom, NodeTo);
+    }
+
+    /**
+     * Render the Element, as PjxParser.resolveElement does.
+     *
+     * @param parser
+     *            whose values and beans the variables are looked up in.
+     * @param sbuf
+     *            appended to.
+     * @param ignoreEmptyNodes
+     */
+    public void renderElement(
+        PjxParser parser, StringBuilder sbuf, boolean ignoreEmptyNodes)
+    {
+        run(parser, sbuf, ignoreEmptyNodes, 0, ElementTo, 0);
+    }
+
+    /**
+     * Gets the Size.
+     *
+     * @return number of instructions.
+     */
+    public int getSize()
+    {
+        return Size;
+    }
+
+    /**
+     * Run a range of content, then end it with a new line if its last
+     * content was an element, as resolveNode does.
+     */
+    private void runNode(
+        PjxParser parser, StringBuilder sbuf, boolean ignoreEmptyNodes,
+        int from, int to)
+    {
+        int flag = run(parser, sbuf, ignoreEmptyNodes, from, to, 0);
+
+        if ((flag & IS_TEXT)!=0 && (flag & HAS_TEXT)!=0)
+            return;
+
+        if ((flag & IS_ELEM)!=0)
+            sbuf.append('\n');
+    }
+
+    /**
+     * Run a range of instructions.
+     *
+     * @param flag
+     *            ContentFlag bits of the content the range is in.
+     * @return the flag bits after the range.
+     */
+    private int run(
+        PjxParser parser, StringBuilder sbuf, boolean ignoreEmptyNodes,
+        int from, int to, int flag)
+    {
+        int pc = from;
+        while (pc<to)
+        {
+            Object arg = Args[pc];
+            switch (Ops[pc])
+            {
+                case LITERAL:
+                    sbuf.append((String)arg);
+                    pc++;
+                    break;
+
+                case ATTRIBUTE:
+                    writeItems(parser, sbuf, (Object[])arg, false);
+                    pc++;
+                    break;
+
+                case TEXT:
+                    flag |= IS_TEXT;
+                    int k = arg instanceof String
+                        ? appendText(sbuf, (String)arg)
+                        : writeItems(parser, sbuf, (Object[])arg, true);
+                    if (k>0)
+                        flag = (flag | HAS_TEXT) & ~IS_ELEM;
+                    else
+                        flag &= ~HAS_TEXT;
+                    pc++;
+                    break;
+
+                case ELEMENT:
+                {
+                    flag &= ~(IS_TEXT | HAS_TEXT);
+                    ElementOp e = (ElementOp)arg;
+                    int p = sbuf.length();
+                    run(parser, sbuf, ignoreEmptyNodes, pc+1, e.TagEnd, 0);
+                    int q = sbuf.length();
+                    sbuf.append('>');
+                    runNode(parser, sbuf, ignoreEmptyNodes, e.TagEnd, e.End);
+
+                    if (sbuf.length()==q+1)
+                    {
+                        sbuf.setLength(q);
+                        if (ignoreEmptyNodes && e.Droppable)
+                            sbuf.setLength(p);
+                        else
+                        {
+                            sbuf.append("/>\n");
+                            flag |= IS_ELEM;
+                        }
+                    }
+                    else
+                    {
+                        sbuf.append(e.Close);
+                        flag |= IS_ELEM;
+                    }
+                    pc = e.End;
+                    break;
+                }
+
+                case INCLUDE:
+                {
+                    flag &= ~(IS_TEXT | HAS_TEXT);
+                    IncludeOp inc = (IncludeOp)arg;
+                    PjxTemplate t = inc.Template;
+                    if (t==null)
+                    {
+                        // Kept by the op, so that later renders take no lock
+                        t = parser.getTemplate(inc.Name);
+                        inc.Template = t;
+                    }
+                    if (t!=null)
+                        t.renderNode(parser, sbuf, ignoreEmptyNodes);
+                    pc++;
+                    break;
+                }
+
+                case ITERATE:
+                {
+                    flag &= ~(IS_TEXT | HAS_TEXT);
+                    IterateOp it = (IterateOp)arg;
+                    Vector vj = new Vector();
+                    resolveItems(parser, it.Collection, vj);
+                    for (int i=0; i<vj.size(); i++)
+                    {
+                        parser.setValue("IterationValue", vj.get(i));
+                        parser.setValue("Iteration", new Integer(i));
+
+                        for (int r=0; r<it.Repeat; r++)
+                            runNode(parser, sbuf, ignoreEmptyNodes, pc+1, it.End);
+                    }
+                    pc = it.End;
+                    break;
+                }
+
+                default:
+                    pc++;
+            }
+        }
+
+        return flag;
+    }
+
+    private static int appendText(StringBuilder sbuf, String text)
+    {
+        sbuf.append(text);
+        return text.length()>0 ? 1 : 0;
+    }
+
+    /**
+     * Write the items of a string of literals and variables.
+     *
+     * @param separate
+     *            true to separate the items with a blank, as text is.
+     * @return number of items written.
+     */
+    private static int writeItems(
+        PjxParser parser, StringBuilder sbuf, Object[] segments, boolean separate)
+    {
+        Vector items = (Vector)Scratch.get();
+        items.clear();
+        resolveItems(parser, segments, items);
+
+        int k = items.size();
+        for (int i=0; i<k; i++)
+        {
+            if (separate && i>0)
+                sbuf.append(' ');
+            sbuf.append(items.get(i));
+        }
+
+        items.clear();
+        return k;
+    }
+
+    /**
+     * Resolve a string of literals and variables into items, as
+     * PjxParser.resolveStringPjxVars does.
+     */
+    static void resolveItems(PjxParser parser, Object[] segments, Vector items)
+    {
+        for (int i=0; i<segments.length; i++)
+        {
+            Object seg = segments[i];
+            if (seg instanceof String)
+            {
+                items.add(seg);
+                continue;
+            }
+
+            VarsOp vars = (VarsOp)seg;
+            int start = items.size();
+            for (int j=0; j<vars.Vars.length; j++)
+            {
+                Var v = vars.Vars[j];
+                parser.appendVarValues(items, v.NameSpace, v.Field, v.Path);
+            }
+
+            if (vars.Size)
+            {
+                int n = items.size() - start;
+                items.setSize(start);
+                items.add(new Integer(n));
+            }
+        }
+    }
+
+    /**
+     * Compile an Element, as resolveElement renders it.
+     */
+    private void compileElement(PjxParser parser, Element ej)
+    {
+        Namespace nameSpace = ej.getNamespace();
+        String ejtag = ej.getName();
+
+        if (nameSpace.getPrefix().equals("pjx"))
+        {
+            if (ejtag.equals("Var"))
+            {
+                Attribute nodeName = ej.getAttribute("node");
+                if (nodeName!=null
+                    && parser.getXmlNode(nodeName.getValue())!=null)
+                {
+                    add(INCLUDE, new IncludeOp(nodeName.getValue()));
+                    return;
+                }
+            }
+            else if (ejtag.equals("Iterate"))
+            {
+                Attribute collectionName = ej.getAttribute("collection");
+                if (collectionName!=null)
+                {
+                    IterateOp it = new IterateOp();
+                    it.Collection = compileString(parser, collectionName.getValue());
+
+                    // resolveNodePjxVar renders the whole body once
+                    // for each child element
+                    Iterator iter = ej.getContent().iterator();
+                    while (iter.hasNext())
+                        if (iter.next() instanceof Element)
+                            it.Repeat++;
+
+                    add(ITERATE, it);
+                    compileContent(parser, ej);
+                    it.End = Size;
+                    return;
+                }
+            }
+        }
+
+        ElementOp e = new ElementOp();
+        e.Droppable = ej.getAttributes().isEmpty();
+        e.Close = "</" + ejtag + ">";
+        add(ELEMENT, e);
+
+        StringBuilder lit = new StringBuilder("\n<").append(ejtag);
+        Iterator iter = ej.getAttributes().iterator();
+        while (iter.hasNext())
+        {
+            Object oj = iter.next();
+            if (!(oj instanceof Attribute))
+                continue;
+
+            Attribute aj = (Attribute)oj;
+            lit.append(' ').append(aj.getName()).append("=\"");
+            Object[] segments = compileString(parser, aj.getValue());
+            if (isLiteral(segments))
+            {
+                for (int i=0; i<segments.length; i++)
+                    lit.append(segments[i]);
+            }
+            else
+            {
+                add(LITERAL, lit.toString());
+                add(ATTRIBUTE, segments);
+                lit.setLength(0);
+            }
+            lit.append('"');
+        }
+        add(LITERAL, lit.toString());
+
+        e.TagEnd = Size;
+        compileContent(parser, ej);
+        e.End = Size;
+    }
+
+    /**
+     * Compile the content of an Element, as resolveNode renders it.
+     */
+    private void compileContent(PjxParser parser, Element ei)
+    {
+        Iterator iter = ei.getContent().iterator();
+        while (iter.hasNext())
+        {
+            Object oj = iter.next();
+            if (oj instanceof Element)
+                compileElement(parser, (Element)oj);
+            else if (oj instanceof Text)
+            {
+                Object[] segments =
+                    compileString(parser, ((Text)oj).getTextNormalize());
+                if (!isLiteral(segments))
+                    add(TEXT, segments);
+                else
+                {
+                    StringBuilder tbuf = new StringBuilder();
+                    for (int i=0; i<segments.length; i++)
+                    {
+                        if (i>0)
+                            tbuf.append(' ');
+                        tbuf.append(segments[i]);
+                    }
+                    add(TEXT, tbuf.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compile a string into its literal chunks and variables, split as
+     * PjxParser.resolveStringPjxVars splits it.
+     *
+     * @param parser
+     *            to get the PjxBeanPaths of the variables from.
+     * @param ss
+     * @return String and VarsOp segments
+     */
+    static Object[] compileString(PjxParser parser, String ss)
+    {
+        Vector segments = new Vector();
+        if (ss==null)
+            return segments.toArray();
+
+        Matcher matcher = PjxParser.pp0.matcher(ss);
+        boolean matchfound = false;
+        int a = 0, b = 0;
+
+        while (matcher.find())
+        {
+            matchfound = true;
+
+            String matched0 = matcher.group();
+            String matched2 = matcher.group(2);
+            String matched3 = matcher.group(3);
+
+            b = ss.indexOf(matched0, a);
+            String sprior = ss.substring(a, b);
+            a = b + matched0.length();
+            if (sprior.length()>0)
+                segments.add(sprior);
+
+            if (matcher.groupCount()>=2 && matched3!=null)
+                segments.add(compileVars(parser, matched2, matched3));
+            else
+                segments.add(matched0);
+        }
+
+        if (ss.length()>0 && !matchfound)
+            segments.add(ss);
+        else
+        {
+            String sprior = ss.substring(a);
+            if (sprior.length()>0)
+                segments.add(sprior);
+        }
+
+        return segments.toArray();
+    }
+
+    /**
+     * Compile the variables of a ${...}, as
+     * PjxParser.resolveNamespacedVars matches them.
+     */
+    private static VarsOp compileVars(PjxParser parser, String func, String ss)
+    {
+        Matcher matcher = PjxParser.pp1.matcher(ss);
+        Vector vars = new Vector();
+
+        while (matcher.find())
+        {
+            String matchedNameSpace = matcher.group(1);
+            String matchedFieldVar = matcher.group(4);
+            if (matchedNameSpace!=null && matchedFieldVar!=null)
+            {
+                Var v = new Var();
+                v.NameSpace = matchedNameSpace;
+                v.Field = matchedFieldVar;
+                v.Path = parser.getBeanPath(matchedNameSpace, matchedFieldVar);
+                vars.add(v);
+            }
+        }
+
+        VarsOp op = new VarsOp();
+        op.Size = func!=null && func.equals("size");
+        op.Vars = (Var[])vars.toArray(new Var[vars.size()]);
+        return op;
+    }
+
+    private static boolean isLiteral(Object[] segments)
+    {
+        for (int i=0; i<segments.length; i++)
+            if (!(segments[i] instanceof String))
+                return false;
+
+        return true;
+    }
+
+    private void add(int op, Object arg)
+    {
+        if (Size==Ops.length)
+        {
+            int[] ops = new int[Size*2];
+            Object[] args = new Object[Size*2];
+            System.arraycopy(Ops, 0, ops, 0, Size);
+            System.arraycopy(Args, 0, args, 0, Size);
+            Ops = ops;
+            Args = args;
+        }
+
+        Ops[Size] = op;
+        Args[Size] = arg;
+        Size++;
+    }
+
+    /**
+     * ElementOp Class. Argument of an ELEMENT instruction.
+     */
+    final static class ElementOp
+    {
+        /** True if the element has no attributes to keep it when empty. */
+        boolean Droppable;
+
+        /** Variable Close, the end tag. */
+        String Close;
+
+        /** Index after the instructions of the start tag. */
+        int TagEnd;
+
+        /** Index after the instructions of the children. */
+        int End;
+    }
+
+    /**
+     * IterateOp Class. Argument of an ITERATE instruction.
+     */
+    final static class IterateOp
+    {
+        /** Segments of the collection attribute. */
+        Object[] Collection;
+
+        /** Times the body is rendered for each item. */
+        int Repeat;
+
+        /** Index after the instructions of the body. */
+        int End;
+    }
+
+    /**
+     * IncludeOp Class. A pjx:Var of a registered XmlNode, and its template
+     * once found. Templates are cleared, this with them, whenever an XmlNode
+     * is registered.
+     */
+    final static class IncludeOp
+    {
+        IncludeOp(String name)
+        {
+            Name = name;
+        }
+
+        /** Name of the XmlNode. */
+        final String Name;
+
+        /** PjxTemplate of the XmlNode, null until first rendered. */
+        volatile PjxTemplate Template;
+    }
+
+    /**
+     * VarsOp Class. The variables of one ${...}.
+     */
+    final static class VarsOp
+    {
+        /** True for $size{...}, which renders the number of values. */
+        boolean Size;
+
+        /** Variable Vars. */
+        Var[] Vars;
+    }
+
+    /**
+     * Var Class. One namespace:field variable.
+     */
+    final static class Var
+    {
+        /** Variable NameSpace. */
+        String NameSpace;
+
+        /** Variable Field. */
+        String Field;
+
+        /** PjxBeanPath of the Field, to look up in a PjxBean. */
+        PjxBeanPath Path;
+    }
+
+    static final int LITERAL = 1;
+    static final int ATTRIBUTE = 2;
+    static final int TEXT = 3;
+    static final int ELEMENT = 4;
+    static final int INCLUDE = 5;
+    static final int ITERATE = 6;
+
+    private static final int IS_TEXT = 1;
+    private static final int IS_ELEM = 2;
+    private static final int HAS_TEXT = 4;
+
+    /** Values of variables, resolved by writeItems, one Vector per thread. */
+    private static final ThreadLocal Scratch = new ThreadLocal()
+    {
+        protected Object initialValue()
+        {
+            return new Vector();
+        }
+    };
+
+    private int[] Ops = new int[16];
+    private Object[] Args = new Object[16];
+    private int Size = 0;
+
+    /** Range of the content of the Element. */
+    private int NodeFrom, NodeTo;
+
+    /** End of the range of the Element itself, from 0. */
+    private int ElementTo;
+}
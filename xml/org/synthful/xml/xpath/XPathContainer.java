@@ -7,6 +7,7 @@
 package org.synthful.xml.xpath;
 
 import java.io.StringReader;
+import java.util.HashMap;
 import java.util.Hashtable;
 
 import org.xml.sax.InputSource;
@@ -16,6 +17,12 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 
 /**
+ * XPathContainer Class. XPath expressions by key, which many threads may
+ * evaluate at once. The container holds the source of each expression, and
+ * each thread compiles its own XPathExpression of a source the first time
+ * it uses it, with its own XPath, since neither is thread safe. A thread
+ * compiles an expression again only if its source is put again.
+ * 
  * @author Blessed Geek
  */
 public class XPathContainer
@@ -66,18 +73,26 @@ extends Hashtable
         return (XPathExpression) put(key,sxpath);
     }
     
-    /* (non-Javadoc)
+    /**
+     * Put the source of an XPath expression, if it compiles.
+     * 
+     * @param key
+     * @param sxpath
+     * @return the expression put before, as XPathExpression compiled for
+     *         this thread, or null.
+     * 
      * @see java.util.Hashtable#put(java.lang.Object, java.lang.Object)
      */
     public final Object put(Object key, Object sxpath)
     {
         if (key!=null && sxpath!=null)
             try{
-                XPathExpression xpathexp =
-                    XPathCompiler.compile(sxpath.toString());
-                Object o = super.put(key,xpathexp);
-                if (o instanceof XPathExpression)
-                    return (XPathExpression)o;
+                String source = sxpath.toString();
+                XPathExpression xpathexp = getXPathCompiler().compile(source);
+                XPathExpression old = getXPath(key);
+                super.put(key,source);
+                getCompiled().put(key, new Compiled(source, xpathexp));
+                return old;
             }
             catch (XPathExpressionException e)
             {
@@ -99,23 +114,38 @@ extends Hashtable
      */
     public final XPathExpression getXPath(String key)
     {
-        return getXPath(key);
+        return getXPath((Object)key);
     }
     
     /**
-     * Gets the XPath.
+     * Gets the XPath, as compiled for this thread.
      * 
      * @param key
-     * @return the XPath as XPathExpression
+     * @return the XPath as XPathExpression, or null if none put by key.
      */
     public final XPathExpression getXPath(Object key)
     {
-        Object o = super.get (key);
-        if (o instanceof XPathExpression)
-            return (XPathExpression)o;
-        else
+        if (key==null)
+            return null;
+        
+        Object source = super.get(key);
+        if (source==null)
+            return null;
+        
+        HashMap compiled = getCompiled();
+        Compiled c = (Compiled)compiled.get(key);
+        if (c!=null && c.Source==source)
+            return c.Expression;
+        
+        try
+        {
+            XPathExpression xpathexp =
+                getXPathCompiler().compile((String)source);
+            compiled.put(key, new Compiled((String)source, xpathexp));
+            return xpathexp;
+        }
+        catch (XPathExpressionException e)
         {
-            remove(key);
             return null;
         }
     }
@@ -160,9 +190,72 @@ extends Hashtable
         }
     }
     
-    /** The Constant XPathMaker. */
+    /**
+     * Gets the XPathCompiler of this thread.
+     * 
+     * @return the XPathCompiler as XPath
+     */
+    public static XPath getXPathCompiler()
+    {
+        return (XPath)XPathCompilers.get();
+    }
+    
+    /**
+     * Gets the expressions this thread compiled, made the first time.
+     */
+    private HashMap getCompiled()
+    {
+        ThreadLocal compiled = CompiledByThread;
+        if (compiled==null)
+        {
+            synchronized (this)
+            {
+                if (CompiledByThread==null)
+                    CompiledByThread = new ThreadLocal();
+                compiled = CompiledByThread;
+            }
+        }
+        
+        HashMap map = (HashMap)compiled.get();
+        if (map==null)
+            compiled.set(map = new HashMap());
+        return map;
+    }
+    
+    /**
+     * Compiled Class. An expression compiled by a thread, and the source
+     * it was compiled from.
+     */
+    private static final class Compiled
+    {
+        Compiled(String source, XPathExpression expression)
+        {
+            Source = source;
+            Expression = expression;
+        }
+        
+        final String Source;
+        final XPathExpression Expression;
+    }
+    
+    /** Expressions compiled by each thread, by key. */
+    private transient volatile ThreadLocal CompiledByThread = new ThreadLocal();
+    
+    /** The Constant XPathMaker, not thread safe. */
     public static final XPathFactory XPathMaker = XPathFactory.newInstance();
     
-    /** The Constant XPathCompiler. */
+    /**
+     * The Constant XPathCompiler, not thread safe. XPathContainer compiles
+     * with getXPathCompiler instead.
+     */
     public static final XPath XPathCompiler = XPathMaker.newXPath();
+    
+    /** XPath of each thread, of its own XPathFactory. */
+    private static final ThreadLocal XPathCompilers = new ThreadLocal()
+    {
+        protected Object initialValue()
+        {
+            return XPathFactory.newInstance().newXPath();
+        }
+    };
 }